@@ -0,0 +1,211 @@
+package api;
+
+/**
+ * @author Federico Gabriel Arena
+ * @author Fabrizio Manuel Mansilla
+ */
+
+import dao.CursorPagina;
+import dao.Pagina;
+import dao.ResultadoLote;
+import model.Auditoria;
+import model.Libro;
+import model.Prestamo;
+import model.PrestamoDetalle;
+import model.PrestamoVencido;
+import model.Usuario;
+import util.Json;
+
+import java.util.List;
+import java.util.function.BiConsumer;
+
+/**
+ * JsonSalida
+ * ----------
+ * Arma las respuestas JSON de {@link ServidorApi} sobre un único {@link StringBuilder}.
+ *
+ * ¿Qué hace?
+ *  - Escritura incremental de objetos y arreglos ({@link #abrir()}, {@link #campo}, {@link #cerrar()}...)
+ *    con las comas puestas solas.
+ *  - Conversores de cada entidad del dominio (libro, préstamo, auditoría, usuario, lote, página).
+ *
+ * Decisiones:
+ *  - Las claves son las de los getters en camelCase; fechas en ISO-8601 (igual que en la base).
+ *  - Nunca se serializan hash ni salt de un usuario.
+ *  - No es thread-safe: una instancia por respuesta.
+ */
+final class JsonSalida {
+
+    private final StringBuilder sb = new StringBuilder(256);
+    /** true si el próximo valor del objeto/arreglo abierto no lleva coma delante. */
+    private boolean primero = true;
+
+    // ===================== Escritura básica =====================
+
+    /** Abre un objeto como valor (en un arreglo o al principio). */
+    JsonSalida abrir() {
+        coma();
+        sb.append('{');
+        primero = true;
+        return this;
+    }
+
+    /** Abre un objeto como valor de la clave indicada. */
+    JsonSalida abrir(String clave) {
+        clave(clave);
+        sb.append('{');
+        primero = true;
+        return this;
+    }
+
+    JsonSalida cerrar() {
+        sb.append('}');
+        primero = false;
+        return this;
+    }
+
+    /** Abre un arreglo como valor de la clave indicada. */
+    JsonSalida abrirArreglo(String clave) {
+        clave(clave);
+        sb.append('[');
+        primero = true;
+        return this;
+    }
+
+    JsonSalida cerrarArreglo() {
+        sb.append(']');
+        primero = false;
+        return this;
+    }
+
+    JsonSalida campo(String clave, String valor) {
+        clave(clave);
+        sb.append(Json.escapar(valor));
+        return this;
+    }
+
+    JsonSalida campo(String clave, long valor) {
+        clave(clave);
+        sb.append(valor);
+        return this;
+    }
+
+    JsonSalida campo(String clave, boolean valor) {
+        clave(clave);
+        sb.append(valor);
+        return this;
+    }
+
+    /** Números como número, el resto por su {@code toString()} entre comillas, null como null. */
+    JsonSalida campo(String clave, Object valor) {
+        clave(clave);
+        if (valor instanceof Number || valor instanceof Boolean) sb.append(valor);
+        else sb.append(Json.escapar(valor == null ? null : valor.toString()));
+        return this;
+    }
+
+    /** Arreglo de elementos, cada uno escrito como objeto por el conversor. */
+    <T> JsonSalida lista(String clave, List<T> items, BiConsumer<JsonSalida, T> conversor) {
+        abrirArreglo(clave);
+        for (T it : items) {
+            abrir();
+            conversor.accept(this, it);
+            cerrar();
+        }
+        return cerrarArreglo();
+    }
+
+    private void clave(String clave) {
+        coma();
+        sb.append('"').append(clave).append("\":");
+    }
+
+    private void coma() {
+        if (!primero) sb.append(',');
+        primero = false;
+    }
+
+    @Override
+    public String toString() { return sb.toString(); }
+
+    // ===================== Entidades =====================
+
+    static void libro(JsonSalida j, Libro l) {
+        j.campo("codigo", l.getCodigo())
+         .campo("titulo", l.getTitulo())
+         .campo("autor", l.getAutor())
+         .campo("categoria", l.getCategoria())
+         .campo("editorial", l.getEditorial())
+         .campo("anio", l.getAnio())
+         .campo("stock", l.getStock())
+         .campo("activo", l.isActivo())
+         .campo("prestamosAbiertos", l.getPrestamosAbiertos())
+         .campo("ejemplaresPrestados", l.getEjemplaresPrestados())
+         .campo("totalPrestamos", l.getTotalPrestamos())
+         .campo("ultimoPrestamo", l.getUltimoPrestamo());
+    }
+
+    static void prestamo(JsonSalida j, Prestamo p) {
+        j.campo("id", p.getId())
+         .campo("libroCodigo", p.getLibroCodigo())
+         .campo("operadorUsername", p.getOperadorUsername())
+         .campo("destinatario", p.getDestinatario())
+         .campo("cantidad", p.getCantidad())
+         .campo("fechaPrestamo", p.getFechaPrestamo())
+         .campo("fechaVencimiento", p.getFechaVencimiento())
+         .campo("fechaDevolucion", p.getFechaDevolucion())
+         .campo("estado", p.getEstado());
+        if (p instanceof PrestamoDetalle d) {
+            j.campo("libroTitulo", d.getLibroTitulo())
+             .campo("libroAutor", d.getLibroAutor());
+        }
+        if (p instanceof PrestamoVencido v) {
+            j.campo("diasAtraso", v.getDiasAtraso())
+             .campo("multa", v.getMulta())
+             .campo("calculado", v.getCalculado());
+        }
+    }
+
+    static void auditoria(JsonSalida j, Auditoria a) {
+        j.campo("id", a.getId())
+         .campo("ts", a.getTs())
+         .campo("operadorUsername", a.getOperadorUsername())
+         .campo("tipo", a.getTipo())
+         .campo("libroCodigo", a.getLibroCodigo())
+         .campo("prestamoId", a.getPrestamoId())
+         .campo("cantidad", a.getCantidad())
+         .campo("destinatario", a.getDestinatario())
+         .campo("detalle", a.getDetalle());
+    }
+
+    /** Datos públicos del usuario (sin hash ni salt). */
+    static void usuario(JsonSalida j, Usuario u) {
+        j.campo("id", u.getId())
+         .campo("nombre", u.getNombre())
+         .campo("username", u.getUsername())
+         .campo("rol", u.getRol());
+    }
+
+    static void lote(JsonSalida j, ResultadoLote r) {
+        j.campo("confirmado", r.isConfirmado())
+         .campo("exitosos", r.getExitosos())
+         .campo("fallidos", r.getFallidos())
+         .lista("items", r.getItems(), (o, it) -> o
+                 .campo("indice", it.getIndice())
+                 .campo("ok", it.isOk())
+                 .campo("id", it.getId())
+                 .campo("motivo", it.getMotivo())
+                 .campo("error", it.getError()));
+    }
+
+    /** Página con sus ítems y el cursor para continuar ({@code siguiente} null si es la última). */
+    static <T> void pagina(JsonSalida j, Pagina<T> p, BiConsumer<JsonSalida, T> conversor) {
+        j.lista("items", p.getItems(), conversor);
+        CursorPagina c = p.getSiguiente();
+        if (c == null) {
+            j.campo("siguiente", (Object) null);
+        } else {
+            j.abrir("siguiente").campo("clave", c.getClave()).campo("id", c.getId()).cerrar();
+        }
+    }
+}
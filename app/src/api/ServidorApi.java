@@ -0,0 +1,531 @@
+package api;
+
+/**
+ * @author Federico Gabriel Arena
+ * @author Fabrizio Manuel Mansilla
+ */
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import dao.AuditoriaDao;
+import dao.CursorPagina;
+import dao.FiltroAuditoria;
+import dao.JdbcAuditoriaDao;
+import dao.JdbcLibroDAO;
+import dao.JdbcPrestamoDAO;
+import dao.JdbcUsuarioDAO;
+import dao.PrestamoRechazadoException;
+import model.Libro;
+import model.Rol;
+import model.SolicitudPrestamo;
+import model.Usuario;
+import service.AuthService;
+import service.AuthServiceImpl;
+import service.LibroService;
+import service.PrestamoService;
+import service.UsuarioAdminService;
+import util.Json;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * ServidorApi
+ * -----------
+ * API HTTP/JSON sin interfaz gráfica sobre los mismos servicios que usa la app Swing
+ * ({@link LibroService}, {@link PrestamoService}, {@link AuthService}, {@link UsuarioAdminService}
+ * y {@link AuditoriaDao}), para kioscos de autoservicio y el catálogo web.
+ *
+ * Rutas (todas bajo {@code /api}, cuerpo y respuesta en JSON):
+ * <pre>
+ *   POST   /login                          {username, password} → {token, usuario}
+ *   POST   /logout
+ *   POST   /password                       {actual, nueva}
+ *   GET    /libros?q=&amp;despuesClave=&amp;despuesId=&amp;tamanio=   página por título
+ *   GET    /libros/{codigo}
+ *   POST   /libros                         (admin) alta
+ *   PUT    /libros/{codigo}                (admin) modificación
+ *   POST   /libros/{codigo}/activar        (admin)
+ *   POST   /libros/{codigo}/desactivar     (admin) baja lógica
+ *   GET    /prestamos/abiertos?q=&amp;despuesClave=&amp;despuesId=&amp;tamanio=
+ *   GET    /prestamos/historico?desde=&amp;hasta=&amp;q=&amp;despuesClave=&amp;despuesId=&amp;tamanio=
+ *   GET    /prestamos/vencidos
+ *   POST   /prestamos                      {libroCodigo, destinatario, cantidad, dias} → {id}
+ *   POST   /prestamos/lote?todoONada=      [{...}, ...] → resultado por ítem
+ *   POST   /prestamos/{id}/devolver
+ *   POST   /prestamos/{id}/renovar         {dias}
+ *   GET    /usuarios?despuesClave=&amp;despuesId=&amp;tamanio=     (admin)
+ *   POST   /usuarios                       (admin) {nombre, username, password}
+ *   DELETE /usuarios/{username}            (admin)
+ *   POST   /usuarios/{username}/reset      (admin) → {temporal}
+ *   GET    /auditoria?operador=&amp;tipo=&amp;libro=&amp;prestamo=&amp;desde=&amp;hasta=&amp;despuesClave=&amp;despuesId=&amp;tamanio=  (admin)
+ * </pre>
+ * Salvo {@code /login}, todas piden {@code Authorization: Bearer <token>}. El operador de cada
+ * préstamo es el usuario del token.
+ *
+ * Errores: {@code {"error": "..."}} con 400 (validación), 401 (sin sesión o login fallido), 403 (no es admin),
+ * 404 (ruta o recurso inexistente), 405 (método), 409 (préstamo rechazado; agrega {@code motivo}),
+ * 413 (cuerpo demasiado grande) o 500 (error técnico, el detalle queda en el log).
+ *
+ * Decisiones:
+ *  - Un hilo virtual por pedido: las llamadas JDBC bloquean y con hilos virtuales eso no cuesta un
+ *    hilo de plataforma. La concurrencia real contra SQLite la acota el pool de
+ *    {@code ConnectionFactory} (quien no consigue conexión espera su turno o recibe timeout).
+ *  - Paginado por cursor igual que la UI: la respuesta trae {@code siguiente} {clave, id}, que se
+ *    devuelve como {@code despuesClave}/{@code despuesId} para pedir la página siguiente.
+ *  - Las reglas de negocio siguen en los servicios: acá solo se traduce HTTP ↔ llamadas y
+ *    excepciones ↔ códigos de estado.
+ *
+ * Uso:
+ * <pre>
+ *   ServidorApi api = ServidorApi.conJdbc(30 * 60_000);
+ *   api.iniciar("0.0.0.0", 8080);
+ *   ...
+ *   api.detener(2);
+ * </pre>
+ */
+public final class ServidorApi {
+
+    /** Tamaño máximo de un cuerpo de pedido (un lote de préstamos grande entra holgado). */
+    private static final int CUERPO_MAXIMO = 1 << 20;
+
+    private static final String JSON = "application/json; charset=utf-8";
+
+    private final LibroService libros;
+    private final PrestamoService prestamos;
+    private final AuthService auth;
+    private final UsuarioAdminService usuarios;
+    private final AuditoriaDao auditoria;
+    private final Sesiones sesiones;
+
+    private HttpServer server;
+    private ExecutorService ejecutor;
+
+    /**
+     * @param inactividadMs tiempo sin uso tras el cual vence un token.
+     */
+    public ServidorApi(LibroService libros, PrestamoService prestamos, AuthService auth,
+                       UsuarioAdminService usuarios, AuditoriaDao auditoria, long inactividadMs) {
+        this.libros = libros;
+        this.prestamos = prestamos;
+        this.auth = auth;
+        this.usuarios = usuarios;
+        this.auditoria = auditoria;
+        this.sesiones = new Sesiones(inactividadMs);
+    }
+
+    /** Servidor con las implementaciones JDBC (las mismas que usa la app de escritorio). */
+    public static ServidorApi conJdbc(long inactividadMs) {
+        JdbcUsuarioDAO usuarioDao = new JdbcUsuarioDAO();
+        return new ServidorApi(new LibroService(new JdbcLibroDAO()), new PrestamoService(new JdbcPrestamoDAO()),
+                new AuthServiceImpl(usuarioDao), new UsuarioAdminService(usuarioDao),
+                new JdbcAuditoriaDao(), inactividadMs);
+    }
+
+    // ===================== Ciclo de vida =====================
+
+    /**
+     * Abre el puerto y empieza a atender.
+     *
+     * @param host   interfaz a escuchar ("0.0.0.0" = todas).
+     * @param puerto puerto TCP (0 = uno libre cualquiera).
+     * @return dirección efectiva (útil con puerto 0).
+     * @throws IOException si el puerto no se puede abrir.
+     */
+    public synchronized InetSocketAddress iniciar(String host, int puerto) throws IOException {
+        if (server != null) throw new IllegalStateException("El servidor ya está iniciado");
+        // Sin TCP_NODELAY, encabezados y cuerpo salen en dos segmentos y el ACK retardado del
+        // cliente suma ~40 ms a cada respuesta. Se lee una vez, al crear el primer servidor.
+        if (System.getProperty("sun.net.httpserver.nodelay") == null)
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        HttpServer s = HttpServer.create(new InetSocketAddress(host, puerto), 0);
+        ejecutor = Executors.newVirtualThreadPerTaskExecutor();
+        s.setExecutor(ejecutor);
+        s.createContext("/api/", this::atender);
+        s.start();
+        server = s;
+        return s.getAddress();
+    }
+
+    /**
+     * Deja de aceptar pedidos y espera a los que están en curso.
+     *
+     * @param esperaSeg segundos máximos para terminar los pedidos en curso.
+     */
+    public synchronized void detener(int esperaSeg) {
+        if (server == null) return;
+        server.stop(esperaSeg);
+        ejecutor.shutdown();
+        server = null;
+        ejecutor = null;
+    }
+
+    /** @return sesiones abiertas (para logs/métricas). */
+    public int sesionesAbiertas() { return sesiones.cantidad(); }
+
+    // ===================== Despacho =====================
+
+    /** Pedido ya decodificado: método, segmentos de ruta después de /api, query y usuario del token. */
+    private record Pedido(HttpExchange ex, String metodo, String[] ruta, Map<String, String> query,
+                          String token, Usuario usuario) {
+
+        String q(String clave) {
+            String v = query.get(clave);
+            return v == null || v.isBlank() ? null : v;
+        }
+
+        boolean es(String metodo, int segmentos) {
+            return this.metodo.equals(metodo) && ruta.length == segmentos;
+        }
+    }
+
+    /** Respuesta a enviar. */
+    private record Respuesta(int estado, String json) {
+        static Respuesta ok(JsonSalida j) { return new Respuesta(200, j.toString()); }
+        static Respuesta creado(JsonSalida j) { return new Respuesta(201, j.toString()); }
+        static Respuesta vacia() { return new Respuesta(204, null); }
+    }
+
+    /** Error con su código HTTP (se traduce a {@code {"error": mensaje}}). */
+    private static final class ErrorHttp extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        final int estado;
+
+        ErrorHttp(int estado, String mensaje) {
+            super(mensaje);
+            this.estado = estado;
+        }
+    }
+
+    private void atender(HttpExchange ex) throws IOException {
+        Respuesta r;
+        try {
+            r = despachar(leerPedido(ex));
+        } catch (ErrorHttp e) {
+            r = error(e.estado, e.getMessage());
+        } catch (PrestamoRechazadoException e) {
+            r = new Respuesta(409, new JsonSalida().abrir()
+                    .campo("error", e.getMessage())
+                    .campo("motivo", e.getMotivo())
+                    .campo("libroCodigo", e.getLibroCodigo())
+                    .cerrar().toString());
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            // NumberFormatException es IllegalArgumentException: parámetros numéricos mal formados
+            r = error(400, e.getMessage());
+        } catch (RuntimeException e) {
+            System.err.println("[ServidorApi] " + ex.getRequestMethod() + " " + ex.getRequestURI() + ": " + e);
+            r = error(500, "Error interno");
+        }
+        enviar(ex, r);
+    }
+
+    private Respuesta despachar(Pedido p) {
+        if (p.ruta.length == 0) throw new ErrorHttp(404, "Ruta inexistente");
+        if (p.ruta[0].equals("login")) {
+            if (!p.es("POST", 1)) throw new ErrorHttp(405, "Método no permitido");
+            return login(p);
+        }
+        if (p.usuario == null) throw new ErrorHttp(401, "Sesión inválida o vencida");
+        return switch (p.ruta[0]) {
+            case "logout" -> {
+                if (!p.es("POST", 1)) throw new ErrorHttp(405, "Método no permitido");
+                sesiones.cerrar(p.token);
+                yield Respuesta.vacia();
+            }
+            case "password" -> {
+                if (!p.es("POST", 1)) throw new ErrorHttp(405, "Método no permitido");
+                Map<String, String> b = cuerpo(p);
+                auth.cambiarPassword(p.usuario.getUsername(), b.get("actual"), b.get("nueva"));
+                yield Respuesta.vacia();
+            }
+            case "libros" -> libros(p);
+            case "prestamos" -> prestamos(p);
+            case "usuarios" -> { exigirAdmin(p); yield usuarios(p); }
+            case "auditoria" -> { exigirAdmin(p); yield auditoria(p); }
+            default -> throw new ErrorHttp(404, "Ruta inexistente");
+        };
+    }
+
+    // ===================== Sesión =====================
+
+    private Respuesta login(Pedido p) {
+        Map<String, String> b = cuerpo(p);
+        Usuario u;
+        try {
+            u = auth.login(b.get("username"), b.get("password"));
+        } catch (IllegalArgumentException e) {
+            throw new ErrorHttp(401, e.getMessage());
+        }
+        String token = sesiones.abrir(u);
+        JsonSalida j = new JsonSalida().abrir().campo("token", token).abrir("usuario");
+        JsonSalida.usuario(j, u);
+        return Respuesta.ok(j.cerrar().cerrar());
+    }
+
+    private static void exigirAdmin(Pedido p) {
+        if (p.usuario.getRol() != Rol.ADMIN) throw new ErrorHttp(403, "Requiere rol ADMIN");
+    }
+
+    // ===================== Libros =====================
+
+    private Respuesta libros(Pedido p) {
+        if (p.es("GET", 1)) {
+            JsonSalida j = new JsonSalida().abrir();
+            JsonSalida.pagina(j, libros.listarPagina(p.q("q"), cursor(p), tamanio(p)), JsonSalida::libro);
+            return Respuesta.ok(j.cerrar());
+        }
+        if (p.es("POST", 1)) {
+            exigirAdmin(p);
+            Libro l = libro(cuerpo(p), null);
+            libros.crear(l);
+            return Respuesta.creado(libroJson(l.getCodigo()));
+        }
+        if (p.ruta.length < 2) throw new ErrorHttp(405, "Método no permitido");
+        String codigo = p.ruta[1];
+        if (p.es("GET", 2)) return Respuesta.ok(libroJson(codigo));
+        if (p.es("PUT", 2)) {
+            exigirAdmin(p);
+            libros.actualizar(libro(cuerpo(p), codigo));
+            return Respuesta.ok(libroJson(codigo));
+        }
+        if (p.es("POST", 3) && p.ruta[2].equals("activar")) {
+            exigirAdmin(p);
+            libros.activar(codigo);
+            return Respuesta.ok(libroJson(codigo));
+        }
+        if (p.es("POST", 3) && p.ruta[2].equals("desactivar")) {
+            exigirAdmin(p);
+            libros.desactivar(codigo);
+            return Respuesta.ok(libroJson(codigo));
+        }
+        throw new ErrorHttp(404, "Ruta inexistente");
+    }
+
+    private JsonSalida libroJson(String codigo) {
+        Libro l = libros.obtener(codigo);
+        if (l == null) throw new ErrorHttp(404, "Libro inexistente: " + codigo);
+        JsonSalida j = new JsonSalida().abrir();
+        JsonSalida.libro(j, l);
+        return j.cerrar();
+    }
+
+    /** Libro desde el cuerpo; con {@code codigo} != null (PUT) manda el de la ruta. */
+    private static Libro libro(Map<String, String> b, String codigo) {
+        return new Libro(
+                codigo != null ? codigo : b.get("codigo"),
+                b.get("titulo"),
+                b.get("autor"),
+                b.get("categoria"),
+                b.get("editorial"),
+                entero(b.get("anio"), 0),
+                entero(b.get("stock"), 0),
+                b.get("activo") == null || Boolean.parseBoolean(b.get("activo")));
+    }
+
+    // ===================== Préstamos =====================
+
+    private Respuesta prestamos(Pedido p) {
+        if (p.es("GET", 2)) {
+            JsonSalida j = new JsonSalida().abrir();
+            switch (p.ruta[1]) {
+                case "abiertos" -> JsonSalida.pagina(j,
+                        prestamos.abiertosPagina(p.q("q"), cursor(p), tamanio(p)), JsonSalida::prestamo);
+                case "historico" -> JsonSalida.pagina(j,
+                        prestamos.historicoPagina(fecha(p.q("desde")), fecha(p.q("hasta")), p.q("q"),
+                                cursor(p), tamanio(p)), JsonSalida::prestamo);
+                case "vencidos" -> j.lista("items", prestamos.vencidos(), JsonSalida::prestamo);
+                default -> throw new ErrorHttp(404, "Ruta inexistente");
+            }
+            return Respuesta.ok(j.cerrar());
+        }
+        if (p.es("POST", 1)) {
+            Map<String, String> b = cuerpo(p);
+            long id = prestamos.prestar(b.get("libroCodigo"), p.usuario.getUsername(), b.get("destinatario"),
+                    entero(b.get("cantidad"), 0), entero(b.get("dias"), 0));
+            return Respuesta.creado(new JsonSalida().abrir().campo("id", id).cerrar());
+        }
+        if (p.es("POST", 2) && p.ruta[1].equals("lote")) {
+            List<SolicitudPrestamo> items = new ArrayList<>();
+            for (Map<String, String> b : cuerpoLista(p)) {
+                items.add(new SolicitudPrestamo(b.get("libroCodigo"), b.get("destinatario"),
+                        entero(b.get("cantidad"), 0), entero(b.get("dias"), 0)));
+            }
+            JsonSalida j = new JsonSalida().abrir();
+            JsonSalida.lote(j, prestamos.prestarLote(p.usuario.getUsername(), items,
+                    Boolean.parseBoolean(p.q("todoONada"))));
+            return Respuesta.ok(j.cerrar());
+        }
+        if (p.es("POST", 3)) {
+            long id = Long.parseLong(p.ruta[1]);
+            switch (p.ruta[2]) {
+                case "devolver" -> prestamos.devolver(id);
+                case "renovar" -> prestamos.renovar(id, entero(cuerpo(p).get("dias"), 0));
+                default -> throw new ErrorHttp(404, "Ruta inexistente");
+            }
+            return Respuesta.vacia();
+        }
+        throw new ErrorHttp(404, "Ruta inexistente");
+    }
+
+    // ===================== Usuarios (admin) =====================
+
+    private Respuesta usuarios(Pedido p) {
+        if (p.es("GET", 1)) {
+            JsonSalida j = new JsonSalida().abrir();
+            JsonSalida.pagina(j, usuarios.listarPagina(cursor(p), tamanio(p)), JsonSalida::usuario);
+            return Respuesta.ok(j.cerrar());
+        }
+        if (p.es("POST", 1)) {
+            Map<String, String> b = cuerpo(p);
+            Usuario u = usuarios.registrarOperador(b.get("nombre"), b.get("username"), b.get("password"));
+            JsonSalida j = new JsonSalida().abrir();
+            JsonSalida.usuario(j, u);
+            return Respuesta.creado(j.cerrar());
+        }
+        if (p.es("DELETE", 2)) {
+            usuarios.eliminar(p.ruta[1], p.usuario.getUsername());
+            sesiones.cerrarUsuario(p.ruta[1]);
+            return Respuesta.vacia();
+        }
+        if (p.es("POST", 3) && p.ruta[2].equals("reset")) {
+            String temporal = usuarios.resetearPasswordTemporal(p.ruta[1]);
+            sesiones.cerrarUsuario(p.ruta[1]);
+            return Respuesta.ok(new JsonSalida().abrir().campo("temporal", temporal).cerrar());
+        }
+        throw new ErrorHttp(404, "Ruta inexistente");
+    }
+
+    // ===================== Auditoría (admin) =====================
+
+    private Respuesta auditoria(Pedido p) {
+        if (!p.es("GET", 1)) throw new ErrorHttp(405, "Método no permitido");
+        String prestamo = p.q("prestamo");
+        FiltroAuditoria f = FiltroAuditoria.todos()
+                .conOperador(p.q("operador"))
+                .conTipo(p.q("tipo"))
+                .conLibro(p.q("libro"))
+                .conPrestamo(prestamo == null ? null : Long.valueOf(prestamo))
+                .conRango(instante(p.q("desde")), instante(p.q("hasta")));
+        JsonSalida j = new JsonSalida().abrir();
+        JsonSalida.pagina(j, auditoria.buscar(f, cursor(p), tamanio(p)), JsonSalida::auditoria);
+        return Respuesta.ok(j.cerrar());
+    }
+
+    // ===================== HTTP ↔ Java =====================
+
+    private Pedido leerPedido(HttpExchange ex) {
+        // Ruta: /api/a/b/c → ["a","b","c"] (decodificada, sin segmentos vacíos)
+        String path = ex.getRequestURI().getRawPath().substring("/api/".length());
+        List<String> ruta = new ArrayList<>();
+        for (String s : path.split("/")) {
+            if (!s.isEmpty()) ruta.add(URLDecoder.decode(s, StandardCharsets.UTF_8));
+        }
+
+        Map<String, String> query = new HashMap<>();
+        String raw = ex.getRequestURI().getRawQuery();
+        if (raw != null) {
+            for (String par : raw.split("&")) {
+                int i = par.indexOf('=');
+                if (i <= 0) continue;
+                query.put(URLDecoder.decode(par.substring(0, i), StandardCharsets.UTF_8),
+                          URLDecoder.decode(par.substring(i + 1), StandardCharsets.UTF_8));
+            }
+        }
+
+        String token = null;
+        String authz = ex.getRequestHeaders().getFirst("Authorization");
+        if (authz != null && authz.regionMatches(true, 0, "Bearer ", 0, 7)) token = authz.substring(7).trim();
+
+        return new Pedido(ex, ex.getRequestMethod().toUpperCase(), ruta.toArray(String[]::new), query,
+                token, sesiones.usuario(token));
+    }
+
+    /** Cuerpo con un único objeto JSON plano (vacío si no hay cuerpo). */
+    private static Map<String, String> cuerpo(Pedido p) {
+        try {
+            Map<String, String> o = new Json.Lector(new StringReader(leerCuerpo(p.ex))).siguiente();
+            return o != null ? o : Map.of();
+        } catch (IOException e) {
+            throw new ErrorHttp(400, "No se pudo leer el cuerpo");
+        }
+    }
+
+    /** Cuerpo con un arreglo de objetos planos (o JSON Lines). */
+    private static List<Map<String, String>> cuerpoLista(Pedido p) {
+        try {
+            Json.Lector lector = new Json.Lector(new StringReader(leerCuerpo(p.ex)));
+            List<Map<String, String>> out = new ArrayList<>();
+            for (Map<String, String> o; (o = lector.siguiente()) != null; ) out.add(o);
+            return out;
+        } catch (IOException e) {
+            throw new ErrorHttp(400, "No se pudo leer el cuerpo");
+        }
+    }
+
+    private static String leerCuerpo(HttpExchange ex) throws IOException {
+        try (InputStream in = ex.getRequestBody()) {
+            byte[] b = in.readNBytes(CUERPO_MAXIMO + 1);
+            if (b.length > CUERPO_MAXIMO) throw new ErrorHttp(413, "Cuerpo demasiado grande");
+            return new String(b, StandardCharsets.UTF_8);
+        }
+    }
+
+    private static void enviar(HttpExchange ex, Respuesta r) throws IOException {
+        try {
+            if (r.json == null) {
+                ex.sendResponseHeaders(r.estado, -1);
+                return;
+            }
+            byte[] b = r.json.getBytes(StandardCharsets.UTF_8);
+            ex.getResponseHeaders().set("Content-Type", JSON);
+            ex.sendResponseHeaders(r.estado, b.length);
+            try (OutputStream os = ex.getResponseBody()) {
+                os.write(b);
+            }
+        } finally {
+            ex.close();
+        }
+    }
+
+    private static Respuesta error(int estado, String mensaje) {
+        return new Respuesta(estado, new JsonSalida().abrir().campo("error", mensaje).cerrar().toString());
+    }
+
+    private static CursorPagina cursor(Pedido p) {
+        String id = p.q("despuesId");
+        return id == null ? null : CursorPagina.de(p.query.get("despuesClave"), id);
+    }
+
+    private static int tamanio(Pedido p) {
+        return entero(p.q("tamanio"), 50);
+    }
+
+    private static int entero(String s, int porDefecto) {
+        return s == null || s.isBlank() ? porDefecto : Integer.parseInt(s.trim());
+    }
+
+    private static LocalDate fecha(String s) {
+        return s == null ? null : LocalDate.parse(s);
+    }
+
+    private static LocalDateTime instante(String s) {
+        if (s == null) return null;
+        // Acepta solo fecha (inicio del día) o fecha y hora ISO
+        return s.length() == 10 ? LocalDate.parse(s).atStartOfDay() : LocalDateTime.parse(s);
+    }
+}
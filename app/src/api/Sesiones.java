@@ -0,0 +1,72 @@
+package api;
+
+/**
+ * @author Federico Gabriel Arena
+ * @author Fabrizio Manuel Mansilla
+ */
+
+import model.Usuario;
+import util.HashUtil;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Sesiones
+ * --------
+ * Tokens de acceso de la API HTTP (equivalente headless de {@code session.Session}).
+ *
+ * ¿Qué hace?
+ *  - {@link #abrir(Usuario)} emite un token aleatorio de 256 bits para un usuario ya autenticado.
+ *  - {@link #usuario(String)} resuelve el token (header {@code Authorization: Bearer <token>}) y
+ *    renueva su vencimiento: la sesión expira tras {@code inactividadMs} sin uso.
+ *
+ * Decisiones:
+ *  - En memoria ({@link ConcurrentHashMap}): un reinicio del servidor obliga a volver a loguearse,
+ *    igual que cerrar la app de escritorio.
+ *  - Las sesiones vencidas se purgan al abrir una nueva, así el mapa no crece sin límite.
+ */
+final class Sesiones {
+
+    private record Sesion(Usuario usuario, long expira) {}
+
+    private final Map<String, Sesion> activas = new ConcurrentHashMap<>();
+    private final long inactividadMs;
+
+    /** @param inactividadMs tiempo sin uso tras el cual el token deja de valer (&gt; 0). */
+    Sesiones(long inactividadMs) {
+        if (inactividadMs <= 0) throw new IllegalArgumentException("Inactividad inválida");
+        this.inactividadMs = inactividadMs;
+    }
+
+    /** @return token nuevo para el usuario. */
+    String abrir(Usuario u) {
+        long ahora = System.currentTimeMillis();
+        activas.values().removeIf(s -> s.expira() < ahora);
+        String token = HashUtil.newSaltHex(32);
+        activas.put(token, new Sesion(u, ahora + inactividadMs));
+        return token;
+    }
+
+    /** @return usuario del token, o {@code null} si no existe o venció. */
+    Usuario usuario(String token) {
+        if (token == null) return null;
+        long ahora = System.currentTimeMillis();
+        Sesion s = activas.computeIfPresent(token,
+                (t, vieja) -> vieja.expira() < ahora ? null : new Sesion(vieja.usuario(), ahora + inactividadMs));
+        return s == null ? null : s.usuario();
+    }
+
+    /** Invalida el token (logout). */
+    void cerrar(String token) {
+        if (token != null) activas.remove(token);
+    }
+
+    /** Invalida todas las sesiones del usuario (p. ej. al eliminarlo o resetear su contraseña). */
+    void cerrarUsuario(String username) {
+        activas.values().removeIf(s -> s.usuario().getUsername().equalsIgnoreCase(username));
+    }
+
+    /** @return cantidad de sesiones abiertas (incluye vencidas aún no purgadas). */
+    int cantidad() { return activas.size(); }
+}
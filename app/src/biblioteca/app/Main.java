@@ -6,6 +6,7 @@ package biblioteca.app;
  */
 
 import db.DbInit;
+import service.MonitorVencidos;
 import session.Session;
 import ui.LoginDialog;
 import ui.Mainframe;
@@ -22,7 +23,8 @@ import java.awt.event.WindowEvent;
  *
  * Flujo general:
  *   1) Aplica Look & Feel (Nimbus).
- *   2) Inicializa la base de datos (crea tablas y seed si faltan).
+ *   2) Inicializa la base de datos (crea tablas y seed si faltan) y arranca el monitor de
+ *      préstamos vencidos (hilo de fondo).
  *   3) Muestra el Login (modal). Si autentica → crea {@link Session} y abre {@link Mainframe}.
  *   4) Si en el Mainframe el usuario elige "Cerrar sesión", se vuelve a mostrar el Login.
  *
@@ -49,6 +51,7 @@ public class Main {
             );
             return; // Abortamos la app si la base no se pudo preparar
         }
+        MonitorVencidos.global().iniciar();
 
         // 3) Arranque del ciclo Login → Mainframe (con posibilidad de volver a Login por logout)
         SwingUtilities.invokeLater(Main::showLoginThenMain);
@@ -0,0 +1,59 @@
+package biblioteca.app;
+
+/**
+ * @author Federico Gabriel Arena
+ * @author Fabrizio Manuel Mansilla
+ */
+
+import api.ServidorApi;
+import db.ConnectionFactory;
+import db.DbInit;
+import service.MonitorVencidos;
+
+import java.net.InetSocketAddress;
+
+/**
+ * Servidor
+ * --------
+ * Punto de entrada sin interfaz gráfica: levanta la API HTTP/JSON ({@link ServidorApi}) sobre la
+ * misma base que la app de escritorio.
+ *
+ * Flujo:
+ *   1) Inicializa la base de datos (igual que {@link Main}).
+ *   2) Arranca el monitor de vencidos (alimenta {@code GET /api/prestamos/vencidos}).
+ *   3) Abre el puerto y queda atendiendo hasta que se detiene el proceso (Ctrl+C / SIGTERM):
+ *      el hook de apagado espera los pedidos en curso y cierra el pool de conexiones.
+ *
+ * Configuración (propiedades de sistema, opcionales):
+ *   biblioteca.api.host        interfaz a escuchar               (default 127.0.0.1; 0.0.0.0 = todas)
+ *   biblioteca.api.puerto      puerto TCP                        (default 8080)
+ *   biblioteca.api.sesionMin   minutos sin uso que vence un token (default 30)
+ *
+ * Ejecución:
+ *   java -cp "app/dist/app.jar:core/dist/core.jar:core/dbserial/*" biblioteca.app.Servidor
+ */
+public class Servidor {
+
+    public static void main(String[] args) throws Exception {
+        String host = System.getProperty("biblioteca.api.host", "127.0.0.1");
+        int puerto = Integer.getInteger("biblioteca.api.puerto", 8080);
+        long sesionMs = Long.getLong("biblioteca.api.sesionMin", 30) * 60_000;
+
+        // 1) Base de datos (DDL + seed). Si falla, no tiene sentido abrir el puerto.
+        DbInit.ensureInit();
+        MonitorVencidos.global().iniciar();
+
+        // 2) API
+        ServidorApi api = ServidorApi.conJdbc(sesionMs);
+        InetSocketAddress dir = api.iniciar(host, puerto);
+        System.out.println("[Servidor] API escuchando en http://" + dir.getHostString() + ":" + dir.getPort()
+                + "/api (base " + ConnectionFactory.dbPath() + ")");
+
+        // 3) Apagado ordenado
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            api.detener(2);
+            MonitorVencidos.global().cerrar();
+            ConnectionFactory.cerrarPool();
+        }, "servidor-apagado"));
+    }
+}
@@ -5,56 +5,214 @@ package ui;
  * @author Fabrizio Manuel Mansilla
  */
 
+import dao.CursorPagina;
+import dao.FiltroAuditoria;
 import dao.JdbcAuditoriaDao;
+import dao.Pagina;
 import model.Auditoria;
 
 import javax.swing.*;
 import javax.swing.table.DefaultTableModel;
 import java.awt.*;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
 
+/**
+ * Consulta de auditoría con filtros (operador, tipo, libro, préstamo, rango de fechas).
+ *
+ * - Muestra de a {@link #TAM_PAGINA} eventos, del más reciente al más antiguo.
+ * - "Más resultados" pide la página siguiente con el cursor de la última (paginado por clave):
+ *   cada página cuesta lo mismo aunque se esté muy atrás en el tiempo.
+ * - Sin filtros equivale a la vista de "recientes" de siempre.
+ * - Refresco en vivo ({@link RefrescoVivo}): los eventos nuevos que cumplen el filtro se
+ *   agregan arriba sin recargar la tabla.
+ */
 public class AuditoriaRecientesDialog extends JDialog {
 
+    private static final int TAM_PAGINA = 100;
+    private static final String TODOS = "(todos)";
+
     private final JdbcAuditoriaDao dao = new JdbcAuditoriaDao();
     private final DefaultTableModel model = new DefaultTableModel(
-            new Object[]{"Fecha/Hora","Operador","Tipo","Libro","Cant.","Destinatario","Detalle"}, 0) {
+            new Object[]{"Fecha/Hora","Operador","Tipo","Libro","Préstamo","Cant.","Destinatario","Detalle"}, 0) {
         @Override public boolean isCellEditable(int r, int c) { return false; }
     };
     private final JTable table = new JTable(model);
+    private final UIAsync async = new UIAsync(this);
+
+    // ---- Filtros ----
+    private final JTextField txtOperador = new JTextField(10);
+    private final JComboBox<String> cbTipo = new JComboBox<>(new String[]{
+            TODOS, "PRESTAR", "DEVOLVER", "RENOVAR", "ACTIVAR_LIBRO", "DESACTIVAR_LIBRO"});
+    private final JTextField txtLibro    = new JTextField(8);
+    private final JTextField txtPrestamo = new JTextField(6);
+    private final JTextField txtDesde    = new JTextField(8);   // yyyy-MM-dd
+    private final JTextField txtHasta    = new JTextField(8);   // yyyy-MM-dd (inclusive)
+
+    private final JButton btnMas = new JButton("Más resultados");
+    private final JLabel lblEstado = new JLabel(" ");
+
+    /** Filtro de la búsqueda vigente y cursor para su página siguiente. */
+    private FiltroAuditoria filtro = FiltroAuditoria.todos();
+    private CursorPagina siguiente;
+
+    /** Ids de los eventos en la tabla (un parche puede repetir eventos ya cargados). */
+    private final Set<Long> visibles = new HashSet<>();
+    private final RefrescoVivo<List<Auditoria>> refresco = new RefrescoVivo<>(this, async, "auditoria.vivo", dao,
+            Function.identity(), this::agregarNuevos);
+    private boolean hayMas;
 
     public AuditoriaRecientesDialog(Window owner) {
-        super(owner, "Auditoría (recientes)", ModalityType.APPLICATION_MODAL);
-        setSize(900, 420);
+        super(owner, "Auditoría", ModalityType.APPLICATION_MODAL);
+        setSize(1000, 480);
         setLocationRelativeTo(owner);
         setLayout(new BorderLayout(8,8));
 
+        JPanel north = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        north.add(new JLabel("Operador:"));  north.add(txtOperador);
+        north.add(new JLabel("Tipo:"));      north.add(cbTipo);
+        north.add(new JLabel("Libro:"));     north.add(txtLibro);
+        north.add(new JLabel("Préstamo:"));  north.add(txtPrestamo);
+        north.add(new JLabel("Desde:"));     north.add(txtDesde);
+        north.add(new JLabel("Hasta:"));     north.add(txtHasta);
+        JButton btnBuscar = new JButton("Buscar");
+        north.add(btnBuscar);
+        add(north, BorderLayout.NORTH);
+
         UIUtil.styleTable(table);
         add(new JScrollPane(table), BorderLayout.CENTER);
 
-        JPanel south = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+        JPanel south = new JPanel(new BorderLayout());
+        south.add(lblEstado, BorderLayout.WEST);
+        JPanel btns = new JPanel(new FlowLayout(FlowLayout.RIGHT));
         JButton btnCerrar = new JButton("Cerrar");
-        south.add(btnCerrar);
+        btns.add(async.getIndicador());
+        btns.add(btnMas);
+        btns.add(btnCerrar);
+        south.add(btns, BorderLayout.EAST);
         add(south, BorderLayout.SOUTH);
 
-        btnCerrar.addActionListener(e -> setVisible(false));
+        txtDesde.setToolTipText("aaaa-mm-dd");
+        txtHasta.setToolTipText("aaaa-mm-dd (inclusive)");
+        getRootPane().setDefaultButton(btnBuscar);
+
+        btnBuscar.addActionListener(e -> buscar());
+        btnMas.addActionListener(e -> cargarPagina(false));
+        btnCerrar.addActionListener(e -> { async.cancelarConsultas(); setVisible(false); });
+
+        buscar();
+    }
+
+    /** Arma el filtro desde los controles y carga la primera página. */
+    private void buscar() {
+        try {
+            filtro = leerFiltro();
+        } catch (IllegalArgumentException ex) {
+            JOptionPane.showMessageDialog(this, ex.getMessage(), "Filtro inválido", JOptionPane.WARNING_MESSAGE);
+            return;
+        }
+        siguiente = null;
+        cargarPagina(true);
+    }
+
+    private FiltroAuditoria leerFiltro() {
+        String tipo = (String) cbTipo.getSelectedItem();
+        LocalDate desde = fecha(txtDesde, "Desde");
+        LocalDate hasta = fecha(txtHasta, "Hasta");
+        Long prestamo = null;
+        if (!txtPrestamo.getText().isBlank()) {
+            try {
+                prestamo = Long.parseLong(txtPrestamo.getText().trim());
+            } catch (NumberFormatException ex) {
+                throw new IllegalArgumentException("Préstamo debe ser un número");
+            }
+        }
+        return FiltroAuditoria.todos()
+                .conOperador(txtOperador.getText())
+                .conTipo(TODOS.equals(tipo) ? null : tipo)
+                .conLibro(txtLibro.getText())
+                .conPrestamo(prestamo)
+                .conRango(desde == null ? null : desde.atStartOfDay(),
+                          hasta == null ? null : hasta.plusDays(1).atStartOfDay());
+    }
+
+    private static LocalDate fecha(JTextField txt, String nombre) {
+        String s = txt.getText().trim();
+        if (s.isEmpty()) return null;
+        try {
+            return LocalDate.parse(s);
+        } catch (DateTimeParseException ex) {
+            throw new IllegalArgumentException(nombre + ": usar el formato aaaa-mm-dd");
+        }
+    }
 
-        cargar();
+    /**
+     * Lee una página en segundo plano.
+     *
+     * @param nueva {@code true} = primera página (reemplaza la tabla); {@code false} = agrega la siguiente.
+     */
+    private void cargarPagina(boolean nueva) {
+        FiltroAuditoria f = filtro;
+        CursorPagina c = nueva ? null : siguiente;
+        btnMas.setEnabled(false);
+        async.consulta("auditoria.buscar", () -> {
+            long marca = nueva ? dao.ultimoId() : -1;   // antes de leer: lo posterior llega como parche
+            return new Carga(marca, dao.buscar(f, c, TAM_PAGINA));
+        }, carga -> {
+            Pagina<Auditoria> pagina = carga.pagina;
+            if (nueva) {
+                model.setRowCount(0);
+                visibles.clear();
+            }
+            for (Auditoria a : pagina.getItems()) {
+                if (visibles.add(a.getId())) model.addRow(fila(a));
+            }
+            siguiente = pagina.getSiguiente();
+            hayMas = pagina.hayMas();
+            btnMas.setEnabled(hayMas);
+            actualizarEstado();
+            if (nueva && table.getRowCount() > 0) table.setRowSelectionInterval(0,0);
+            if (nueva) refresco.iniciar(carga.marca);
+        });
     }
 
-    private void cargar() {
-        model.setRowCount(0);
-        List<Auditoria> rows = dao.listarRecientes(100);
-        for (Auditoria a : rows) {
-            model.addRow(new Object[]{
-                    a.getTs().toString(),
-                    a.getOperadorUsername(),
-                    a.getTipo(),
-                    a.getLibroCodigo(),
-                    a.getCantidad()==null? "" : a.getCantidad(),
-                    a.getDestinatario()==null? "" : a.getDestinatario(),
-                    a.getDetalle()==null? "" : a.getDetalle()
-            });
+    /** Agrega arriba los eventos nuevos que cumplen el filtro vigente (llegan en orden de id). */
+    private void agregarNuevos(List<Auditoria> eventos) {
+        int agregados = 0;
+        for (Auditoria a : eventos) {
+            if (filtro.acepta(a) && visibles.add(a.getId())) {
+                model.insertRow(0, fila(a));
+                agregados++;
+            }
         }
-        if (table.getRowCount() > 0) table.setRowSelectionInterval(0,0);
+        if (agregados > 0) actualizarEstado();
+    }
+
+    private void actualizarEstado() {
+        lblEstado.setText(" " + model.getRowCount() + (hayMas ? "+ eventos" : " eventos"));
+    }
+
+    private static Object[] fila(Auditoria a) {
+        return new Object[]{
+                a.getTs().toString(),
+                a.getOperadorUsername(),
+                a.getTipo(),
+                a.getLibroCodigo(),
+                a.getPrestamoId()==null? "" : a.getPrestamoId(),
+                a.getCantidad()==null? "" : a.getCantidad(),
+                a.getDestinatario()==null? "" : a.getDestinatario(),
+                a.getDetalle()==null? "" : a.getDetalle()
+        };
+    }
+
+    /** Resultado de una carga: marca de auditoría previa (solo en la primera página) y página. */
+    private static final class Carga {
+        final long marca;
+        final Pagina<Auditoria> pagina;
+        Carga(long marca, Pagina<Auditoria> pagina) { this.marca = marca; this.pagina = pagina; }
     }
 }
@@ -0,0 +1,243 @@
+package ui;
+
+/**
+ * @author Federico Gabriel Arena
+ * @author Fabrizio Manuel Mansilla
+ */
+
+import dao.CursorPagina;
+import dao.OrdenLibro;
+import dao.Pagina;
+import model.Libro;
+import service.LibroService;
+
+import javax.swing.table.AbstractTableModel;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * LibroTableModel
+ * ---------------
+ * Modelo de tabla "virtual" para el catálogo: conoce la cantidad total de filas pero
+ * solo trae de la base los bloques que la vista necesita.
+ *
+ * ¿Cómo funciona?
+ *  - {@link #recargar(String)} cuenta las filas del filtro en segundo plano y publica el total.
+ *  - {@link #getValueAt(int, int)} busca el bloque de la fila; si no está cargado devuelve
+ *    un marcador ("…") y pide el bloque en segundo plano. Al llegar, se repinta ese rango.
+ *  - Cada acceso a un bloque dispara además la precarga del bloque siguiente (scroll hacia abajo).
+ *  - Se mantiene una ventana LRU de {@code maxBloques} bloques: memoria acotada
+ *    sin importar el tamaño del catálogo.
+ *  - El orden lo resuelve SQL ({@link OrdenLibro}): click en el encabezado → {@link #ordenarPor(int)}.
+ *
+ * Lectura de bloques:
+ *  - Si se conoce el cursor del bloque anterior, se usa paginado por clave (keyset).
+ *  - Si no (salto con la barra de scroll), se usa LIMIT/OFFSET una única vez; a partir de ese
+ *    bloque se vuelve a tener cursor para los siguientes.
+ *
+ * Concurrencia:
+ *  - El estado (bloques, pendientes, cursores) se toca solo desde el EDT.
+ *  - Las lecturas corren en segundo plano vía {@link UIAsync}; sus resultados se descartan
+ *    si entre tanto cambió el filtro/orden (contador de generación).
+ */
+public class LibroTableModel extends AbstractTableModel {
+
+    private static final String[] COLUMNAS =
+            {"Código", "Título", "Autor", "Categoría", "Editorial", "Año", "Stock", "Prestados", "Activo"};
+
+    /** Orden SQL asociado a cada columna visible (mismo índice que {@link #COLUMNAS}). */
+    private static final OrdenLibro[] ORDEN_COLUMNA = {
+            OrdenLibro.CODIGO, OrdenLibro.TITULO, OrdenLibro.AUTOR, OrdenLibro.CATEGORIA,
+            OrdenLibro.EDITORIAL, OrdenLibro.ANIO, OrdenLibro.STOCK, OrdenLibro.PRESTADOS, OrdenLibro.ACTIVO};
+
+    /** Marcador mostrado en celdas de texto cuyo bloque todavía no llegó. */
+    private static final String CARGANDO = "…";
+
+    private final LibroService service;
+    private final UIAsync async;
+    private final int tamBloque;
+    private final int maxBloques;
+
+    // ---- Estado (solo EDT) ----
+    private String filtro = "";
+    private int ordenColumna = 1;          // Título
+    private boolean descendente = false;
+    private int filas = 0;
+    private int generacion = 0;
+
+    /** Ventana LRU de bloques cargados: índice de bloque → filas. */
+    private final LinkedHashMap<Integer, List<Libro>> bloques;
+    /** Cursor "después del último" de cada bloque leído (son chicos: se guardan todos). */
+    private final Map<Integer, CursorPagina> cursores = new HashMap<>();
+    /** Bloques con lectura en curso (evita pedidos duplicados). */
+    private final Set<Integer> pendientes = new HashSet<>();
+
+    /** Acción a ejecutar (en el EDT) cada vez que termina una recarga completa. */
+    private Runnable alRecargar;
+
+    /**
+     * @param service    servicio de libros.
+     * @param async      ejecutor de lecturas en segundo plano (e indicador de carga).
+     * @param tamBloque  filas por bloque.
+     * @param maxBloques bloques retenidos en memoria (ventana LRU).
+     */
+    public LibroTableModel(LibroService service, UIAsync async, int tamBloque, int maxBloques) {
+        this.service = service;
+        this.async = async;
+        this.tamBloque = tamBloque;
+        this.maxBloques = maxBloques;
+        this.bloques = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, List<Libro>> e) {
+                return size() > LibroTableModel.this.maxBloques;
+            }
+        };
+    }
+
+    // ===================== API para el Mainframe =====================
+
+    /**
+     * Descarta lo cargado, cuenta las filas del nuevo filtro en segundo plano y repinta.
+     *
+     * @param nuevoFiltro texto de búsqueda (null/"" = todo).
+     */
+    public void recargar(String nuevoFiltro) {
+        filtro = nuevoFiltro == null ? "" : nuevoFiltro;
+        final int gen = invalidar();
+        final String f = filtro;
+        async.consulta("libros.contar", () -> service.contar(f), total -> {
+            if (gen != generacion) return;  // llegó tarde: hubo otra recarga
+            filas = total;
+            fireTableDataChanged();
+            if (alRecargar != null) alRecargar.run();
+        });
+    }
+
+    /**
+     * Ordena por la columna indicada; si ya era la columna de orden, invierte el sentido.
+     * La vista debe refrescar el texto del encabezado ({@link #getColumnName(int)} lleva ▲/▼);
+     * no se dispara un cambio de estructura para no perder los anchos de columna.
+     *
+     * @param columna índice de columna del modelo.
+     */
+    public void ordenarPor(int columna) {
+        if (columna < 0 || columna >= COLUMNAS.length) return;
+        if (columna == ordenColumna) {
+            descendente = !descendente;
+        } else {
+            ordenColumna = columna;
+            descendente = false;
+        }
+        recargar(filtro);
+    }
+
+    /** @param r acción a correr en el EDT cuando una recarga publica el total de filas. */
+    public void setAlRecargar(Runnable r) { this.alRecargar = r; }
+
+    /**
+     * @param fila índice de fila del modelo.
+     * @return el libro de esa fila, o {@code null} si su bloque no está cargado.
+     */
+    public Libro getLibroEn(int fila) {
+        List<Libro> b = bloques.get(fila / tamBloque);
+        int i = fila % tamBloque;
+        return (b == null || i >= b.size()) ? null : b.get(i);
+    }
+
+    // ===================== AbstractTableModel =====================
+
+    @Override public int getRowCount() { return filas; }
+    @Override public int getColumnCount() { return COLUMNAS.length; }
+    @Override public boolean isCellEditable(int r, int c) { return false; }
+
+    @Override
+    public String getColumnName(int c) {
+        if (c != ordenColumna) return COLUMNAS[c];
+        return COLUMNAS[c] + (descendente ? " ▼" : " ▲");
+    }
+
+    @Override
+    public Class<?> getColumnClass(int c) {
+        return switch (c) {
+            case 5, 6, 7 -> Integer.class;   // Año, Stock, Prestados
+            case 8 -> Boolean.class;         // Activo (checkbox)
+            default -> String.class;      // resto
+        };
+    }
+
+    @Override
+    public Object getValueAt(int fila, int c) {
+        int nb = fila / tamBloque;
+        List<Libro> b = bloques.get(nb);
+        if (b == null) {
+            pedirBloque(nb);
+            return c < 5 ? CARGANDO : null;
+        }
+        pedirBloque(nb + 1); // precarga del siguiente (no-op si ya está o no existe)
+        int i = fila % tamBloque;
+        if (i >= b.size()) return null;
+        Libro l = b.get(i);
+        return switch (c) {
+            case 0 -> l.getCodigo();
+            case 1 -> l.getTitulo();
+            case 2 -> l.getAutor();
+            case 3 -> l.getCategoria();
+            case 4 -> l.getEditorial();
+            case 5 -> l.getAnio();
+            case 6 -> l.getStock();
+            case 7 -> l.getEjemplaresPrestados();
+            default -> l.isActivo();
+        };
+    }
+
+    // ===================== Carga de bloques =====================
+
+    /** Limpia bloques/cursores y devuelve la nueva generación. */
+    private int invalidar() {
+        generacion++;
+        bloques.clear();
+        cursores.clear();
+        pendientes.clear();
+        return generacion;
+    }
+
+    /** Programa la lectura del bloque {@code nb} si hace falta. Solo EDT. */
+    private void pedirBloque(int nb) {
+        if (nb < 0 || nb * tamBloque >= filas) return;
+        if (bloques.containsKey(nb) || !pendientes.add(nb)) return;
+
+        final int gen = generacion;
+        final String f = filtro;
+        final OrdenLibro orden = ORDEN_COLUMNA[ordenColumna];
+        final boolean desc = descendente;
+        final CursorPagina previo = nb == 0 ? null : cursores.get(nb - 1);
+        final boolean porCursor = nb == 0 || previo != null;
+
+        async.accion("libros.bloque", () -> {
+            if (porCursor) return service.listarPagina(f, orden, desc, previo, tamBloque);
+            List<Libro> datos = service.listarBloque(f, orden, desc, nb * tamBloque, tamBloque);
+            CursorPagina siguiente = datos.isEmpty() ? null : CursorPagina.de(
+                    orden.clave(datos.get(datos.size() - 1)),
+                    datos.get(datos.size() - 1).getCodigo());
+            return new Pagina<>(datos, siguiente);
+        }, p -> publicar(gen, nb, p.getItems(), p.getSiguiente()), ex -> {
+            ex.printStackTrace();
+            if (gen == generacion) pendientes.remove(nb);
+        });
+    }
+
+    /** Instala un bloque leído y repinta sus filas. Solo EDT. */
+    private void publicar(int gen, int nb, List<Libro> datos, CursorPagina siguiente) {
+        if (gen != generacion) return;   // resultado viejo: otro filtro/orden
+        pendientes.remove(nb);
+        bloques.put(nb, datos);
+        if (siguiente != null) cursores.put(nb, siguiente);
+        int desde = nb * tamBloque;
+        int hasta = Math.min(filas, desde + tamBloque) - 1;
+        if (hasta >= desde) fireTableRowsUpdated(desde, hasta);
+    }
+}
@@ -25,6 +25,7 @@ public class LoginDialog extends JDialog {
     private final JButton btnOlvideUser = new JButton("Olvidé mi usuario");
 
     private final AuthService auth = new AuthServiceImpl(new JdbcUsuarioDAO());
+    private final UIAsync async = new UIAsync(this);
     private Usuario autenticado;
 
     public LoginDialog(Frame owner) {
@@ -74,14 +75,20 @@ public class LoginDialog extends JDialog {
     }
 
     private void doLogin() {
-        try {
-            String user = txtUser.getText().trim();
-            String pass = new String(txtPass.getPassword());
-            autenticado = auth.login(user, pass);
-            setVisible(false);
-        } catch (Exception ex) {
-            JOptionPane.showMessageDialog(this, ex.getMessage(), "Login fallido", JOptionPane.ERROR_MESSAGE);
-        }
+        String user = txtUser.getText().trim();
+        String pass = new String(txtPass.getPassword());
+        // El hash de la contraseña (PBKDF2) tarda del orden de 100 ms: fuera del EDT
+        btnEntrar.setEnabled(false);
+        async.accion("login", () -> auth.login(user, pass),
+                u -> {
+                    btnEntrar.setEnabled(true);
+                    autenticado = u;
+                    setVisible(false);
+                },
+                ex -> {
+                    btnEntrar.setEnabled(true);
+                    JOptionPane.showMessageDialog(this, ex.getMessage(), "Login fallido", JOptionPane.ERROR_MESSAGE);
+                });
     }
 
     public Usuario getAutenticado() { return autenticado; }
@@ -5,16 +5,25 @@ package ui;
  * @author Fabrizio Manuel Mansilla
  */
 
+import dao.JdbcAuditoriaDao;
 import dao.JdbcLibroDAO;
+import dao.JdbcPrestamoDAO;
 import model.Libro;
+import service.ExportadorHistorial;
+import service.ImportadorLibros;
 import service.LibroService;
 import session.Session;
 
 import javax.swing.*;
-import javax.swing.table.DefaultTableModel;
+import javax.swing.filechooser.FileNameExtensionFilter;
+import javax.swing.table.JTableHeader;
 import java.awt.*;
 import java.awt.event.KeyEvent;
-import java.util.List;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.io.File;
+import java.nio.file.Path;
+import java.util.function.BiFunction;
 
 /**
  * Ventana principal del sistema de Biblioteca.
@@ -24,8 +33,9 @@ import java.util.List;
  *  - Permisos por rol (Operador no puede eliminar; menús de admin).
  *  - Menú "Usuarios" (solo ADMIN): registrar y gestionar usuarios.
  *  - Menú "Préstamos": crear préstamo y ver préstamos abiertos.
- *  - Menú "Libros" (solo ADMIN): activar/desactivar (baja lógica) el seleccionado.
- *  - Menú "Informes": ver auditoría reciente.
+ *  - Menú "Libros" (solo ADMIN): activar/desactivar (baja lógica) el seleccionado e importar
+ *    el catálogo desde CSV/JSON.
+ *  - Menú "Informes": ver auditoría reciente y exportar préstamos/auditoría (CSV o JSON Lines, con gzip).
  *  - Menú "Cuenta": cambiar contraseña / cerrar sesión.
  *
  * Notas de diseño:
@@ -33,6 +43,7 @@ import java.util.List;
  *    y aplicar permisos de UI.
  *  - Usa {@link LibroService} como fachada de negocio (la UI nunca habla con JDBC directo).
  *  - El cierre de sesión se señala con una bandera (logoutRequested) que lee el Main.
+ *  - Ninguna llamada al servicio corre en el EDT: lecturas y escrituras pasan por {@link UIAsync}.
  */
 public class Mainframe extends JFrame {
 
@@ -44,6 +55,9 @@ public class Mainframe extends JFrame {
     /** Servicio de negocio para Libros (inyecta DAO JDBC). */
     private final LibroService service = new LibroService(new JdbcLibroDAO());
 
+    /** Ejecutor en segundo plano + indicador de carga de esta ventana. */
+    private final UIAsync async = new UIAsync(this);
+
     /**
      * Bandera de logout: cuando el usuario elige "Cerrar sesión", seteamos true y
      * hacemos dispose(); el Main detecta esto y vuelve a abrir el Login.
@@ -55,21 +69,12 @@ public class Mainframe extends JFrame {
     // ===================== Tabla (modelo y componentes) =====================
 
     /**
-     * Modelo de tabla tipado:
-     *  - Evita edición directa.
-     *  - Mapea clases de columnas (Integer, Boolean) para render adecuado (checkbox/centrado).
+     * Modelo de tabla virtual:
+     *  - Solo trae de la base los bloques visibles (200 filas, hasta 10 bloques en memoria).
+     *  - El orden por columna lo resuelve SQL (click en el encabezado).
+     *  - Tipos de columna (Integer, Boolean) para render adecuado (checkbox/centrado).
      */
-    private final DefaultTableModel model = new DefaultTableModel(
-            new Object[]{"Código","Título","Autor","Categoría","Editorial","Año","Stock","Activo"}, 0) {
-        @Override public boolean isCellEditable(int r, int c) { return false; }
-        @Override public Class<?> getColumnClass(int columnIndex) {
-            return switch (columnIndex) {
-                case 5, 6 -> Integer.class;   // Año, Stock
-                case 7 -> Boolean.class;      // Activo (checkbox)
-                default -> String.class;      // resto
-            };
-        }
-    };
+    private final LibroTableModel model = new LibroTableModel(service, async, 200, 10);
 
     /** Tabla principal que muestra los libros. */
     private final JTable table = new JTable(model);
@@ -141,14 +146,41 @@ public class Mainframe extends JFrame {
             JMenuItem miToggleActivo = new JMenuItem("Activar/Desactivar seleccionado");
             miToggleActivo.addActionListener(e -> toggleActivoSeleccionado());
             mLibros.add(miToggleActivo);
+            JMenuItem miImportar = new JMenuItem("Importar…");
+            miImportar.addActionListener(e -> importarCatalogo(miImportar));
+            mLibros.add(miImportar);
+            JMenuItem miContadores = new JMenuItem("Verificar contadores…");
+            miContadores.addActionListener(e -> verificarContadores(miContadores));
+            mLibros.add(miContadores);
             mb.add(mLibros);
         }
 
         // Menú Informes (todos): auditoría reciente
         JMenu mInformes = new JMenu("Informes");
-        JMenuItem miAuditoria = new JMenuItem("Auditoría (recientes)...");
+        JMenuItem miAuditoria = new JMenuItem("Auditoría...");
         miAuditoria.addActionListener(e -> new AuditoriaRecientesDialog(this).setVisible(true));
         mInformes.add(miAuditoria);
+        JMenuItem miVencidos = new JMenuItem("Préstamos vencidos...");
+        miVencidos.addActionListener(e -> new VencidosDialog(this).setVisible(true));
+        mInformes.add(miVencidos);
+        JMenuItem miLatencias = new JMenuItem("Latencias de la UI...");
+        miLatencias.addActionListener(e -> {
+            JTextArea ta = new JTextArea(UIAsync.resumenMetricas(), 12, 70);
+            ta.setEditable(false);
+            ta.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 12));
+            JOptionPane.showMessageDialog(this, new JScrollPane(ta), "Latencias por operación",
+                    JOptionPane.INFORMATION_MESSAGE);
+        });
+        mInformes.add(miLatencias);
+        mInformes.addSeparator();
+        JMenuItem miExpPrestamos = new JMenuItem("Exportar préstamos…");
+        miExpPrestamos.addActionListener(e -> exportar(miExpPrestamos, "prestamos.csv.gz",
+                (exp, archivo) -> exp.exportarPrestamos(null, null, null, archivo)));
+        mInformes.add(miExpPrestamos);
+        JMenuItem miExpAuditoria = new JMenuItem("Exportar auditoría…");
+        miExpAuditoria.addActionListener(e -> exportar(miExpAuditoria, "auditoria.csv.gz",
+                (exp, archivo) -> exp.exportarAuditoria(null, null, archivo)));
+        mInformes.add(miExpAuditoria);
         mb.add(mInformes);
 
         // Menú Cuenta (todos): cambiar contraseña / cerrar sesión
@@ -184,6 +216,21 @@ public class Mainframe extends JFrame {
 
         // ---- Centro: tabla con estilos ----
         UIUtil.styleTable(table);
+        // El orden lo hace el modelo vía SQL: un RowSorter en memoria forzaría a leer todas las filas
+        table.setAutoCreateRowSorter(false);
+        table.setRowSorter(null);
+        JTableHeader header = table.getTableHeader();
+        header.addMouseListener(new MouseAdapter() {
+            @Override public void mouseClicked(MouseEvent e) {
+                int col = table.convertColumnIndexToModel(header.columnAtPoint(e.getPoint()));
+                model.ordenarPor(col);
+                refrescarEncabezados();
+            }
+        });
+        // Tras cada recarga (filtro/orden) seleccionar la primera fila si hay datos (buena UX)
+        model.setAlRecargar(() -> {
+            if (table.getRowCount() > 0) table.setRowSelectionInterval(0, 0);
+        });
         JScrollPane sp = new JScrollPane(table);
 
         // ---- Sur: barra de acciones CRUD ----
@@ -201,6 +248,8 @@ public class Mainframe extends JFrame {
         actions.add(btnEliminar);
         actions.addSeparator();
         actions.add(btnRefrescar);
+        actions.add(Box.createHorizontalGlue());
+        actions.add(async.getIndicador());
 
         // ---- Layout principal ----
         add(north, BorderLayout.NORTH);
@@ -233,12 +282,9 @@ public class Mainframe extends JFrame {
             LibroForm dlg = new LibroForm(this, "Nuevo Libro", null);
             dlg.setVisible(true);
             if (dlg.isOk()) {
-                try {
-                    service.crear(dlg.getLibro());
-                    cargar.run();
-                } catch (Exception ex) {
-                    mostrarError(ex);
-                }
+                Libro nuevo = dlg.getLibro();
+                async.accion("libros.crear", () -> { service.crear(nuevo); return null; },
+                        r -> cargar.run(), this::mostrarError);
             }
         });
 
@@ -247,32 +293,31 @@ public class Mainframe extends JFrame {
             int row = table.getSelectedRow();
             if (row < 0) { aviso("Seleccioná un libro de la tabla."); return; }
 
-            // Convertir índice de la vista al del modelo por si hay sorters/filters
-            int modelRow = table.convertRowIndexToModel(row);
-            String codigo = model.getValueAt(modelRow, 0).toString();
+            Libro sel = model.getLibroEn(table.convertRowIndexToModel(row));
+            if (sel == null) { aviso("La fila todavía se está cargando."); return; }
+            String codigo = sel.getCodigo();
 
-            // Leer desde servicio (por si hubo cambios)
-            Libro l = service.obtener(codigo);
-            if (l == null) { mostrarError(new RuntimeException("No se encontró el libro " + codigo)); return; }
+            // Leer desde servicio (por si hubo cambios) y recién ahí abrir el formulario
+            async.accion("libros.obtener", () -> service.obtener(codigo), l -> {
+                if (l == null) { mostrarError(new RuntimeException("No se encontró el libro " + codigo)); return; }
 
-            LibroForm dlg = new LibroForm(this, "Editar Libro", l);
-            dlg.setVisible(true);
-            if (dlg.isOk()) {
-                try {
-                    service.actualizar(dlg.getLibro());
-                    cargar.run();
-                } catch (Exception ex) {
-                    mostrarError(ex);
+                LibroForm dlg = new LibroForm(this, "Editar Libro", l);
+                dlg.setVisible(true);
+                if (dlg.isOk()) {
+                    Libro editado = dlg.getLibro();
+                    async.accion("libros.actualizar", () -> { service.actualizar(editado); return null; },
+                            r -> cargar.run(), this::mostrarError);
                 }
-            }
+            }, this::mostrarError);
         });
 
         // Eliminación física (solo admins lo tienen habilitado)
         btnEliminar.addActionListener(e -> {
             int row = table.getSelectedRow();
             if (row < 0) { aviso("Seleccioná un libro de la tabla."); return; }
-            int modelRow = table.convertRowIndexToModel(row);
-            String codigo = model.getValueAt(modelRow, 0).toString();
+            Libro sel = model.getLibroEn(table.convertRowIndexToModel(row));
+            if (sel == null) { aviso("La fila todavía se está cargando."); return; }
+            String codigo = sel.getCodigo();
 
             int opt = JOptionPane.showConfirmDialog(
                     this,
@@ -281,43 +326,125 @@ public class Mainframe extends JFrame {
                     JOptionPane.YES_NO_OPTION
             );
             if (opt == JOptionPane.YES_OPTION) {
-                try {
-                    service.eliminar(codigo);
-                    cargar.run();
-                } catch (Exception ex) {
-                    mostrarError(ex);
-                }
+                async.accion("libros.eliminar", () -> { service.eliminar(codigo); return null; },
+                        r -> cargar.run(), this::mostrarError);
             }
         });
 
         // Ajuste de anchos y carga inicial de la tabla
         UIUtil.setColumnWidths(table, 90, 260, 180, 150, 150, 70, 70, 70);
+        refrescarEncabezados();
         cargar.run();
     }
 
     // ===================== Lógica de tabla =====================
 
     /**
-     * Recarga la tabla desde el servicio con el filtro actual.
-     * Limpia el modelo y agrega filas mapeando cada {@link Libro}.
+     * Recarga la tabla con el filtro actual.
+     * El conteo y los bloques se leen en segundo plano (ver {@link LibroTableModel}).
      */
     private void cargarTabla() {
-        model.setRowCount(0); // limpiar
-        List<Libro> data = service.listar(txtFiltro.getText());
-        for (Libro l : data) {
-            model.addRow(new Object[]{
-                l.getCodigo(),
-                l.getTitulo(),
-                l.getAutor(),
-                l.getCategoria(),
-                l.getEditorial(),
-                l.getAnio(),
-                l.getStock(),
-                l.isActivo()
+        model.recargar(txtFiltro.getText());
+    }
+
+    /**
+     * Importa libros desde un CSV/JSON elegido por el usuario (ver {@link ImportadorLibros}).
+     * Los rechazados se escriben junto al archivo como "&lt;nombre&gt;.rechazados.csv".
+     */
+    private void importarCatalogo(JMenuItem origen) {
+        JFileChooser fc = new JFileChooser();
+        fc.setDialogTitle("Importar libros");
+        fc.setFileFilter(new FileNameExtensionFilter("CSV / JSON", "csv", "txt", "json", "jsonl", "ndjson"));
+        if (fc.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) return;
+
+        Path archivo = fc.getSelectedFile().toPath();
+        Path rechazados = archivo.resolveSibling(archivo.getFileName() + ".rechazados.csv");
+        ImportadorLibros importador = new ImportadorLibros(new JdbcLibroDAO());
+
+        origen.setEnabled(false); // una importación a la vez
+        async.accion("libros.importar", () -> importador.importar(archivo, rechazados,
+                p -> async.avance(String.format("%,d filas", p.getLeidas()))), fin -> {
+            origen.setEnabled(true);
+            String msg = "Importación terminada: " + fin;
+            if (fin.getRechazadas() > 0) msg += "\nRechazados en: " + rechazados;
+            JOptionPane.showMessageDialog(this, msg);
+            cargarTabla();
+        }, ex -> {
+            origen.setEnabled(true);
+            ex.printStackTrace();
+            JOptionPane.showMessageDialog(this, ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+            cargarTabla(); // los lotes confirmados antes del error quedan grabados
+        });
+    }
+
+    /**
+     * Compara los contadores de préstamos por libro con la tabla de préstamos y, si hay
+     * diferencias, ofrece reconstruirlos.
+     */
+    private void verificarContadores(JMenuItem origen) {
+        origen.setEnabled(false);
+        async.accion("libros.contadores.verificar", service::verificarContadores, distintos -> {
+            if (distintos.isEmpty()) {
+                origen.setEnabled(true);
+                JOptionPane.showMessageDialog(this, "Los contadores de préstamos están al día.");
+                return;
+            }
+            String muestra = String.join(", ", distintos.subList(0, Math.min(10, distintos.size())))
+                    + (distintos.size() > 10 ? ", …" : "");
+            int r = JOptionPane.showConfirmDialog(this,
+                    distintos.size() + " libro(s) con contadores desactualizados: " + muestra + "\n¿Reconstruir?",
+                    "Contadores", JOptionPane.YES_NO_OPTION, JOptionPane.WARNING_MESSAGE);
+            if (r != JOptionPane.YES_OPTION) {
+                origen.setEnabled(true);
+                return;
+            }
+            async.accion("libros.contadores.reconstruir", service::reconstruirContadores, n -> {
+                origen.setEnabled(true);
+                JOptionPane.showMessageDialog(this, String.format("Contadores reconstruidos (%,d libros).", n));
+                cargarTabla();
+            }, ex -> {
+                origen.setEnabled(true);
+                mostrarError(ex);
             });
+        }, ex -> {
+            origen.setEnabled(true);
+            mostrarError(ex);
+        });
+    }
+
+    /**
+     * Exporta a un archivo elegido por el usuario. El formato sale de la extensión:
+     * ".jsonl" = JSON Lines, el resto CSV; ".gz" al final comprime.
+     */
+    private void exportar(JMenuItem origen, String nombreSugerido,
+                          BiFunction<ExportadorHistorial, Path, Long> exportacion) {
+        JFileChooser fc = new JFileChooser();
+        fc.setDialogTitle("Exportar (CSV o JSONL; agregar .gz para comprimir)");
+        fc.setSelectedFile(new File(nombreSugerido));
+        if (fc.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) return;
+
+        Path archivo = fc.getSelectedFile().toPath();
+        ExportadorHistorial exp = new ExportadorHistorial(new JdbcPrestamoDAO(), new JdbcAuditoriaDao());
+
+        origen.setEnabled(false);
+        async.accion("informes.exportar", () -> exportacion.apply(exp, archivo), n -> {
+            origen.setEnabled(true);
+            JOptionPane.showMessageDialog(this, String.format("%,d filas exportadas a %s", n, archivo));
+        }, ex -> {
+            origen.setEnabled(true);
+            ex.printStackTrace();
+            JOptionPane.showMessageDialog(this, ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+        });
+    }
+
+    /** Actualiza el texto de los encabezados (indicador ▲/▼ de la columna de orden). */
+    private void refrescarEncabezados() {
+        var cols = table.getColumnModel();
+        for (int i = 0; i < cols.getColumnCount(); i++) {
+            var col = cols.getColumn(i);
+            col.setHeaderValue(model.getColumnName(col.getModelIndex()));
         }
-        // Seleccionar primera fila si hay datos (buena UX)
-        if (table.getRowCount() > 0) table.setRowSelectionInterval(0, 0);
+        table.getTableHeader().repaint();
     }
 
     // ===================== Helpers UI =====================
@@ -342,25 +469,25 @@ public class Mainframe extends JFrame {
         int row = table.getSelectedRow();
         if (row < 0) { aviso("Seleccioná un libro de la tabla."); return; }
 
-        int modelRow = table.convertRowIndexToModel(row);
-        String codigo = model.getValueAt(modelRow, 0).toString();
-        boolean activo = (Boolean) model.getValueAt(modelRow, 7);
+        Libro sel = model.getLibroEn(table.convertRowIndexToModel(row));
+        if (sel == null) { aviso("La fila todavía se está cargando."); return; }
+        String codigo = sel.getCodigo();
+        boolean activo = sel.isActivo();
 
-        try {
+        // Devuelve false si no se pudo desactivar (préstamos abiertos)
+        async.accion("libros.activo", () -> {
             if (activo) {
                 // Intentar desactivar: el servicio bloquea si hay préstamos abiertos
-                if (!service.puedeDesactivar(codigo)) {
-                    aviso("No se puede desactivar: hay préstamos abiertos para este libro.");
-                    return;
-                }
+                if (!service.puedeDesactivar(codigo)) return false;
                 service.desactivar(codigo);
             } else {
                 // Activar nuevamente
                 service.activar(codigo);
             }
-            cargarTabla();
-        } catch (Exception ex) {
-            mostrarError(ex);
-        }
+            return true;
+        }, ok -> {
+            if (!ok) aviso("No se puede desactivar: hay préstamos abiertos para este libro.");
+            else cargarTabla();
+        }, this::mostrarError);
     }
 }
@@ -20,6 +20,8 @@ public class PrestamoNuevoDialog extends JDialog {
 
     private final PrestamoService svc   = new PrestamoService(new JdbcPrestamoDAO());
     private final String operadorUsername; // del Session
+    private final UIAsync async         = new UIAsync(this);
+    private final JButton ok            = new JButton("Prestar");
 
     public PrestamoNuevoDialog(Window owner, String operadorUsername) {
         super(owner, "Nuevo préstamo", ModalityType.APPLICATION_MODAL);
@@ -37,8 +39,8 @@ public class PrestamoNuevoDialog extends JDialog {
         form.add(new JLabel("Días de préstamo:")); form.add(spDias);
 
         JPanel btns = new JPanel(new FlowLayout(FlowLayout.RIGHT));
-        JButton ok = new JButton("Prestar");
         JButton cancel = new JButton("Cancelar");
+        btns.add(async.getIndicador());
         btns.add(ok); btns.add(cancel);
 
         add(form, BorderLayout.CENTER);
@@ -50,18 +52,21 @@ public class PrestamoNuevoDialog extends JDialog {
         cancel.addActionListener(e -> setVisible(false));
     }
 
+    /** Registra el préstamo en segundo plano; el botón queda deshabilitado mientras tanto. */
     private void onPrestar() {
-        try {
-            String codigo = txtLibro.getText().trim();
-            String dest   = txtDest.getText().trim();
-            int cant      = (Integer) spCant.getValue();
-            int dias      = (Integer) spDias.getValue();
+        String codigo = txtLibro.getText().trim();
+        String dest   = txtDest.getText().trim();
+        int cant      = (Integer) spCant.getValue();
+        int dias      = (Integer) spDias.getValue();
 
-            long id = svc.prestar(codigo, operadorUsername, dest, cant, dias);
+        ok.setEnabled(false); // evita el doble préstamo por doble click
+        async.accion("prestamos.prestar", () -> svc.prestar(codigo, operadorUsername, dest, cant, dias), id -> {
+            ok.setEnabled(true);
             JOptionPane.showMessageDialog(this, "Préstamo generado (id=" + id + ").");
             setVisible(false);
-        } catch (Exception ex) {
+        }, ex -> {
+            ok.setEnabled(true);
             JOptionPane.showMessageDialog(this, ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
-        }
+        });
     }
 }
@@ -5,24 +5,34 @@ package ui;
  * @author Fabrizio Manuel Mansilla
  */
 
-import dao.JdbcLibroDAO;
+import dao.JdbcAuditoriaDao;
 import dao.JdbcPrestamoDAO;
-import model.Libro;
-import model.Prestamo;
-import service.LibroService;
+import model.PrestamoDetalle;
+import service.MonitorVencidos;
 import service.PrestamoService;
+import service.SeguidorAuditoria;
 
 import javax.swing.*;
 import javax.swing.table.DefaultTableCellRenderer;
 import javax.swing.table.DefaultTableModel;
 import java.awt.*;
-import java.time.LocalDate;
+import java.awt.event.ComponentAdapter;
+import java.awt.event.ComponentEvent;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
+/**
+ * Préstamos abiertos, con refresco en vivo: los préstamos, devoluciones y renovaciones hechos
+ * en cualquier puesto aparecen/desaparecen/se actualizan solos (ver {@link RefrescoVivo}),
+ * releyendo solo las filas afectadas en lugar de la tabla completa.
+ * Los vencidos se resaltan según {@link MonitorVencidos} (sin calcular fechas al pintar).
+ */
 public class PrestamosAbiertosDialog extends JDialog {
 
     private final PrestamoService svc = new PrestamoService(new JdbcPrestamoDAO());
-    private final LibroService libroSvc = new LibroService(new JdbcLibroDAO());
+    private final JdbcAuditoriaDao auditoria = new JdbcAuditoriaDao();
 
     private final JTextField txtFiltro = new JTextField(20);
     private final DefaultTableModel model = new DefaultTableModel(
@@ -33,6 +43,18 @@ public class PrestamosAbiertosDialog extends JDialog {
         }
     };
     private final JTable table = new JTable(model);
+    private final UIAsync async = new UIAsync(this);
+    private final MonitorVencidos vencidos = MonitorVencidos.global();
+    /** Repinta cuando el monitor publica otro conjunto de vencidos. */
+    private final Runnable alCambiarVencidos = () -> SwingUtilities.invokeLater(table::repaint);
+
+    /** Filtro de la última carga completa (lo lee el refresco desde el hilo de fondo). */
+    private volatile String filtroVigente = "";
+    private final RefrescoVivo<Parche> refresco = new RefrescoVivo<>(this, async, "prestamos.vivo", auditoria,
+            eventos -> {
+                Set<Long> ids = SeguidorAuditoria.prestamosAfectados(eventos);
+                return new Parche(ids, ids.isEmpty() ? List.of() : svc.abiertosDetalle(filtroVigente, ids));
+            }, this::parchear);
 
     public PrestamosAbiertosDialog(Window owner) {
         super(owner, "Préstamos abiertos", ModalityType.APPLICATION_MODAL);
@@ -51,6 +73,7 @@ public class PrestamosAbiertosDialog extends JDialog {
         JScrollPane sp = new JScrollPane(table);
 
         JPanel south = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+        south.add(async.getIndicador());
         JButton btnDevolver = new JButton("Devolver");
         JButton btnRenovar  = new JButton("Renovar +7");
         JButton btnCerrar   = new JButton("Cerrar");
@@ -65,36 +88,115 @@ public class PrestamosAbiertosDialog extends JDialog {
         btnBuscar.addActionListener(e -> cargar());
         btnRefrescar.addActionListener(e -> { txtFiltro.setText(""); cargar(); });
         txtFiltro.addActionListener(e -> cargar());
-        btnCerrar.addActionListener(e -> setVisible(false));
+        btnCerrar.addActionListener(e -> { async.cancelarConsultas(); setVisible(false); });
 
         btnDevolver.addActionListener(e -> onDevolver());
         btnRenovar.addActionListener(e -> onRenovar());
 
+        // Resaltar vencidos
+        table.setDefaultRenderer(Object.class, new VencimientoCellRenderer());
+        vencidos.agregarOyente(alCambiarVencidos);
+        addComponentListener(new ComponentAdapter() {
+            @Override public void componentHidden(ComponentEvent e) { vencidos.quitarOyente(alCambiarVencidos); }
+        });
         cargar();
     }
 
+    /**
+     * Lee los préstamos abiertos en segundo plano; una búsqueda nueva reemplaza a la anterior.
+     * El título viene en la misma consulta (JOIN), sin buscar el libro de cada fila.
+     */
     private void cargar() {
-        model.setRowCount(0);
-        List<Prestamo> data = svc.abiertos(txtFiltro.getText().trim());
-        for (Prestamo p : data) {
-            String titulo = "";
-            try {
-                Libro l = libroSvc.obtener(p.getLibroCodigo());
-                if (l != null) titulo = l.getTitulo();
-            } catch (Exception ignore) {}
-            model.addRow(new Object[]{
-                    p.getId().intValue(),
-                    p.getLibroCodigo(),
-                    titulo,
-                    p.getDestinatario(),
-                    p.getCantidad(),
-                    p.getFechaPrestamo().toString(),
-                    p.getFechaVencimiento().toString()
-            });
+        String filtro = txtFiltro.getText().trim();
+        async.consulta("prestamos.abiertos", () -> {
+            long marca = auditoria.ultimoId();   // antes de leer: lo posterior llega como parche
+            return new Carga(marca, svc.abiertosDetalle(filtro));
+        }, carga -> {
+            filtroVigente = filtro;
+            model.setRowCount(0);
+            for (PrestamoDetalle p : carga.filas) model.addRow(fila(p));
+            if (table.getRowCount() > 0) table.setRowSelectionInterval(0,0);
+            refresco.iniciar(carga.marca);
+        });
+    }
+
+    /**
+     * Aplica los cambios de los préstamos afectados: quita los que ya no están abiertos (o no
+     * cumplen el filtro), actualiza los existentes y agrega los nuevos en su lugar por vencimiento.
+     * La selección se conserva por id.
+     */
+    private void parchear(Parche p) {
+        Integer seleccionado = getSelectedId();
+        Map<Long, PrestamoDetalle> abiertos = new HashMap<>();
+        for (PrestamoDetalle d : p.abiertos) abiertos.put(d.getId(), d);
+
+        for (Long id : p.ids) {
+            int fila = filaDe(id);
+            PrestamoDetalle d = abiertos.get(id);
+            if (d == null) {
+                if (fila >= 0) model.removeRow(fila);
+                continue;
+            }
+            Object[] valores = fila(d);
+            if (fila >= 0 && valores[6].equals(model.getValueAt(fila, 6))) {
+                for (int c = 1; c < valores.length; c++) model.setValueAt(valores[c], fila, c);
+            } else {
+                if (fila >= 0) model.removeRow(fila);
+                model.insertRow(posicion(d), valores);
+            }
         }
-        // Resaltar vencidos
-        table.setDefaultRenderer(Object.class, new VencimientoCellRenderer(6));
-        if (table.getRowCount() > 0) table.setRowSelectionInterval(0,0);
+
+        if (seleccionado != null) {
+            int fila = filaDe(seleccionado.longValue());
+            if (fila >= 0) {
+                int vista = table.convertRowIndexToView(fila);
+                table.setRowSelectionInterval(vista, vista);
+            }
+        }
+    }
+
+    private static Object[] fila(PrestamoDetalle p) {
+        return new Object[]{
+                p.getId().intValue(),
+                p.getLibroCodigo(),
+                p.getLibroTitulo(),
+                p.getDestinatario(),
+                p.getCantidad(),
+                p.getFechaPrestamo().toString(),
+                p.getFechaVencimiento().toString()
+        };
+    }
+
+    /** @return fila del modelo con ese id, o -1. */
+    private int filaDe(long id) {
+        for (int r = 0; r < model.getRowCount(); r++) {
+            if (((Integer) model.getValueAt(r, 0)).longValue() == id) return r;
+        }
+        return -1;
+    }
+
+    /** @return índice donde insertar para mantener el orden (vencimiento, id) de la consulta. */
+    private int posicion(PrestamoDetalle d) {
+        String vence = d.getFechaVencimiento().toString();
+        for (int r = 0; r < model.getRowCount(); r++) {
+            int cmp = ((String) model.getValueAt(r, 6)).compareTo(vence);
+            if (cmp > 0 || (cmp == 0 && (Integer) model.getValueAt(r, 0) > d.getId())) return r;
+        }
+        return model.getRowCount();
+    }
+
+    /** Resultado de la carga completa: marca de auditoría previa y filas. */
+    private static final class Carga {
+        final long marca;
+        final List<PrestamoDetalle> filas;
+        Carga(long marca, List<PrestamoDetalle> filas) { this.marca = marca; this.filas = filas; }
+    }
+
+    /** Préstamos afectados por eventos nuevos y, de ellos, los que siguen abiertos. */
+    private static final class Parche {
+        final Set<Long> ids;
+        final List<PrestamoDetalle> abiertos;
+        Parche(Set<Long> ids, List<PrestamoDetalle> abiertos) { this.ids = ids; this.abiertos = abiertos; }
     }
 
     private Integer getSelectedId() {
@@ -112,12 +214,7 @@ public class PrestamosAbiertosDialog extends JDialog {
         int ok = JOptionPane.showConfirmDialog(this, "¿Marcar como devuelto (id=" + id + ")?",
                 "Confirmar", JOptionPane.YES_NO_OPTION);
         if (ok != JOptionPane.YES_OPTION) return;
-        try {
-            svc.devolver(id);
-            cargar();
-        } catch (Exception ex) {
-            JOptionPane.showMessageDialog(this, ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
-        }
+        async.accion("prestamos.devolver", () -> { svc.devolver(id); return null; }, r -> refresco.ahora(), null);
     }
 
     private void onRenovar() {
@@ -126,25 +223,25 @@ public class PrestamosAbiertosDialog extends JDialog {
             JOptionPane.showMessageDialog(this, "Seleccioná un préstamo.", "Atención", JOptionPane.WARNING_MESSAGE);
             return;
         }
-        try {
-            svc.renovar(id, 7);
-            cargar();
-        } catch (Exception ex) {
-            JOptionPane.showMessageDialog(this, ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
-        }
+        async.accion("prestamos.renovar", () -> { svc.renovar(id, 7); return null; }, r -> {
+            refresco.ahora();
+            vencidos.actualizarAhora();   // pudo dejar de estar vencido
+        }, null);
     }
 
-    /** Renderer simple para marcar en rojo los vencidos (si no está seleccionado). */
-    private static class VencimientoCellRenderer extends DefaultTableCellRenderer {
-        private final int vencCol;
-        VencimientoCellRenderer(int vencCol) { this.vencCol = vencCol; }
+    /**
+     * Renderer que marca en rojo los vencidos (si no está seleccionado).
+     * Solo consulta el conjunto en memoria de {@link MonitorVencidos} por id: nada de parsear
+     * fechas ni crear objetos en cada pintado.
+     */
+    private final class VencimientoCellRenderer extends DefaultTableCellRenderer {
+        private final Color rojo = new Color(180, 0, 0);
         @Override public Component getTableCellRendererComponent(JTable table, Object value, boolean isSelected, boolean hasFocus, int row, int column) {
             Component c = super.getTableCellRendererComponent(table, value, isSelected, hasFocus, row, column);
-            try {
-                String s = table.getValueAt(row, vencCol).toString();
-                boolean vencido = LocalDate.parse(s).isBefore(LocalDate.now());
-                if (!isSelected) c.setForeground(vencido ? new Color(180, 0, 0) : Color.DARK_GRAY);
-            } catch (Exception ignore) {}
+            if (!isSelected) {
+                Integer id = (Integer) model.getValueAt(table.convertRowIndexToModel(row), 0);
+                c.setForeground(vencidos.esVencido(id) ? rojo : Color.DARK_GRAY);
+            }
             return c;
         }
     }
@@ -0,0 +1,116 @@
+package ui;
+
+/**
+ * @author Federico Gabriel Arena
+ * @author Fabrizio Manuel Mansilla
+ */
+
+import dao.AuditoriaDao;
+import model.Auditoria;
+import service.SeguidorAuditoria;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.ComponentAdapter;
+import java.awt.event.ComponentEvent;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * RefrescoVivo
+ * ------------
+ * Actualización casi en tiempo real de un diálogo a partir del feed de auditoría
+ * ({@link SeguidorAuditoria}).
+ *
+ * ¿Qué hace?
+ *  - Un {@link Timer} de Swing sondea cada {@code biblioteca.ui.refrescoMs} ms (default 2000)
+ *    los eventos nuevos, en segundo plano y sin indicador de carga.
+ *  - Si hay eventos, corre {@code cargar} (también en segundo plano: p. ej. leer solo las filas
+ *    afectadas) y entrega el resultado a {@code aplicar} en el EDT, que parchea el modelo.
+ *
+ * Decisiones:
+ *  - Nunca hay dos sondeos a la vez: si el anterior no terminó, el tick se saltea.
+ *  - Cada {@link #iniciar(long)} (recarga completa de la vista) abre una "generación" nueva: el
+ *    resultado de un sondeo de la generación anterior se descarta.
+ *  - Se detiene solo cuando el diálogo se oculta (los diálogos se cierran con setVisible(false)).
+ *
+ * @param <T> lo que {@code cargar} produce a partir de los eventos.
+ */
+final class RefrescoVivo<T> {
+
+    private final UIAsync async;
+    private final String operacion;
+    private final AuditoriaDao dao;
+    private final Function<List<Auditoria>, T> cargar;
+    private final Consumer<T> aplicar;
+    private final Timer timer;
+
+    /** Solo EDT. */
+    private SeguidorAuditoria seguidor;
+    private int generacion = 0;
+    private boolean enCurso = false;
+
+    /**
+     * @param dueno     diálogo a refrescar (al ocultarse se detiene el sondeo).
+     * @param async     ejecutor del diálogo.
+     * @param operacion nombre para métricas (p. ej. "prestamos.vivo").
+     * @param dao       fuente del feed de auditoría.
+     * @param cargar    trabajo de fondo con los eventos nuevos (no vacíos).
+     * @param aplicar   parche del modelo en el EDT.
+     */
+    RefrescoVivo(Component dueno, UIAsync async, String operacion, AuditoriaDao dao,
+                 Function<List<Auditoria>, T> cargar, Consumer<T> aplicar) {
+        this.async = async;
+        this.operacion = operacion;
+        this.dao = dao;
+        this.cargar = cargar;
+        this.aplicar = aplicar;
+        this.timer = new Timer(Integer.getInteger("biblioteca.ui.refrescoMs", 2000), e -> sondear());
+        dueno.addComponentListener(new ComponentAdapter() {
+            @Override public void componentHidden(ComponentEvent e) { detener(); }
+        });
+    }
+
+    /**
+     * Empieza (o reinicia) el seguimiento después de una carga completa.
+     *
+     * @param desdeId último id de auditoría leído ANTES de esa carga: lo que llegue después se
+     *                aplica como parche (puede repetir algo ya cargado; los parches son idempotentes).
+     */
+    void iniciar(long desdeId) {
+        seguidor = new SeguidorAuditoria(dao, desdeId);
+        generacion++;
+        enCurso = false;
+        timer.restart();
+    }
+
+    /** Sondea ya, sin esperar el próximo tick (p. ej. después de una acción propia). */
+    void ahora() {
+        if (seguidor != null) sondear();
+    }
+
+    void detener() {
+        timer.stop();
+        seguidor = null;
+        generacion++;
+    }
+
+    private void sondear() {
+        if (enCurso || seguidor == null) return;
+        enCurso = true;
+        SeguidorAuditoria s = seguidor;
+        int gen = generacion;
+        async.segundoPlano(operacion, () -> {
+            List<Auditoria> nuevos = s.novedades();
+            return nuevos.isEmpty() ? null : cargar.apply(nuevos);
+        }, r -> {
+            if (gen != generacion) return;
+            enCurso = false;
+            if (r != null) aplicar.accept(r);
+        }, ex -> {
+            if (gen == generacion) enCurso = false;
+            System.err.println("[RefrescoVivo] " + operacion + ": " + ex.getMessage());
+        });
+    }
+}
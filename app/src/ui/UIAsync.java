@@ -0,0 +1,227 @@
+package ui;
+
+/**
+ * @author Federico Gabriel Arena
+ * @author Fabrizio Manuel Mansilla
+ */
+
+import javax.swing.*;
+import java.awt.*;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
+
+/**
+ * UIAsync
+ * -------
+ * Capa mínima para sacar del EDT las llamadas a servicios/DAOs de la UI.
+ *
+ * ¿Qué hace?
+ *  - Corre la tarea en un {@link SwingWorker} (hilo de fondo) y entrega el resultado o el error
+ *    de vuelta en el EDT.
+ *  - {@link #consulta}: lecturas "reemplazables". Si llega una nueva consulta con la misma
+ *    operación (p. ej. otra búsqueda), la anterior se cancela y su resultado se descarta.
+ *  - {@link #accion}: escrituras (prestar, devolver, guardar...). Nunca se cancelan: el
+ *    llamador debe evitar el doble click deshabilitando el botón mientras corre.
+ *  - {@link #segundoPlano}: como accion, pero sin indicador (sondeos periódicos).
+ *  - Indicador de carga ({@link #getIndicador()}) visible mientras haya tareas en curso,
+ *    más cursor de espera sobre la ventana dueña.
+ *  - Métricas de latencia por operación (cantidad, promedio, máximo, descartadas, errores),
+ *    compartidas por toda la aplicación: {@link #resumenMetricas()}.
+ *
+ * Decisiones:
+ *  - La cancelación es "lógica" ({@code cancel(false)}): no se interrumpe el hilo para no cortar
+ *    una consulta JDBC a mitad de camino; simplemente su resultado no se publica.
+ *  - Todo el estado de instancia (en curso, última consulta por operación) se toca solo en el EDT.
+ *
+ * Colabora con:
+ *  - Mainframe / LibroTableModel, PrestamosAbiertosDialog, AuditoriaRecientesDialog, PrestamoNuevoDialog.
+ */
+public final class UIAsync {
+
+    /** Ventana sobre la que se muestran errores y cursor de espera. */
+    private final Component owner;
+    /** Barra indeterminada que se muestra mientras hay trabajo en segundo plano. */
+    private final JProgressBar indicador = new JProgressBar();
+    /** Última consulta lanzada por operación (para reemplazarla). Solo EDT. */
+    private final Map<String, SwingWorker<?, ?>> vigentes = new HashMap<>();
+    /** Tareas en curso de esta instancia. Solo EDT. */
+    private int enCurso = 0;
+
+    /** Métricas globales por operación. */
+    private static final Map<String, Metrica> METRICAS = new ConcurrentHashMap<>();
+
+    public UIAsync(Component owner) {
+        this.owner = owner;
+        indicador.setIndeterminate(true);
+        indicador.setString("Cargando…");
+        indicador.setStringPainted(true);
+        indicador.setPreferredSize(new Dimension(120, 16));
+        indicador.setVisible(false);
+    }
+
+    /** @return componente a ubicar en la ventana como indicador de carga. */
+    public JComponent getIndicador() { return indicador; }
+
+    // ===================== API =====================
+
+    /**
+     * Lectura en segundo plano que reemplaza a la anterior de la misma operación.
+     *
+     * @param operacion  nombre de la operación (clave de reemplazo y de métricas).
+     * @param tarea      trabajo a correr fuera del EDT.
+     * @param alTerminar consumidor del resultado (en el EDT).
+     */
+    public <T> void consulta(String operacion, Callable<T> tarea, Consumer<T> alTerminar) {
+        SwingWorker<?, ?> previa = vigentes.remove(operacion);
+        if (previa != null) previa.cancel(false);
+        vigentes.put(operacion, lanzar(operacion, tarea, alTerminar, this::mostrarError, true, true));
+    }
+
+    /**
+     * Trabajo en segundo plano que no se reemplaza ni se cancela (escrituras o lecturas
+     * independientes entre sí).
+     *
+     * @param operacion  nombre de la operación (para métricas).
+     * @param tarea      trabajo a correr fuera del EDT.
+     * @param alTerminar consumidor del resultado (en el EDT).
+     * @param alFallar   manejo del error (en el EDT); {@code null} = diálogo de error estándar.
+     */
+    public <T> void accion(String operacion, Callable<T> tarea, Consumer<T> alTerminar,
+                           Consumer<Exception> alFallar) {
+        lanzar(operacion, tarea, alTerminar, alFallar != null ? alFallar : this::mostrarError, false, true);
+    }
+
+    /**
+     * Trabajo periódico "silencioso" (p. ej. el sondeo del refresco en vivo): igual que
+     * {@link #accion} pero sin indicador de carga ni cursor de espera, para que la ventana no
+     * parpadee cada pocos segundos.
+     */
+    public <T> void segundoPlano(String operacion, Callable<T> tarea, Consumer<T> alTerminar,
+                                 Consumer<Exception> alFallar) {
+        lanzar(operacion, tarea, alTerminar, alFallar != null ? alFallar : this::mostrarError, false, false);
+    }
+
+    /**
+     * Muestra un texto de avance en el indicador (p. ej. "12000 filas"). Se puede llamar desde
+     * el hilo de fondo; el texto vuelve a "Cargando…" cuando no quedan tareas en curso.
+     */
+    public void avance(String texto) {
+        SwingUtilities.invokeLater(() -> { if (enCurso > 0) indicador.setString(texto); });
+    }
+
+    /** Descarta todas las consultas pendientes (p. ej. al cerrar la ventana). */
+    public void cancelarConsultas() {
+        vigentes.values().forEach(w -> w.cancel(false));
+        vigentes.clear();
+    }
+
+    // ===================== Métricas =====================
+
+    /**
+     * Registra la latencia de una operación ejecutada por fuera de esta clase.
+     *
+     * @param operacion nombre de la operación.
+     * @param nanos     duración medida.
+     */
+    public static void registrar(String operacion, long nanos) {
+        METRICAS.computeIfAbsent(operacion, k -> new Metrica()).ok(nanos);
+    }
+
+    /** @return una línea por operación: n, promedio, máximo, última, descartadas y errores (ms). */
+    public static String resumenMetricas() {
+        if (METRICAS.isEmpty()) return "Sin operaciones registradas.";
+        StringBuilder sb = new StringBuilder();
+        new TreeMap<>(METRICAS).forEach((op, m) -> sb.append(op).append(": ").append(m).append('\n'));
+        return sb.toString();
+    }
+
+    /** Acumulador simple (sincronizado: se escribe desde hilos de fondo). */
+    private static final class Metrica {
+        private long n, totalNs, maxNs, ultimaNs, descartadas, errores;
+
+        synchronized void ok(long ns) {
+            n++; totalNs += ns; ultimaNs = ns;
+            if (ns > maxNs) maxNs = ns;
+        }
+        synchronized void descartada() { descartadas++; }
+        synchronized void error() { errores++; }
+
+        @Override
+        public synchronized String toString() {
+            double prom = n == 0 ? 0 : totalNs / 1e6 / n;
+            return String.format("n=%d prom=%.1fms max=%.1fms última=%.1fms descartadas=%d errores=%d",
+                    n, prom, maxNs / 1e6, ultimaNs / 1e6, descartadas, errores);
+        }
+    }
+
+    // ===================== Implementación =====================
+
+    private <T> SwingWorker<T, Void> lanzar(String operacion, Callable<T> tarea, Consumer<T> alTerminar,
+                                            Consumer<Exception> alFallar, boolean reemplazable,
+                                            boolean visible) {
+        Metrica m = METRICAS.computeIfAbsent(operacion, k -> new Metrica());
+        SwingWorker<T, Void> w = new SwingWorker<>() {
+            private long ns;
+
+            @Override
+            protected T doInBackground() throws Exception {
+                long t0 = System.nanoTime();
+                try {
+                    return tarea.call();
+                } finally {
+                    ns = System.nanoTime() - t0;
+                }
+            }
+
+            @Override
+            protected void done() {
+                if (visible) terminar();
+                if (reemplazable && vigentes.get(operacion) == this) vigentes.remove(operacion);
+                if (isCancelled()) { m.descartada(); return; }
+                T r;
+                try {
+                    r = get();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    return;
+                } catch (ExecutionException ex) {
+                    m.error();
+                    Throwable c = ex.getCause();
+                    alFallar.accept(c instanceof Exception e ? e : new RuntimeException(c));
+                    return;
+                }
+                m.ok(ns);
+                if (alTerminar != null) alTerminar.accept(r);
+            }
+        };
+        if (visible) empezar();
+        w.execute();
+        return w;
+    }
+
+    private void empezar() {
+        if (enCurso++ == 0) {
+            indicador.setVisible(true);
+            if (owner != null) owner.setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
+        }
+    }
+
+    private void terminar() {
+        if (--enCurso == 0) {
+            indicador.setVisible(false);
+            indicador.setString("Cargando…");
+            if (owner != null) owner.setCursor(Cursor.getDefaultCursor());
+        }
+    }
+
+    /** Muestra una excepción como diálogo de error y loguea el stacktrace. */
+    private void mostrarError(Exception ex) {
+        ex.printStackTrace();
+        JOptionPane.showMessageDialog(owner, ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+    }
+}
@@ -0,0 +1,96 @@
+package ui;
+
+/**
+ * @author Federico Gabriel Arena
+ * @author Fabrizio Manuel Mansilla
+ */
+
+import dao.JdbcPrestamoDAO;
+import model.PrestamoVencido;
+import service.MonitorVencidos;
+import service.PrestamoService;
+
+import javax.swing.*;
+import javax.swing.table.DefaultTableModel;
+import java.awt.*;
+import java.util.List;
+
+/**
+ * Informe de préstamos vencidos con días de atraso y multa.
+ *
+ * - Lee la foto que deja {@link MonitorVencidos} (prestamo_vencido): no recorre préstamos ni
+ *   calcula fechas, así que abre al instante aunque haya muchos vencidos.
+ * - "Recalcular" corre una pasada del monitor en el momento y vuelve a leer.
+ */
+public class VencidosDialog extends JDialog {
+
+    private final PrestamoService svc = new PrestamoService(new JdbcPrestamoDAO());
+    private final DefaultTableModel model = new DefaultTableModel(
+            new Object[]{"ID","Código","Título","Destinatario","Cant.","Venció","Días","Multa"}, 0) {
+        @Override public boolean isCellEditable(int r, int c) { return false; }
+        @Override public Class<?> getColumnClass(int c) {
+            return switch (c) { case 0,4,6 -> Integer.class; case 7 -> Long.class; default -> String.class; };
+        }
+    };
+    private final JTable table = new JTable(model);
+    private final UIAsync async = new UIAsync(this);
+    private final JLabel lblEstado = new JLabel(" ");
+
+    public VencidosDialog(Window owner) {
+        super(owner, "Préstamos vencidos", ModalityType.APPLICATION_MODAL);
+        setSize(860, 420);
+        setLocationRelativeTo(owner);
+        setLayout(new BorderLayout(8,8));
+
+        UIUtil.styleTable(table);
+        add(new JScrollPane(table), BorderLayout.CENTER);
+
+        JPanel south = new JPanel(new BorderLayout());
+        south.add(lblEstado, BorderLayout.WEST);
+        JPanel btns = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+        JButton btnRecalcular = new JButton("Recalcular");
+        JButton btnCerrar = new JButton("Cerrar");
+        btns.add(async.getIndicador());
+        btns.add(btnRecalcular);
+        btns.add(btnCerrar);
+        south.add(btns, BorderLayout.EAST);
+        add(south, BorderLayout.SOUTH);
+
+        btnRecalcular.addActionListener(e -> {
+            btnRecalcular.setEnabled(false);
+            async.accion("vencidos.recalcular", () -> MonitorVencidos.global().actualizar(), n -> {
+                btnRecalcular.setEnabled(true);
+                cargar();
+            }, ex -> {
+                btnRecalcular.setEnabled(true);
+                JOptionPane.showMessageDialog(this, ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+            });
+        });
+        btnCerrar.addActionListener(e -> { async.cancelarConsultas(); setVisible(false); });
+
+        cargar();
+    }
+
+    private void cargar() {
+        async.consulta("vencidos.listar", svc::vencidos, (List<PrestamoVencido> data) -> {
+            model.setRowCount(0);
+            long multaTotal = 0;
+            for (PrestamoVencido v : data) {
+                model.addRow(new Object[]{
+                        v.getId().intValue(),
+                        v.getLibroCodigo(),
+                        v.getLibroTitulo(),
+                        v.getDestinatario(),
+                        v.getCantidad(),
+                        v.getFechaVencimiento().toString(),
+                        v.getDiasAtraso(),
+                        v.getMulta()
+                });
+                multaTotal += v.getMulta();
+            }
+            String calculado = data.isEmpty() ? "" : " — calculado " + data.get(0).getCalculado().withNano(0);
+            lblEstado.setText(String.format(" %,d vencidos, multa total %,d%s", data.size(), multaTotal, calculado));
+            if (table.getRowCount() > 0) table.setRowSelectionInterval(0,0);
+        });
+    }
+}
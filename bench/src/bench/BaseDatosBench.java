@@ -0,0 +1,187 @@
+package bench;
+
+/**
+ * @author Federico Gabriel Arena
+ * @author Fabrizio Manuel Mansilla
+ */
+
+import db.ConnectionFactory;
+import db.DbInit;
+import db.FormatoFechas;
+import db.FormatoFechas.Columna;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * BaseDatosBench
+ * --------------
+ * Prepara una base SQLite temporal y descartable para los benchmarks.
+ *
+ * ¿Qué hace?
+ *   - Apunta {@link ConnectionFactory} a un archivo temporal (propiedad {@code biblioteca.db.path}).
+ *   - Crea el esquema con {@link DbInit#ensureInit()}.
+ *   - Siembra N libros con stock alto (para que prestar nunca falle por stock).
+ *   - Opcionalmente siembra M préstamos (con su evento de auditoría) repartidos en los últimos
+ *     dos años: 1 de cada {@link #CADA_ABIERTO} queda ABIERTO, el resto DEVUELTO.
+ *
+ * Importante:
+ *   - {@link #preparar(String, int)} debe llamarse ANTES de tocar cualquier DAO, porque
+ *     ConnectionFactory resuelve la ruta y el perfil en su inicialización estática.
+ *     JMH corre cada combinación de parámetros en una JVM nueva (fork), así que es seguro.
+ *   - La siembra corre en el @Setup (no se mide), pero a 1M filas tarda minutos: las escalas
+ *     grandes se piden explícitamente con {@code -p escala=100000,1000000}.
+ */
+public final class BaseDatosBench {
+
+    /** Stock inicial de cada libro sembrado. */
+    public static final int STOCK_INICIAL = 1_000_000;
+
+    /** Uno de cada N préstamos sembrados queda ABIERTO. */
+    public static final int CADA_ABIERTO = 10;
+
+    /** Cantidad de destinatarios distintos en los préstamos sembrados. */
+    public static final int DESTINATARIOS = 1_000;
+
+    private BaseDatosBench() {}
+
+    /**
+     * Crea la base temporal, el esquema y siembra los libros.
+     *
+     * @param perfil nombre del {@link db.PragmaProfile} (null = default).
+     * @param libros cantidad de libros a sembrar.
+     * @return ruta del archivo creado.
+     */
+    public static Path preparar(String perfil, int libros) {
+        return preparar(perfil, libros, 0);
+    }
+
+    /**
+     * Crea la base temporal, el esquema y siembra libros y préstamos.
+     *
+     * @param perfil    nombre del {@link db.PragmaProfile} (null = default).
+     * @param libros    cantidad de libros a sembrar.
+     * @param prestamos cantidad de préstamos a sembrar (ids 1..prestamos).
+     * @return ruta del archivo creado.
+     */
+    public static Path preparar(String perfil, int libros, int prestamos) {
+        try {
+            Path dir = Files.createTempDirectory("biblioteca-bench");
+            Path db = dir.resolve("bench.db");
+            System.setProperty("biblioteca.db.path", db.toString());
+            if (perfil != null) System.setProperty("biblioteca.db.perfil", perfil);
+            System.setProperty("biblioteca.pool.fugaMs", "0");
+
+            DbInit.ensureInit();
+            sembrarLibros(libros);
+            if (prestamos > 0) sembrarPrestamos(prestamos, libros);
+            return db;
+        } catch (IOException | SQLException e) {
+            throw new RuntimeException("No se pudo preparar la base de benchmark: " + e.getMessage(), e);
+        }
+    }
+
+    /** Código del libro sembrado número {@code i} (0-based). */
+    public static String codigo(int i) {
+        return String.format("B%07d", i);
+    }
+
+    /** Destinatario del préstamo sembrado número {@code i}. */
+    public static String destinatario(int i) {
+        return "Destinatario " + (i % DESTINATARIOS);
+    }
+
+    /** @return {@code true} si el préstamo sembrado con id {@code id} (1-based) quedó ABIERTO. */
+    public static boolean sembradoAbierto(long id) {
+        return (id - 1) % CADA_ABIERTO == 0;
+    }
+
+    private static void sembrarLibros(int n) throws SQLException {
+        final String sql = """
+                INSERT OR IGNORE INTO libro (codigo, titulo, autor, categoria, editorial, anio, stock, activo)
+                VALUES (?,?,?,?,?,?,?,1)
+                """;
+        String[] categorias = {"Novela", "Programación", "Historia", "Ciencia", "Poesía", "Ensayo"};
+        try (Connection cn = ConnectionFactory.getConnection();
+             PreparedStatement ps = cn.prepareStatement(sql)) {
+            cn.setAutoCommit(false);
+            for (int i = 0; i < n; i++) {
+                ps.setString(1, codigo(i));
+                ps.setString(2, "Título " + i + " de la colección");
+                ps.setString(3, "Autor " + (i % 5_000));
+                ps.setString(4, categorias[i % categorias.length]);
+                ps.setString(5, "Editorial " + (i % 200));
+                ps.setInt(6, 1900 + (i % 125));
+                ps.setInt(7, STOCK_INICIAL);
+                ps.addBatch();
+                if (i % 10_000 == 9_999) ps.executeBatch();
+            }
+            ps.executeBatch();
+            cn.commit();
+            cn.setAutoCommit(true);
+        }
+    }
+
+    /**
+     * Siembra préstamos con id explícito (1..n) y un evento PRESTAR por cada uno.
+     * Las fechas retroceden un día cada {@code n/730} préstamos, así el histórico cubre ~2 años.
+     * Se guardan en el formato vigente ({@code -Dbiblioteca.db.fechas=epoch} para sembrar en epoch).
+     */
+    private static void sembrarPrestamos(int n, int libros) throws SQLException {
+        FormatoFechas f = FormatoFechas.actual();
+        final String sqlPrestamo = """
+                INSERT INTO prestamo (id, libro_codigo, operador_username, destinatario, cantidad,
+                                      fecha_prestamo, fecha_vencimiento, fecha_devolucion, estado)
+                VALUES (?,?,'admin',?,1,%s,%s,%s,?)
+                """.formatted(f.param(Columna.FECHA_PRESTAMO), f.param(Columna.FECHA_VENCIMIENTO),
+                                f.param(Columna.FECHA_DEVOLUCION));
+        final String sqlAudit = """
+                INSERT INTO auditoria (ts, operador_username, tipo, libro_codigo, prestamo_id, cantidad, destinatario, detalle)
+                VALUES (%s,'admin','PRESTAR',?,?,1,?,?)
+                """.formatted(f.param(Columna.AUDITORIA_TS));
+        LocalDateTime ahora = LocalDateTime.now().withNano(0);
+        int porDia = Math.max(1, n / 730);
+        try (Connection cn = ConnectionFactory.getConnection();
+             PreparedStatement pp = cn.prepareStatement(sqlPrestamo);
+             PreparedStatement pa = cn.prepareStatement(sqlAudit)) {
+            cn.setAutoCommit(false);
+            for (int i = 0; i < n; i++) {
+                long id = i + 1L;
+                String codigo = codigo(i % libros);
+                String dest = destinatario(i);
+                // Más reciente primero: el préstamo n es el de hoy
+                LocalDateTime fecha = ahora.minusDays((n - 1 - i) / porDia).minusSeconds(i % 86_400);
+                LocalDate vence = fecha.toLocalDate().plusDays(14);
+                boolean abierto = sembradoAbierto(id);
+
+                pp.setLong(1, id);
+                pp.setString(2, codigo);
+                pp.setString(3, dest);
+                int k = f.bind(pp, 4, Columna.FECHA_PRESTAMO, fecha);
+                k = f.bind(pp, k, Columna.FECHA_VENCIMIENTO, vence);
+                k = f.bind(pp, k, Columna.FECHA_DEVOLUCION, abierto ? null : fecha.plusDays(7));
+                pp.setString(k, abierto ? "ABIERTO" : "DEVUELTO");
+                pp.addBatch();
+
+                k = f.bind(pa, 1, Columna.AUDITORIA_TS, fecha);
+                pa.setString(k++, codigo);
+                pa.setLong(k++, id);
+                pa.setString(k++, dest);
+                pa.setString(k, "vencimiento=" + vence);
+                pa.addBatch();
+
+                if (i % 10_000 == 9_999) { pp.executeBatch(); pa.executeBatch(); }
+            }
+            pp.executeBatch();
+            pa.executeBatch();
+            cn.commit();
+            cn.setAutoCommit(true);
+        }
+    }
+}
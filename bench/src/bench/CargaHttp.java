@@ -0,0 +1,197 @@
+package bench;
+
+/**
+ * @author Federico Gabriel Arena
+ * @author Fabrizio Manuel Mansilla
+ */
+
+import api.ServidorApi;
+import db.ConnectionFactory;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * CargaHttp
+ * ---------
+ * Prueba de carga de la API HTTP ({@link ServidorApi}) contra una base SQLite en archivo.
+ *
+ * ¿Qué hace?
+ *   - Siembra una base temporal con {@link BaseDatosBench} y levanta el servidor en un puerto libre
+ *     (mismo proceso, hilos virtuales por pedido).
+ *   - N clientes concurrentes (hilos virtuales, un {@link HttpClient} compartido) piden en bucle
+ *     cerrado durante el tiempo indicado, con una mezcla tipo kiosco:
+ *       70% GET /api/libros/{codigo}, 20% GET /api/libros?q=..., 10% préstamo + devolución (2 POST).
+ *   - Tras un calentamiento que no se mide, informa pedidos/s y latencias p50/p90/p99/p99.9 por tipo.
+ *
+ * Ejecución (argumentos opcionales: clientes, segundos medidos, libros sembrados):
+ *   java -cp "bench/dist/bench.jar:app/dist/app.jar:core/dist/core.jar:core/dbserial/*" bench.CargaHttp 64 20 10000
+ *   java -Dbiblioteca.db.perfil=throughput -cp ... bench.CargaHttp     (para comparar perfiles)
+ *
+ * Los errores (respuestas distintas de 2xx) se cuentan aparte y no entran en las latencias.
+ */
+public final class CargaHttp {
+
+    private static final Pattern TOKEN = Pattern.compile("\"token\":\"([0-9a-f]+)\"");
+    private static final Pattern ID = Pattern.compile("\"id\":(\\d+)");
+
+    /** Segundos de calentamiento (JIT, caché de libros, pool) antes de medir. */
+    private static final int CALENTAMIENTO_SEG = 5;
+
+    private CargaHttp() {}
+
+    /** Latencias (ns) de un tipo de pedido, acumuladas por cliente y unidas al final. */
+    private static final class Serie {
+        final String nombre;
+        long[] ns = new long[1 << 14];
+        int n;
+
+        Serie(String nombre) { this.nombre = nombre; }
+
+        void agregar(long v) {
+            if (n == ns.length) ns = Arrays.copyOf(ns, n * 2);
+            ns[n++] = v;
+        }
+
+        void unir(Serie o) {
+            for (int i = 0; i < o.n; i++) agregar(o.ns[i]);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int clientes = args.length > 0 ? Integer.parseInt(args[0]) : 64;
+        int segundos = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        int libros = args.length > 2 ? Integer.parseInt(args[2]) : 10_000;
+
+        BaseDatosBench.preparar(null, libros);
+        ServidorApi api = ServidorApi.conJdbc(60 * 60_000);
+        InetSocketAddress dir = api.iniciar("127.0.0.1", 0);
+        String base = "http://127.0.0.1:" + dir.getPort() + "/api";
+
+        HttpClient http = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .build();
+        String token = login(http, base);
+
+        long inicio = System.nanoTime();
+        long desdeMedir = inicio + CALENTAMIENTO_SEG * 1_000_000_000L;
+        long fin = desdeMedir + segundos * 1_000_000_000L;
+        LongAdder errores = new LongAdder();
+
+        List<Future<Serie[]>> fs = new ArrayList<>();
+        try (ExecutorService clientesEx = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int c = 0; c < clientes; c++) {
+                fs.add(clientesEx.submit(() -> cliente(http, base, token, libros, desdeMedir, fin, errores)));
+            }
+        }
+
+        Serie[] total = {new Serie("libro"), new Serie("buscar"), new Serie("prestar+devolver")};
+        for (Future<Serie[]> f : fs) {
+            Serie[] s = f.get();
+            for (int i = 0; i < total.length; i++) total[i].unir(s[i]);
+        }
+
+        long pedidos = 0;
+        for (Serie s : total) pedidos += s.nombre.startsWith("prestar") ? 2L * s.n : s.n;
+        System.out.printf("clientes=%d libros=%d segundos=%d perfil=%s pool=%s%n",
+                clientes, libros, segundos, ConnectionFactory.perfil(),
+                System.getProperty("biblioteca.pool.max", "default"));
+        System.out.printf("pedidos HTTP=%d  throughput=%.0f pedidos/s  errores=%d%n",
+                pedidos, pedidos / (double) segundos, errores.sum());
+        for (Serie s : total) imprimir(s, segundos);
+
+        api.detener(0);
+        ConnectionFactory.cerrarPool();
+        System.exit(errores.sum() == 0 ? 0 : 1);
+    }
+
+    /** Bucle cerrado de un cliente; devuelve sus series [libro, buscar, prestar+devolver]. */
+    private static Serie[] cliente(HttpClient http, String base, String token, int libros,
+                                   long desdeMedir, long fin, LongAdder errores) {
+        Serie[] s = {new Serie("libro"), new Serie("buscar"), new Serie("prestar+devolver")};
+        ThreadLocalRandom rnd = ThreadLocalRandom.current();
+        long ahora;
+        while ((ahora = System.nanoTime()) < fin) {
+            int dado = rnd.nextInt(100);
+            int tipo = dado < 70 ? 0 : dado < 90 ? 1 : 2;
+            boolean ok;
+            try {
+                ok = switch (tipo) {
+                    case 0 -> get(http, base + "/libros/" + BaseDatosBench.codigo(rnd.nextInt(libros)), token) != null;
+                    case 1 -> get(http, base + "/libros?tamanio=20&q=autor%20" + rnd.nextInt(5_000), token) != null;
+                    default -> prestarYDevolver(http, base, token, BaseDatosBench.codigo(rnd.nextInt(libros)));
+                };
+            } catch (Exception e) {
+                ok = false;
+            }
+            long t = System.nanoTime() - ahora;
+            if (!ok) errores.increment();
+            else if (ahora >= desdeMedir) s[tipo].agregar(t);
+        }
+        return s;
+    }
+
+    private static boolean prestarYDevolver(HttpClient http, String base, String token, String codigo) throws Exception {
+        String r = post(http, base + "/prestamos", token,
+                "{\"libroCodigo\":\"" + codigo + "\",\"destinatario\":\"Kiosco\",\"cantidad\":1,\"dias\":14}");
+        if (r == null) return false;
+        Matcher m = ID.matcher(r);
+        if (!m.find()) return false;
+        return post(http, base + "/prestamos/" + m.group(1) + "/devolver", token, "") != null;
+    }
+
+    private static String login(HttpClient http, String base) throws Exception {
+        String r = post(http, base + "/login", null, "{\"username\":\"admin\",\"password\":\"admin123\"}");
+        Matcher m = r == null ? null : TOKEN.matcher(r);
+        if (m == null || !m.find()) throw new IllegalStateException("No se pudo iniciar sesión en la API");
+        return m.group(1);
+    }
+
+    /** @return cuerpo de la respuesta si fue 2xx; {@code null} si no. */
+    private static String get(HttpClient http, String url, String token) throws Exception {
+        return enviar(http, HttpRequest.newBuilder(URI.create(url)).GET(), token);
+    }
+
+    private static String post(HttpClient http, String url, String token, String json) throws Exception {
+        return enviar(http, HttpRequest.newBuilder(URI.create(url))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(json)), token);
+    }
+
+    private static String enviar(HttpClient http, HttpRequest.Builder b, String token) throws Exception {
+        if (token != null) b.header("Authorization", "Bearer " + token);
+        HttpResponse<String> r = http.send(b.build(), HttpResponse.BodyHandlers.ofString());
+        return r.statusCode() / 100 == 2 ? r.body() : null;
+    }
+
+    private static void imprimir(Serie s, int segundos) {
+        if (s.n == 0) {
+            System.out.printf("  %-17s sin muestras%n", s.nombre);
+            return;
+        }
+        long[] v = Arrays.copyOf(s.ns, s.n);
+        Arrays.sort(v);
+        System.out.printf("  %-17s n=%-8d %8.0f ops/s  p50=%6.2fms  p90=%6.2fms  p99=%6.2fms  p99.9=%6.2fms  max=%6.2fms%n",
+                s.nombre, s.n, s.n / (double) segundos,
+                percentil(v, 0.50), percentil(v, 0.90), percentil(v, 0.99), percentil(v, 0.999), v[v.length - 1] / 1e6);
+    }
+
+    private static double percentil(long[] ordenado, double p) {
+        int i = (int) Math.ceil(p * ordenado.length) - 1;
+        return ordenado[Math.max(0, Math.min(i, ordenado.length - 1))] / 1e6;
+    }
+}
@@ -0,0 +1,102 @@
+package bench;
+
+/**
+ * @author Federico Gabriel Arena
+ * @author Fabrizio Manuel Mansilla
+ */
+
+import org.openjdk.jmh.annotations.*;
+import util.HashUtil;
+
+import java.security.MessageDigest;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * HashUtilBenchmark
+ * -----------------
+ * Costo de {@link HashUtil#verify} (el camino de cada login) contra la implementación anterior,
+ * copiada tal cual en {@link Anterior}.
+ *
+ * Casos:
+ *   - verify / verifyAnterior       : hash correcto (login exitoso).
+ *   - sha256Hex / sha256HexAnterior : solo el cálculo del hash en HEX (alta o cambio de contraseña).
+ *
+ * Para ver bytes asignados por operación agregar el profiler de GC y mirar {@code gc.alloc.rate.norm}:
+ *   java -cp ... org.openjdk.jmh.Main HashUtilBenchmark -prof gc
+ * Con varios hilos (simula el login de todos los operadores al abrir): {@code -t 8}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HashUtilBenchmark {
+
+    private String salt;
+    private String hash;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        salt = HashUtil.newSaltHex(16);
+        hash = HashUtil.sha256Hex(salt, "admin123");
+        if (!Anterior.verify(salt, "admin123", hash))
+            throw new IllegalStateException("La implementación anterior no coincide con la actual");
+    }
+
+    @Benchmark
+    public boolean verify() {
+        return HashUtil.verify(salt, "admin123", hash);
+    }
+
+    @Benchmark
+    public boolean verifyAnterior() {
+        return Anterior.verify(salt, "admin123", hash);
+    }
+
+    @Benchmark
+    public String sha256Hex() {
+        return HashUtil.sha256Hex(salt, "admin123");
+    }
+
+    @Benchmark
+    public String sha256HexAnterior() {
+        return Anterior.sha256Hex(salt, "admin123");
+    }
+
+    /** HashUtil antes de reutilizar digest y buffers (referencia de comparación). */
+    static final class Anterior {
+
+        private Anterior() {}
+
+        static String sha256Hex(String saltHex, String plain) {
+            try {
+                MessageDigest md = MessageDigest.getInstance("SHA-256");
+                md.update(fromHex(saltHex));
+                md.update(plain.getBytes("UTF-8"));
+                return toHex(md.digest());
+            } catch (Exception e) {
+                throw new RuntimeException("No se pudo calcular hash", e);
+            }
+        }
+
+        static boolean verify(String saltHex, String plain, String expectedHex) {
+            return sha256Hex(saltHex, plain).equalsIgnoreCase(expectedHex);
+        }
+
+        private static String toHex(byte[] b) {
+            StringBuilder sb = new StringBuilder(b.length * 2);
+            for (byte x : b) sb.append(String.format("%02x", x));
+            return sb.toString();
+        }
+
+        private static byte[] fromHex(String s) {
+            int len = s.length();
+            byte[] out = new byte[len / 2];
+            for (int i = 0; i < len; i += 2) {
+                out[i / 2] = (byte) Integer.parseInt(s.substring(i, i + 2), 16);
+            }
+            return out;
+        }
+    }
+}
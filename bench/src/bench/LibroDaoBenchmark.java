@@ -0,0 +1,72 @@
+package bench;
+
+/**
+ * @author Federico Gabriel Arena
+ * @author Fabrizio Manuel Mansilla
+ */
+
+import dao.JdbcLibroDAO;
+import dao.ModoBusqueda;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * LibroDaoBenchmark
+ * -----------------
+ * Lecturas del catálogo con {@link JdbcLibroDAO} a distintas escalas.
+ *
+ * Casos:
+ *   - listarTodo       : {@code listar("")}, trae el catálogo completo (crece lineal con la escala).
+ *   - listarFiltro     : {@code listar("autor 42")}, búsqueda por prefijos vía FTS (pocas filas).
+ *   - buscarContiene   : mismo filtro con {@link ModoBusqueda#CONTIENE} (LIKE, recorre la tabla).
+ *   - leerPorCodigo    : búsqueda por PK de un libro al azar.
+ *
+ * Modos: throughput (ops/s) y SampleTime (percentiles p50/p90/p99/p99.9 en la salida).
+ *
+ * Ejecución:
+ *   java -cp ... org.openjdk.jmh.Main LibroDaoBenchmark -p escala=10000,100000,1000000
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 3)
+@Fork(1)
+public class LibroDaoBenchmark {
+
+    /** Cantidad de libros (y de préstamos) sembrados. */
+    @Param({"10000"})
+    public int escala;
+
+    private JdbcLibroDAO dao;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        BaseDatosBench.preparar(null, escala, escala);
+        dao = new JdbcLibroDAO();
+    }
+
+    @Benchmark
+    public void listarTodo(Blackhole bh) {
+        bh.consume(dao.listar(""));
+    }
+
+    @Benchmark
+    public void listarFiltro(Blackhole bh) {
+        bh.consume(dao.listar("autor 42"));
+    }
+
+    @Benchmark
+    public void buscarContiene(Blackhole bh) {
+        bh.consume(dao.buscar("Autor 42", ModoBusqueda.CONTIENE));
+    }
+
+    @Benchmark
+    public void leerPorCodigo(Blackhole bh) {
+        int i = ThreadLocalRandom.current().nextInt(escala);
+        bh.consume(dao.leerPorCodigo(BaseDatosBench.codigo(i)));
+    }
+}
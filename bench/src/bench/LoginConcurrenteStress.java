@@ -0,0 +1,152 @@
+package bench;
+
+/**
+ * @author Federico Gabriel Arena
+ * @author Fabrizio Manuel Mansilla
+ */
+
+import dao.JdbcUsuarioDAO;
+import db.ConnectionFactory;
+import model.Operador;
+import model.Usuario;
+import service.AuthServiceImpl;
+import service.UsuarioAdminService;
+import util.HashUtil;
+import util.PasswordHasher;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * LoginConcurrenteStress
+ * ----------------------
+ * Simula el cambio de turno: muchos operadores haciendo login a la vez con PBKDF2.
+ *
+ * ¿Qué hace?
+ *   - Calibra las iteraciones para el tiempo objetivo con {@link PasswordHasher#calibrar(long)} y
+ *     muestra el tiempo real de un hash aislado.
+ *   - Crea N operadores y lanza sus N logins a la vez (un hilo por operador); informa latencias
+ *     p50/p99/máx y cuánto tardó la tanda completa con el pool de KDF indicado.
+ *   - Verifica el re-hash transparente: un usuario con hash SHA-256 legado hace login y su
+ *     password_hash queda en formato {@code pbkdf2-sha256$...}; el segundo login ya no re-hashea.
+ *   - Mide logins fallidos (usuario inexistente, cuenta legada, cuenta PBKDF2): los tres pagan un KDF,
+ *     así el tiempo de respuesta no revela qué cuentas existen ni cuáles siguen sin migrar.
+ *
+ * Ejecución (argumentos opcionales: operadores, objetivo ms, hilos del KDF):
+ *   java -cp ... bench.LoginConcurrenteStress 40 100 4
+ *
+ * Sale con código 1 si algún login falla, el re-hash no ocurrió o un login fallido tarda mucho menos que otro.
+ */
+public final class LoginConcurrenteStress {
+
+    private LoginConcurrenteStress() {}
+
+    public static void main(String[] args) throws Exception {
+        int operadores = args.length > 0 ? Integer.parseInt(args[0]) : 40;
+        long objetivoMs = args.length > 1 ? Long.parseLong(args[1]) : 100;
+        int hilosKdf = args.length > 2 ? Integer.parseInt(args[2])
+                                       : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+
+        BaseDatosBench.preparar(null, 0);
+
+        // 1) Calibración
+        int iter = PasswordHasher.calibrar(objetivoMs);
+        PasswordHasher hasher = new PasswordHasher(iter, hilosKdf, Math.max(operadores, 1));
+        String salt = HashUtil.newSaltHex(16);
+        long t0 = System.nanoTime();
+        hasher.hashear(salt, "medicion");
+        System.out.printf("objetivo=%dms  iteraciones=%d  hash aislado=%.1fms  núcleos=%d  hilosKdf=%d%n",
+                objetivoMs, iter, (System.nanoTime() - t0) / 1e6,
+                Runtime.getRuntime().availableProcessors(), hilosKdf);
+
+        JdbcUsuarioDAO dao = new JdbcUsuarioDAO();
+        AuthServiceImpl auth = new AuthServiceImpl(dao, hasher);
+        UsuarioAdminService admin = new UsuarioAdminService(dao, hasher);
+        for (int i = 0; i < operadores; i++) {
+            if (dao.buscarPorUsername("turno" + i) == null)
+                admin.registrarOperador("Operador " + i, "turno" + i, "clave" + i);
+        }
+
+        // 2) Tanda de logins simultáneos
+        long[] latencias = new long[operadores];
+        LongAdder fallidos = new LongAdder();
+        CountDownLatch largada = new CountDownLatch(1);
+        List<Thread> ts = new ArrayList<>();
+        for (int i = 0; i < operadores; i++) {
+            final int n = i;
+            Thread t = new Thread(() -> {
+                try { largada.await(); } catch (InterruptedException e) { return; }
+                long ini = System.nanoTime();
+                try {
+                    auth.login("turno" + n, "clave" + n);
+                } catch (RuntimeException e) {
+                    fallidos.increment();
+                }
+                latencias[n] = System.nanoTime() - ini;
+            }, "login-" + i);
+            ts.add(t);
+            t.start();
+        }
+        long tanda0 = System.nanoTime();
+        largada.countDown();
+        for (Thread t : ts) t.join();
+        double tanda = (System.nanoTime() - tanda0) / 1e6;
+
+        Arrays.sort(latencias);
+        System.out.printf("logins=%d fallidos=%d  tanda=%.0fms  p50=%.0fms  p99=%.0fms  máx=%.0fms%n",
+                operadores, fallidos.sum(), tanda,
+                latencias[operadores / 2] / 1e6,
+                latencias[Math.max(0, (int) Math.ceil(operadores * 0.99) - 1)] / 1e6,
+                latencias[operadores - 1] / 1e6);
+
+        // 3) Re-hash de un hash legado
+        String saltLegado = HashUtil.newSaltHex(16);
+        if (dao.buscarPorUsername("legado") == null) {
+            dao.crear(new Operador("legado", "Legado", "legado",
+                    HashUtil.sha256Hex(saltLegado, "vieja"), saltLegado));
+        }
+        auth.login("legado", "vieja");
+        Usuario u = dao.buscarPorUsername("legado");
+        boolean rehash = u.getPasswordHash().startsWith(PasswordHasher.PREFIJO) && !hasher.requiereRehash(u.getPasswordHash());
+        auth.login("legado", "vieja");
+        boolean estable = u.getPasswordHash().equals(dao.buscarPorUsername("legado").getPasswordHash());
+        System.out.println("re-hash legado → " + u.getPasswordHash().substring(0, u.getPasswordHash().indexOf('$', PasswordHasher.PREFIJO.length()))
+                + (estable ? " (segundo login sin re-hash)" : " (¡re-hasheó de nuevo!)"));
+
+        // 4) Logins fallidos: usuario inexistente, cuenta legada y cuenta PBKDF2 deben costar lo mismo
+        if (dao.buscarPorUsername("legado2") == null) {
+            dao.crear(new Operador("legado2", "Legado 2", "legado2",
+                    HashUtil.sha256Hex(saltLegado, "vieja"), saltLegado));
+        }
+        double inexistente = fallidoMs(auth, "no-existe");
+        double legado = fallidoMs(auth, "legado2");
+        double pbkdf2 = fallidoMs(auth, "turno0");
+        boolean parejo = legado >= inexistente / 2 && pbkdf2 >= inexistente / 2;
+        System.out.printf("login fallido → inexistente=%.1fms  legado=%.1fms  pbkdf2=%.1fms%s%n",
+                inexistente, legado, pbkdf2, parejo ? "" : "  (¡el tiempo delata la cuenta!)");
+
+        hasher.cerrar();
+        ConnectionFactory.cerrarPool();
+        boolean ok = fallidos.sum() == 0 && rehash && estable && parejo;
+        System.out.println(ok ? "OK" : "FALLA");
+        System.exit(ok ? 0 : 1);
+    }
+
+    /** Mejor tiempo (ms) de varios logins con contraseña errada para {@code username}. */
+    private static double fallidoMs(AuthServiceImpl auth, String username) {
+        long mejor = Long.MAX_VALUE;
+        for (int i = 0; i < 5; i++) {
+            long ini = System.nanoTime();
+            try {
+                auth.login(username, "incorrecta");
+            } catch (IllegalArgumentException esperado) {
+                // login rechazado: es lo que se mide
+            }
+            mejor = Math.min(mejor, System.nanoTime() - ini);
+        }
+        return mejor / 1e6;
+    }
+}
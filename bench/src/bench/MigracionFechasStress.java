@@ -0,0 +1,325 @@
+package bench;
+
+/**
+ * @author Federico Gabriel Arena
+ * @author Fabrizio Manuel Mansilla
+ */
+
+import dao.CursorPagina;
+import dao.JdbcLibroDAO;
+import dao.JdbcPrestamoDAO;
+import dao.Pagina;
+import dao.PlanesConsulta;
+import dao.PrestamoRechazadoException;
+import db.ConnectionFactory;
+import db.FormatoFechas;
+import db.MigracionFechas;
+import db.Transacciones;
+import model.EstadoPrestamo;
+import model.Prestamo;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * MigracionFechasStress
+ * ---------------------
+ * Migración de fechas ISO → epoch ({@link MigracionFechas}) con la app trabajando encima.
+ *
+ * ¿Qué hace?
+ *   - Siembra una base en formato ISO y mide: tamaño de los índices de fecha (dbstat, después de
+ *     VACUUM) y el tiempo de recorrer todo el histórico (mapeo de filas).
+ *   - Corre la migración en un hilo mientras:
+ *       · N hilos prestan, renuevan y devuelven préstamos (los errores técnicos, p. ej. SQLITE_BUSY
+ *         con muchos hilos, se informan aparte como en {@link PrestamoConcurrenteStress}),
+ *       · un lector recorre con cursor un rango fijo del histórico y los abiertos, y verifica
+ *         orden (fecha, id) y cantidad (el rango es anterior a hoy: la carga no lo cambia),
+ *       · un vigía consulta cada pocos ms que no haya enteros por encima de la frontera guardada: la
+ *         conversión de un lote y su frontera van en la misma transacción, nunca se ve una sin la otra,
+ *       · un hilo toma el lock de escritura {@code bloqueos} veces y lo retiene más que busy_timeout:
+ *         el BEGIN de algún lote da SQLITE_BUSY y la migración pasa por sus reintentos.
+ *   - Al terminar repite las mediciones en EPOCH (índices antes y después de VACUUM, en KB y en bytes
+ *     por entrada, porque la carga agrega filas) y verifica contadores y planes de consulta.
+ *
+ * Ejecución (argumentos opcionales: préstamos sembrados, hilos escritores, filas por lote, bloqueos):
+ *   java -cp ... bench.MigracionFechasStress 500000 4 5000 3
+ *
+ * Sale con código 1 si el lector ve un orden o una cantidad incorrecta o enteros por encima de la
+ * frontera, si quedan fechas en texto o si los contadores o los planes de consulta no cuadran.
+ */
+public final class MigracionFechasStress {
+
+    private static final String[] INDICES = {"ix_prestamo_fecha", "ix_prestamo_abiertos_vence", "ix_auditoria_ts",
+            "ix_auditoria_operador_ts", "ix_auditoria_tipo_ts"};
+
+    private MigracionFechasStress() {}
+
+    public static void main(String[] args) throws Exception {
+        int prestamos = args.length > 0 ? Integer.parseInt(args[0]) : 500_000;
+        int hilos = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+        int lote = args.length > 2 ? Integer.parseInt(args[2]) : 5000;
+        int bloqueos = args.length > 3 ? Integer.parseInt(args[3]) : 3;
+        int libros = 5_000;
+
+        System.setProperty("biblioteca.db.fechas", "iso");
+        BaseDatosBench.preparar(null, libros, prestamos);
+        JdbcPrestamoDAO dao = new JdbcPrestamoDAO();
+
+        // 1) Antes: ISO
+        Map<String, long[]> antes = tamanioIndices(true);
+        double mapeoAntes = recorrerHistorico(dao);
+
+        // Rango fijo para el lector: del día -400 al día -1 (lo sembrado; la carga presta hoy)
+        LocalDate desde = LocalDate.now().minusDays(400), hasta = LocalDate.now().minusDays(1);
+        long esperados = contarHistorico(dao, desde, hasta, new ArrayList<>());
+
+        // 2) Migración con carga concurrente
+        AtomicBoolean corriendo = new AtomicBoolean(true);
+        LongAdder operaciones = new LongAdder(), errores = new LongAdder(), lecturas = new LongAdder();
+        List<String> fallas = new ArrayList<>();
+        List<Thread> ts = new ArrayList<>();
+        for (int h = 0; h < hilos; h++) {
+            Thread t = new Thread(() -> escritor(dao, libros, corriendo, operaciones, errores), "escritor-" + h);
+            ts.add(t);
+            t.start();
+        }
+        Thread lector = new Thread(() -> {
+            while (corriendo.get()) {
+                List<String> problemas = new ArrayList<>();
+                long n = contarHistorico(dao, desde, hasta, problemas);
+                if (n != esperados) problemas.add("histórico: " + n + " filas, se esperaban " + esperados);
+                verificarAbiertos(dao, problemas);
+                if (!problemas.isEmpty()) {
+                    synchronized (fallas) { fallas.addAll(problemas); }
+                }
+                lecturas.increment();
+            }
+        }, "lector");
+        lector.start();
+        Thread vigia = new Thread(() -> {
+            while (corriendo.get()) {
+                long sobrantes = enterosSobreFrontera();
+                if (sobrantes > 0) {
+                    synchronized (fallas) {
+                        fallas.add(sobrantes + " fechas epoch por encima de la frontera (lote confirmado fuera de transacción)");
+                    }
+                }
+                try {
+                    Thread.sleep(2);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }, "vigia");
+        vigia.start();
+        Thread bloqueador = new Thread(() -> bloquear(bloqueos, corriendo), "bloqueador");
+        bloqueador.start();
+
+        long t0 = System.nanoTime();
+        long convertidas = new MigracionFechas(lote, 5).migrar();
+        double seg = (System.nanoTime() - t0) / 1e9;
+        corriendo.set(false);
+        for (Thread t : ts) t.join();
+        lector.join();
+        vigia.join();
+        bloqueador.join();
+
+        // 3) Después: EPOCH
+        Map<String, long[]> migrados = tamanioIndices(false);
+        Map<String, long[]> despues = tamanioIndices(true);
+        double mapeoDespues = recorrerHistorico(dao);
+        List<String> contadores = new JdbcLibroDAO().verificarContadores();
+        List<String> planes;
+        try (Connection cn = ConnectionFactory.getConnection()) {
+            planes = PlanesConsulta.verificar(cn);
+        }
+        long textos = textosRestantes();
+
+        System.out.printf("préstamos=%d hilos=%d lote=%d bloqueos=%d%n", prestamos, hilos, lote, bloqueos);
+        System.out.printf("migración: %,d filas en %.1fs  (%,d operaciones concurrentes, %d errores técnicos, %d recorridos del lector)%n",
+                convertidas, seg, operaciones.sum(), errores.sum(), lecturas.sum());
+        System.out.printf("recorrer histórico: ISO %.0fms → EPOCH %.0fms%n", mapeoAntes, mapeoDespues);
+        // La carga agrega filas durante la migración: lo comparable son los bytes por entrada
+        System.out.printf("  %-28s %22s %22s %22s%n", "índice (KB, bytes/entrada)", "ISO", "EPOCH sin VACUUM", "EPOCH con VACUUM");
+        for (String ix : INDICES) {
+            System.out.printf("  %-28s %22s %22s %22s%n", ix,
+                    tamanio(antes.get(ix)), tamanio(migrados.get(ix)), tamanio(despues.get(ix)));
+        }
+
+        boolean ok = FormatoFechas.actual().getEstado() == FormatoFechas.Estado.EPOCH
+                && fallas.isEmpty() && contadores.isEmpty() && planes.isEmpty() && textos == 0;
+        if (!fallas.isEmpty()) System.out.println("lector: " + fallas.subList(0, Math.min(5, fallas.size())));
+        if (!contadores.isEmpty()) System.out.println("contadores distintos: " + contadores);
+        if (!planes.isEmpty()) System.out.println("planes: " + planes);
+        if (textos != 0) System.out.println("quedaron " + textos + " fechas en texto");
+        System.out.println(ok ? "OK" : "FALLA");
+        ConnectionFactory.cerrarPool();
+        System.exit(ok ? 0 : 1);
+    }
+
+    /** Presta, a veces renueva, y devuelve; cada operación en su transacción. */
+    private static void escritor(JdbcPrestamoDAO dao, int libros, AtomicBoolean corriendo,
+                                 LongAdder operaciones, LongAdder errores) {
+        ThreadLocalRandom rnd = ThreadLocalRandom.current();
+        while (corriendo.get()) {
+            try {
+                Prestamo p = new Prestamo();
+                p.setLibroCodigo(BaseDatosBench.codigo(rnd.nextInt(libros)));
+                p.setOperadorUsername("admin");
+                p.setDestinatario("Migración");
+                p.setCantidad(1);
+                p.setFechaPrestamo(LocalDateTime.now());
+                p.setFechaVencimiento(LocalDate.now().plusDays(1 + rnd.nextInt(30)));
+                p.setEstado(EstadoPrestamo.ABIERTO);
+                long id = dao.prestar(p);
+                if (rnd.nextBoolean()) dao.renovar(id, 1 + rnd.nextInt(10));
+                if (rnd.nextInt(4) != 0) dao.devolver(id);
+                operaciones.increment();
+            } catch (PrestamoRechazadoException e) {
+                operaciones.increment();
+            } catch (RuntimeException e) {
+                errores.increment();
+                System.err.println("[escritor] " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Toma el lock de escritura {@code veces} veces, con un segundo entre una y otra, y lo retiene un
+     * poco más que busy_timeout: quien pida BEGIN mientras tanto (escritores o un lote) recibe SQLITE_BUSY.
+     */
+    private static void bloquear(int veces, AtomicBoolean corriendo) {
+        long retencionMs = ConnectionFactory.perfil().getBusyTimeoutMs() + 200L;
+        for (int i = 0; i < veces && corriendo.get(); i++) {
+            try (Connection cn = ConnectionFactory.getConnection()) {
+                Thread.sleep(1000);
+                Transacciones.iniciar(cn);
+                Thread.sleep(retencionMs);
+                Transacciones.confirmar(cn);
+            } catch (SQLException e) {
+                i--;                                 // no consiguió el lock: reintentar
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    /** Recorre el rango con cursor (páginas de 1000) verificando el orden (fecha, id) descendente. */
+    private static long contarHistorico(JdbcPrestamoDAO dao, LocalDate desde, LocalDate hasta, List<String> problemas) {
+        long n = 0;
+        CursorPagina c = null;
+        Prestamo anterior = null;
+        do {
+            Pagina<Prestamo> p = dao.historicoPagina(desde, hasta, null, c, 1000);
+            for (Prestamo x : p.getItems()) {
+                if (anterior != null) {
+                    int cmp = x.getFechaPrestamo().compareTo(anterior.getFechaPrestamo());
+                    if (cmp > 0 || (cmp == 0 && x.getId() >= anterior.getId()))
+                        problemas.add("histórico fuera de orden: " + anterior.getId() + " → " + x.getId());
+                }
+                anterior = x;
+                n++;
+            }
+            c = p.getSiguiente();
+        } while (c != null);
+        return n;
+    }
+
+    /** Recorre los abiertos con cursor verificando el orden (vencimiento, id) ascendente. */
+    private static void verificarAbiertos(JdbcPrestamoDAO dao, List<String> problemas) {
+        CursorPagina c = null;
+        Prestamo anterior = null;
+        do {
+            Pagina<Prestamo> p = dao.abiertosPagina(null, c, 1000);
+            for (Prestamo x : p.getItems()) {
+                if (anterior != null) {
+                    int cmp = x.getFechaVencimiento().compareTo(anterior.getFechaVencimiento());
+                    if (cmp < 0 || (cmp == 0 && x.getId() <= anterior.getId()))
+                        problemas.add("abiertos fuera de orden: " + anterior.getId() + " → " + x.getId());
+                }
+                anterior = x;
+            }
+            c = p.getSiguiente();
+        } while (c != null);
+    }
+
+    /**
+     * Cuenta, en una sola sentencia (una sola foto de la base), las fechas ya en epoch por encima de la
+     * frontera de su columna. INTEGER ordena antes que TEXT: {@code col > frontera AND col < ''} son
+     * exactamente esos enteros, y es un rango del índice de la columna.
+     */
+    private static long enterosSobreFrontera() {
+        String frontera = "COALESCE((SELECT valor FROM migracion_fechas WHERE clave = '%s'), -1)";
+        String sql = "SELECT (SELECT COUNT(*) FROM prestamo WHERE fecha_prestamo > "
+                + frontera.formatted("prestamo.fecha_prestamo") + " AND fecha_prestamo < '')"
+                + " + (SELECT COUNT(*) FROM auditoria WHERE ts > " + frontera.formatted("auditoria.ts") + " AND ts < '')"
+                + " + (SELECT COUNT(*) FROM prestamo WHERE estado = 'ABIERTO' AND fecha_vencimiento > "
+                + frontera.formatted("prestamo.fecha_vencimiento") + " AND fecha_vencimiento < '')";
+        try (Connection cn = ConnectionFactory.getConnection(); Statement s = cn.createStatement();
+             ResultSet rs = s.executeQuery(sql)) {
+            rs.next();
+            return rs.getLong(1);
+        } catch (SQLException e) {
+            throw new RuntimeException("Error verificando fronteras: " + e.getMessage(), e);
+        }
+    }
+
+    /** @return ms de recorrer todo el histórico (mejor de 3). */
+    private static double recorrerHistorico(JdbcPrestamoDAO dao) {
+        double mejor = Double.MAX_VALUE;
+        for (int i = 0; i < 3; i++) {
+            long t0 = System.nanoTime();
+            dao.recorrerHistorico(null, null, null, p -> { });
+            mejor = Math.min(mejor, (System.nanoTime() - t0) / 1e6);
+        }
+        return mejor;
+    }
+
+    /**
+     * Bytes y entradas de cada índice de fecha. Con {@code vacuum} se compacta antes: la migración en
+     * el lugar deja páginas a medio llenar (ver {@link FormatoFechas}).
+     */
+    private static Map<String, long[]> tamanioIndices(boolean vacuum) throws SQLException {
+        Map<String, long[]> out = new LinkedHashMap<>();
+        try (Connection cn = ConnectionFactory.getConnection(); Statement s = cn.createStatement()) {
+            if (vacuum) s.execute("VACUUM");
+            for (String ix : INDICES) {
+                try (ResultSet rs = s.executeQuery("SELECT COALESCE(SUM(pgsize), 0), "
+                        + "COALESCE(SUM(CASE WHEN pagetype = 'leaf' THEN ncell END), 0) FROM dbstat WHERE name = '" + ix + "'")) {
+                    rs.next();
+                    out.put(ix, new long[]{rs.getLong(1), rs.getLong(2)});
+                }
+            }
+        }
+        return out;
+    }
+
+    /** "KB (bytes/entrada)" de {bytes, entradas}. */
+    private static String tamanio(long[] t) {
+        return String.format("%,d KB (%.1f)", t[0] / 1024, t[0] / (double) Math.max(1, t[1]));
+    }
+
+    private static long textosRestantes() throws SQLException {
+        try (Connection cn = ConnectionFactory.getConnection(); Statement s = cn.createStatement();
+             ResultSet rs = s.executeQuery("""
+                     SELECT (SELECT COUNT(*) FROM prestamo WHERE typeof(fecha_prestamo) = 'text'
+                                OR typeof(fecha_vencimiento) = 'text' OR typeof(fecha_devolucion) = 'text')
+                          + (SELECT COUNT(*) FROM auditoria WHERE typeof(ts) = 'text')
+                          + (SELECT COUNT(*) FROM libro_contador WHERE typeof(ultimo_prestamo) = 'text')
+                     """)) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package bench;
+
+/**
+ * @author Federico Gabriel Arena
+ * @author Fabrizio Manuel Mansilla
+ */
+
+import dao.PlanesConsulta;
+import db.ConnectionFactory;
+import db.DbInit;
+
+import java.sql.Connection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * PlanesConsultaCheck
+ * -------------------
+ * Regresión de planes: imprime el EXPLAIN QUERY PLAN de las consultas calientes de préstamos
+ * ({@link PlanesConsulta}) y falla si alguna recorre la tabla completa, ordena aparte o no usa
+ * su índice.
+ *
+ * Ejecución:
+ *   java -cp ... bench.PlanesConsultaCheck                 (base temporal sembrada: 1000 libros, 100000 préstamos)
+ *   java -Dbiblioteca.db.path=biblioteca.db -cp ... bench.PlanesConsultaCheck   (revisa esa base)
+ *
+ * Sale con código 1 si hay algún problema.
+ */
+public final class PlanesConsultaCheck {
+
+    private PlanesConsultaCheck() {}
+
+    public static void main(String[] args) throws Exception {
+        if (System.getProperty("biblioteca.db.path") == null) {
+            BaseDatosBench.preparar(null, 1_000, 100_000);
+        } else {
+            DbInit.ensureInit();
+        }
+
+        List<String> problemas;
+        try (Connection cn = ConnectionFactory.getConnection()) {
+            for (Map.Entry<String, List<String>> e : PlanesConsulta.planes(cn).entrySet()) {
+                System.out.println(e.getKey());
+                for (String linea : e.getValue()) System.out.println("    " + linea);
+            }
+            problemas = PlanesConsulta.verificar(cn);
+        }
+
+        problemas.forEach(p -> System.out.println("FALLA: " + p));
+        System.out.println(problemas.isEmpty() ? "OK: todas las consultas usan su índice" : problemas.size() + " problema(s)");
+        ConnectionFactory.cerrarPool();
+        System.exit(problemas.isEmpty() ? 0 : 1);
+    }
+}
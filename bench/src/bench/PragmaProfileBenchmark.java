@@ -0,0 +1,84 @@
+package bench;
+
+/**
+ * @author Federico Gabriel Arena
+ * @author Fabrizio Manuel Mansilla
+ */
+
+import dao.JdbcLibroDAO;
+import dao.JdbcPrestamoDAO;
+import model.EstadoPrestamo;
+import model.Prestamo;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * PragmaProfileBenchmark
+ * ----------------------
+ * Throughput concurrente de lectura/escritura bajo cada {@link db.PragmaProfile}.
+ *
+ * Escenario (grupo "mostrador"):
+ *   - 3 hilos lectores: {@code leerPorCodigo} de un libro al azar.
+ *   - 1 hilo escritor: {@code prestar} + {@code devolver} del mismo libro (stock neto sin cambios).
+ *
+ * Qué mirar:
+ *   - Con WAL los lectores no deberían caer cuando el escritor está activo.
+ *   - THROUGHPUT (synchronous=NORMAL) debería multiplicar las escrituras respecto de DURABLE.
+ *
+ * Ejecución:
+ *   java -jar bench.jar PragmaProfileBenchmark
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 3)
+@Fork(1)
+public class PragmaProfileBenchmark {
+
+    @Param({"DURABLE", "THROUGHPUT"})
+    public String perfil;
+
+    @Param({"10000"})
+    public int libros;
+
+    private JdbcLibroDAO libroDao;
+    private JdbcPrestamoDAO prestamoDao;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        BaseDatosBench.preparar(perfil, libros);
+        libroDao = new JdbcLibroDAO();
+        prestamoDao = new JdbcPrestamoDAO();
+    }
+
+    @Benchmark
+    @Group("mostrador")
+    @GroupThreads(3)
+    public void leer(Blackhole bh) {
+        int i = ThreadLocalRandom.current().nextInt(libros);
+        bh.consume(libroDao.leerPorCodigo(BaseDatosBench.codigo(i)));
+    }
+
+    @Benchmark
+    @Group("mostrador")
+    @GroupThreads(1)
+    public void escribir() {
+        int i = ThreadLocalRandom.current().nextInt(libros);
+        Prestamo p = new Prestamo();
+        p.setLibroCodigo(BaseDatosBench.codigo(i));
+        p.setOperadorUsername("admin");
+        p.setDestinatario("Bench");
+        p.setCantidad(1);
+        p.setFechaPrestamo(LocalDateTime.now());
+        p.setFechaVencimiento(LocalDate.now().plusDays(7));
+        p.setEstado(EstadoPrestamo.ABIERTO);
+        long id = prestamoDao.prestar(p);
+        prestamoDao.devolver(id);
+    }
+}
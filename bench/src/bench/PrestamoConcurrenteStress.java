@@ -0,0 +1,232 @@
+package bench;
+
+/**
+ * @author Federico Gabriel Arena
+ * @author Fabrizio Manuel Mansilla
+ */
+
+import dao.AuditoriaStats;
+import dao.AuditoriaWriter;
+import dao.JdbcLibroDAO;
+import dao.JdbcPrestamoDAO;
+import dao.PrestamoRechazadoException;
+import db.ConnectionFactory;
+import db.Transacciones;
+import model.EstadoPrestamo;
+import model.Prestamo;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * PrestamoConcurrenteStress
+ * -------------------------
+ * Prueba de estrés: muchos hilos prestando (y a veces devolviendo) el MISMO libro con poco stock.
+ *
+ * Verifica al final:
+ *   - El stock nunca queda negativo.
+ *   - stock final == stock inicial - suma de cantidades de los préstamos ABIERTO del libro
+ *     (ningún descuento perdido ni duplicado).
+ *   - El contador materializado (libro_contador) coincide con la tabla prestamo.
+ *   - Cada operación termina en éxito o en un rechazo de negocio; los errores técnicos
+ *     (p. ej. SQLITE_BUSY) se cuentan aparte y deberían ser 0 con transacciones IMMEDIATE.
+ *   - Lo informado cuadra con lo grabado: préstamos y devoluciones exitosos == filas en prestamo,
+ *     y == filas de auditoría (+ descartadas y fallidas, que {@link AuditoriaWriter} cuenta en los
+ *     modos asíncronos). Un error técnico nunca deja la operación grabada.
+ *
+ * Bloqueos: un hilo aparte toma el lock de escritura varias veces y lo retiene más que busy_timeout,
+ * así que hay errores técnicos a propósito. Suele tomarlo justo después del commit de otro hilo: si
+ * el cierre de la transacción volviera a pedir el lock (ver {@link Transacciones}), ese préstamo ya
+ * grabado se informaría como fallido y no cuadraría con las filas.
+ *
+ * Ejecución (argumentos opcionales: hilos, operaciones por hilo, stock inicial, bloqueos):
+ *   java -cp ... bench.PrestamoConcurrenteStress 32 200 50 2
+ *   java -Dbiblioteca.db.transaccion=deferred -cp ... bench.PrestamoConcurrenteStress   (para comparar)
+ *
+ * Sale con código 1 si alguna verificación falla.
+ */
+public final class PrestamoConcurrenteStress {
+
+    private static final String LIBRO = BaseDatosBench.codigo(0);
+
+    private PrestamoConcurrenteStress() {}
+
+    public static void main(String[] args) throws Exception {
+        int hilos = args.length > 0 ? Integer.parseInt(args[0]) : 32;
+        int operaciones = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+        int stockInicial = args.length > 2 ? Integer.parseInt(args[2]) : 50;
+        int bloqueos = args.length > 3 ? Integer.parseInt(args[3]) : 2;
+
+        BaseDatosBench.preparar(null, 1);
+        fijarStock(stockInicial);
+        JdbcPrestamoDAO dao = new JdbcPrestamoDAO();
+
+        LongAdder prestados = new LongAdder(), devueltos = new LongAdder(), sinStock = new LongAdder();
+        LongAdder errores = new LongAdder();
+        LongAdder stockNegativoVisto = new LongAdder();
+        LongAdder erroresDevolviendo = new LongAdder();
+        CountDownLatch largada = new CountDownLatch(1);
+        List<Thread> ts = new ArrayList<>();
+
+        for (int h = 0; h < hilos; h++) {
+            Thread t = new Thread(() -> {
+                List<Long> mios = new ArrayList<>();
+                try { largada.await(); } catch (InterruptedException e) { return; }
+                ThreadLocalRandom rnd = ThreadLocalRandom.current();
+                for (int i = 0; i < operaciones; i++) {
+                    // 1 de cada 3 veces devuelve uno propio (si tiene), el resto presta
+                    boolean devuelve = !mios.isEmpty() && rnd.nextInt(3) == 0;
+                    try {
+                        if (devuelve) {
+                            dao.devolver(mios.get(mios.size() - 1));
+                            mios.remove(mios.size() - 1);
+                            devueltos.increment();
+                        } else {
+                            mios.add(dao.prestar(prestamo(1 + rnd.nextInt(2))));
+                            prestados.increment();
+                        }
+                        if (stockActual() < 0) stockNegativoVisto.increment();
+                    } catch (PrestamoRechazadoException e) {
+                        sinStock.increment();
+                    } catch (RuntimeException e) {
+                        errores.increment();
+                        // Informado como fallido: no debería haber quedado devuelto
+                        if (devuelve) {
+                            erroresDevolviendo.increment();
+                            mios.remove(mios.size() - 1);
+                        }
+                    }
+                }
+            }, "stress-" + h);
+            ts.add(t);
+            t.start();
+        }
+
+        AtomicBoolean corriendo = new AtomicBoolean(true);
+        Thread bloqueador = new Thread(() -> bloquear(bloqueos, corriendo), "bloqueador");
+
+        long t0 = System.nanoTime();
+        largada.countDown();
+        bloqueador.start();
+        for (Thread t : ts) t.join();
+        corriendo.set(false);
+        bloqueador.join();
+        double seg = (System.nanoTime() - t0) / 1e9;
+        AuditoriaWriter.global().flush();
+
+        int stockFinal = stockActual();
+        int abiertos = cantidadAbierta();
+        int contador = new JdbcLibroDAO().leerPorCodigo(LIBRO).getEjemplaresPrestados();
+        List<String> contadoresMal = new JdbcLibroDAO().verificarContadores();
+        long total = prestados.sum() + devueltos.sum() + sinStock.sum() + errores.sum();
+        long filasPrestamo = contar("SELECT COUNT(*) FROM prestamo WHERE destinatario='Stress'");
+        long filasDevueltas = contar("SELECT COUNT(*) FROM prestamo WHERE destinatario='Stress' AND estado='DEVUELTO'");
+        long filasAuditoria = contar("SELECT COUNT(*) FROM auditoria WHERE destinatario='Stress'"
+                + " AND tipo IN ('PRESTAR','DEVOLVER')");
+        AuditoriaStats auditoria = AuditoriaWriter.global().estadisticas();
+        long descartadas = auditoria.getDescartados() + auditoria.getFallidos();
+
+        System.out.printf("hilos=%d operaciones=%d stockInicial=%d transaccion=%s%n",
+                hilos, total, stockInicial, System.getProperty("biblioteca.db.transaccion", "immediate"));
+        System.out.printf("prestados=%d devueltos=%d rechazados=%d errores=%d%n",
+                prestados.sum(), devueltos.sum(), sinStock.sum(), errores.sum());
+        System.out.printf("duración=%.2fs  throughput=%.0f ops/s%n", seg, total / seg);
+        System.out.printf("stockFinal=%d  abiertos=%d  stockInicial-abiertos=%d  contador=%d%n",
+                stockFinal, abiertos, stockInicial - abiertos, contador);
+        System.out.printf("filas: prestamo=%d devueltas=%d auditoría=%d (+%d descartadas/fallidas) auditoría=%s bloqueos=%d%n",
+                filasPrestamo, filasDevueltas, filasAuditoria, descartadas,
+                AuditoriaWriter.global().getModo(), bloqueos);
+
+        boolean cuadra = filasPrestamo == prestados.sum()
+                && filasDevueltas == devueltos.sum()
+                && filasAuditoria + descartadas == prestados.sum() + devueltos.sum();
+        if (!cuadra) {
+            System.out.printf("informados: prestados=%d devueltos=%d (errores devolviendo=%d)%n",
+                    prestados.sum(), devueltos.sum(), erroresDevolviendo.sum());
+        }
+
+        boolean ok = stockFinal >= 0
+                && stockNegativoVisto.sum() == 0
+                && stockFinal == stockInicial - abiertos
+                && contador == abiertos
+                && contadoresMal.isEmpty()
+                && cuadra;
+        System.out.println(ok ? "OK: el stock nunca fue negativo y cuadra con los préstamos abiertos, los contadores"
+                                + " y las operaciones informadas"
+                              : "FALLA: inconsistencia de stock, contadores u operaciones informadas " + contadoresMal);
+        ConnectionFactory.cerrarPool();
+        System.exit(ok ? 0 : 1);
+    }
+
+    /**
+     * Toma el lock de escritura {@code veces} veces (o hasta que terminen los hilos) y lo retiene
+     * un poco más que busy_timeout cada vez.
+     */
+    private static void bloquear(int veces, AtomicBoolean corriendo) {
+        long retencionMs = ConnectionFactory.perfil().getBusyTimeoutMs() + 200L;
+        for (int i = 0; i < veces && corriendo.get(); i++) {
+            try (Connection cn = ConnectionFactory.getConnection()) {
+                Transacciones.iniciar(cn);
+                Thread.sleep(retencionMs);
+                Transacciones.confirmar(cn);
+            } catch (SQLException e) {
+                i--;                                 // no consiguió el lock: reintentar
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private static long contar(String sql) throws SQLException {
+        try (Connection cn = ConnectionFactory.getConnection();
+             PreparedStatement ps = cn.prepareStatement(sql);
+             ResultSet rs = ps.executeQuery()) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+
+    private static Prestamo prestamo(int cantidad) {
+        Prestamo p = new Prestamo();
+        p.setLibroCodigo(LIBRO);
+        p.setOperadorUsername("admin");
+        p.setDestinatario("Stress");
+        p.setCantidad(cantidad);
+        p.setFechaPrestamo(LocalDateTime.now());
+        p.setFechaVencimiento(LocalDate.now().plusDays(7));
+        p.setEstado(EstadoPrestamo.ABIERTO);
+        return p;
+    }
+
+    private static void fijarStock(int stock) throws SQLException {
+        try (Connection cn = ConnectionFactory.getConnection();
+             PreparedStatement ps = cn.prepareStatement("UPDATE libro SET stock=? WHERE codigo=?")) {
+            ps.setInt(1, stock);
+            ps.setString(2, LIBRO);
+            ps.executeUpdate();
+        }
+    }
+
+    private static int stockActual() {
+        return new JdbcLibroDAO().leerPorCodigo(LIBRO).getStock();
+    }
+
+    private static int cantidadAbierta() throws SQLException {
+        try (Connection cn = ConnectionFactory.getConnection();
+             PreparedStatement ps = cn.prepareStatement(
+                     "SELECT COALESCE(SUM(cantidad),0) FROM prestamo WHERE libro_codigo=? AND estado='ABIERTO'")) {
+            ps.setString(1, LIBRO);
+            try (ResultSet rs = ps.executeQuery()) { rs.next(); return rs.getInt(1); }
+        }
+    }
+}
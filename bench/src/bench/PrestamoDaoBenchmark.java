@@ -0,0 +1,169 @@
+package bench;
+
+/**
+ * @author Federico Gabriel Arena
+ * @author Fabrizio Manuel Mansilla
+ */
+
+import dao.FiltroAuditoria;
+import dao.JdbcAuditoriaDao;
+import dao.JdbcPrestamoDAO;
+import model.EstadoPrestamo;
+import model.Prestamo;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * PrestamoDaoBenchmark
+ * --------------------
+ * Escrituras y consultas de préstamos con {@link JdbcPrestamoDAO} (y la auditoría reciente).
+ *
+ * Casos:
+ *   - prestar          : alta de un préstamo sobre un libro al azar (stock sobra).
+ *   - devolver         : devolución de un préstamo creado en el @Setup de cada invocación
+ *                        (el alta no se mide).
+ *   - renovar          : +1 día sobre un préstamo ABIERTO sembrado al azar.
+ *   - prestarLote      : {@link #LOTE} préstamos en una transacción (resultado por préstamo, para
+ *                        comparar directamente con {@code prestar}).
+ *   - devolverLote     : {@link #LOTE} devoluciones en una transacción (alta en el @Setup).
+ *   - abiertosTodos    : {@code abiertos("")}, ~escala/10 filas.
+ *   - abiertosFiltro   : {@code abiertos("Destinatario 7")}.
+ *   - historicoMes     : {@code historico(hoy-30, hoy, "")}.
+ *   - auditoriaRecientes: {@code listarRecientes(100)}.
+ *   - auditoriaPorLibro : {@code buscar(libro al azar, últimos 90 días)}, primera página de 100.
+ *
+ * Las escrituras hacen crecer la base durante la corrida; el efecto es despreciable frente a la
+ * escala sembrada, pero conviene comparar siempre con la misma duración de medición.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 3)
+@Fork(1)
+public class PrestamoDaoBenchmark {
+
+    /** Cantidad de libros (y de préstamos) sembrados. */
+    @Param({"10000"})
+    public int escala;
+
+    private JdbcPrestamoDAO dao;
+    private JdbcAuditoriaDao auditoriaDao;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        BaseDatosBench.preparar(null, escala, escala);
+        dao = new JdbcPrestamoDAO();
+        auditoriaDao = new JdbcAuditoriaDao();
+    }
+
+    /** Ítems por operación en los benchmarks de lote. */
+    public static final int LOTE = 100;
+
+    /** Préstamo recién creado para el benchmark de devolución (una por invocación). */
+    @State(Scope.Thread)
+    public static class PrestamoAbierto {
+        long id;
+
+        @Setup(Level.Invocation)
+        public void crear(PrestamoDaoBenchmark b) {
+            id = b.dao.prestar(nuevoPrestamo(b.escala));
+        }
+    }
+
+    /** Préstamos recién creados para el benchmark de devolución en lote. */
+    @State(Scope.Thread)
+    public static class LoteAbierto {
+        List<Long> ids;
+
+        @Setup(Level.Invocation)
+        public void crear(PrestamoDaoBenchmark b) {
+            ids = new ArrayList<>(LOTE);
+            for (var it : b.dao.prestarLote(nuevoLote(b.escala), false).getItems()) ids.add(it.getId());
+        }
+    }
+
+    @Benchmark
+    public long prestar() {
+        return dao.prestar(nuevoPrestamo(escala));
+    }
+
+    @Benchmark
+    public void devolver(PrestamoAbierto p) {
+        dao.devolver(p.id);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LOTE)
+    public Object prestarLote() {
+        return dao.prestarLote(nuevoLote(escala), false);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LOTE)
+    public Object devolverLote(LoteAbierto l) {
+        return dao.devolverLote(l.ids, false);
+    }
+
+    @Benchmark
+    public void renovar() {
+        // Ids ABIERTO sembrados: 1, 1+CADA_ABIERTO, 1+2*CADA_ABIERTO, ...
+        int abiertos = Math.max(1, escala / BaseDatosBench.CADA_ABIERTO);
+        long id = 1L + (long) ThreadLocalRandom.current().nextInt(abiertos) * BaseDatosBench.CADA_ABIERTO;
+        dao.renovar(id, 1);
+    }
+
+    @Benchmark
+    public void abiertosTodos(Blackhole bh) {
+        bh.consume(dao.abiertos(""));
+    }
+
+    @Benchmark
+    public void abiertosFiltro(Blackhole bh) {
+        bh.consume(dao.abiertos("Destinatario 7"));
+    }
+
+    @Benchmark
+    public void historicoMes(Blackhole bh) {
+        LocalDate hoy = LocalDate.now();
+        bh.consume(dao.historico(hoy.minusDays(30), hoy, ""));
+    }
+
+    @Benchmark
+    public void auditoriaRecientes(Blackhole bh) {
+        bh.consume(auditoriaDao.listarRecientes(100));
+    }
+
+    @Benchmark
+    public void auditoriaPorLibro(Blackhole bh) {
+        String libro = BaseDatosBench.codigo(ThreadLocalRandom.current().nextInt(escala));
+        FiltroAuditoria f = FiltroAuditoria.todos().conLibro(libro)
+                .conRango(LocalDateTime.now().minusDays(90), null);
+        bh.consume(auditoriaDao.buscar(f, null, 100));
+    }
+
+    private static List<Prestamo> nuevoLote(int libros) {
+        List<Prestamo> lote = new ArrayList<>(LOTE);
+        for (int i = 0; i < LOTE; i++) lote.add(nuevoPrestamo(libros));
+        return lote;
+    }
+
+    private static Prestamo nuevoPrestamo(int libros) {
+        Prestamo p = new Prestamo();
+        p.setLibroCodigo(BaseDatosBench.codigo(ThreadLocalRandom.current().nextInt(libros)));
+        p.setOperadorUsername("admin");
+        p.setDestinatario("Bench");
+        p.setCantidad(1);
+        p.setFechaPrestamo(LocalDateTime.now());
+        p.setFechaVencimiento(LocalDate.now().plusDays(7));
+        p.setEstado(EstadoPrestamo.ABIERTO);
+        return p;
+    }
+}
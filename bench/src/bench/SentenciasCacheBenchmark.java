@@ -0,0 +1,90 @@
+package bench;
+
+/**
+ * @author Federico Gabriel Arena
+ * @author Fabrizio Manuel Mansilla
+ */
+
+import dao.JdbcLibroDAO;
+import dao.JdbcPrestamoDAO;
+import db.ConnectionFactory;
+import db.PoolStats;
+import model.EstadoPrestamo;
+import model.Prestamo;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SentenciasCacheBenchmark
+ * ------------------------
+ * Rutas calientes de DAO con y sin la cache de sentencias preparadas del pool
+ * ({@code biblioteca.pool.sentencias}).
+ *
+ * Casos:
+ *   - leerPorCodigo : búsqueda por PK de un libro al azar (una sentencia; la compilación pesa).
+ *   - prestar       : alta de préstamo (varias sentencias en una transacción con fsync).
+ *
+ * Cada valor de {@code sentencias} corre en su propio fork (la propiedad se lee al cargar
+ * {@link ConnectionFactory}). Al final de cada corrida se imprime la tasa de aciertos del pool.
+ *
+ * Ejecución:
+ *   java -cp ... org.openjdk.jmh.Main SentenciasCacheBenchmark -p sentencias=0,64
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 3)
+@Fork(1)
+public class SentenciasCacheBenchmark {
+
+    /** Sentencias cacheadas por conexión (0 = cache desactivada). */
+    @Param({"0", "64"})
+    public int sentencias;
+
+    @Param({"10000"})
+    public int escala;
+
+    private JdbcLibroDAO libroDao;
+    private JdbcPrestamoDAO prestamoDao;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        System.setProperty("biblioteca.pool.sentencias", String.valueOf(sentencias));
+        BaseDatosBench.preparar(null, escala, escala);
+        libroDao = new JdbcLibroDAO();
+        prestamoDao = new JdbcPrestamoDAO();
+    }
+
+    @TearDown(Level.Trial)
+    public void informe() {
+        PoolStats s = ConnectionFactory.poolStats();
+        System.out.printf("%n[sentencias=%d] aciertos=%d fallos=%d desalojadas=%d tasa=%.4f%n", sentencias,
+                s.getSentenciasAciertos(), s.getSentenciasFallos(), s.getSentenciasDesalojadas(),
+                s.getTasaAciertosSentencias());
+    }
+
+    @Benchmark
+    public void leerPorCodigo(Blackhole bh) {
+        int i = ThreadLocalRandom.current().nextInt(escala);
+        bh.consume(libroDao.leerPorCodigo(BaseDatosBench.codigo(i)));
+    }
+
+    @Benchmark
+    public long prestar() {
+        Prestamo p = new Prestamo();
+        p.setLibroCodigo(BaseDatosBench.codigo(ThreadLocalRandom.current().nextInt(escala)));
+        p.setOperadorUsername("admin");
+        p.setDestinatario("Bench");
+        p.setCantidad(1);
+        p.setFechaPrestamo(LocalDateTime.now());
+        p.setFechaVencimiento(LocalDate.now().plusDays(7));
+        p.setEstado(EstadoPrestamo.ABIERTO);
+        return prestamoDao.prestar(p);
+    }
+}
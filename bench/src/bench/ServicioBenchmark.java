@@ -0,0 +1,53 @@
+package bench;
+
+/**
+ * @author Federico Gabriel Arena
+ * @author Fabrizio Manuel Mansilla
+ */
+
+import dao.JdbcUsuarioDAO;
+import org.openjdk.jmh.annotations.*;
+import service.AuthServiceImpl;
+import util.HashUtil;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ServicioBenchmark
+ * -----------------
+ * Caminos de servicio sin volumen de datos: login (lectura de usuario + verificación del hash)
+ * y el hash en sí, para separar el costo de la base del costo criptográfico.
+ *
+ * Casos:
+ *   - login       : {@code AuthServiceImpl.login("admin", "admin123")} contra la base sembrada (PBKDF2 con las
+ *                   iteraciones de {@code PasswordHasher.global()}; el primer login convierte el hash del seed).
+ *   - sha256Hex   : {@code HashUtil.sha256Hex(salt, password)} en memoria.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 3)
+@Fork(1)
+public class ServicioBenchmark {
+
+    private AuthServiceImpl auth;
+    private String salt;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        BaseDatosBench.preparar(null, 0);
+        auth = new AuthServiceImpl(new JdbcUsuarioDAO());
+        salt = HashUtil.newSaltHex(16);
+    }
+
+    @Benchmark
+    public Object login() {
+        return auth.login("admin", "admin123");
+    }
+
+    @Benchmark
+    public String sha256Hex() {
+        return HashUtil.sha256Hex(salt, "admin123");
+    }
+}
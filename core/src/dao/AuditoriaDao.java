@@ -6,7 +6,10 @@ package dao;
  */
 
 import model.Auditoria;
+
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * AuditoriaDao
@@ -38,4 +41,45 @@ public interface AuditoriaDao {
      *    para no “ensuciar” la firma del DAO con checked exceptions.
      */
     List<Auditoria> listarRecientes(int limit);
+
+    /**
+     * Búsqueda filtrada y paginada por clave, del evento más reciente al más antiguo
+     * (orden {@code ts DESC, id DESC}).
+     *
+     * @param filtro  criterios (operador, tipo, libro, préstamo, rango); {@code null} = sin filtro.
+     * @param despues cursor de la página anterior, o {@code null} para la primera.
+     * @param tamanio cantidad máxima de eventos (se normaliza con {@link Pagina#normalizarTamanio}).
+     * @return página con el cursor para continuar.
+     * @throws RuntimeException si falla el acceso a datos.
+     */
+    Pagina<Auditoria> buscar(FiltroAuditoria filtro, CursorPagina despues, int tamanio);
+
+    /**
+     * @return id del último evento grabado (0 si no hay ninguno). Punto de partida de
+     *         {@link #posteriores} para seguir los cambios "desde ahora".
+     */
+    long ultimoId();
+
+    /**
+     * Eventos con id mayor al dado, en orden de id (el orden en que se confirmaron: las escrituras
+     * se serializan y el id es AUTOINCREMENT). Es el "feed de cambios" de la base: todo préstamo,
+     * devolución o renovación deja un evento con su prestamo_id.
+     *
+     * @param despuesDeId último id ya procesado.
+     * @param limite      máximo de eventos a devolver.
+     * @return eventos nuevos (vacío si no hay).
+     */
+    List<Auditoria> posteriores(long despuesDeId, int limite);
+
+    /**
+     * Recorre los eventos de un período en orden cronológico (ts, id ascendentes) sin
+     * materializarlos: cada evento se entrega al consumidor a medida que se lee.
+     *
+     * @param desde   instante mínimo (inclusive) o {@code null} para sin límite.
+     * @param hasta   instante máximo (exclusive) o {@code null} para sin límite.
+     * @param destino recibe cada evento; no debe guardar referencias.
+     * @return cantidad de eventos entregados.
+     * @throws RuntimeException si falla la consulta o el consumidor.
+     */
+    long recorrer(LocalDateTime desde, LocalDateTime hasta, Consumer<? super Auditoria> destino);
 }
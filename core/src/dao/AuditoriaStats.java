@@ -0,0 +1,64 @@
+package dao;
+
+/**
+ * @author Federico Gabriel Arena
+ * @author Fabrizio Manuel Mansilla
+ */
+
+/**
+ * AuditoriaStats
+ * --------------
+ * Foto inmutable de las métricas del {@link AuditoriaWriter}.
+ *
+ * ¿Qué mide?
+ *   - Estado actual: modo, profundidad de la cola y su capacidad.
+ *   - Acumulados: eventos encolados, escritos, descartados (cola llena o writer cerrado),
+ *     fallidos (error al grabar el lote), cantidad de lotes y el lote más grande.
+ */
+public final class AuditoriaStats {
+
+    private final ModoAuditoria modo;
+    private final int enCola;
+    private final int capacidad;
+    private final long encolados;
+    private final long escritos;
+    private final long descartados;
+    private final long fallidos;
+    private final long lotes;
+    private final int loteMax;
+
+    AuditoriaStats(ModoAuditoria modo, int enCola, int capacidad, long encolados, long escritos,
+                   long descartados, long fallidos, long lotes, int loteMax) {
+        this.modo = modo;
+        this.enCola = enCola;
+        this.capacidad = capacidad;
+        this.encolados = encolados;
+        this.escritos = escritos;
+        this.descartados = descartados;
+        this.fallidos = fallidos;
+        this.lotes = lotes;
+        this.loteMax = loteMax;
+    }
+
+    public ModoAuditoria getModo() { return modo; }
+    public int getEnCola() { return enCola; }
+    public int getCapacidad() { return capacidad; }
+    public long getEncolados() { return encolados; }
+    public long getEscritos() { return escritos; }
+    public long getDescartados() { return descartados; }
+    public long getFallidos() { return fallidos; }
+    public long getLotes() { return lotes; }
+    public int getLoteMax() { return loteMax; }
+
+    /** @return tamaño promedio de lote (0 si todavía no hubo lotes). */
+    public double getLotePromedio() { return lotes == 0 ? 0 : (double) escritos / lotes; }
+
+    @Override
+    public String toString() {
+        return String.format(
+                "AuditoriaStats{modo=%s, cola=%d/%d, encolados=%d, escritos=%d, descartados=%d, " +
+                "fallidos=%d, lotes=%d, lotePromedio=%.1f, loteMax=%d}",
+                modo, enCola, capacidad, encolados, escritos, descartados, fallidos,
+                lotes, getLotePromedio(), loteMax);
+    }
+}
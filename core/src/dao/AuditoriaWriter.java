@@ -0,0 +1,400 @@
+package dao;
+
+/**
+ * @author Federico Gabriel Arena
+ * @author Fabrizio Manuel Mansilla
+ */
+
+import db.ConnectionFactory;
+import db.FormatoFechas;
+import db.Transacciones;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * AuditoriaWriter
+ * ---------------
+ * Canal de escritura de los eventos de auditoría de préstamos (PRESTAR, DEVOLVER, RENOVAR).
+ *
+ * ¿Qué hace?
+ *  - En modo {@link ModoAuditoria#SINCRONA} graba el evento dentro de la transacción del préstamo
+ *    (comportamiento histórico).
+ *  - En los modos GRUPAL y DESCARTABLE el evento se encola (cola acotada) DESPUÉS del commit y un
+ *    hilo de fondo lo graba en lotes: un único INSERT multi-fila por transacción. Así la
+ *    transacción del préstamo es más corta y muchas auditorías comparten un solo fsync.
+ *
+ * Uso desde un DAO:
+ * <pre>
+ *   try (Connection cn = ConnectionFactory.getConnection()) {
+ *       ...
+ *       ev = AuditoriaWriter.evento(...);
+ *       auditoria.registrar(cn, ev);   // dentro de la transacción (solo escribe si es SINCRONA)
+ *       Transacciones.confirmar(cn);
+ *   }
+ *   auditoria.publicar(ev);            // después del commit y con la conexión devuelta al pool
+ * </pre>
+ *
+ * Decisiones:
+ *  - Se encola después del commit: si el préstamo hace rollback no queda auditoría huérfana, y la
+ *    FK a prestamo siempre encuentra la fila.
+ *  - Se publica sin retener una conexión: en GRUPAL quien publica espera al hilo de fondo, que toma
+ *    conexiones del mismo pool. Con el pool lleno de productores esperando, el hilo no conseguía
+ *    conexión para grabar (cada intento agotaba la espera del pool).
+ *  - El hilo junta eventos durante {@code intervaloMs} (o hasta {@code loteMax}) y graba el lote.
+ *  - Si un lote falla, se reintenta fila por fila para no perder el lote entero por un evento malo.
+ *    Un fallo se loguea y se cuenta; nunca se propaga al préstamo (que ya está confirmado).
+ *  - Al cerrar (o en el shutdown hook de {@link #global()}) se vacía la cola antes de salir. Lo que
+ *    se encole después lo graba directo quien lo encoló.
+ *
+ * Configuración de {@link #global()} (propiedades de sistema, todas opcionales):
+ *   biblioteca.auditoria.modo         sincrona | grupal | descartable   (default sincrona)
+ *   biblioteca.auditoria.capacidad    tamaño de la cola                  (default 8192)
+ *   biblioteca.auditoria.lote         eventos máximos por lote           (default 256)
+ *   biblioteca.auditoria.intervaloMs  ventana de agrupamiento            (default 10)
+ *
+ * Colabora con:
+ *  - {@link JdbcPrestamoDAO} (productor) y {@link ConnectionFactory} (conexiones del hilo de fondo).
+ */
+public final class AuditoriaWriter {
+
+    private static final String INSERT_SQL =
+            "INSERT INTO auditoria (ts, operador_username, tipo, libro_codigo, prestamo_id, cantidad, destinatario, detalle) VALUES ";
+    /** Fila de VALUES; el ts va en el formato de {@link FormatoFechas} (1 o 3 parámetros). */
+    private static final String FILA_SQL = "(%s,?,?,?,?,?,?,?)";
+    /** Hasta 10 parámetros por fila: 500 filas = 5000 parámetros por sentencia. */
+    private static final int FILAS_POR_INSERT = 500;
+
+    private static volatile AuditoriaWriter GLOBAL;
+
+    private final ModoAuditoria modo;
+    private final int capacidad;
+    private final int loteMax;
+    private final long intervaloNs;
+    private final BlockingQueue<Evento> cola;
+    private final Thread hilo;
+    private volatile boolean cerrado = false;
+
+    // ---- Métricas ----
+    private final AtomicLong encolados = new AtomicLong();
+    private final AtomicLong escritos = new AtomicLong();
+    private final AtomicLong descartados = new AtomicLong();
+    private final AtomicLong fallidos = new AtomicLong();
+    private final AtomicLong lotes = new AtomicLong();
+    private volatile int loteMayor = 0;
+
+    /**
+     * @param modo        durabilidad.
+     * @param capacidad   tamaño de la cola (eventos pendientes de grabar).
+     * @param loteMax     eventos máximos por INSERT.
+     * @param intervaloMs tiempo máximo que se espera para juntar un lote.
+     */
+    public AuditoriaWriter(ModoAuditoria modo, int capacidad, int loteMax, long intervaloMs) {
+        if (capacidad <= 0 || loteMax <= 0 || intervaloMs < 0)
+            throw new IllegalArgumentException("Configuración de auditoría inválida");
+        this.modo = modo;
+        this.capacidad = capacidad;
+        this.loteMax = loteMax;
+        this.intervaloNs = TimeUnit.MILLISECONDS.toNanos(intervaloMs);
+        if (modo == ModoAuditoria.SINCRONA) {
+            this.cola = null;
+            this.hilo = null;
+        } else {
+            this.cola = new ArrayBlockingQueue<>(capacidad);
+            this.hilo = new Thread(this::bucle, "auditoria-writer");
+            this.hilo.setDaemon(true);
+            this.hilo.start();
+        }
+    }
+
+    /**
+     * Instancia compartida, configurada con las propiedades {@code biblioteca.auditoria.*}.
+     * Registra un shutdown hook que vacía la cola al terminar la JVM.
+     */
+    public static AuditoriaWriter global() {
+        AuditoriaWriter w = GLOBAL;
+        if (w != null) return w;
+        synchronized (AuditoriaWriter.class) {
+            if (GLOBAL == null) {
+                GLOBAL = new AuditoriaWriter(
+                        ModoAuditoria.porNombre(System.getProperty("biblioteca.auditoria.modo")),
+                        Integer.getInteger("biblioteca.auditoria.capacidad", 8192),
+                        Integer.getInteger("biblioteca.auditoria.lote", 256),
+                        Integer.getInteger("biblioteca.auditoria.intervaloMs", 10));
+                if (GLOBAL.modo != ModoAuditoria.SINCRONA) {
+                    Runtime.getRuntime().addShutdownHook(new Thread(GLOBAL::cerrar, "auditoria-flush"));
+                }
+            }
+            return GLOBAL;
+        }
+    }
+
+    public ModoAuditoria getModo() { return modo; }
+
+    // ===================== Evento =====================
+
+    /**
+     * Evento de auditoría listo para grabar. El timestamp se toma al crearlo (dentro de la
+     * operación), no al grabarlo, para que el orden por {@code ts} refleje el real.
+     */
+    static final class Evento {
+        final LocalDateTime ts;
+        final String operador, tipo, libro, destinatario, detalle;
+        final Long prestamoId;
+        final Integer cantidad;
+        /** Solo en modo GRUPAL o en marcas de flush: se completa cuando el lote está grabado. */
+        CompletableFuture<Void> listo;
+
+        private Evento(LocalDateTime ts, String operador, String tipo, String libro, Long prestamoId,
+                       Integer cantidad, String destinatario, String detalle) {
+            this.ts = ts;
+            this.operador = operador;
+            this.tipo = tipo;
+            this.libro = libro;
+            this.prestamoId = prestamoId;
+            this.cantidad = cantidad;
+            this.destinatario = destinatario;
+            this.detalle = detalle;
+        }
+
+        /** Marca interna de {@link #flush()}: no se graba, solo se completa. */
+        boolean esMarca() { return tipo == null; }
+    }
+
+    /** Crea un evento con timestamp actual. */
+    static Evento evento(String operador, String tipo, String libro, Long prestamoId,
+                         Integer cantidad, String destinatario, String detalle) {
+        return new Evento(LocalDateTime.now(), operador, tipo, libro, prestamoId,
+                cantidad, destinatario, detalle);
+    }
+
+    // ===================== Productor =====================
+
+    /**
+     * Dentro de la transacción del préstamo: en modo SINCRONA graba el evento con la misma
+     * conexión; en los demás modos no hace nada (ver {@link #publicar}).
+     */
+    void registrar(Connection cn, Evento ev) throws SQLException {
+        registrar(cn, List.of(ev));
+    }
+
+    /** Variante para operaciones en lote: un INSERT multi-fila para todos los eventos. */
+    void registrar(Connection cn, List<Evento> eventos) throws SQLException {
+        if (modo != ModoAuditoria.SINCRONA || eventos.isEmpty()) return;
+        insertar(cn, eventos);
+        escritos.addAndGet(eventos.size());
+    }
+
+    /**
+     * Después del commit: en los modos asíncronos encola el evento. En GRUPAL espera a que su
+     * lote esté grabado; en DESCARTABLE vuelve enseguida (y descarta si la cola está llena).
+     */
+    void publicar(Evento ev) {
+        publicar(List.of(ev));
+    }
+
+    /** Variante para operaciones en lote: encola todos y (en GRUPAL) espera a que estén grabados. */
+    void publicar(List<Evento> eventos) {
+        if (modo == ModoAuditoria.SINCRONA || eventos.isEmpty()) return;
+        if (cerrado) {                       // sin hilo de fondo: grabar directo
+            eventos.forEach(this::grabarDirecto);
+            return;
+        }
+        if (modo == ModoAuditoria.DESCARTABLE) {
+            for (Evento ev : eventos) {
+                if (cola.offer(ev)) encolados.incrementAndGet();
+                else descartados.incrementAndGet();
+            }
+            if (cerrado) vaciar();
+            return;
+        }
+        // GRUPAL: contrapresión si la cola está llena, y esperar a que todos estén grabados
+        try {
+            for (Evento ev : eventos) {
+                ev.listo = new CompletableFuture<>();
+                cola.put(ev);
+                encolados.incrementAndGet();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            for (Evento ev : eventos) if (ev.listo == null) descartados.incrementAndGet();
+        }
+        // Si se cerró mientras se encolaba, puede que ya nadie consuma la cola
+        if (cerrado) vaciar();
+        for (Evento ev : eventos) if (ev.listo != null) ev.listo.join();
+    }
+
+    // ===================== Control =====================
+
+    /** Espera a que todo lo encolado hasta ahora esté grabado. No-op en modo SINCRONA. */
+    public void flush() {
+        if (modo == ModoAuditoria.SINCRONA || cerrado) return;
+        Evento marca = new Evento(null, null, null, null, null, null, null, null);
+        marca.listo = new CompletableFuture<>();
+        try {
+            cola.put(marca);
+            if (cerrado) vaciar();
+            marca.listo.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /** Deja de aceptar eventos en la cola, graba lo pendiente y termina el hilo de fondo. */
+    public void cerrar() {
+        if (hilo == null || cerrado) return;
+        cerrado = true;
+        try {
+            hilo.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // Lo que haya entrado justo mientras se cerraba: grabar directo
+        vaciar();
+    }
+
+    /**
+     * Graba directo lo que quede en la cola y avisa a quienes esperan. Tras {@link #cerrar()} el hilo
+     * de fondo ya no consume: quien encola y después ve {@code cerrado} vacía la cola él mismo, así
+     * un evento que entró después del vaciado de {@code cerrar()} no deja a nadie esperando para siempre.
+     */
+    private void vaciar() {
+        for (Evento ev; (ev = cola.poll()) != null; ) {
+            try {
+                if (!ev.esMarca()) grabarDirecto(ev);
+            } finally {
+                if (ev.listo != null) ev.listo.complete(null);
+            }
+        }
+    }
+
+    /** @return foto de las métricas actuales. */
+    public AuditoriaStats estadisticas() {
+        return new AuditoriaStats(modo, cola == null ? 0 : cola.size(), cola == null ? 0 : capacidad,
+                encolados.get(), escritos.get(), descartados.get(), fallidos.get(),
+                lotes.get(), loteMayor);
+    }
+
+    // ===================== Hilo de fondo =====================
+
+    private void bucle() {
+        List<Evento> lote = new ArrayList<>(loteMax);
+        while (true) {
+            try {
+                // 1) Esperar el primer evento del lote
+                Evento primero = cola.poll(100, TimeUnit.MILLISECONDS);
+                if (primero == null) {
+                    if (cerrado && cola.isEmpty()) return;
+                    continue;
+                }
+                lote.add(primero);
+
+                // 2) Juntar más eventos hasta llenar el lote o vencer el intervalo
+                long limite = System.nanoTime() + intervaloNs;
+                while (lote.size() < loteMax) {
+                    long resta = limite - System.nanoTime();
+                    Evento ev = resta > 0 ? cola.poll(resta, TimeUnit.NANOSECONDS) : cola.poll();
+                    if (ev == null) break;
+                    lote.add(ev);
+                }
+
+                // 3) Grabar y avisar a quienes esperan
+                grabar(lote);
+            } catch (InterruptedException e) {
+                if (cerrado) return;
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            } finally {
+                for (Evento ev : lote) if (ev.listo != null) ev.listo.complete(null);
+                lote.clear();
+            }
+        }
+    }
+
+    /** Graba un lote en una transacción; si falla, reintenta evento por evento. */
+    private void grabar(List<Evento> lote) {
+        List<Evento> reales = new ArrayList<>(lote.size());
+        for (Evento ev : lote) if (!ev.esMarca()) reales.add(ev);
+        if (reales.isEmpty()) return;
+
+        try (Connection cn = ConnectionFactory.getConnection()) {
+            try {
+                Transacciones.iniciar(cn);     // un BUSY acá es un lote fallido, no falta de conexión
+                insertar(cn, reales);
+                Transacciones.confirmar(cn);
+                escritos.addAndGet(reales.size());
+                lotes.incrementAndGet();
+                if (reales.size() > loteMayor) loteMayor = reales.size();
+                return;
+            } catch (SQLException ex) {
+                Transacciones.deshacer(cn, ex);
+                System.err.println("[AuditoriaWriter] Falló un lote de " + reales.size()
+                        + ", reintentando de a uno: " + ex.getMessage());
+            }
+        } catch (SQLException e) {
+            System.err.println("[AuditoriaWriter] Sin conexión para grabar el lote: " + e.getMessage());
+        }
+        reales.forEach(this::grabarDirecto);
+    }
+
+    /** Graba un único evento en su propia transacción (reintentos y post-cierre). */
+    private void grabarDirecto(Evento ev) {
+        try (Connection cn = ConnectionFactory.getConnection()) {
+            Transacciones.iniciar(cn);
+            try {
+                insertar(cn, List.of(ev));
+                Transacciones.confirmar(cn);
+            } catch (SQLException ex) {
+                Transacciones.deshacer(cn, ex);
+                throw ex;
+            }
+            escritos.incrementAndGet();
+        } catch (SQLException e) {
+            fallidos.incrementAndGet();
+            System.err.println("[AuditoriaWriter] No se pudo grabar " + ev.tipo
+                    + " (préstamo " + ev.prestamoId + "): " + e.getMessage());
+        }
+    }
+
+    /**
+     * INSERT multi-fila: un statement cada {@link #FILAS_POR_INSERT} eventos (lo justo para no pasar
+     * el límite de parámetros por sentencia de SQLite).
+     */
+    private static void insertar(Connection cn, List<Evento> eventos) throws SQLException {
+        FormatoFechas f = FormatoFechas.paraEscribir(cn);   // siempre dentro de una transacción
+        for (int desde = 0; desde < eventos.size(); desde += FILAS_POR_INSERT) {
+            insertarTramo(cn, f, eventos.subList(desde, Math.min(eventos.size(), desde + FILAS_POR_INSERT)));
+        }
+    }
+
+    private static void insertarTramo(Connection cn, FormatoFechas f, List<Evento> eventos) throws SQLException {
+        String fila = FILA_SQL.formatted(f.param(FormatoFechas.Columna.AUDITORIA_TS));
+        StringBuilder sql = new StringBuilder(INSERT_SQL);
+        for (int i = 0; i < eventos.size(); i++) sql.append(i == 0 ? "" : ",").append(fila);
+
+        try (PreparedStatement ps = cn.prepareStatement(sql.toString())) {
+            int i = 1;
+            for (Evento ev : eventos) {
+                i = f.bind(ps, i, FormatoFechas.Columna.AUDITORIA_TS, ev.ts);
+                ps.setString(i++, ev.operador);
+                ps.setString(i++, ev.tipo);
+                ps.setString(i++, ev.libro);
+                if (ev.prestamoId == null) ps.setNull(i++, Types.INTEGER); else ps.setLong(i++, ev.prestamoId);
+                if (ev.cantidad   == null) ps.setNull(i++, Types.INTEGER); else ps.setInt(i++, ev.cantidad);
+                ps.setString(i++, ev.destinatario);
+                ps.setString(i++, ev.detalle);
+            }
+            ps.executeUpdate();
+        }
+    }
+}
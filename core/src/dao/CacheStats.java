@@ -0,0 +1,61 @@
+package dao;
+
+/**
+ * @author Federico Gabriel Arena
+ * @author Fabrizio Manuel Mansilla
+ */
+
+/**
+ * CacheStats
+ * ----------
+ * Foto inmutable de las métricas de {@link LibroCache}.
+ *
+ * ¿Qué mide?
+ *   - Estado actual: entradas y capacidad máxima.
+ *   - Acumulados: aciertos, fallos, desalojos por tamaño (LRU), vencimientos por TTL e
+ *     invalidaciones por escritura.
+ */
+public final class CacheStats {
+
+    private final int entradas;
+    private final int maxEntradas;
+    private final long aciertos;
+    private final long fallos;
+    private final long desalojos;
+    private final long vencimientos;
+    private final long invalidaciones;
+
+    CacheStats(int entradas, int maxEntradas, long aciertos, long fallos,
+               long desalojos, long vencimientos, long invalidaciones) {
+        this.entradas = entradas;
+        this.maxEntradas = maxEntradas;
+        this.aciertos = aciertos;
+        this.fallos = fallos;
+        this.desalojos = desalojos;
+        this.vencimientos = vencimientos;
+        this.invalidaciones = invalidaciones;
+    }
+
+    public int getEntradas() { return entradas; }
+    public int getMaxEntradas() { return maxEntradas; }
+    public long getAciertos() { return aciertos; }
+    public long getFallos() { return fallos; }
+    public long getDesalojos() { return desalojos; }
+    public long getVencimientos() { return vencimientos; }
+    public long getInvalidaciones() { return invalidaciones; }
+
+    /** @return proporción de aciertos sobre el total de lecturas (0 si no hubo lecturas). */
+    public double getTasaAciertos() {
+        long total = aciertos + fallos;
+        return total == 0 ? 0 : (double) aciertos / total;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+                "CacheStats{entradas=%d/%d, aciertos=%d, fallos=%d, tasa=%.1f%%, desalojos=%d, " +
+                "vencimientos=%d, invalidaciones=%d}",
+                entradas, maxEntradas, aciertos, fallos, getTasaAciertos() * 100,
+                desalojos, vencimientos, invalidaciones);
+    }
+}
@@ -0,0 +1,53 @@
+package dao;
+
+/**
+ * @author Federico Gabriel Arena
+ * @author Fabrizio Manuel Mansilla
+ */
+
+/**
+ * CursorPagina
+ * ------------
+ * Posición de continuación para paginado por clave ("keyset pagination").
+ *
+ * ¿Qué guarda?
+ *  - {@code clave}: valor de la columna de orden de la ÚLTIMA fila de la página anterior
+ *    (p. ej. el título, la fecha de vencimiento o el username).
+ *  - {@code id}: desempate único de esa fila (código del libro, id del préstamo, username).
+ *
+ * ¿Por qué no OFFSET?
+ *  - Con OFFSET la base igual recorre y descarta todas las filas previas: la página N
+ *    cuesta O(N). Con el cursor la consulta arranca directo en el índice con
+ *    {@code WHERE (orden, id) > (clave, id)}, así que cada página cuesta lo mismo.
+ *
+ * El cursor es opaco para la UI: se obtiene de {@link Pagina#getSiguiente()} y se devuelve
+ * tal cual para pedir la página siguiente. {@code null} significa "desde el principio".
+ */
+public final class CursorPagina {
+
+    private final String clave;
+    private final String id;
+
+    private CursorPagina(String clave, String id) {
+        this.clave = clave;
+        this.id = id;
+    }
+
+    /**
+     * @param clave valor de orden de la última fila (puede ser null si la columna lo es).
+     * @param id    desempate único de la última fila (no null).
+     * @return cursor posicionado después de esa fila.
+     */
+    public static CursorPagina de(String clave, String id) {
+        if (id == null) throw new IllegalArgumentException("El cursor requiere id");
+        return new CursorPagina(clave, id);
+    }
+
+    public String getClave() { return clave; }
+    public String getId() { return id; }
+
+    @Override
+    public String toString() {
+        return "CursorPagina{" + clave + ", " + id + "}";
+    }
+}
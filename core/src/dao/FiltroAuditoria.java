@@ -0,0 +1,111 @@
+package dao;
+
+/**
+ * @author Federico Gabriel Arena
+ * @author Fabrizio Manuel Mansilla
+ */
+
+import model.Auditoria;
+
+import java.time.LocalDateTime;
+
+/**
+ * FiltroAuditoria
+ * ---------------
+ * Criterios de búsqueda sobre la auditoría ({@link AuditoriaDao#buscar}).
+ *
+ * ¿Qué filtra?
+ *  - operador, tipo, libro y préstamo por igualdad exacta.
+ *  - rango de tiempo: {@code desde} inclusive, {@code hasta} exclusive.
+ *  Cualquier criterio en {@code null} (o texto vacío) no filtra.
+ *
+ * Decisión:
+ *  - Inmutable: cada {@code conX(...)} devuelve un filtro nuevo, así se puede armar en el EDT y
+ *    usar en un hilo de fondo sin sincronizar.
+ *
+ * Uso:
+ * <pre>
+ *   FiltroAuditoria f = FiltroAuditoria.todos().conOperador("ana").conTipo("PRESTAR")
+ *                                      .conRango(inicioMes, finMes);
+ * </pre>
+ */
+public final class FiltroAuditoria {
+
+    private static final FiltroAuditoria TODOS = new FiltroAuditoria(null, null, null, null, null, null);
+
+    private final String operador;
+    private final String tipo;
+    private final String libroCodigo;
+    private final Long prestamoId;
+    private final LocalDateTime desde;
+    private final LocalDateTime hasta;
+
+    private FiltroAuditoria(String operador, String tipo, String libroCodigo, Long prestamoId,
+                            LocalDateTime desde, LocalDateTime hasta) {
+        this.operador = operador;
+        this.tipo = tipo;
+        this.libroCodigo = libroCodigo;
+        this.prestamoId = prestamoId;
+        this.desde = desde;
+        this.hasta = hasta;
+    }
+
+    /** @return filtro sin criterios (toda la auditoría). */
+    public static FiltroAuditoria todos() { return TODOS; }
+
+    public FiltroAuditoria conOperador(String operador) {
+        return new FiltroAuditoria(limpio(operador), tipo, libroCodigo, prestamoId, desde, hasta);
+    }
+
+    public FiltroAuditoria conTipo(String tipo) {
+        return new FiltroAuditoria(operador, limpio(tipo), libroCodigo, prestamoId, desde, hasta);
+    }
+
+    public FiltroAuditoria conLibro(String libroCodigo) {
+        return new FiltroAuditoria(operador, tipo, limpio(libroCodigo), prestamoId, desde, hasta);
+    }
+
+    public FiltroAuditoria conPrestamo(Long prestamoId) {
+        return new FiltroAuditoria(operador, tipo, libroCodigo, prestamoId, desde, hasta);
+    }
+
+    /**
+     * @param desde instante mínimo (inclusive) o {@code null}.
+     * @param hasta instante máximo (exclusive) o {@code null}.
+     */
+    public FiltroAuditoria conRango(LocalDateTime desde, LocalDateTime hasta) {
+        if (desde != null && hasta != null && !desde.isBefore(hasta))
+            throw new IllegalArgumentException("Rango de fechas inválido");
+        return new FiltroAuditoria(operador, tipo, libroCodigo, prestamoId, desde, hasta);
+    }
+
+    public String getOperador() { return operador; }
+    public String getTipo() { return tipo; }
+    public String getLibroCodigo() { return libroCodigo; }
+    public Long getPrestamoId() { return prestamoId; }
+    public LocalDateTime getDesde() { return desde; }
+    public LocalDateTime getHasta() { return hasta; }
+
+    /**
+     * Evalúa el filtro en memoria (mismo criterio que el SQL de {@link AuditoriaDao#buscar}); lo usa
+     * el refresco en vivo para decidir si un evento nuevo entra en la vista.
+     */
+    public boolean acepta(Auditoria a) {
+        if (operador != null && !operador.equals(a.getOperadorUsername())) return false;
+        if (tipo != null && !tipo.equals(a.getTipo())) return false;
+        if (libroCodigo != null && !libroCodigo.equals(a.getLibroCodigo())) return false;
+        if (prestamoId != null && !prestamoId.equals(a.getPrestamoId())) return false;
+        if (desde != null && a.getTs().isBefore(desde)) return false;
+        return hasta == null || a.getTs().isBefore(hasta);
+    }
+
+    private static String limpio(String s) {
+        return s == null || s.isBlank() ? null : s.trim();
+    }
+
+    @Override
+    public String toString() {
+        return "FiltroAuditoria{operador=" + operador + ", tipo=" + tipo + ", libro=" + libroCodigo
+                + ", prestamo=" + prestamoId + ", desde=" + desde + ", hasta=" + hasta + "}";
+    }
+}
@@ -6,12 +6,16 @@ package dao;
  */
 
 import db.ConnectionFactory;
+import db.FormatoFechas;
+import db.FormatoFechas.Columna;
 import model.Auditoria;
 
 import java.sql.*;
 import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * Implementación JDBC del {@link AuditoriaDao} para SQLite.
@@ -20,9 +24,11 @@ import java.util.List;
  *   - Lee eventos de la tabla auditoria para mostrarlos en informes/consultas.
  *
  * Decisiones:
- *   - Solo lectura (no inserta ni borra).
+ *   - Solo lectura (no inserta ni borra; las altas las hace {@link AuditoriaWriter}).
  *   - Ordena por ts DESC en la consulta.
  *   - Maneja NULL correctamente en columnas opcionales (prestamo_id, cantidad).
+ *   - ts en el formato de {@link FormatoFechas} (texto ISO o epoch): los rangos bindean el valor en
+ *     ese formato y comparan la columna tal cual, así usan los índices (…, ts).
  *   - Envuelve excepciones SQL en RuntimeException para no ensuciar firmas con checked exceptions.
  *
  * Colabora con:
@@ -43,7 +49,7 @@ public class JdbcAuditoriaDao implements AuditoriaDao {
      *  - El orden es DESC por <code>ts</code>.
      *  - La implementación NO cierra la app ni altera autocommit; usa try-with-resources.
      *  - Los campos opcionales (prestamo_id, cantidad, detalle, destinatario, libro_codigo) pueden venir nulos.
-     *  - Se asume que <code>ts</code> está guardado en formato ISO-8601 y se parsea con {@link LocalDateTime#parse(CharSequence)}.
+     *  - <code>ts</code> se lee según {@link FormatoFechas} (ISO-8601 o epoch).
      */
     
     @Override
@@ -52,6 +58,7 @@ public class JdbcAuditoriaDao implements AuditoriaDao {
         final String sql = "SELECT * FROM auditoria ORDER BY ts DESC LIMIT ?";
 
         // 2) Abrir conexión y preparar statement
+        FormatoFechas f = FormatoFechas.actual();
         try (Connection cn = ConnectionFactory.getConnection();
              PreparedStatement ps = cn.prepareStatement(sql)) {
 
@@ -62,36 +69,170 @@ public class JdbcAuditoriaDao implements AuditoriaDao {
             try (ResultSet rs = ps.executeQuery()) {
                 List<Auditoria> out = new ArrayList<>();
 
-                while (rs.next()) {
-                    Auditoria a = new Auditoria();
-
-                    // Campos obligatorios
-                    a.setId(rs.getLong("id"));
-                    // ts guardado como texto ISO-8601: parse a LocalDateTime
-                    a.setTs(LocalDateTime.parse(rs.getString("ts")));
-                    a.setOperadorUsername(rs.getString("operador_username"));
-                    a.setTipo(rs.getString("tipo"));
+                while (rs.next()) out.add(map(rs, f));
+                return out;
+            }
 
-                    // Campos opcionales (pueden ser NULL)
-                    a.setLibroCodigo(rs.getString("libro_codigo"));
+        // 5) Manejo de errores de acceso a datos
+        } catch (SQLException e) {
+            throw new RuntimeException("Error listando auditoría: " + e.getMessage(), e);
+        }
+    }
 
-                    long pid = rs.getLong("prestamo_id");
-                    a.setPrestamoId(rs.wasNull() ? null : pid);
+    /**
+     * Búsqueda filtrada con paginado por clave sobre (ts, id).
+     *
+     * Plan esperado: cada filtro de igualdad tiene su índice compuesto (columna, ts) y como el id
+     * es el rowid, SQLite lo agrega al final de cada índice: el WHERE por igualdad + rango de ts +
+     * cursor {@code (ts, id) < (?, ?)} es un único rango del índice, ya en el orden pedido (sin
+     * ordenar en memoria). Con varios filtros a la vez se usa el índice de uno y el resto se
+     * evalúa sobre las filas de ese rango.
+     */
+    @Override
+    public Pagina<Auditoria> buscar(FiltroAuditoria filtro, CursorPagina despues, int tamanio) {
+        FiltroAuditoria f = filtro == null ? FiltroAuditoria.todos() : filtro;
+        int n = Pagina.normalizarTamanio(tamanio);
+        FormatoFechas fechas = FormatoFechas.actual();
+        String ts = fechas.param(Columna.AUDITORIA_TS);
+
+        // 1) WHERE dinámico: solo los criterios presentes (así el planificador elige el índice)
+        StringBuilder sql = new StringBuilder("SELECT * FROM auditoria WHERE 1=1");
+        List<Object> params = new ArrayList<>();
+        if (f.getOperador() != null)    { sql.append(" AND operador_username = ?"); params.add(f.getOperador()); }
+        if (f.getTipo() != null)        { sql.append(" AND tipo = ?");              params.add(f.getTipo()); }
+        if (f.getLibroCodigo() != null) { sql.append(" AND libro_codigo = ?");      params.add(f.getLibroCodigo()); }
+        if (f.getPrestamoId() != null)  { sql.append(" AND prestamo_id = ?");       params.add(f.getPrestamoId()); }
+        if (f.getDesde() != null)       { sql.append(" AND ts >= ").append(ts);     fechas.agregar(params, Columna.AUDITORIA_TS, f.getDesde()); }
+        if (f.getHasta() != null)       { sql.append(" AND ts < ").append(ts);      fechas.agregar(params, Columna.AUDITORIA_TS, f.getHasta()); }
+        if (despues != null) {
+            // La clave del cursor es el ts en ISO, igual en cualquier formato de la base
+            sql.append(" AND (ts, id) < (").append(ts).append(", ?)");
+            try {
+                fechas.agregar(params, Columna.AUDITORIA_TS, LocalDateTime.parse(despues.getClave()));
+            } catch (DateTimeParseException e) {
+                throw new IllegalArgumentException("Cursor inválido: " + despues.getClave(), e);
+            }
+            params.add(Long.parseLong(despues.getId()));
+        }
+        sql.append(" ORDER BY ts DESC, id DESC LIMIT ?");
+        params.add(n + 1);
 
-                    int cant = rs.getInt("cantidad");
-                    a.setCantidad(rs.wasNull() ? null : cant);
+        try (Connection cn = ConnectionFactory.getConnection();
+             PreparedStatement ps = cn.prepareStatement(sql.toString())) {
 
-                    a.setDestinatario(rs.getString("destinatario"));
-                    a.setDetalle(rs.getString("detalle"));
+            // 2) Bind en el mismo orden en que se armó el SQL
+            for (int i = 0; i < params.size(); i++) ps.setObject(i + 1, params.get(i));
 
-                    out.add(a);
+            // 3) Leer n+1 filas: la extra solo indica que hay página siguiente
+            try (ResultSet rs = ps.executeQuery()) {
+                List<Auditoria> out = new ArrayList<>(n);
+                boolean hayMas = false;
+                while (rs.next()) {
+                    if (out.size() == n) { hayMas = true; break; }
+                    out.add(map(rs, fechas));
+                }
+                CursorPagina sig = null;
+                if (hayMas) {
+                    Auditoria ultimo = out.get(out.size() - 1);
+                    sig = CursorPagina.de(ultimo.getTs().toString(), String.valueOf(ultimo.getId()));
                 }
+                return new Pagina<>(out, sig);
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Error buscando auditoría: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public long ultimoId() {
+        try (Connection cn = ConnectionFactory.getConnection();
+             Statement st = cn.createStatement();
+             ResultSet rs = st.executeQuery("SELECT COALESCE(MAX(id), 0) FROM auditoria")) {
+            rs.next();
+            return rs.getLong(1);
+        } catch (SQLException e) {
+            throw new RuntimeException("Error leyendo último id de auditoría: " + e.getMessage(), e);
+        }
+    }
+
+    /** Rango sobre la PK (rowid): cuesta lo mismo con 100 o con 10 millones de eventos. */
+    @Override
+    public List<Auditoria> posteriores(long despuesDeId, int limite) {
+        final String sql = "SELECT * FROM auditoria WHERE id > ? ORDER BY id LIMIT ?";
+        FormatoFechas f = FormatoFechas.actual();
+        try (Connection cn = ConnectionFactory.getConnection();
+             PreparedStatement ps = cn.prepareStatement(sql)) {
+            ps.setLong(1, despuesDeId);
+            ps.setInt(2, limite <= 0 ? 500 : limite);
+            try (ResultSet rs = ps.executeQuery()) {
+                List<Auditoria> out = new ArrayList<>();
+                while (rs.next()) out.add(map(rs, f));
                 return out;
             }
+        } catch (SQLException e) {
+            throw new RuntimeException("Error leyendo novedades de auditoría: " + e.getMessage(), e);
+        }
+    }
 
-        // 5) Manejo de errores de acceso a datos
+    /**
+     * Recorre la auditoría de un período sin materializarla (exportaciones).
+     * Usa el índice ix_auditoria_ts para el rango y lee de a {@link #FILAS_POR_LECTURA} filas.
+     * Solo se agregan las cotas presentes: un {@code (? IS NULL OR ts >= ?)} no deja usar el índice.
+     */
+    @Override
+    public long recorrer(LocalDateTime desde, LocalDateTime hasta, Consumer<? super Auditoria> destino) {
+        FormatoFechas f = FormatoFechas.actual();
+        String ts = f.param(Columna.AUDITORIA_TS);
+        String sql = "SELECT * FROM auditoria WHERE 1=1"
+                + (desde == null ? "" : " AND ts >= " + ts)
+                + (hasta == null ? "" : " AND ts < " + ts)
+                + " ORDER BY ts, id";
+        try (Connection cn = ConnectionFactory.getConnection();
+             PreparedStatement ps = cn.prepareStatement(sql)) {
+
+            int i = 1;
+            if (desde != null) i = f.bind(ps, i, Columna.AUDITORIA_TS, desde);
+            if (hasta != null) f.bind(ps, i, Columna.AUDITORIA_TS, hasta);
+            ps.setFetchSize(FILAS_POR_LECTURA);
+
+            try (ResultSet rs = ps.executeQuery()) {
+                long n = 0;
+                while (rs.next()) {
+                    destino.accept(map(rs, f));
+                    n++;
+                }
+                return n;
+            }
         } catch (SQLException e) {
-            throw new RuntimeException("Error listando auditoría: " + e.getMessage(), e);
+            throw new RuntimeException("Error recorriendo auditoría: " + e.getMessage(), e);
         }
     }
+
+    /** Filas que se piden al driver por vez al recorrer consultas largas. */
+    private static final int FILAS_POR_LECTURA = 1000;
+
+    /** Mapea la fila actual a {@link Auditoria} (los opcionales pueden venir NULL). */
+    private static Auditoria map(ResultSet rs, FormatoFechas f) throws SQLException {
+        Auditoria a = new Auditoria();
+
+        // Campos obligatorios
+        a.setId(rs.getLong("id"));
+        // ts como texto ISO-8601 o epoch (este último sin parsear)
+        a.setTs(f.leerInstante(rs, "ts"));
+        a.setOperadorUsername(rs.getString("operador_username"));
+        a.setTipo(rs.getString("tipo"));
+
+        // Campos opcionales (pueden ser NULL)
+        a.setLibroCodigo(rs.getString("libro_codigo"));
+
+        long pid = rs.getLong("prestamo_id");
+        a.setPrestamoId(rs.wasNull() ? null : pid);
+
+        int cant = rs.getInt("cantidad");
+        a.setCantidad(rs.wasNull() ? null : cant);
+
+        a.setDestinatario(rs.getString("destinatario"));
+        a.setDetalle(rs.getString("detalle"));
+        return a;
+    }
 }
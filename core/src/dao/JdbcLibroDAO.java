@@ -6,6 +6,9 @@ package dao;
  */
 
 import db.ConnectionFactory;
+import db.DbInit;
+import db.FormatoFechas;
+import db.Transacciones;
 import model.Libro;
 
 import java.sql.*;
@@ -31,14 +34,27 @@ import java.util.List;
  *   activo INTEGER (0/1)
  *
  * Decisiones:
+ *   - Búsqueda de texto sobre el índice FTS5 libro_fts (ver {@link db.DbInit}),
+ *     que mantienen sincronizado triggers sobre libro.
  *   - Manejo de recursos con try-with-resources.
  *   - Errores de acceso a datos envueltos en {@link RuntimeException}.
  *   - Mapeo directo ResultSet → {@link Libro}.
+ *   - Cada lectura trae además los contadores de préstamos del libro (libro_contador, que
+ *     mantienen triggers sobre prestamo): un LEFT JOIN por PK, sin agregar sobre prestamo.
  */
 
 
 public class JdbcLibroDAO implements LibroDao {
 
+    /** Columnas de libro + contadores (0 si el libro nunca se prestó). */
+    private static final String COLUMNAS = """
+            l.*, COALESCE(c.prestamos_abiertos, 0) AS prestamos_abiertos,
+            COALESCE(c.ejemplares_prestados, 0) AS ejemplares_prestados,
+            COALESCE(c.total_prestamos, 0) AS total_prestamos, c.ultimo_prestamo\s""";
+
+    /** Join con los contadores (alias {@code c}); va después de la tabla libro {@code l}. */
+    private static final String JOIN_CONTADOR = " LEFT JOIN libro_contador c ON c.libro_codigo = l.codigo ";
+
     /**
      * Inserta un libro nuevo.
      *
@@ -75,6 +91,54 @@ public class JdbcLibroDAO implements LibroDao {
         }
     }
 
+    /**
+     * Upsert en lote: INSERT ... ON CONFLICT(codigo) DO UPDATE, con executeBatch en una sola
+     * transacción (un solo fsync por lote en lugar de uno por libro).
+     *
+     * Decisión: en un libro existente se actualizan los datos de catálogo pero NO el stock,
+     * porque el stock lo mueven los préstamos (pisarlo rompería la cuenta de ejemplares prestados).
+     *
+     * @param libros lote a persistir (validado en Service).
+     * @throws RuntimeException si ocurre un error SQL (el lote se revierte entero).
+     */
+    @Override
+    public void upsertLote(List<Libro> libros) {
+        final String sql = """
+                INSERT INTO libro
+                  (codigo, titulo, autor, categoria, editorial, anio, stock, activo)
+                VALUES (?,?,?,?,?,?,?,?)
+                ON CONFLICT(codigo) DO UPDATE SET
+                  titulo=excluded.titulo, autor=excluded.autor, categoria=excluded.categoria,
+                  editorial=excluded.editorial, anio=excluded.anio, activo=excluded.activo
+                """;
+        if (libros.isEmpty()) return;
+        try (Connection cn = ConnectionFactory.getConnection()) {
+            Transacciones.iniciar(cn);
+            try (PreparedStatement ps = cn.prepareStatement(sql)) {
+                // 1) Bind de cada libro como una entrada del batch
+                for (Libro l : libros) {
+                    ps.setString(1, l.getCodigo());
+                    ps.setString(2, l.getTitulo());
+                    ps.setString(3, l.getAutor());
+                    ps.setString(4, l.getCategoria());
+                    ps.setString(5, l.getEditorial());
+                    ps.setInt(6, l.getAnio());
+                    ps.setInt(7, l.getStock());
+                    ps.setBoolean(8, l.isActivo());
+                    ps.addBatch();
+                }
+                // 2) Ejecutar y confirmar todo junto
+                ps.executeBatch();
+                Transacciones.confirmar(cn);
+            } catch (SQLException ex) {
+                Transacciones.deshacer(cn, ex);
+                throw ex;
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Error importando lote de libros: " + e.getMessage(), e);
+        }
+    }
+
     /**
      * Actualiza todos los campos editables de un libro según su código.
      *
@@ -148,7 +212,8 @@ public class JdbcLibroDAO implements LibroDao {
      */
     @Override
     public Libro leerPorCodigo(String codigo) {
-        final String sql = "SELECT * FROM libro WHERE codigo=?";
+        final String sql = "SELECT " + COLUMNAS + "FROM libro l" + JOIN_CONTADOR + "WHERE l.codigo=?";
+        FormatoFechas f = FormatoFechas.actual();
         // 1) Conectar y preparar
         try (Connection cn = ConnectionFactory.getConnection();
              PreparedStatement ps = cn.prepareStatement(sql)) {
@@ -158,7 +223,7 @@ public class JdbcLibroDAO implements LibroDao {
 
             // 3) Ejecutar y mapear
             try (ResultSet rs = ps.executeQuery()) {
-                if (rs.next()) return map(rs);
+                if (rs.next()) return map(rs, f);
                 return null;
             }
 
@@ -170,6 +235,7 @@ public class JdbcLibroDAO implements LibroDao {
 
     /**
      * Lista libros aplicando un filtro opcional por texto (título, autor o categoría).
+     * Usa el índice full-text en modo {@link ModoBusqueda#PREFIJO}.
      *
      * @param filtroTexto texto a buscar; puede ser null/"" para listar todo.
      * @return lista de libros ordenados por título (collate NOCASE).
@@ -177,14 +243,232 @@ public class JdbcLibroDAO implements LibroDao {
      */
     @Override
     public List<Libro> listar(String filtroTexto) {
-        final String sql = """
-                SELECT * FROM libro
+        return buscar(filtroTexto, ModoBusqueda.PREFIJO);
+    }
+
+    /**
+     * Busca libros por texto según el modo indicado.
+     *
+     * @param texto texto a buscar; null/"" (o sin palabras) lista todo ordenado por título.
+     * @param modo  estrategia de búsqueda (null = PREFIJO).
+     * @return lista de libros que cumplen el criterio.
+     * @throws RuntimeException si ocurre un error SQL.
+     */
+    @Override
+    public List<Libro> buscar(String texto, ModoBusqueda modo) {
+        if (modo == null) modo = ModoBusqueda.PREFIJO;
+        if (modo == ModoBusqueda.CONTIENE) return listarLike(texto);
+
+        // 1) Traducir el texto a una consulta FTS5 (null = sin palabras → listar todo)
+        String match = consultaFts(texto);
+        final String sql;
+        if (match == null) {
+            sql = "SELECT " + COLUMNAS + "FROM libro l" + JOIN_CONTADOR + "ORDER BY l.titulo COLLATE NOCASE";
+        } else if (modo == ModoBusqueda.RELEVANCIA) {
+            // bm25: menor = más relevante. Pesos por columna: titulo, autor, categoria.
+            sql = "SELECT " + COLUMNAS + "FROM libro_fts f JOIN libro l ON l.rowid = f.rowid" + JOIN_CONTADOR + """
+                    WHERE libro_fts MATCH ?
+                    ORDER BY bm25(libro_fts, 10.0, 5.0, 1.0), l.titulo COLLATE NOCASE
+                    """;
+        } else {
+            sql = "SELECT " + COLUMNAS + "FROM libro_fts f JOIN libro l ON l.rowid = f.rowid" + JOIN_CONTADOR + """
+                    WHERE libro_fts MATCH ?
+                    ORDER BY l.titulo COLLATE NOCASE
+                    """;
+        }
+
+        FormatoFechas f = FormatoFechas.actual();
+        // 2) Conectar, bind y mapear
+        try (Connection cn = ConnectionFactory.getConnection();
+             PreparedStatement ps = cn.prepareStatement(sql)) {
+
+            if (match != null) ps.setString(1, match);
+
+            try (ResultSet rs = ps.executeQuery()) {
+                List<Libro> out = new ArrayList<>();
+                while (rs.next()) out.add(map(rs, f));
+                return out;
+            }
+
+        } catch (SQLException e) {
+            throw new RuntimeException("Error buscando libros: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Página de libros ordenados por (título NOCASE, código), con filtro opcional de prefijos.
+     * Paginado por clave: la consulta arranca después del cursor usando el índice
+     * ix_libro_titulo, sin recorrer las páginas previas.
+     *
+     * @param filtroTexto texto a buscar (modo PREFIJO); null/"" para todo.
+     * @param despues     cursor de la página anterior, o null para la primera.
+     * @param tamanio     cantidad máxima de filas (se normaliza a [1, 1000]).
+     * @return página con los libros y el cursor siguiente.
+     * @throws RuntimeException si ocurre un error SQL.
+     */
+    @Override
+    public Pagina<Libro> listarPagina(String filtroTexto, CursorPagina despues, int tamanio) {
+        return listarPagina(filtroTexto, OrdenLibro.TITULO, false, despues, tamanio);
+    }
+
+    /**
+     * Página de libros con orden configurable (columna + sentido), desempatando por código.
+     *
+     * @param filtroTexto texto a buscar (modo PREFIJO); null/"" para todo.
+     * @param orden       columna de orden (null = TITULO).
+     * @param descendente sentido del orden.
+     * @param despues     cursor de la página anterior (debe provenir del mismo orden), o null.
+     * @param tamanio     cantidad máxima de filas (se normaliza a [1, 1000]).
+     * @return página con los libros y el cursor siguiente.
+     * @throws RuntimeException si ocurre un error SQL.
+     */
+    @Override
+    public Pagina<Libro> listarPagina(String filtroTexto, OrdenLibro orden, boolean descendente,
+                                      CursorPagina despues, int tamanio) {
+        if (orden == null) orden = OrdenLibro.TITULO;
+        int n = Pagina.normalizarTamanio(tamanio);
+        String match = consultaFts(filtroTexto);
+        String expr = orden.getExpresion();
+        String cmp = descendente ? "<" : ">";
+        String dir = descendente ? " DESC" : " ASC";
+
+        // 1) Armar SQL según haya filtro y/o cursor
+        StringBuilder sql = new StringBuilder(desdeLibros(match));
+        if (despues != null) {
+            sql.append(" AND (").append(expr).append(' ').append(cmp).append(" ? OR (")
+               .append(expr).append(" = ? AND l.codigo ").append(cmp).append(" ?))");
+        }
+        sql.append(" ORDER BY ").append(expr).append(dir).append(", l.codigo").append(dir).append(" LIMIT ?");
+
+        FormatoFechas f = FormatoFechas.actual();
+        // 2) Conectar, bind y mapear (se pide una fila extra para saber si hay más)
+        try (Connection cn = ConnectionFactory.getConnection();
+             PreparedStatement ps = cn.prepareStatement(sql.toString())) {
+
+            int i = 1;
+            if (match != null) ps.setString(i++, match);
+            if (despues != null) {
+                bindClave(ps, i++, orden, despues.getClave());
+                bindClave(ps, i++, orden, despues.getClave());
+                ps.setString(i++, despues.getId());
+            }
+            ps.setInt(i, n + 1);
+
+            try (ResultSet rs = ps.executeQuery()) {
+                List<Libro> out = new ArrayList<>(n);
+                boolean hayMas = false;
+                while (rs.next()) {
+                    if (out.size() == n) { hayMas = true; break; }
+                    out.add(map(rs, f));
+                }
+                CursorPagina sig = null;
+                if (hayMas) {
+                    Libro ultimo = out.get(out.size() - 1);
+                    sig = CursorPagina.de(orden.clave(ultimo), ultimo.getCodigo());
+                }
+                return new Pagina<>(out, sig);
+            }
+
+        } catch (SQLException e) {
+            throw new RuntimeException("Error paginando libros: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Bloque de libros por posición absoluta (LIMIT/OFFSET).
+     * Solo para saltos aleatorios (p. ej. arrastrar la barra de scroll) cuando no hay
+     * un cursor previo conocido; el recorrido secuencial debe usar {@link #listarPagina}.
+     *
+     * @param filtroTexto texto a buscar (modo PREFIJO); null/"" para todo.
+     * @param orden       columna de orden (null = TITULO).
+     * @param descendente sentido del orden.
+     * @param desde       posición de la primera fila (0-based).
+     * @param tamanio     cantidad máxima de filas.
+     * @return libros del bloque (puede tener menos filas al final).
+     * @throws RuntimeException si ocurre un error SQL.
+     */
+    @Override
+    public List<Libro> listarBloque(String filtroTexto, OrdenLibro orden, boolean descendente,
+                                   int desde, int tamanio) {
+        if (orden == null) orden = OrdenLibro.TITULO;
+        int n = Pagina.normalizarTamanio(tamanio);
+        String match = consultaFts(filtroTexto);
+        String dir = descendente ? " DESC" : " ASC";
+        String sql = desdeLibros(match)
+                + " ORDER BY " + orden.getExpresion() + dir + ", l.codigo" + dir + " LIMIT ? OFFSET ?";
+
+        FormatoFechas f = FormatoFechas.actual();
+        try (Connection cn = ConnectionFactory.getConnection();
+             PreparedStatement ps = cn.prepareStatement(sql)) {
+
+            int i = 1;
+            if (match != null) ps.setString(i++, match);
+            ps.setInt(i++, n);
+            ps.setInt(i, Math.max(0, desde));
+
+            try (ResultSet rs = ps.executeQuery()) {
+                List<Libro> out = new ArrayList<>(n);
+                while (rs.next()) out.add(map(rs, f));
+                return out;
+            }
+
+        } catch (SQLException e) {
+            throw new RuntimeException("Error leyendo bloque de libros: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Cuenta los libros que cumplen el filtro (modo PREFIJO).
+     *
+     * @param filtroTexto texto a buscar; null/"" cuenta todo.
+     * @return cantidad de libros.
+     * @throws RuntimeException si ocurre un error SQL.
+     */
+    @Override
+    public int contar(String filtroTexto) {
+        String match = consultaFts(filtroTexto);
+        final String sql = match == null
+                ? "SELECT COUNT(*) FROM libro"
+                : "SELECT COUNT(*) FROM libro_fts WHERE libro_fts MATCH ?";
+        try (Connection cn = ConnectionFactory.getConnection();
+             PreparedStatement ps = cn.prepareStatement(sql)) {
+
+            if (match != null) ps.setString(1, match);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? rs.getInt(1) : 0;
+            }
+
+        } catch (SQLException e) {
+            throw new RuntimeException("Error contando libros: " + e.getMessage(), e);
+        }
+    }
+
+    /** FROM + WHERE base de los listados paginados (con o sin MATCH). */
+    private static String desdeLibros(String match) {
+        return match == null
+                ? "SELECT " + COLUMNAS + "FROM libro l" + JOIN_CONTADOR + "WHERE 1=1"
+                : "SELECT " + COLUMNAS + "FROM libro_fts f JOIN libro l ON l.rowid = f.rowid" + JOIN_CONTADOR
+                  + "WHERE libro_fts MATCH ?";
+    }
+
+    /** Bindea la clave del cursor con el tipo que corresponde a la columna de orden. */
+    private static void bindClave(PreparedStatement ps, int i, OrdenLibro orden, String clave) throws SQLException {
+        if (orden.isNumerica()) ps.setLong(i, Long.parseLong(clave));
+        else ps.setString(i, clave);
+    }
+
+    /**
+     * Búsqueda histórica por subcadena (LIKE '%texto%'): recorre toda la tabla.
+     */
+    private List<Libro> listarLike(String filtroTexto) {
+        final String sql = "SELECT " + COLUMNAS + "FROM libro l" + JOIN_CONTADOR + """
                 WHERE (? IS NULL OR ? = '' OR
-                       titulo    LIKE '%'||?||'%' OR
-                       autor     LIKE '%'||?||'%' OR
-                       categoria LIKE '%'||?||'%')
-                ORDER BY titulo COLLATE NOCASE
+                       l.titulo    LIKE '%'||?||'%' OR
+                       l.autor     LIKE '%'||?||'%' OR
+                       l.categoria LIKE '%'||?||'%')
+                ORDER BY l.titulo COLLATE NOCASE
                 """;
+        FormatoFechas f = FormatoFechas.actual();
         // 1) Conectar y preparar
         try (Connection cn = ConnectionFactory.getConnection();
              PreparedStatement ps = cn.prepareStatement(sql)) {
@@ -199,7 +483,7 @@ public class JdbcLibroDAO implements LibroDao {
             // 3) Ejecutar y mapear
             try (ResultSet rs = ps.executeQuery()) {
                 List<Libro> out = new ArrayList<>();
-                while (rs.next()) out.add(map(rs));
+                while (rs.next()) out.add(map(rs, f));
                 return out;
             }
 
@@ -209,6 +493,25 @@ public class JdbcLibroDAO implements LibroDao {
         }
     }
 
+    /**
+     * Convierte texto libre en una consulta FTS5 de prefijos: cada palabra se cita
+     * (para neutralizar operadores como AND/OR/NEAR o comillas) y se le agrega '*'.
+     * Ej.: {@code quij  Cerv} → {@code "quij"* "Cerv"*} (AND implícito).
+     *
+     * @param texto texto ingresado por el usuario.
+     * @return consulta MATCH, o null si no hay ninguna palabra.
+     */
+    static String consultaFts(String texto) {
+        if (texto == null) return null;
+        StringBuilder sb = new StringBuilder();
+        for (String palabra : texto.split("[^\\p{L}\\p{N}]+")) {
+            if (palabra.isEmpty()) continue;
+            if (sb.length() > 0) sb.append(' ');
+            sb.append('"').append(palabra).append("\"*");
+        }
+        return sb.length() == 0 ? null : sb.toString();
+    }
+
     // ================== Baja lógica / Reglas con préstamos ==================
 
     /**
@@ -240,6 +543,7 @@ public class JdbcLibroDAO implements LibroDao {
 
     /**
      * Indica si existen préstamos abiertos asociados a un libro.
+     * Lee el contador materializado (una búsqueda por PK), sin contar sobre prestamo.
      *
      * @param codigo código del libro.
      * @return true si hay al menos un préstamo con estado 'ABIERTO'.
@@ -247,16 +551,15 @@ public class JdbcLibroDAO implements LibroDao {
      */
     @Override
     public boolean tienePrestamosAbiertos(String codigo) {
-        final String sql = "SELECT COUNT(*) FROM prestamo WHERE libro_codigo=? AND estado='ABIERTO'";
+        final String sql = "SELECT prestamos_abiertos FROM libro_contador WHERE libro_codigo=?";
         // 1) Conectar y preparar
         try (Connection cn = ConnectionFactory.getConnection();
              PreparedStatement ps = cn.prepareStatement(sql)) {
 
-            // 2) Bind y ejecutar
+            // 2) Bind y ejecutar (sin fila = nunca se prestó)
             ps.setString(1, codigo);
             try (ResultSet rs = ps.executeQuery()) {
-                rs.next();
-                return rs.getInt(1) > 0;
+                return rs.next() && rs.getInt(1) > 0;
             }
 
         } catch (SQLException e) {
@@ -265,16 +568,73 @@ public class JdbcLibroDAO implements LibroDao {
         }
     }
 
+    // ================== Contadores de préstamos ==================
+
+    /**
+     * Compara libro_contador con los valores calculados desde prestamo.
+     *
+     * @return códigos de libro cuyo contador no coincide (vacía si todo cuadra).
+     * @throws RuntimeException si hay error SQL.
+     */
+    @Override
+    public List<String> verificarContadores() {
+        final String guardados = """
+                SELECT libro_codigo, prestamos_abiertos, ejemplares_prestados, total_prestamos, ultimo_prestamo
+                FROM libro_contador
+                WHERE total_prestamos <> 0 OR prestamos_abiertos <> 0 OR ejemplares_prestados <> 0
+                """;
+        final String calculados = "SELECT * FROM (" + DbInit.CONTADORES_CALCULADOS_SQL + ")";
+        // Diferencia simétrica: filas que están de un lado y no del otro
+        final String sql = "SELECT libro_codigo FROM (" + calculados + " EXCEPT " + guardados + ")"
+                + " UNION SELECT libro_codigo FROM (" + guardados + " EXCEPT " + calculados + ")"
+                + " ORDER BY 1";
+        try (Connection cn = ConnectionFactory.getConnection();
+             PreparedStatement ps = cn.prepareStatement(sql);
+             ResultSet rs = ps.executeQuery()) {
+
+            List<String> out = new ArrayList<>();
+            while (rs.next()) out.add(rs.getString(1));
+            return out;
+
+        } catch (SQLException e) {
+            throw new RuntimeException("Error verificando contadores: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Reconstruye libro_contador desde prestamo en una transacción.
+     *
+     * @return cantidad de libros con contador.
+     * @throws RuntimeException si hay error SQL (la tabla queda como estaba).
+     */
+    @Override
+    public int reconstruirContadores() {
+        try (Connection cn = ConnectionFactory.getConnection()) {
+            Transacciones.iniciar(cn);
+            try {
+                int n = DbInit.reconstruirContadores(cn);
+                Transacciones.confirmar(cn);
+                return n;
+            } catch (SQLException ex) {
+                Transacciones.deshacer(cn, ex);
+                throw ex;
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Error reconstruyendo contadores: " + e.getMessage(), e);
+        }
+    }
+
     // ================== Mapeo ==================
 
     /**
      * Convierte la fila actual del {@link ResultSet} a un {@link Libro}.
      *
      * @param rs result set posicionado.
-     * @return instancia de Libro con todos los campos básicos.
+     * @param f  formato de fechas de la base (ultimo_prestamo).
+     * @return instancia de Libro con todos los campos básicos y los contadores.
      * @throws SQLException si falla la lectura de columnas.
      */
-    private Libro map(ResultSet rs) throws SQLException {
+    private Libro map(ResultSet rs, FormatoFechas f) throws SQLException {
         // 1) Construir y poblar DTO
         Libro l = new Libro();
         l.setCodigo(rs.getString("codigo"));
@@ -286,6 +646,11 @@ public class JdbcLibroDAO implements LibroDao {
         l.setStock(rs.getInt("stock"));
         // SQLite guarda boolean como 0/1 → getBoolean lo interpreta correctamente
         l.setActivo(rs.getBoolean("activo"));
+        // 2) Contadores (LEFT JOIN con libro_contador)
+        l.setPrestamosAbiertos(rs.getInt("prestamos_abiertos"));
+        l.setEjemplaresPrestados(rs.getInt("ejemplares_prestados"));
+        l.setTotalPrestamos(rs.getInt("total_prestamos"));
+        l.setUltimoPrestamo(f.leerInstante(rs, "ultimo_prestamo"));
         return l;
     }
 }
@@ -6,14 +6,28 @@ package dao;
  */
 
 import db.ConnectionFactory;
+import db.FormatoFechas;
+import db.FormatoFechas.Columna;
+import db.Transacciones;
 import model.Prestamo;
+import model.PrestamoDetalle;
+import model.PrestamoVencido;
 import model.EstadoPrestamo; // ← usa el enum externo
 
 import java.sql.*;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 /**
 
@@ -22,59 +36,96 @@ import java.util.List;
  * ¿Qué hace?
  *   - Opera sobre la tabla prestamo (alta, devolución, renovación, consultas).
  *   - Ajusta el stock del libro relacionado al prestar/devolver.
- *   - Registra siempre un evento en auditoria.
+ *   - Registra siempre un evento en auditoria, vía {@link AuditoriaWriter} (en la misma
+ *     transacción o, según {@link ModoAuditoria}, en lotes después del commit; se publica con la
+ *     conexión ya cerrada).
  *
  * Decisiones:
  *   - Cada operación crítica (prestar/devolver/renovar) se ejecuta en **una única transacción**:
  *       * coherencia entre préstamo/stock/auditoría
  *       * si existe un fallo→ rollback()
+ *       * se abre y cierra con {@link Transacciones}: el commit no vuelve a pedir el lock de escritura
  *   - Manejo de recursos con try-with-resources.
  *   - Errores SQL envueltos en RuntimeException (simplifica firmas).
+ *   - Rechazos de negocio al prestar (libro inexistente/inactivo, sin stock) como
+ *     {@link PrestamoRechazadoException}, con el motivo tipado.
+ *   - Las fechas se escriben y leen en el formato de {@link FormatoFechas} (texto ISO o epoch);
+ *     cada operación toma el formato una vez y lo usa para el SQL, los parámetros y el mapeo.
  */
 public class JdbcPrestamoDAO implements PrestamoDao {
 
+    /** Destino de los eventos de auditoría (síncrono en la transacción o en lotes de fondo). */
+    private final AuditoriaWriter auditoria;
+
+    /** Caché de libros: prestar/devolver cambian el stock, se invalida tras el commit. */
+    private final LibroCache cache = LibroCache.global();
+
+    /** Usa el writer global, configurado con {@code biblioteca.auditoria.*}. */
+    public JdbcPrestamoDAO() {
+        this(AuditoriaWriter.global());
+    }
+
+    /** @param auditoria writer de auditoría a usar (p. ej. uno propio en benchmarks). */
+    public JdbcPrestamoDAO(AuditoriaWriter auditoria) {
+        this.auditoria = auditoria;
+    }
+
+    /**
+     * Alta de préstamo en 2 sentencias dentro de una transacción IMMEDIATE:
+     *  1) UPDATE condicional de stock (activo y stock suficiente) con RETURNING: la verificación
+     *     y el descuento son atómicos, no hay ventana entre "hay stock" y "descontar".
+     *  2) INSERT del préstamo con RETURNING id (sin consulta extra por la clave generada).
+     * Solo si el UPDATE no afecta filas se consulta el libro para informar el motivo.
+     */
     @Override
     public long prestar(Prestamo p) {
-        // SQL de alta de préstamo (fecha_devolucion queda NULL; estado ABIERTO)
-        String insertPrestamo = """
+        final String descontarStock = """
+          UPDATE libro SET stock = stock - ?
+          WHERE codigo=? AND activo=1 AND stock >= ?
+          RETURNING stock
+        """;
+        // fecha_devolucion queda NULL; estado ABIERTO
+        final String insertPrestamo = """
           INSERT INTO prestamo (libro_codigo, operador_username, destinatario, cantidad,
                                 fecha_prestamo, fecha_vencimiento, estado)
-          VALUES (?,?,?,?,?,?, 'ABIERTO')
+          VALUES (?,?,?,?,%s,%s, 'ABIERTO')
+          RETURNING id
         """;
 
+        long id;
+        AuditoriaWriter.Evento ev;
         try (Connection cn = ConnectionFactory.getConnection()) {
-            cn.setAutoCommit(false);
+            Transacciones.iniciar(cn);
+            FormatoFechas f = FormatoFechas.paraEscribir(cn);   // ya con el lock de escritura (ver FormatoFechas)
             try {
-                if (!libroActivo(cn, p.getLibroCodigo()))
-                    throw new RuntimeException("El libro está desactivado");
-                if (!hayStockSuficiente(cn, p.getLibroCodigo(), p.getCantidad()))
-                    throw new RuntimeException("Stock insuficiente");
+                // 1) Verificar y descontar stock en un solo paso
+                try (PreparedStatement ps = cn.prepareStatement(descontarStock)) {
+                    ps.setInt(1, p.getCantidad());
+                    ps.setString(2, p.getLibroCodigo());
+                    ps.setInt(3, p.getCantidad());
+                    try (ResultSet rs = ps.executeQuery()) {
+                        if (!rs.next())
+                            throw new PrestamoRechazadoException(motivoRechazo(cn, p), p.getLibroCodigo());
+                    }
+                }
 
-                long id;
-                try (PreparedStatement ps = cn.prepareStatement(insertPrestamo, Statement.RETURN_GENERATED_KEYS)) {
+                // 2) Alta del préstamo
+                try (PreparedStatement ps = cn.prepareStatement(insertPrestamo.formatted(
+                        f.param(Columna.FECHA_PRESTAMO), f.param(Columna.FECHA_VENCIMIENTO)))) {
                     ps.setString(1, p.getLibroCodigo());
                     ps.setString(2, p.getOperadorUsername());
                     ps.setString(3, p.getDestinatario());
                     ps.setInt(4, p.getCantidad());
-                    ps.setString(5, p.getFechaPrestamo().toString());
-                    ps.setString(6, p.getFechaVencimiento().toString());
-                    ps.executeUpdate();
-                    try (ResultSet rs = ps.getGeneratedKeys()) {
+                    int i = f.bind(ps, 5, Columna.FECHA_PRESTAMO, p.getFechaPrestamo());
+                    f.bind(ps, i, Columna.FECHA_VENCIMIENTO, p.getFechaVencimiento());
+                    try (ResultSet rs = ps.executeQuery()) {
                         rs.next();
                         id = rs.getLong(1);
                     }
                 }
 
-                try (PreparedStatement ps = cn.prepareStatement(
-                        "UPDATE libro SET stock = stock - ? WHERE codigo=? AND stock >= ?")) {
-                    ps.setInt(1, p.getCantidad());
-                    ps.setString(2, p.getLibroCodigo());
-                    ps.setInt(3, p.getCantidad());
-                    if (ps.executeUpdate() == 0)
-                        throw new RuntimeException("No se pudo descontar stock");
-                }
-
-                insertAudit(cn,
+                // 3) Auditoría (en la transacción o diferida, según el modo)
+                ev = AuditoriaWriter.evento(
                         p.getOperadorUsername(),
                         "PRESTAR",
                         p.getLibroCodigo(),
@@ -82,25 +133,27 @@ public class JdbcPrestamoDAO implements PrestamoDao {
                         p.getCantidad(),
                         p.getDestinatario(),
                         "vencimiento=" + p.getFechaVencimiento());
+                auditoria.registrar(cn, ev);
 
-                cn.commit();
-                return id;
+                Transacciones.confirmar(cn);
+                cache.invalidar(p.getLibroCodigo());
 
             } catch (Exception ex) {
-                cn.rollback();
+                Transacciones.deshacer(cn, ex);
                 throw ex;
-            } finally {
-                cn.setAutoCommit(true);
             }
         } catch (SQLException e) {
             throw new RuntimeException("Error prestando: " + e.getMessage(), e);
         }
+        auditoria.publicar(ev);      // con la conexión ya devuelta (ver AuditoriaWriter)
+        return id;
     }
 
     @Override
     public void devolver(long idPrestamo) {
+        AuditoriaWriter.Evento ev;
         try (Connection cn = ConnectionFactory.getConnection()) {
-            cn.setAutoCommit(false);
+            Transacciones.iniciar(cn);
             try {
                 int cant;
                 String codigo;
@@ -120,10 +173,12 @@ public class JdbcPrestamoDAO implements PrestamoDao {
                     }
                 }
 
+                FormatoFechas f = FormatoFechas.paraEscribir(cn);
                 try (PreparedStatement ps = cn.prepareStatement(
-                        "UPDATE prestamo SET estado='DEVUELTO', fecha_devolucion=? WHERE id=?")) {
-                    ps.setString(1, LocalDateTime.now().toString());
-                    ps.setLong(2, idPrestamo);
+                        "UPDATE prestamo SET estado='DEVUELTO', fecha_devolucion="
+                        + f.param(Columna.FECHA_DEVOLUCION) + " WHERE id=?")) {
+                    int i = f.bind(ps, 1, Columna.FECHA_DEVOLUCION, LocalDateTime.now());
+                    ps.setLong(i, idPrestamo);
                     ps.executeUpdate();
                 }
 
@@ -134,31 +189,36 @@ public class JdbcPrestamoDAO implements PrestamoDao {
                     ps.executeUpdate();
                 }
 
-                insertAudit(cn, operador, "DEVOLVER", codigo, idPrestamo, cant, destinatario, null);
+                ev = AuditoriaWriter.evento(
+                        operador, "DEVOLVER", codigo, idPrestamo, cant, destinatario, null);
+                auditoria.registrar(cn, ev);
 
-                cn.commit();
+                Transacciones.confirmar(cn);
+                cache.invalidar(codigo);
 
             } catch (Exception ex) {
-                cn.rollback();
+                Transacciones.deshacer(cn, ex);
                 throw ex;
-            } finally {
-                cn.setAutoCommit(true);
             }
         } catch (SQLException e) {
             throw new RuntimeException("Error devolviendo: " + e.getMessage(), e);
         }
+        auditoria.publicar(ev);
     }
 
     @Override
     public void renovar(long idPrestamo, int dias) {
         if (dias <= 0) throw new IllegalArgumentException("Días inválidos");
 
+        AuditoriaWriter.Evento ev;
         try (Connection cn = ConnectionFactory.getConnection()) {
-            cn.setAutoCommit(false);
+            Transacciones.iniciar(cn);
             try {
+                FormatoFechas f = FormatoFechas.paraEscribir(cn);
                 String operador, codigo, destinatario;
+                LocalDate vence;
                 try (PreparedStatement ps = cn.prepareStatement(
-                        "SELECT operador_username, libro_codigo, destinatario " +
+                        "SELECT operador_username, libro_codigo, destinatario, fecha_vencimiento " +
                         "FROM prestamo WHERE id=? AND estado='ABIERTO'")) {
                     ps.setLong(1, idPrestamo);
                     try (ResultSet rs = ps.executeQuery()) {
@@ -167,53 +227,339 @@ public class JdbcPrestamoDAO implements PrestamoDao {
                         operador = rs.getString(1);
                         codigo = rs.getString(2);
                         destinatario = rs.getString(3);
+                        vence = f.leerDia(rs, "fecha_vencimiento");
                     }
                 }
 
+                // El nuevo vencimiento se calcula acá (misma transacción) y se guarda en el formato vigente
                 try (PreparedStatement ps = cn.prepareStatement(
-                        "UPDATE prestamo SET fecha_vencimiento = date(fecha_vencimiento, '+'||?||' day') " +
-                        "WHERE id=? AND estado='ABIERTO'")) {
-                    ps.setInt(1, dias);
-                    ps.setLong(2, idPrestamo);
+                        "UPDATE prestamo SET fecha_vencimiento = " + f.param(Columna.FECHA_VENCIMIENTO) +
+                        " WHERE id=? AND estado='ABIERTO'")) {
+                    int i = f.bind(ps, 1, Columna.FECHA_VENCIMIENTO, vence.plusDays(dias));
+                    ps.setLong(i, idPrestamo);
                     if (ps.executeUpdate() == 0)
                         throw new RuntimeException("No se pudo renovar");
                 }
 
-                insertAudit(cn, operador, "RENOVAR", codigo, idPrestamo, null, destinatario, "+" + dias + "d");
+                ev = AuditoriaWriter.evento(
+                        operador, "RENOVAR", codigo, idPrestamo, null, destinatario, "+" + dias + "d");
+                auditoria.registrar(cn, ev);
 
-                cn.commit();
+                Transacciones.confirmar(cn);
 
             } catch (Exception ex) {
-                cn.rollback();
+                Transacciones.deshacer(cn, ex);
                 throw ex;
-            } finally {
-                cn.setAutoCommit(true);
             }
         } catch (SQLException e) {
             throw new RuntimeException("Error renovando: " + e.getMessage(), e);
         }
+        auditoria.publicar(ev);
     }
 
+    // ===================== Operaciones en lote =====================
+
+    /**
+     * Préstamo de muchos ítems en UNA transacción IMMEDIATE:
+     *  1) Batch de UPDATE condicional de stock; el conteo de filas por ítem dice cuáles pasaron
+     *     (los ítems se aplican en orden, así dos ítems del mismo libro compiten por el mismo stock).
+     *  2) Batch de INSERT de los préstamos aceptados. Los ids se derivan de last_insert_rowid():
+     *     con AUTOINCREMENT y el lock de escritura tomado, los ids del batch son consecutivos.
+     *  3) Auditoría en un INSERT multi-fila (o diferida, según el modo).
+     * Los motivos de rechazo se consultan solo para los ítems rechazados.
+     */
     @Override
-    public List<Prestamo> abiertos(String filtro) {
-        String sql = """
-        SELECT p.* FROM prestamo p
+    public ResultadoLote prestarLote(List<Prestamo> prestamos, boolean todoONada) {
+        if (prestamos.isEmpty()) return new ResultadoLote(List.of(), true);
+        final String descontarStock =
+                "UPDATE libro SET stock = stock - ? WHERE codigo=? AND activo=1 AND stock >= ?";
+        final String insertPrestamo = """
+          INSERT INTO prestamo (libro_codigo, operador_username, destinatario, cantidad,
+                                fecha_prestamo, fecha_vencimiento, estado)
+          VALUES (?,?,?,?,%s,%s, 'ABIERTO')
+        """;
+
+        List<AuditoriaWriter.Evento> eventos;
+        ResultadoLote resultado;
+        try (Connection cn = ConnectionFactory.getConnection()) {
+            Transacciones.iniciar(cn);
+            FormatoFechas f = FormatoFechas.paraEscribir(cn);   // ya con el lock de escritura (ver FormatoFechas)
+            try {
+                // 1) Verificar y descontar stock de todos los ítems
+                int[] afectadas;
+                try (PreparedStatement ps = cn.prepareStatement(descontarStock)) {
+                    for (Prestamo p : prestamos) {
+                        ps.setInt(1, p.getCantidad());
+                        ps.setString(2, p.getLibroCodigo());
+                        ps.setInt(3, p.getCantidad());
+                        ps.addBatch();
+                    }
+                    afectadas = ps.executeBatch();
+                }
+
+                Map<Integer, PrestamoRechazadoException.Motivo> rechazos = new HashMap<>();
+                List<Integer> aceptados = new ArrayList<>();
+                for (int i = 0; i < prestamos.size(); i++) {
+                    if (afectadas[i] > 0) aceptados.add(i);
+                    else rechazos.put(i, motivoRechazo(cn, prestamos.get(i)));
+                }
+
+                if (aceptados.isEmpty() || (todoONada && !rechazos.isEmpty())) {
+                    Transacciones.deshacer(cn);
+                    List<ResultadoLote.Item> items = new ArrayList<>();
+                    for (int i = 0; i < prestamos.size(); i++) {
+                        items.add(rechazos.containsKey(i)
+                                ? ResultadoLote.Item.rechazado(i, rechazos.get(i))
+                                : ResultadoLote.Item.falla(i, ResultadoLote.REVERTIDO));
+                    }
+                    return new ResultadoLote(items, false);
+                }
+
+                // 2) Alta de los préstamos aceptados
+                try (PreparedStatement ps = cn.prepareStatement(insertPrestamo.formatted(
+                        f.param(Columna.FECHA_PRESTAMO), f.param(Columna.FECHA_VENCIMIENTO)))) {
+                    for (int i : aceptados) {
+                        Prestamo p = prestamos.get(i);
+                        ps.setString(1, p.getLibroCodigo());
+                        ps.setString(2, p.getOperadorUsername());
+                        ps.setString(3, p.getDestinatario());
+                        ps.setInt(4, p.getCantidad());
+                        int k = f.bind(ps, 5, Columna.FECHA_PRESTAMO, p.getFechaPrestamo());
+                        f.bind(ps, k, Columna.FECHA_VENCIMIENTO, p.getFechaVencimiento());
+                        ps.addBatch();
+                    }
+                    ps.executeBatch();
+                }
+                long primerId = ultimoIdInsertado(cn) - aceptados.size() + 1;
+
+                // 3) Auditoría
+                eventos = new ArrayList<>(aceptados.size());
+                Map<Integer, Long> ids = new HashMap<>();
+                for (int k = 0; k < aceptados.size(); k++) {
+                    int i = aceptados.get(k);
+                    Prestamo p = prestamos.get(i);
+                    long id = primerId + k;
+                    ids.put(i, id);
+                    eventos.add(AuditoriaWriter.evento(p.getOperadorUsername(), "PRESTAR", p.getLibroCodigo(),
+                            id, p.getCantidad(), p.getDestinatario(), "vencimiento=" + p.getFechaVencimiento()));
+                }
+                auditoria.registrar(cn, eventos);
+
+                Transacciones.confirmar(cn);
+                Set<String> libros = new HashSet<>();
+                for (int i : aceptados) libros.add(prestamos.get(i).getLibroCodigo());
+                libros.forEach(cache::invalidar);
+
+                List<ResultadoLote.Item> items = new ArrayList<>(prestamos.size());
+                for (int i = 0; i < prestamos.size(); i++) {
+                    items.add(ids.containsKey(i)
+                            ? ResultadoLote.Item.ok(i, ids.get(i))
+                            : ResultadoLote.Item.rechazado(i, rechazos.get(i)));
+                }
+                resultado = new ResultadoLote(items, true);
+
+            } catch (Exception ex) {
+                Transacciones.deshacer(cn, ex);
+                throw ex;
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Error prestando lote: " + e.getMessage(), e);
+        }
+        auditoria.publicar(eventos);
+        return resultado;
+    }
+
+    /**
+     * Devolución de muchos préstamos en UNA transacción IMMEDIATE:
+     *  1) Lee los préstamos ABIERTO pedidos con IN (...) (de a {@link #IDS_POR_CONSULTA}).
+     *  2) Batch de UPDATE de estado de los préstamos.
+     *  3) Reposición de stock agrupada por libro (un UPDATE por libro, no por préstamo).
+     *  4) Auditoría en un INSERT multi-fila (o diferida, según el modo).
+     */
+    @Override
+    public ResultadoLote devolverLote(List<Long> idsPrestamo, boolean todoONada) {
+        if (idsPrestamo.isEmpty()) return new ResultadoLote(List.of(), true);
+
+        List<AuditoriaWriter.Evento> eventos;
+        ResultadoLote resultado;
+        try (Connection cn = ConnectionFactory.getConnection()) {
+            Transacciones.iniciar(cn);
+            try {
+                // 1) Préstamos abiertos entre los pedidos
+                FormatoFechas f = FormatoFechas.paraEscribir(cn);
+                Map<Long, Prestamo> abiertos = leerAbiertos(cn, f, idsPrestamo);
+
+                List<ResultadoLote.Item> items = new ArrayList<>(idsPrestamo.size());
+                List<Prestamo> aceptados = new ArrayList<>();
+                Set<Long> vistos = new HashSet<>();
+                for (int i = 0; i < idsPrestamo.size(); i++) {
+                    Long id = idsPrestamo.get(i);
+                    Prestamo p = id == null ? null : abiertos.get(id);
+                    if (p == null || !vistos.add(id)) {
+                        items.add(ResultadoLote.Item.falla(i, "Préstamo no abierto o inexistente"));
+                    } else {
+                        items.add(ResultadoLote.Item.ok(i, id));
+                        aceptados.add(p);
+                    }
+                }
+                if (aceptados.isEmpty() || (todoONada && aceptados.size() < idsPrestamo.size())) {
+                    Transacciones.deshacer(cn);
+                    return ResultadoLote.de(items, true);
+                }
+
+                // 2) Marcar devueltos
+                LocalDateTime ahora = LocalDateTime.now();
+                try (PreparedStatement ps = cn.prepareStatement(
+                        "UPDATE prestamo SET estado='DEVUELTO', fecha_devolucion=" + f.param(Columna.FECHA_DEVOLUCION)
+                        + " WHERE id=? AND estado='ABIERTO'")) {
+                    for (Prestamo p : aceptados) {
+                        int i = f.bind(ps, 1, Columna.FECHA_DEVOLUCION, ahora);
+                        ps.setLong(i, p.getId());
+                        ps.addBatch();
+                    }
+                    ps.executeBatch();
+                }
+
+                // 3) Reponer stock, agrupado por libro
+                Map<String, Integer> reponer = new LinkedHashMap<>();
+                for (Prestamo p : aceptados) reponer.merge(p.getLibroCodigo(), p.getCantidad(), Integer::sum);
+                try (PreparedStatement ps = cn.prepareStatement(
+                        "UPDATE libro SET stock = stock + ? WHERE codigo=?")) {
+                    for (Map.Entry<String, Integer> e : reponer.entrySet()) {
+                        ps.setInt(1, e.getValue());
+                        ps.setString(2, e.getKey());
+                        ps.addBatch();
+                    }
+                    ps.executeBatch();
+                }
+
+                // 4) Auditoría
+                eventos = new ArrayList<>(aceptados.size());
+                for (Prestamo p : aceptados) {
+                    eventos.add(AuditoriaWriter.evento(p.getOperadorUsername(), "DEVOLVER", p.getLibroCodigo(),
+                            p.getId(), p.getCantidad(), p.getDestinatario(), null));
+                }
+                auditoria.registrar(cn, eventos);
+
+                Transacciones.confirmar(cn);
+                reponer.keySet().forEach(cache::invalidar);
+                resultado = new ResultadoLote(items, true);
+
+            } catch (Exception ex) {
+                Transacciones.deshacer(cn, ex);
+                throw ex;
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Error devolviendo lote: " + e.getMessage(), e);
+        }
+        auditoria.publicar(eventos);
+        return resultado;
+    }
+
+    /** Máximo de ids por consulta IN (...) (límite de parámetros de SQLite con margen). */
+    private static final int IDS_POR_CONSULTA = 500;
+
+    /** Lee los préstamos ABIERTO cuyos ids están en la lista (misma transacción). */
+    private Map<Long, Prestamo> leerAbiertos(Connection cn, FormatoFechas f, List<Long> ids) throws SQLException {
+        List<Long> validos = ids.stream().filter(java.util.Objects::nonNull).distinct().toList();
+        Map<Long, Prestamo> out = new HashMap<>();
+        for (int desde = 0; desde < validos.size(); desde += IDS_POR_CONSULTA) {
+            List<Long> tramo = validos.subList(desde, Math.min(validos.size(), desde + IDS_POR_CONSULTA));
+            try (PreparedStatement ps = cn.prepareStatement(abiertosPorIdSql(tramo.size()))) {
+                for (int i = 0; i < tramo.size(); i++) ps.setLong(i + 1, tramo.get(i));
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        Prestamo p = map(rs, f);
+                        out.put(p.getId(), p);
+                    }
+                }
+            }
+        }
+        return out;
+    }
+
+    /** @return SQL de préstamos ABIERTO por lista de ids ({@code n} parámetros). */
+    static String abiertosPorIdSql(int n) {
+        return "SELECT * FROM prestamo WHERE estado='ABIERTO' AND id IN (" + "?,".repeat(n - 1) + "?)";
+    }
+
+    /** @return rowid del último INSERT de esta conexión. */
+    private static long ultimoIdInsertado(Connection cn) throws SQLException {
+        try (Statement st = cn.createStatement();
+             ResultSet rs = st.executeQuery("SELECT last_insert_rowid()")) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+
+    /** FROM/WHERE compartido por {@link #abiertos} y {@link #abiertosDetalle} (5 parámetros). */
+    private static final String ABIERTOS_DESDE_SQL = """
+        FROM prestamo p
         JOIN libro l ON l.codigo = p.libro_codigo
         WHERE p.estado='ABIERTO' AND (
               ? IS NULL OR ?='' OR
               l.titulo LIKE '%'||?||'%' OR l.autor LIKE '%'||?||'%' OR p.destinatario LIKE '%'||?||'%'
         )
-        ORDER BY p.fecha_vencimiento ASC
         """;
+    private static final String ABIERTOS_ORDEN_SQL = " ORDER BY p.fecha_vencimiento ASC, p.id ASC";
+    static final String ABIERTOS_SQL = ABIERTOS_DESDE_SQL + ABIERTOS_ORDEN_SQL;
+    private static final String DETALLE_SQL = "SELECT p.*, l.titulo AS libro_titulo, l.autor AS libro_autor ";
 
+    @Override
+    public List<Prestamo> abiertos(String filtro) {
+        FormatoFechas f = FormatoFechas.actual();
         try (Connection cn = ConnectionFactory.getConnection();
-             PreparedStatement ps = cn.prepareStatement(sql)) {
+             PreparedStatement ps = cn.prepareStatement("SELECT p.* " + ABIERTOS_SQL)) {
 
             for (int i = 1; i <= 5; i++) ps.setString(i, filtro);
 
             try (ResultSet rs = ps.executeQuery()) {
                 List<Prestamo> out = new ArrayList<>();
-                while (rs.next()) out.add(map(rs));
+                while (rs.next()) out.add(map(rs, f));
+                return out;
+            }
+
+        } catch (SQLException e) {
+            throw new RuntimeException("Error listando abiertos: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public List<PrestamoDetalle> abiertosDetalle(String filtro) {
+        return leerDetalle(DETALLE_SQL + ABIERTOS_SQL, filtro, List.of());
+    }
+
+    @Override
+    public List<PrestamoDetalle> abiertosDetalle(String filtro, Collection<Long> ids) {
+        if (ids.isEmpty()) return List.of();
+        List<Long> lista = new ArrayList<>(ids);
+        List<PrestamoDetalle> out = new ArrayList<>();
+        for (int desde = 0; desde < lista.size(); desde += IDS_POR_CONSULTA) {
+            List<Long> tramo = lista.subList(desde, Math.min(lista.size(), desde + IDS_POR_CONSULTA));
+            String sql = DETALLE_SQL + ABIERTOS_DESDE_SQL
+                    + " AND p.id IN (" + "?,".repeat(tramo.size() - 1) + "?)" + ABIERTOS_ORDEN_SQL;
+            out.addAll(leerDetalle(sql, filtro, tramo));
+        }
+        return out;
+    }
+
+    /** Ejecuta una consulta de abiertos con detalle: 5 parámetros de filtro y luego los ids. */
+    private List<PrestamoDetalle> leerDetalle(String sql, String filtro, List<Long> ids) {
+        FormatoFechas f = FormatoFechas.actual();
+        try (Connection cn = ConnectionFactory.getConnection();
+             PreparedStatement ps = cn.prepareStatement(sql)) {
+
+            for (int i = 1; i <= 5; i++) ps.setString(i, filtro);
+            for (int i = 0; i < ids.size(); i++) ps.setLong(6 + i, ids.get(i));
+
+            try (ResultSet rs = ps.executeQuery()) {
+                List<PrestamoDetalle> out = new ArrayList<>();
+                while (rs.next()) {
+                    PrestamoDetalle d = llenar(new PrestamoDetalle(), rs, f);
+                    d.setLibroTitulo(rs.getString("libro_titulo"));
+                    d.setLibroAutor(rs.getString("libro_autor"));
+                    out.add(d);
+                }
                 return out;
             }
 
@@ -224,85 +570,351 @@ public class JdbcPrestamoDAO implements PrestamoDao {
 
     @Override
     public List<Prestamo> historico(LocalDate desde, LocalDate hasta, String filtro) {
-        String sql = """
-        SELECT p.* FROM prestamo p
-        JOIN libro l ON l.codigo = p.libro_codigo
-        WHERE (? IS NULL OR date(p.fecha_prestamo) >= ?)
-          AND (? IS NULL OR date(p.fecha_prestamo) <= ?)
-          AND (? IS NULL OR ?='' OR
-               l.titulo LIKE '%'||?||'%' OR l.autor LIKE '%'||?||'%' OR p.destinatario LIKE '%'||?||'%')
-        ORDER BY p.fecha_prestamo DESC
-        """;
+        List<Prestamo> out = new ArrayList<>();
+        recorrerHistorico(desde, hasta, filtro, out::add);
+        return out;
+    }
+
+    /**
+     * Recorre el histórico fila por fila sin materializarlo: el ResultSet se lee de a
+     * {@link #FILAS_POR_LECTURA} y cada préstamo se entrega al consumidor y se descarta.
+     * Es la base de {@link #historico} y de las exportaciones.
+     */
+    @Override
+    public long recorrerHistorico(LocalDate desde, LocalDate hasta, String filtro, Consumer<? super Prestamo> destino) {
+        boolean hayFiltro = filtro != null && !filtro.isBlank();
+        FormatoFechas f = FormatoFechas.actual();
+        String sql = historicoSql(f, desde != null, hasta != null, hayFiltro, false, false);
+
+        try (Connection cn = ConnectionFactory.getConnection();
+             PreparedStatement ps = cn.prepareStatement(sql)) {
+
+            bindHistorico(ps, f, desde, hasta, hayFiltro ? filtro : null);
+            ps.setFetchSize(FILAS_POR_LECTURA);
+
+            try (ResultSet rs = ps.executeQuery()) {
+                long n = 0;
+                while (rs.next()) {
+                    destino.accept(map(rs, f));
+                    n++;
+                }
+                return n;
+            }
+
+        } catch (SQLException e) {
+            throw new RuntimeException("Error listando histórico: " + e.getMessage(), e);
+        }
+    }
+
+    /** Filas que se piden al driver por vez al recorrer consultas largas. */
+    private static final int FILAS_POR_LECTURA = 1000;
+
+    /**
+     * Página de préstamos ABIERTO ordenados por (vencimiento, id) ascendente.
+     * Usa el índice parcial de abiertos por vencimiento y arranca después del cursor (keyset),
+     * sin OFFSET.
+     */
+    @Override
+    public Pagina<Prestamo> abiertosPagina(String filtro, CursorPagina despues, int tamanio) {
+        int n = Pagina.normalizarTamanio(tamanio);
+        boolean hayFiltro = filtro != null && !filtro.isBlank();
+        FormatoFechas f = FormatoFechas.actual();
+
+        try (Connection cn = ConnectionFactory.getConnection();
+             PreparedStatement ps = cn.prepareStatement(abiertosPaginaSql(f, hayFiltro, despues != null))) {
+
+            int i = 1;
+            if (hayFiltro) for (int k = 0; k < 3; k++) ps.setString(i++, filtro);
+            i = bindCursor(ps, i, f, Columna.FECHA_VENCIMIENTO, despues);
+            ps.setInt(i, n + 1);
+
+            return leerPagina(ps, n, f, p -> p.getFechaVencimiento().toString());
+
+        } catch (SQLException e) {
+            throw new RuntimeException("Error paginando abiertos: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Página del histórico ordenada por (fecha de préstamo, id) descendente.
+     */
+    @Override
+    public Pagina<Prestamo> historicoPagina(LocalDate desde, LocalDate hasta, String filtro,
+                                            CursorPagina despues, int tamanio) {
+        int n = Pagina.normalizarTamanio(tamanio);
+        boolean hayFiltro = filtro != null && !filtro.isBlank();
+        FormatoFechas f = FormatoFechas.actual();
+        String sql = historicoSql(f, desde != null, hasta != null, hayFiltro, despues != null, true);
 
         try (Connection cn = ConnectionFactory.getConnection();
              PreparedStatement ps = cn.prepareStatement(sql)) {
 
-            ps.setString(1, desde == null ? null : desde.toString());
-            ps.setString(2, desde == null ? null : desde.toString());
-            ps.setString(3, hasta == null ? null : hasta.toString());
-            ps.setString(4, hasta == null ? null : hasta.toString());
+            int i = bindHistorico(ps, f, desde, hasta, hayFiltro ? filtro : null);
+            i = bindCursor(ps, i, f, Columna.FECHA_PRESTAMO, despues);
+            ps.setInt(i, n + 1);
+
+            return leerPagina(ps, n, f, p -> p.getFechaPrestamo().toString());
+
+        } catch (SQLException e) {
+            throw new RuntimeException("Error paginando histórico: " + e.getMessage(), e);
+        }
+    }
+
+    // ===================== Vencidos =====================
+
+    /**
+     * Préstamos ABIERTO con vencimiento anterior a {@code hoy}: un SEARCH por rango sobre el índice
+     * parcial ix_prestamo_abiertos_vence, en orden de vencimiento.
+     */
+    @Override
+    public List<Prestamo> abiertosVencidosAl(LocalDate hoy) {
+        FormatoFechas f = FormatoFechas.actual();
+        try (Connection cn = ConnectionFactory.getConnection();
+             PreparedStatement ps = cn.prepareStatement(vencidosSql(f))) {
 
-            for (int i = 5; i <= 9; i++) ps.setString(i, filtro);
+            f.bind(ps, 1, Columna.FECHA_VENCIMIENTO, hoy);
+            ps.setFetchSize(FILAS_POR_LECTURA);
 
             try (ResultSet rs = ps.executeQuery()) {
                 List<Prestamo> out = new ArrayList<>();
-                while (rs.next()) out.add(map(rs));
+                while (rs.next()) out.add(map(rs, f));
                 return out;
             }
 
         } catch (SQLException e) {
-            throw new RuntimeException("Error listando histórico: " + e.getMessage(), e);
+            throw new RuntimeException("Error buscando vencidos: " + e.getMessage(), e);
         }
     }
 
-    // ===== Helpers de validación en DB (misma conexión/tx) =====
+    /** Reemplaza la foto completa en una transacción (los lectores ven la anterior o la nueva). */
+    @Override
+    public void guardarVencidos(List<PrestamoVencido> vencidos) {
+        try (Connection cn = ConnectionFactory.getConnection()) {
+            Transacciones.iniciar(cn);
+            try {
+                // 1) Vaciar la foto anterior
+                try (Statement st = cn.createStatement()) {
+                    st.executeUpdate("DELETE FROM prestamo_vencido");
+                }
+                // 2) Insertar la nueva en un batch
+                try (PreparedStatement ps = cn.prepareStatement(
+                        "INSERT INTO prestamo_vencido (prestamo_id, dias_atraso, multa, calculado) VALUES (?,?,?,?)")) {
+                    for (PrestamoVencido v : vencidos) {
+                        ps.setLong(1, v.getId());
+                        ps.setInt(2, v.getDiasAtraso());
+                        ps.setLong(3, v.getMulta());
+                        ps.setString(4, v.getCalculado().toString());
+                        ps.addBatch();
+                    }
+                    ps.executeBatch();
+                }
+                Transacciones.confirmar(cn);
+            } catch (SQLException ex) {
+                Transacciones.deshacer(cn, ex);
+                throw ex;
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Error guardando vencidos: " + e.getMessage(), e);
+        }
+    }
 
-    private boolean libroActivo(Connection cn, String codigo) throws SQLException {
-        try (PreparedStatement ps = cn.prepareStatement("SELECT activo FROM libro WHERE codigo=?")) {
-            ps.setString(1, codigo);
-            try (ResultSet rs = ps.executeQuery()) { return rs.next() && rs.getBoolean(1); }
+    /**
+     * Lee la foto con los datos del préstamo y del libro (JOIN por PK). Se descartan los que se
+     * devolvieron después del cálculo.
+     */
+    @Override
+    public List<PrestamoVencido> vencidos() {
+        final String sql = """
+                SELECT p.*, l.titulo AS libro_titulo, l.autor AS libro_autor,
+                       v.dias_atraso, v.multa, v.calculado
+                FROM prestamo_vencido v
+                JOIN prestamo p ON p.id = v.prestamo_id
+                JOIN libro l ON l.codigo = p.libro_codigo
+                WHERE p.estado='ABIERTO'
+                ORDER BY v.dias_atraso DESC, p.id ASC
+                """;
+        FormatoFechas f = FormatoFechas.actual();
+        try (Connection cn = ConnectionFactory.getConnection();
+             PreparedStatement ps = cn.prepareStatement(sql);
+             ResultSet rs = ps.executeQuery()) {
+
+            List<PrestamoVencido> out = new ArrayList<>();
+            while (rs.next()) {
+                PrestamoVencido v = llenar(new PrestamoVencido(), rs, f);
+                v.setLibroTitulo(rs.getString("libro_titulo"));
+                v.setLibroAutor(rs.getString("libro_autor"));
+                v.setDiasAtraso(rs.getInt("dias_atraso"));
+                v.setMulta(rs.getLong("multa"));
+                v.setCalculado(LocalDateTime.parse(rs.getString("calculado")));
+                out.add(v);
+            }
+            return out;
+
+        } catch (SQLException e) {
+            throw new RuntimeException("Error leyendo vencidos: " + e.getMessage(), e);
         }
     }
 
-    private boolean hayStockSuficiente(Connection cn, String codigo, int cant) throws SQLException {
-        try (PreparedStatement ps = cn.prepareStatement("SELECT stock FROM libro WHERE codigo=?")) {
-            ps.setString(1, codigo);
-            try (ResultSet rs = ps.executeQuery()) { return rs.next() && rs.getInt(1) >= cant; }
+    /** @return SQL de abiertos vencidos antes de una fecha (la fecha es el único valor): rango sobre ix_prestamo_abiertos_vence. */
+    static String vencidosSql(FormatoFechas f) {
+        return """
+                SELECT p.* FROM prestamo p
+                WHERE p.estado='ABIERTO' AND p.fecha_vencimiento < %s
+                ORDER BY p.fecha_vencimiento ASC, p.id ASC
+                """.formatted(f.param(Columna.FECHA_VENCIMIENTO));
+    }
+
+    // ===== SQL de abiertos/histórico (compartido con PlanesConsulta) =====
+    //
+    // Solo se agregan las condiciones que aplican, y todas son "sargables" (comparan la columna
+    // tal cual, sin funciones), para que SQLite pueda usar los índices:
+    //   - abiertos: índice parcial ix_prestamo_abiertos_vence (fecha_vencimiento) WHERE estado='ABIERTO'.
+    //   - histórico: ix_prestamo_fecha (fecha_prestamo). El rango de días es [d 00:00, h+1 00:00)
+    //     sobre la columna tal cual: date(f) >= d  ⇔  f >= d 00:00, y date(f) <= h  ⇔  f < h+1 00:00.
+    //   - los valores de fecha van con FormatoFechas.param: "?" (ISO o epoch) o, durante la migración,
+    //     un CASE constante que elige entero o texto según la frontera; sigue siendo un rango del índice.
+    //   - cursor: comparación de row values (col, id) > (?, ?); el id (rowid) va implícito al final
+    //     de cada índice, así el salto a la página siguiente es un SEARCH y no un recorrido.
+
+    /** Filtro por texto sobre título/autor/destinatario (3 parámetros). */
+    private static final String FILTRO_TEXTO_SQL =
+            " AND (l.titulo LIKE '%'||?||'%' OR l.autor LIKE '%'||?||'%' OR p.destinatario LIKE '%'||?||'%')";
+
+    /**
+     * @param f          formato de fechas (ver {@link FormatoFechas#param}).
+     * @param hayFiltro  agrega {@link #FILTRO_TEXTO_SQL} (3 parámetros).
+     * @param hayCursor  agrega el cursor (vencimiento, id).
+     * @return SQL de una página de abiertos; el último parámetro es el LIMIT.
+     */
+    static String abiertosPaginaSql(FormatoFechas f, boolean hayFiltro, boolean hayCursor) {
+        StringBuilder sql = new StringBuilder("""
+                SELECT p.* FROM prestamo p
+                JOIN libro l ON l.codigo = p.libro_codigo
+                WHERE p.estado='ABIERTO'
+                """);
+        if (hayFiltro) sql.append(FILTRO_TEXTO_SQL);
+        if (hayCursor) sql.append(" AND (p.fecha_vencimiento, p.id) > (").append(f.param(Columna.FECHA_VENCIMIENTO)).append(", ?)");
+        sql.append(" ORDER BY p.fecha_vencimiento ASC, p.id ASC LIMIT ?");
+        return sql.toString();
+    }
+
+    /**
+     * @param f          formato de fechas (ver {@link FormatoFechas#param}).
+     * @param hayDesde   agrega fecha mínima.
+     * @param hayHasta   agrega fecha máxima.
+     * @param hayFiltro  agrega {@link #FILTRO_TEXTO_SQL} (3 parámetros).
+     * @param hayCursor  agrega el cursor (fecha, id).
+     * @param paginado   agrega LIMIT (último parámetro).
+     * @return SQL del histórico, del más reciente al más antiguo.
+     */
+    static String historicoSql(FormatoFechas f, boolean hayDesde, boolean hayHasta, boolean hayFiltro,
+                               boolean hayCursor, boolean paginado) {
+        String fecha = f.param(Columna.FECHA_PRESTAMO);
+        StringBuilder sql = new StringBuilder("""
+                SELECT p.* FROM prestamo p
+                JOIN libro l ON l.codigo = p.libro_codigo
+                WHERE 1=1
+                """);
+        if (hayDesde) sql.append(" AND p.fecha_prestamo >= ").append(fecha);
+        if (hayHasta) sql.append(" AND p.fecha_prestamo < ").append(fecha);
+        if (hayFiltro) sql.append(FILTRO_TEXTO_SQL);
+        if (hayCursor) sql.append(" AND (p.fecha_prestamo, p.id) < (").append(fecha).append(", ?)");
+        sql.append(" ORDER BY p.fecha_prestamo DESC, p.id DESC");
+        if (paginado) sql.append(" LIMIT ?");
+        return sql.toString();
+    }
+
+    /**
+     * Bindea rango y filtro de {@link #historicoSql} (en ese orden, solo los no nulos).
+     * {@code hasta} es inclusive: se bindea el inicio del día siguiente como cota exclusiva.
+     *
+     * @return próximo índice libre.
+     */
+    private static int bindHistorico(PreparedStatement ps, FormatoFechas f, LocalDate desde, LocalDate hasta,
+                                     String filtro) throws SQLException {
+        int i = 1;
+        if (desde != null) i = f.bind(ps, i, Columna.FECHA_PRESTAMO, desde.atStartOfDay());
+        if (hasta != null) i = f.bind(ps, i, Columna.FECHA_PRESTAMO, hasta.plusDays(1).atStartOfDay());
+        if (filtro != null) for (int k = 0; k < 3; k++) ps.setString(i++, filtro);
+        return i;
+    }
+
+    // ===== Helpers de paginado =====
+
+    /**
+     * Bindea (clave, id) del cursor si existe; devuelve el próximo índice libre.
+     * La clave es la fecha en ISO (igual en cualquier formato de la base).
+     */
+    private static int bindCursor(PreparedStatement ps, int i, FormatoFechas f, Columna col,
+                                  CursorPagina c) throws SQLException {
+        if (c == null) return i;
+        try {
+            i = col == Columna.FECHA_VENCIMIENTO
+                    ? f.bind(ps, i, col, LocalDate.parse(c.getClave()))
+                    : f.bind(ps, i, col, LocalDateTime.parse(c.getClave()));
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Cursor inválido: " + c.getClave(), e);
         }
+        ps.setLong(i++, Long.parseLong(c.getId()));
+        return i;
     }
 
-    // ===== Registro de auditoría (misma transacción) =====
-
-    private void insertAudit(Connection cn, String op, String tipo, String libro, Long prestamoId,
-                             Integer cantidad, String dest, String detalle) throws SQLException {
-        try (PreparedStatement ps = cn.prepareStatement(
-                "INSERT INTO auditoria (ts, operador_username, tipo, libro_codigo, prestamo_id, cantidad, destinatario, detalle) " +
-                "VALUES (?,?,?,?,?,?,?,?)")) {
-            ps.setString(1, LocalDateTime.now().toString());
-            ps.setString(2, op);
-            ps.setString(3, tipo);
-            ps.setString(4, libro);
-            if (prestamoId == null) ps.setNull(5, Types.INTEGER); else ps.setLong(5, prestamoId);
-            if (cantidad   == null) ps.setNull(6, Types.INTEGER); else ps.setInt(6, cantidad);
-            ps.setString(7, dest);
-            ps.setString(8, detalle);
-            ps.executeUpdate();
+    /**
+     * Ejecuta la consulta (que pide n+1 filas) y arma la página con su cursor siguiente.
+     *
+     * @param clave extrae el valor de orden de la última fila (en ISO).
+     */
+    private Pagina<Prestamo> leerPagina(PreparedStatement ps, int n, FormatoFechas f,
+                                        Function<Prestamo, String> clave) throws SQLException {
+        try (ResultSet rs = ps.executeQuery()) {
+            List<Prestamo> out = new ArrayList<>(n);
+            boolean hayMas = false;
+            while (rs.next()) {
+                if (out.size() == n) { hayMas = true; break; }
+                out.add(map(rs, f));
+            }
+            CursorPagina sig = null;
+            if (hayMas) {
+                Prestamo ultimo = out.get(out.size() - 1);
+                sig = CursorPagina.de(clave.apply(ultimo), String.valueOf(ultimo.getId()));
+            }
+            return new Pagina<>(out, sig);
+        }
+    }
+
+    // ===== Diagnóstico de rechazo (solo en el camino de falla) =====
+
+    /** Determina por qué el UPDATE condicional de stock no afectó filas (misma transacción). */
+    private PrestamoRechazadoException.Motivo motivoRechazo(Connection cn, Prestamo p) throws SQLException {
+        try (PreparedStatement ps = cn.prepareStatement("SELECT activo, stock FROM libro WHERE codigo=?")) {
+            ps.setString(1, p.getLibroCodigo());
+            try (ResultSet rs = ps.executeQuery()) {
+                if (!rs.next()) return PrestamoRechazadoException.Motivo.LIBRO_INEXISTENTE;
+                if (!rs.getBoolean(1)) return PrestamoRechazadoException.Motivo.LIBRO_INACTIVO;
+                return PrestamoRechazadoException.Motivo.STOCK_INSUFICIENTE;
+            }
         }
     }
 
     // ===== Mapeo ResultSet → Prestamo =====
 
-    private Prestamo map(ResultSet rs) throws SQLException {
-        Prestamo p = new Prestamo();
+    private Prestamo map(ResultSet rs, FormatoFechas f) throws SQLException {
+        return llenar(new Prestamo(), rs, f);
+    }
+
+    /**
+     * Completa los campos de préstamo (también sirve para subtipos como {@link PrestamoDetalle}).
+     * Con fechas epoch se leen como long, sin parsear texto.
+     */
+    private static <P extends Prestamo> P llenar(P p, ResultSet rs, FormatoFechas f) throws SQLException {
         p.setId(rs.getLong("id"));
         p.setLibroCodigo(rs.getString("libro_codigo"));
         p.setOperadorUsername(rs.getString("operador_username"));
         p.setDestinatario(rs.getString("destinatario"));
         p.setCantidad(rs.getInt("cantidad"));
-        p.setFechaPrestamo(LocalDateTime.parse(rs.getString("fecha_prestamo")));
-        p.setFechaVencimiento(LocalDate.parse(rs.getString("fecha_vencimiento")));
-        String fdev = rs.getString("fecha_devolucion");
-        p.setFechaDevolucion(fdev == null ? null : LocalDateTime.parse(fdev));
+        p.setFechaPrestamo(f.leerInstante(rs, "fecha_prestamo"));
+        p.setFechaVencimiento(f.leerDia(rs, "fecha_vencimiento"));
+        p.setFechaDevolucion(f.leerInstante(rs, "fecha_devolucion"));
         // ← usa enum externo
         p.setEstado(EstadoPrestamo.valueOf(rs.getString("estado")));
         return p;
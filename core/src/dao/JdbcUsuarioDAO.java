@@ -136,6 +136,46 @@ public class JdbcUsuarioDAO implements UsuarioDao {
         }
     }
 
+    /**
+     * Página de usuarios ordenados por username (clave única: el cursor es el propio username).
+     *
+     * @param despues cursor de la página anterior, o null para la primera.
+     * @param tamanio cantidad máxima de filas.
+     * @return página de usuarios.
+     */
+    @Override
+    public Pagina<Usuario> listarPagina(CursorPagina despues, int tamanio) {
+        int n = Pagina.normalizarTamanio(tamanio);
+        final String sql = despues == null
+                ? "SELECT * FROM usuario ORDER BY username LIMIT ?"
+                : "SELECT * FROM usuario WHERE username > ? ORDER BY username LIMIT ?";
+        try (Connection cn = ConnectionFactory.getConnection();
+             PreparedStatement ps = cn.prepareStatement(sql)) {
+
+            int i = 1;
+            if (despues != null) ps.setString(i++, despues.getId());
+            ps.setInt(i, n + 1);
+
+            try (ResultSet rs = ps.executeQuery()) {
+                List<Usuario> out = new ArrayList<>(n);
+                boolean hayMas = false;
+                while (rs.next()) {
+                    if (out.size() == n) { hayMas = true; break; }
+                    out.add(map(rs));
+                }
+                CursorPagina sig = null;
+                if (hayMas) {
+                    String ultimo = out.get(out.size() - 1).getUsername();
+                    sig = CursorPagina.de(ultimo, ultimo);
+                }
+                return new Pagina<>(out, sig);
+            }
+
+        } catch (SQLException e) {
+            throw new RuntimeException("Error paginando usuarios: " + e.getMessage(), e);
+        }
+    }
+
     /**
      * Elimina físicamente un usuario por username.
      *
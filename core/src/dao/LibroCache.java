@@ -0,0 +1,140 @@
+package dao;
+
+/**
+ * @author Federico Gabriel Arena
+ * @author Fabrizio Manuel Mansilla
+ */
+
+import model.Libro;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * LibroCache
+ * ----------
+ * Caché en memoria de {@link Libro} por código, compartida por todo el proceso.
+ *
+ * ¿Qué hace?
+ *  - Lectura "read-through": {@link #obtener(String, Function)} devuelve la copia en memoria o,
+ *    si no está (o venció), la lee con el cargador y la guarda.
+ *  - Acota memoria con desalojo LRU ({@link LinkedHashMap} en orden de acceso) y antigüedad
+ *    con TTL (por si otro proceso escribe la misma base).
+ *  - Cuenta aciertos, fallos, desalojos, vencimientos e invalidaciones ({@link #estadisticas()}).
+ *
+ * Coherencia:
+ *  - Todo el que modifica un libro (LibroService, stock en JdbcPrestamoDAO) llama a
+ *    {@link #invalidar(String)} DESPUÉS del commit.
+ *  - Carrera lectura/escritura: una lectura que empezó antes de una invalidación podría traer el
+ *    valor viejo y guardarlo después. Para evitarlo cada invalidación incrementa una versión y la
+ *    carga solo se guarda si la versión no cambió mientras leía.
+ *  - Se guardan y entregan COPIAS: quien modifique el objeto devuelto no altera la caché.
+ *
+ * Configuración de {@link #global()} (propiedades de sistema, opcionales):
+ *   biblioteca.cache.libros.max    entradas máximas (0 = caché desactivada)  (default 10000)
+ *   biblioteca.cache.libros.ttlMs  vida de cada entrada                       (default 30000)
+ */
+public final class LibroCache {
+
+    private static final LibroCache GLOBAL = new LibroCache(
+            Integer.getInteger("biblioteca.cache.libros.max", 10_000),
+            Long.getLong("biblioteca.cache.libros.ttlMs", 30_000L));
+
+    private final int maxEntradas;
+    private final long ttlNs;
+    private final LinkedHashMap<String, Entrada> mapa;
+
+    // ---- Estado protegido por "this" ----
+    private long version = 0;
+    private long aciertos, fallos, desalojos, vencimientos, invalidaciones;
+
+    /** Valor cacheado con su instante de carga. */
+    private static final class Entrada {
+        final Libro libro;
+        final long cargadoNs;
+        Entrada(Libro libro, long cargadoNs) { this.libro = libro; this.cargadoNs = cargadoNs; }
+    }
+
+    /**
+     * @param maxEntradas entradas máximas (0 = no cachear nada).
+     * @param ttlMs       vida de cada entrada en milisegundos.
+     */
+    public LibroCache(int maxEntradas, long ttlMs) {
+        this.maxEntradas = Math.max(0, maxEntradas);
+        this.ttlNs = TimeUnit.MILLISECONDS.toNanos(ttlMs);
+        this.mapa = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entrada> e) {
+                if (size() <= LibroCache.this.maxEntradas) return false;
+                desalojos++;
+                return true;
+            }
+        };
+    }
+
+    /** @return instancia compartida por los DAOs y servicios del proceso. */
+    public static LibroCache global() { return GLOBAL; }
+
+    /**
+     * Lectura con carga bajo demanda.
+     *
+     * @param codigo   código del libro.
+     * @param cargador lectura a la base si no está en memoria (puede devolver null).
+     * @return copia del libro, o {@code null} si no existe.
+     */
+    public Libro obtener(String codigo, Function<String, Libro> cargador) {
+        if (codigo == null) return null;
+        if (maxEntradas == 0) return cargador.apply(codigo);
+
+        long versionLeida;
+        synchronized (this) {
+            Entrada e = mapa.get(codigo);
+            if (e != null) {
+                if (System.nanoTime() - e.cargadoNs < ttlNs) {
+                    aciertos++;
+                    return copia(e.libro);
+                }
+                mapa.remove(codigo);
+                vencimientos++;
+            }
+            fallos++;
+            versionLeida = version;
+        }
+
+        // Lectura a la base FUERA del lock (no bloquear a los demás lectores)
+        Libro l = cargador.apply(codigo);
+
+        if (l != null) {
+            synchronized (this) {
+                if (version == versionLeida) mapa.put(codigo, new Entrada(copia(l), System.nanoTime()));
+            }
+        }
+        return l;
+    }
+
+    /** Descarta un libro (después de modificarlo en la base). */
+    public synchronized void invalidar(String codigo) {
+        version++;
+        invalidaciones++;
+        mapa.remove(codigo);
+    }
+
+    /** Descarta todo (p. ej. tras una importación masiva). */
+    public synchronized void limpiar() {
+        version++;
+        invalidaciones++;
+        mapa.clear();
+    }
+
+    /** @return foto de las métricas actuales. */
+    public synchronized CacheStats estadisticas() {
+        return new CacheStats(mapa.size(), maxEntradas, aciertos, fallos,
+                desalojos, vencimientos, invalidaciones);
+    }
+
+    private static Libro copia(Libro l) {
+        return new Libro(l);
+    }
+}
@@ -37,6 +37,15 @@ public interface LibroDao {
      */
     void crear(Libro l);
 
+    /**
+     * Inserta o actualiza (por código) un lote de libros en UNA transacción.
+     * Pensado para importaciones masivas: todo el lote se confirma o se revierte junto.
+     *
+     * @param libros entidades validadas por la capa de servicio.
+     * @throws RuntimeException si falla cualquier fila (el lote entero se revierte).
+     */
+    void upsertLote(List<Libro> libros);
+
     /**
      * Obtiene un libro por su código (clave primaria).
      *
@@ -74,6 +83,67 @@ public interface LibroDao {
      */
     List<Libro> listar(String filtroTexto);
 
+    /**
+     * Busca libros por texto con una estrategia explícita
+     * (prefijos sobre índice full-text, relevancia o subcadena).
+     *
+     * @param texto texto a buscar; {@code null} o vacío lista todo.
+     * @param modo  estrategia de búsqueda; {@code null} equivale a {@link ModoBusqueda#PREFIJO}.
+     * @return lista de libros que cumplen el criterio.
+     * @throws RuntimeException si ocurre un error de acceso a datos.
+     */
+    List<Libro> buscar(String texto, ModoBusqueda modo);
+
+    /**
+     * Devuelve una página de libros (orden por título y código) a partir de un cursor.
+     * Memoria y tiempo por página son constantes sin importar el tamaño del catálogo.
+     *
+     * @param filtroTexto texto a buscar (prefijos); {@code null} o vacío lista todo.
+     * @param despues     cursor devuelto por la página anterior, o {@code null} para la primera.
+     * @param tamanio     cantidad máxima de libros en la página.
+     * @return página de libros con el cursor para continuar.
+     * @throws RuntimeException si ocurre un error de acceso a datos.
+     */
+    Pagina<Libro> listarPagina(String filtroTexto, CursorPagina despues, int tamanio);
+
+    /**
+     * Igual que {@link #listarPagina(String, CursorPagina, int)} pero con orden configurable.
+     * El cursor debe provenir de una página pedida con el mismo orden y sentido.
+     *
+     * @param filtroTexto texto a buscar (prefijos); {@code null} o vacío lista todo.
+     * @param orden       columna de orden ({@code null} = título).
+     * @param descendente {@code true} para orden descendente.
+     * @param despues     cursor de la página anterior, o {@code null} para la primera.
+     * @param tamanio     cantidad máxima de libros en la página.
+     * @return página de libros con el cursor para continuar.
+     * @throws RuntimeException si ocurre un error de acceso a datos.
+     */
+    Pagina<Libro> listarPagina(String filtroTexto, OrdenLibro orden, boolean descendente,
+                               CursorPagina despues, int tamanio);
+
+    /**
+     * Bloque de libros por posición absoluta (OFFSET). Solo para saltos aleatorios sin cursor
+     * conocido; para recorridos secuenciales usar {@code listarPagina}.
+     *
+     * @param filtroTexto texto a buscar (prefijos); {@code null} o vacío lista todo.
+     * @param orden       columna de orden ({@code null} = título).
+     * @param descendente {@code true} para orden descendente.
+     * @param desde       posición (0-based) de la primera fila.
+     * @param tamanio     cantidad máxima de libros.
+     * @return libros del bloque.
+     * @throws RuntimeException si ocurre un error de acceso a datos.
+     */
+    List<Libro> listarBloque(String filtroTexto, OrdenLibro orden, boolean descendente, int desde, int tamanio);
+
+    /**
+     * Cuenta los libros que cumplen el filtro (mismo criterio que {@code listarPagina}).
+     *
+     * @param filtroTexto texto a buscar; {@code null} o vacío cuenta todo.
+     * @return cantidad total de libros.
+     * @throws RuntimeException si ocurre un error de acceso a datos.
+     */
+    int contar(String filtroTexto);
+
     /**
      * Cambia el estado lógico de disponibilidad del libro (baja lógica).
      *
@@ -92,4 +162,20 @@ public interface LibroDao {
      * @throws RuntimeException si ocurre un error de acceso a datos.
      */
     boolean tienePrestamosAbiertos(String codigo);
+
+    /**
+     * Verifica los contadores materializados de préstamos contra la tabla de préstamos.
+     *
+     * @return códigos de libro con contador desactualizado (vacía si todo coincide).
+     * @throws RuntimeException si ocurre un error de acceso a datos.
+     */
+    List<String> verificarContadores();
+
+    /**
+     * Recalcula todos los contadores de préstamos desde la tabla de préstamos.
+     *
+     * @return cantidad de libros con contador.
+     * @throws RuntimeException si ocurre un error de acceso a datos.
+     */
+    int reconstruirContadores();
 }
@@ -0,0 +1,41 @@
+package dao;
+
+/**
+ * @author Federico Gabriel Arena
+ * @author Fabrizio Manuel Mansilla
+ */
+
+import java.util.Locale;
+
+/**
+ * Durabilidad de los eventos de auditoría de préstamos (ver {@link AuditoriaWriter}).
+ *
+ * Modos:
+ *  - SINCRONA   : comportamiento histórico. El INSERT en auditoria va dentro de la misma
+ *                 transacción que el préstamo: o se graban ambos o ninguno.
+ *  - GRUPAL     : "group commit". El evento se encola después del commit y un hilo de fondo
+ *                 lo graba junto con los demás del mismo intervalo en un solo lote. Quien llama
+ *                 espera a que su lote esté grabado (no se pierde nada, salvo caída del proceso
+ *                 entre ambos commits). Si la cola está llena, quien llama espera (contrapresión).
+ *  - DESCARTABLE: "fire-and-forget". Igual que GRUPAL pero sin esperar; si la cola está llena
+ *                 el evento se descarta y se cuenta en las métricas.
+ */
+public enum ModoAuditoria {
+    SINCRONA,
+    GRUPAL,
+    DESCARTABLE;
+
+    /**
+     * @param nombre nombre del modo, sin distinguir mayúsculas; {@code null}/vacío = SINCRONA.
+     * @return modo correspondiente.
+     * @throws IllegalArgumentException si el nombre no corresponde a ningún modo.
+     */
+    public static ModoAuditoria porNombre(String nombre) {
+        if (nombre == null || nombre.isBlank()) return SINCRONA;
+        try {
+            return valueOf(nombre.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Modo de auditoría desconocido: " + nombre);
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package dao;
+
+/**
+ * @author Federico Gabriel Arena
+ * @author Fabrizio Manuel Mansilla
+ */
+
+/**
+ * Modo de búsqueda de texto sobre el catálogo de libros.
+ *
+ * Modos:
+ *  - PREFIJO    : índice full-text (FTS5). Cada palabra del filtro debe aparecer como
+ *                 prefijo de alguna palabra de título/autor/categoría ("quij cerv" → El Quijote).
+ *                 Sin distinción de mayúsculas ni acentos. Orden alfabético por título.
+ *  - RELEVANCIA : mismo criterio que PREFIJO pero ordenado por bm25 (título pesa más que
+ *                 autor y autor más que categoría).
+ *  - CONTIENE   : comportamiento histórico con LIKE '%texto%' (subcadenas en cualquier posición).
+ *                 No usa índices: recorre toda la tabla. Útil solo para búsquedas "infijas".
+ */
+public enum ModoBusqueda {
+    PREFIJO,
+    RELEVANCIA,
+    CONTIENE
+}
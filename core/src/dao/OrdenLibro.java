@@ -0,0 +1,66 @@
+package dao;
+
+/**
+ * @author Federico Gabriel Arena
+ * @author Fabrizio Manuel Mansilla
+ */
+
+import model.Libro;
+
+/**
+ * Columna de orden para los listados paginados de libros.
+ *
+ * Cada constante conoce:
+ *  - la expresión SQL de orden (con COLLATE NOCASE en textos y COALESCE en columnas
+ *    opcionales, para que la comparación del cursor nunca tropiece con NULL);
+ *  - si la clave es numérica (se bindea como entero en el cursor);
+ *  - cómo extraer la clave de un {@link Libro} para armar el cursor siguiente.
+ *
+ * El desempate siempre es {@code codigo} (PK), así el orden es total y estable.
+ */
+public enum OrdenLibro {
+
+    CODIGO("l.codigo", false),
+    TITULO("l.titulo COLLATE NOCASE", false),
+    AUTOR("l.autor COLLATE NOCASE", false),
+    CATEGORIA("l.categoria COLLATE NOCASE", false),
+    EDITORIAL("COALESCE(l.editorial,'') COLLATE NOCASE", false),
+    ANIO("COALESCE(l.anio,0)", true),
+    STOCK("l.stock", true),
+    PRESTADOS("COALESCE(c.ejemplares_prestados,0)", true),   // alias c = libro_contador
+    ACTIVO("l.activo", true);
+
+    private final String expresion;
+    private final boolean numerica;
+
+    OrdenLibro(String expresion, boolean numerica) {
+        this.expresion = expresion;
+        this.numerica = numerica;
+    }
+
+    /** @return expresión SQL de orden (sobre el alias {@code l} de libro). */
+    public String getExpresion() { return expresion; }
+
+    /** @return {@code true} si la clave del cursor se compara como número. */
+    public boolean isNumerica() { return numerica; }
+
+    /**
+     * Valor de la columna de orden para un libro, en el formato que guarda el cursor.
+     *
+     * @param l libro (última fila de una página).
+     * @return clave de orden como texto.
+     */
+    public String clave(Libro l) {
+        return switch (this) {
+            case CODIGO -> l.getCodigo();
+            case TITULO -> l.getTitulo();
+            case AUTOR -> l.getAutor();
+            case CATEGORIA -> l.getCategoria();
+            case EDITORIAL -> l.getEditorial() == null ? "" : l.getEditorial();
+            case ANIO -> String.valueOf(l.getAnio());
+            case STOCK -> String.valueOf(l.getStock());
+            case PRESTADOS -> String.valueOf(l.getEjemplaresPrestados());
+            case ACTIVO -> l.isActivo() ? "1" : "0";
+        };
+    }
+}
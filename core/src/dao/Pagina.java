@@ -0,0 +1,50 @@
+package dao;
+
+/**
+ * @author Federico Gabriel Arena
+ * @author Fabrizio Manuel Mansilla
+ */
+
+import java.util.List;
+
+/**
+ * Pagina
+ * ------
+ * Resultado de una consulta paginada por clave: los elementos de la página y el cursor
+ * para pedir la siguiente.
+ *
+ * @param <T> tipo de elemento (Libro, Prestamo, Usuario, ...).
+ */
+public final class Pagina<T> {
+
+    /** Tamaño máximo de página aceptado por los DAOs. */
+    public static final int TAMANIO_MAXIMO = 1_000;
+
+    private final List<T> items;
+    private final CursorPagina siguiente;
+
+    public Pagina(List<T> items, CursorPagina siguiente) {
+        this.items = List.copyOf(items);
+        this.siguiente = siguiente;
+    }
+
+    /** @return elementos de la página (inmodificable). */
+    public List<T> getItems() { return items; }
+
+    /** @return cursor para la página siguiente, o {@code null} si esta es la última. */
+    public CursorPagina getSiguiente() { return siguiente; }
+
+    /** @return {@code true} si hay más resultados después de esta página. */
+    public boolean hayMas() { return siguiente != null; }
+
+    /**
+     * Normaliza el tamaño pedido al rango [1, {@link #TAMANIO_MAXIMO}].
+     *
+     * @param tamanio tamaño solicitado.
+     * @return tamaño efectivo.
+     */
+    public static int normalizarTamanio(int tamanio) {
+        if (tamanio <= 0) return 50;
+        return Math.min(tamanio, TAMANIO_MAXIMO);
+    }
+}
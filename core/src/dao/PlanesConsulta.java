@@ -0,0 +1,123 @@
+package dao;
+
+/**
+ * @author Federico Gabriel Arena
+ * @author Fabrizio Manuel Mansilla
+ */
+
+import db.FormatoFechas;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * PlanesConsulta
+ * --------------
+ * Chequeo de regresión de los planes de las consultas calientes de préstamos.
+ *
+ * ¿Qué hace?
+ *  - Corre EXPLAIN QUERY PLAN sobre el mismo SQL que arma {@link JdbcPrestamoDAO} (no una copia).
+ *  - Marca como problema que una consulta:
+ *      · recorra la tabla prestamo completa (SCAN sin índice),
+ *      · ordene con un B-tree temporal en lugar de leer en el orden del índice,
+ *      · no use el índice esperado.
+ *
+ * Uso:
+ *  - bench.PlanesConsultaCheck lo corre sobre una base sembrada (o la indicada) y sale con
+ *    código 1 si hay problemas. Conviene correrlo después de tocar índices o consultas.
+ *
+ * Colabora con:
+ *  - {@link JdbcPrestamoDAO} (fuente del SQL), {@link db.DbInit} (índices).
+ */
+public final class PlanesConsulta {
+
+    /** Consulta a revisar y el índice que debe usar. */
+    private static final class Consulta {
+        final String nombre;
+        final String sql;
+        final String indice;
+
+        Consulta(String nombre, String sql, String indice) {
+            this.nombre = nombre;
+            this.sql = sql;
+            this.indice = indice;
+        }
+    }
+
+    private static final String PK = "INTEGER PRIMARY KEY";
+
+    /** Consultas calientes con el SQL del formato de fechas vigente (cambia durante una migración). */
+    private static List<Consulta> calientes() {
+        FormatoFechas f = FormatoFechas.actual();
+        return List.of(
+                new Consulta("abiertos", "SELECT p.* " + JdbcPrestamoDAO.ABIERTOS_SQL,
+                        "ix_prestamo_abiertos_vence"),
+                new Consulta("abiertosPagina", JdbcPrestamoDAO.abiertosPaginaSql(f, false, true),
+                        "ix_prestamo_abiertos_vence"),
+                new Consulta("abiertosPagina+filtro", JdbcPrestamoDAO.abiertosPaginaSql(f, true, true),
+                        "ix_prestamo_abiertos_vence"),
+                new Consulta("abiertosPorId", JdbcPrestamoDAO.abiertosPorIdSql(3), PK),
+                new Consulta("vencidosAl", JdbcPrestamoDAO.vencidosSql(f), "ix_prestamo_abiertos_vence"),
+                new Consulta("historico+rango", JdbcPrestamoDAO.historicoSql(f, true, true, false, false, false),
+                        "ix_prestamo_fecha"),
+                new Consulta("historicoPagina", JdbcPrestamoDAO.historicoSql(f, false, false, false, true, true),
+                        "ix_prestamo_fecha"),
+                new Consulta("historicoPagina+rango", JdbcPrestamoDAO.historicoSql(f, true, true, false, true, true),
+                        "ix_prestamo_fecha"),
+                new Consulta("historicoPagina+filtro", JdbcPrestamoDAO.historicoSql(f, false, false, true, true, true),
+                        "ix_prestamo_fecha"));
+    }
+
+    private PlanesConsulta() {}
+
+    /**
+     * @param cn conexión abierta a la base a revisar.
+     * @return plan de cada consulta caliente (nombre → líneas de EXPLAIN QUERY PLAN).
+     * @throws RuntimeException si ocurre un error SQL.
+     */
+    public static Map<String, List<String>> planes(Connection cn) {
+        Map<String, List<String>> out = new LinkedHashMap<>();
+        for (Consulta c : calientes()) out.put(c.nombre, plan(cn, c.sql));
+        return out;
+    }
+
+    /**
+     * @param cn conexión abierta a la base a revisar.
+     * @return problemas encontrados ("consulta: motivo"); vacía si todos los planes están bien.
+     * @throws RuntimeException si ocurre un error SQL.
+     */
+    public static List<String> verificar(Connection cn) {
+        List<String> problemas = new ArrayList<>();
+        for (Consulta c : calientes()) {
+            List<String> plan = plan(cn, c.sql);
+            boolean usaIndice = false;
+            for (String linea : plan) {
+                if ((linea.startsWith("SCAN p") || linea.startsWith("SCAN prestamo")) && !linea.contains("INDEX"))
+                    problemas.add(c.nombre + ": recorre la tabla prestamo completa (" + linea + ")");
+                if (linea.contains("TEMP B-TREE FOR ORDER BY"))
+                    problemas.add(c.nombre + ": ordena con un B-tree temporal (" + linea + ")");
+                if (linea.contains(c.indice)) usaIndice = true;
+            }
+            if (!usaIndice) problemas.add(c.nombre + ": no usa " + c.indice + " " + plan);
+        }
+        return problemas;
+    }
+
+    /** EXPLAIN QUERY PLAN con los parámetros sin bindear (el planificador los trata como desconocidos). */
+    private static List<String> plan(Connection cn, String sql) {
+        try (Statement st = cn.createStatement();
+             ResultSet rs = st.executeQuery("EXPLAIN QUERY PLAN " + sql)) {
+            List<String> lineas = new ArrayList<>();
+            while (rs.next()) lineas.add(rs.getString("detail"));
+            return lineas;
+        } catch (SQLException e) {
+            throw new RuntimeException("Error obteniendo el plan de consulta: " + e.getMessage(), e);
+        }
+    }
+}
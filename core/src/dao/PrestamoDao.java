@@ -6,9 +6,13 @@ package dao;
  */
 
 import model.Prestamo;
+import model.PrestamoDetalle;
+import model.PrestamoVencido;
 
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * Contrato de persistencia para la gestión de préstamos.
@@ -18,6 +22,7 @@ import java.util.List;
  *      * prestar: crea préstamo, descuenta stock y registra auditoría.
  *      * devolver: marca DEVUELTO, repone stock y audita.
  *      * renovar: extiende vencimiento y audita.
+ *      * prestarLote / devolverLote: lo mismo para muchos ítems en una sola transacción.
  *  - Expone consultas operativas (abiertos) e históricas (con rango de fechas).
  *
  * ¿Por qué interfaz?
@@ -34,6 +39,7 @@ public interface PrestamoDao {
      *
      * @param p entidad de préstamo con datos completos (libro, operador, destinatario, cantidad, fechas).
      * @return id autogenerado del préstamo.
+     * @throws PrestamoRechazadoException si el libro no existe, está desactivado o no tiene stock.
      * @throws RuntimeException si falla cualquier paso (insert, stock, auditoría).
      */
     long prestar(Prestamo p);
@@ -58,6 +64,29 @@ public interface PrestamoDao {
      */
     void renovar(long idPrestamo, int dias);
 
+    /**
+     * Crea muchos préstamos en UNA transacción (mismas reglas que {@link #prestar(Prestamo)}).
+     * Un ítem rechazado (stock, libro inactivo/inexistente) no aborta el lote salvo que se pida
+     * "todo o nada".
+     *
+     * @param prestamos préstamos completos, en el orden en que se aplican.
+     * @param todoONada si un solo rechazo revierte el lote entero.
+     * @return un resultado por préstamo (id creado o motivo de rechazo), en el orden de entrada.
+     * @throws RuntimeException si falla la operación (la transacción se revierte entera).
+     */
+    ResultadoLote prestarLote(List<Prestamo> prestamos, boolean todoONada);
+
+    /**
+     * Devuelve muchos préstamos ABIERTO en UNA transacción: marca DEVUELTO, repone stock
+     * (agrupado por libro) y audita.
+     *
+     * @param idsPrestamo ids de los préstamos a devolver.
+     * @param todoONada   si un solo id inválido (inexistente, no ABIERTO, repetido) revierte el lote.
+     * @return un resultado por id, en el orden de entrada.
+     * @throws RuntimeException si falla la operación (la transacción se revierte entera).
+     */
+    ResultadoLote devolverLote(List<Long> idsPrestamo, boolean todoONada);
+
     /**
      * Lista préstamos en estado ABIERTO con filtro opcional por texto.
      * El filtro suele aplicarse sobre título/autor/destinatario, según implementación.
@@ -67,6 +96,26 @@ public interface PrestamoDao {
      */
     List<Prestamo> abiertos(String filtroTexto);
 
+    /**
+     * Igual que {@link #abiertos(String)} pero cada préstamo trae título y autor del libro,
+     * resueltos en la misma consulta (una sola ida a la base para todo el listado).
+     *
+     * @param filtroTexto texto a buscar; puede ser {@code null} o vacío para no filtrar.
+     * @return préstamos abiertos con datos del libro, ordenados por vencimiento ascendente.
+     */
+    List<PrestamoDetalle> abiertosDetalle(String filtroTexto);
+
+    /**
+     * Igual que {@link #abiertosDetalle(String)} pero solo entre los ids dados: sirve para
+     * refrescar filas sueltas de un listado (los ids que no vuelven ya no están ABIERTO o no
+     * cumplen el filtro).
+     *
+     * @param filtroTexto texto a buscar; puede ser {@code null} o vacío para no filtrar.
+     * @param ids         ids de préstamo a consultar.
+     * @return los que siguen abiertos y cumplen el filtro, ordenados por vencimiento ascendente.
+     */
+    List<PrestamoDetalle> abiertosDetalle(String filtroTexto, Collection<Long> ids);
+
     /**
      * Consulta histórica de préstamos con rango de fechas y filtro opcional por texto.
      *
@@ -76,4 +125,65 @@ public interface PrestamoDao {
      * @return lista de préstamos en el período (típicamente ordenados por fecha de préstamo desc).
      */
     List<Prestamo> historico(LocalDate desde, LocalDate hasta, String filtroTexto);
+
+    /**
+     * Igual que {@link #historico} pero sin armar la lista: entrega cada préstamo al consumidor a
+     * medida que se lee (memoria constante, para exportar años de historia).
+     *
+     * @param desde       fecha mínima (inclusive) o {@code null}.
+     * @param hasta       fecha máxima (inclusive) o {@code null}.
+     * @param filtroTexto texto a buscar; {@code null} o vacío para no filtrar.
+     * @param destino     recibe cada préstamo (fecha de préstamo desc); no debe guardar referencias.
+     * @return cantidad de préstamos entregados.
+     * @throws RuntimeException si falla la consulta o el consumidor.
+     */
+    long recorrerHistorico(LocalDate desde, LocalDate hasta, String filtroTexto, Consumer<? super Prestamo> destino);
+
+    /**
+     * Página de préstamos ABIERTO ordenados por vencimiento ascendente (y id), a partir de un cursor.
+     *
+     * @param filtroTexto texto a buscar; {@code null} o vacío para no filtrar.
+     * @param despues     cursor de la página anterior, o {@code null} para la primera.
+     * @param tamanio     cantidad máxima de préstamos en la página.
+     * @return página con el cursor para continuar.
+     */
+    Pagina<Prestamo> abiertosPagina(String filtroTexto, CursorPagina despues, int tamanio);
+
+    /**
+     * Página del histórico ordenada por fecha de préstamo descendente (y id), a partir de un cursor.
+     *
+     * @param desde       fecha mínima (inclusive) o {@code null}.
+     * @param hasta       fecha máxima (inclusive) o {@code null}.
+     * @param filtroTexto texto a buscar; {@code null} o vacío para no filtrar.
+     * @param despues     cursor de la página anterior, o {@code null} para la primera.
+     * @param tamanio     cantidad máxima de préstamos en la página.
+     * @return página con el cursor para continuar.
+     */
+    Pagina<Prestamo> historicoPagina(LocalDate desde, LocalDate hasta, String filtroTexto,
+                                     CursorPagina despues, int tamanio);
+
+    // ===================== Vencidos =====================
+
+    /**
+     * Préstamos ABIERTO cuyo vencimiento es anterior a una fecha (consulta por rango indexada).
+     *
+     * @param hoy fecha de referencia: vence antes de este día = vencido.
+     * @return préstamos vencidos ordenados por vencimiento.
+     */
+    List<Prestamo> abiertosVencidosAl(LocalDate hoy);
+
+    /**
+     * Reemplaza la foto de vencidos (atraso y multa calculados) por la indicada, en una transacción.
+     *
+     * @param vencidos foto nueva (id, días de atraso, multa y fecha de cálculo de cada préstamo).
+     */
+    void guardarVencidos(List<PrestamoVencido> vencidos);
+
+    /**
+     * Lee la última foto de vencidos con los datos del préstamo y del libro, omitiendo los que ya
+     * se devolvieron.
+     *
+     * @return vencidos ordenados por días de atraso descendente.
+     */
+    List<PrestamoVencido> vencidos();
 }
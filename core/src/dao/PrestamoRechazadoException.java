@@ -0,0 +1,49 @@
+package dao;
+
+/**
+ * @author Federico Gabriel Arena
+ * @author Fabrizio Manuel Mansilla
+ */
+
+/**
+ * Préstamo rechazado por una regla de negocio (no por un error técnico de la base).
+ *
+ * ¿Para qué existe?
+ *  - Que quien llama (servicio, UI, API) distinga el motivo sin parsear el mensaje:
+ *    libro inexistente, libro desactivado o stock insuficiente.
+ *  - El mensaje sigue siendo legible para mostrarlo tal cual en un diálogo.
+ */
+public class PrestamoRechazadoException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    /** Motivo del rechazo. */
+    public enum Motivo {
+        LIBRO_INEXISTENTE("El libro no existe"),
+        LIBRO_INACTIVO("El libro está desactivado"),
+        STOCK_INSUFICIENTE("Stock insuficiente");
+
+        private final String mensaje;
+
+        Motivo(String mensaje) { this.mensaje = mensaje; }
+
+        /** @return texto para mostrar al usuario. */
+        public String getMensaje() { return mensaje; }
+    }
+
+    private final Motivo motivo;
+    private final String libroCodigo;
+
+    /**
+     * @param motivo      causa del rechazo.
+     * @param libroCodigo libro involucrado.
+     */
+    public PrestamoRechazadoException(Motivo motivo, String libroCodigo) {
+        super(motivo.getMensaje());
+        this.motivo = motivo;
+        this.libroCodigo = libroCodigo;
+    }
+
+    public Motivo getMotivo() { return motivo; }
+    public String getLibroCodigo() { return libroCodigo; }
+}
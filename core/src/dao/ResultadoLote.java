@@ -0,0 +1,119 @@
+package dao;
+
+/**
+ * @author Federico Gabriel Arena
+ * @author Fabrizio Manuel Mansilla
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * ResultadoLote
+ * -------------
+ * Resultado de una operación en lote (préstamo o devolución de muchos ítems en una transacción).
+ *
+ * ¿Qué informa?
+ *  - Un {@link Item} por cada elemento de entrada, en el mismo orden (índice 0-based):
+ *    éxito con el id del préstamo, o falla con el motivo.
+ *  - Si el lote quedó confirmado (commit) o revertido. En modo "todo o nada" basta una falla
+ *    para revertir: los ítems que sí habrían funcionado se informan como {@link #REVERTIDO}.
+ */
+public final class ResultadoLote {
+
+    /** Mensaje de los ítems válidos que no se aplicaron porque otro ítem falló (todo o nada). */
+    public static final String REVERTIDO = "No aplicado: otro ítem del lote falló";
+
+    /** Resultado de un ítem del lote. */
+    public static final class Item {
+        private final int indice;
+        private final Long id;
+        private final String error;
+        private final PrestamoRechazadoException.Motivo motivo;
+
+        private Item(int indice, Long id, String error, PrestamoRechazadoException.Motivo motivo) {
+            this.indice = indice;
+            this.id = id;
+            this.error = error;
+            this.motivo = motivo;
+        }
+
+        /** Ítem aplicado; {@code id} es el del préstamo creado o devuelto. */
+        public static Item ok(int indice, long id) {
+            return new Item(indice, id, null, null);
+        }
+
+        /** Ítem rechazado por una regla de préstamo (stock, libro inactivo/inexistente). */
+        public static Item rechazado(int indice, PrestamoRechazadoException.Motivo motivo) {
+            return new Item(indice, null, motivo.getMensaje(), motivo);
+        }
+
+        /** Ítem fallido por otra causa (validación, préstamo no abierto, ...). */
+        public static Item falla(int indice, String error) {
+            return new Item(indice, null, error, null);
+        }
+
+        public int getIndice() { return indice; }
+        /** @return id del préstamo si el ítem se aplicó; {@code null} si no. */
+        public Long getId() { return id; }
+        public boolean isOk() { return error == null; }
+        /** @return mensaje de error, o {@code null} si el ítem se aplicó. */
+        public String getError() { return error; }
+        /** @return motivo tipado si fue un rechazo de préstamo; {@code null} en otro caso. */
+        public PrestamoRechazadoException.Motivo getMotivo() { return motivo; }
+
+        @Override
+        public String toString() {
+            return "#" + indice + (isOk() ? " ok id=" + id : " ERROR " + error);
+        }
+    }
+
+    private final List<Item> items;
+    private final boolean confirmado;
+
+    /**
+     * @param items      un resultado por ítem de entrada, ordenados por índice.
+     * @param confirmado {@code true} si la transacción se confirmó.
+     */
+    public ResultadoLote(List<Item> items, boolean confirmado) {
+        this.items = List.copyOf(items);
+        this.confirmado = confirmado;
+    }
+
+    /**
+     * Arma el resultado aplicando la regla "todo o nada": si se pidió y algún ítem falló,
+     * los exitosos pasan a {@link #REVERTIDO} y el lote no se confirma.
+     *
+     * @param items     resultados por ítem.
+     * @param todoONada si una sola falla revierte el lote entero.
+     */
+    public static ResultadoLote de(List<Item> items, boolean todoONada) {
+        boolean hayFallas = items.stream().anyMatch(i -> !i.isOk());
+        if (!todoONada || !hayFallas) return new ResultadoLote(items, true);
+        List<Item> revertidos = new ArrayList<>(items.size());
+        for (Item i : items) revertidos.add(i.isOk() ? Item.falla(i.getIndice(), REVERTIDO) : i);
+        return new ResultadoLote(revertidos, false);
+    }
+
+    /** @return resultados por ítem, en el orden de entrada. */
+    public List<Item> getItems() { return items; }
+
+    /** @return {@code true} si los ítems exitosos quedaron grabados. */
+    public boolean isConfirmado() { return confirmado; }
+
+    /** @return cantidad de ítems aplicados. */
+    public int getExitosos() {
+        return (int) items.stream().filter(Item::isOk).count();
+    }
+
+    /** @return cantidad de ítems no aplicados (fallidos o revertidos). */
+    public int getFallidos() {
+        return items.size() - getExitosos();
+    }
+
+    @Override
+    public String toString() {
+        return "ResultadoLote{confirmado=" + confirmado + ", exitosos=" + getExitosos()
+                + ", fallidos=" + getFallidos() + "}";
+    }
+}
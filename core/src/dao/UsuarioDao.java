@@ -56,6 +56,16 @@ public interface UsuarioDao {
      */
     List<Usuario> listar();
 
+    /**
+     * Página de usuarios ordenados por username, a partir de un cursor.
+     *
+     * @param despues cursor de la página anterior, o {@code null} para la primera.
+     * @param tamanio cantidad máxima de usuarios en la página.
+     * @return página con el cursor para continuar.
+     * @throws RuntimeException si ocurre un error de acceso a datos.
+     */
+    Pagina<Usuario> listarPagina(CursorPagina despues, int tamanio);
+
     /**
      * Elimina físicamente un usuario por username.
      *
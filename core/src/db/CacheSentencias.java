@@ -0,0 +1,222 @@
+package db;
+
+/**
+ * @author Federico Gabriel Arena
+ * @author Fabrizio Manuel Mansilla
+ */
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * CacheSentencias
+ * ---------------
+ * Sentencias preparadas reutilizables de una conexión física del {@link ConnectionPool}.
+ *
+ * ¿Qué hace?
+ *   - {@code prepareStatement(sql)} busca por el texto SQL una sentencia ya compilada y libre;
+ *     si no hay, la prepara contra la conexión física (fallo de cache).
+ *   - El llamador recibe un {@link Proxy} de {@link PreparedStatement}: {@code close()} la deja
+ *     lista para el próximo uso (cierra su ResultSet, limpia parámetros y lote) y la vuelve a la cache.
+ *   - Capacidad acotada con desalojo LRU: la menos usada se cierra físicamente.
+ *
+ * Decisiones:
+ *   - Una sentencia en uso sale de la cache: si el mismo SQL se prepara dos veces a la vez (p. ej.
+ *     anidado) la segunda es nueva, y al devolverlas se conserva una sola.
+ *   - Cerrar el ResultSet al devolverla es obligatorio: en SQLite una sentencia sin resetear sigue
+ *     "en curso" (retiene la lectura del WAL y bloquea VACUUM). Lo mismo el de claves generadas, que
+ *     el driver deja abierto tras {@code executeUpdate}/{@code execute} aunque nadie lo pida.
+ *   - Una sentencia a la que se le cambió la configuración (fetch size, max rows, timeout...) no se
+ *     reutiliza: se cierra al devolverla, para no pasarle esa configuración al próximo llamador.
+ *   - El mapa se usa bajo {@code synchronized}: la conexión física es de un solo llamador a la vez, pero
+ *     una sentencia cerrada tarde (con la conexión ya devuelta) podría cruzarse con el siguiente.
+ *
+ * Colabora con:
+ *   - {@link ConnectionPool}, que crea una por conexión física y suma los aciertos en {@link PoolStats}.
+ */
+final class CacheSentencias {
+
+    /** Métodos que cambian la configuración de la sentencia (no se resetean al reutilizarla). */
+    private static final Set<String> CONFIGURACION = Set.of("setMaxRows", "setLargeMaxRows", "setFetchSize",
+            "setFetchDirection", "setQueryTimeout", "setMaxFieldSize", "setEscapeProcessing", "setCursorName",
+            "setPoolable", "closeOnCompletion");
+
+    private final int capacidad;
+    private final LongAdder aciertos;
+    private final LongAdder fallos;
+    private final LongAdder desalojadas;
+
+    /** Sentencias libres por texto SQL, en orden de acceso (la primera es la menos usada). */
+    private final LinkedHashMap<String, PreparedStatement> libres = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * @param capacidad   máximo de sentencias libres conservadas (&gt;= 1).
+     * @param aciertos    contador del pool: preparaciones resueltas desde la cache.
+     * @param fallos      contador del pool: preparaciones que compilaron la sentencia.
+     * @param desalojadas contador del pool: sentencias cerradas por LRU.
+     */
+    CacheSentencias(int capacidad, LongAdder aciertos, LongAdder fallos, LongAdder desalojadas) {
+        if (capacidad < 1) throw new IllegalArgumentException("capacidad debe ser >= 1");
+        this.capacidad = capacidad;
+        this.aciertos = aciertos;
+        this.fallos = fallos;
+        this.desalojadas = desalojadas;
+    }
+
+    /**
+     * @param fisica conexión física donde se compila la sentencia.
+     * @param logica conexión lógica del llamador (la que devuelve {@code getConnection()}).
+     * @param sql    texto SQL (clave de la cache).
+     * @return proxy de {@link PreparedStatement} cuyo {@code close()} la devuelve a la cache.
+     */
+    PreparedStatement preparar(Connection fisica, Connection logica, String sql) throws SQLException {
+        PreparedStatement ps;
+        synchronized (this) {
+            ps = libres.remove(sql);
+        }
+        if (ps != null && !ps.isClosed()) {
+            aciertos.increment();
+        } else {
+            fallos.increment();
+            ps = fisica.prepareStatement(sql);
+        }
+        return (PreparedStatement) Proxy.newProxyInstance(
+                PreparedStatement.class.getClassLoader(), new Class<?>[]{PreparedStatement.class},
+                new EnUso(sql, ps, logica));
+    }
+
+    /** Cierra físicamente todas las sentencias libres (la conexión física se va a cerrar). */
+    void cerrar() {
+        List<PreparedStatement> aCerrar;
+        synchronized (this) {
+            aCerrar = new ArrayList<>(libres.values());
+            libres.clear();
+        }
+        for (PreparedStatement ps : aCerrar) cerrarSilencioso(ps);
+    }
+
+    /** Vuelve una sentencia ya reseteada a la cache, desalojando la menos usada si hace falta. */
+    private void devolver(String sql, PreparedStatement ps) {
+        PreparedStatement sobrante = null, desalojada = null;
+        synchronized (this) {
+            PreparedStatement previa = libres.put(sql, ps);
+            if (previa != null && previa != ps) {
+                sobrante = previa;
+            } else if (libres.size() > capacidad) {
+                Iterator<Map.Entry<String, PreparedStatement>> it = libres.entrySet().iterator();
+                desalojada = it.next().getValue();
+                it.remove();
+            }
+        }
+        if (sobrante != null) cerrarSilencioso(sobrante);
+        if (desalojada != null) {
+            desalojadas.increment();
+            cerrarSilencioso(desalojada);
+        }
+    }
+
+    private static void cerrarSilencioso(PreparedStatement ps) {
+        try {
+            ps.close();
+        } catch (SQLException ignore) {
+        }
+    }
+
+    /**
+     * Sentencia prestada al llamador (handler del proxy).
+     * {@code close()} la devuelve a la cache una única vez; después de eso cualquier uso falla.
+     */
+    private final class EnUso implements InvocationHandler {
+        final String sql;
+        final PreparedStatement ps;
+        final Connection logica;
+        /** Último ResultSet entregado (una sentencia tiene a lo sumo uno abierto). */
+        ResultSet resultado;
+        /** Se llamó a execute/executeUpdate: pueden quedar el resultado no pedido y las claves generadas. */
+        boolean ejecutada;
+        boolean configurada;
+        boolean cerrada;
+
+        EnUso(String sql, PreparedStatement ps, Connection logica) {
+            this.sql = sql;
+            this.ps = ps;
+            this.logica = logica;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method m, Object[] args) throws Throwable {
+            switch (m.getName()) {
+                case "close":
+                    if (!cerrada) {
+                        cerrada = true;
+                        reciclar();
+                    }
+                    return null;
+                case "isClosed":
+                    return cerrada || ps.isClosed();
+                case "getConnection":
+                    return logica;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "CachedStatement[" + ps + "]";
+                case "execute":
+                case "executeUpdate":
+                case "executeLargeUpdate":
+                    ejecutada = true;
+                    break;
+                default:
+                    if (CONFIGURACION.contains(m.getName())) configurada = true;
+                    break;
+            }
+            if (cerrada) throw new SQLException("La sentencia ya fue cerrada");
+            Object r;
+            try {
+                r = m.invoke(ps, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+            if (r instanceof ResultSet rs) resultado = rs;
+            return r;
+        }
+
+        /** Resetea la sentencia y la devuelve a la cache; si algo falla (o se reconfiguró), la cierra. */
+        private void reciclar() throws SQLException {
+            if (configurada) {
+                ps.close();
+                return;
+            }
+            try {
+                if (resultado != null) resultado.close();
+                if (ejecutada) {
+                    ResultSet rs = ps.getResultSet();
+                    if (rs != null) rs.close();
+                    ResultSet claves = ps.getGeneratedKeys();
+                    if (claves != null) claves.close();
+                }
+                ps.clearParameters();
+                ps.clearBatch();
+                ps.clearWarnings();
+            } catch (SQLException e) {
+                cerrarSilencioso(ps);
+                return;
+            }
+            devolver(sql, ps);
+        }
+    }
+}
@@ -10,8 +10,9 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.io.IOException;
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.util.Locale;
+import java.util.Properties;
 
 /**
  * -----------------
@@ -19,13 +20,32 @@ import java.sql.SQLException;
  *
  * ¿Qué hace?
  *   - Resuelve la ubicación del archivo de base en: ${user.home}/.biblioteca/biblioteca.db
+ *     (o en la ruta indicada por la propiedad {@code biblioteca.db.path}, útil para benchmarks).
  *   - Crea la carpeta y el archivo si no existen (idempotente).
  *   - Expone una URL JDBC absoluta y métodos utilitarios para conexión y diagnóstico.
+ *   - Entrega conexiones desde un {@link ConnectionPool} acotado (reutiliza conexiones físicas).
+ *   - Aplica un {@link PragmaProfile} (WAL, synchronous, cache, ...) a cada conexión física nueva.
  *
  * Decisiones:
  *   - Ubicación en el home del usuario para evitar problemas de permisos en carpetas del proyecto.
  *   - Inicialización estática (eager): al cargar la clase se garantiza que la ruta existe.
  *   - Errores de E/S al preparar la ruta se elevan como RuntimeException (falla temprana y explícita).
+ *   - El pool se configura con propiedades de sistema (-Dclave=valor), todas opcionales:
+ *       biblioteca.pool.max           máximo de conexiones físicas      (default 8)
+ *       biblioteca.pool.minOciosas    ociosas que nunca se desalojan    (default 1)
+ *       biblioteca.pool.esperaMs      espera máxima por una conexión    (default 10000)
+ *       biblioteca.pool.ociosaMs      desalojo de ociosas (0 = nunca)   (default 60000)
+ *       biblioteca.pool.validarMs     validar si estuvo ociosa más de   (default 5000)
+ *       biblioteca.pool.fugaMs        aviso de fuga (0 = desactivado)   (default 30000)
+ *       biblioteca.pool.sentencias    cache de sentencias por conexión  (default 64, 0 = sin cache)
+ *       biblioteca.db.perfil          perfil de PRAGMAs                 (default durable)
+ *       biblioteca.db.transaccion     deferred | immediate | exclusive  (default immediate)
+ *   - Las transacciones (setAutoCommit(false)) arrancan con BEGIN IMMEDIATE: toman el lock de
+ *     escritura al empezar, esperando con busy_timeout si está ocupado. Con BEGIN DEFERRED dos
+ *     escritores que primero leen chocan al "subir" el lock y SQLite devuelve SQLITE_BUSY al
+ *     instante, sin esperar.
+ *   - Se cierran con {@link Transacciones}: el commit()/rollback() del driver abre enseguida otro
+ *     BEGIN IMMEDIATE que vuelve a pelear el lock.
  *
  * Colabora con:
  *   - Driver JDBC de SQLite (org.sqlite.JDBC) disponible en el classpath.
@@ -41,11 +61,19 @@ public class ConnectionFactory {
     /** URL JDBC absoluta: jdbc:sqlite:/ruta/completa/biblioteca.db */
     private static String SQLITE_URL;
 
+    /** Perfil de PRAGMAs aplicado a cada conexión física. */
+    private static PragmaProfile PERFIL;
+
+    /** Pool de conexiones físicas (creado en la inicialización estática). */
+    private static ConnectionPool POOL;
+
     // ========== Inicialización estática ==========
     static {
-        // 1) Resolver carpeta de la app dentro del HOME del usuario
-        String home = System.getProperty("user.home");
-        Path appDir = Paths.get(home, ".biblioteca");
+        // 1) Resolver carpeta de la app dentro del HOME del usuario (o la ruta explícita)
+        String rutaExplicita = System.getProperty("biblioteca.db.path");
+        Path appDir = (rutaExplicita == null || rutaExplicita.isBlank())
+                ? Paths.get(System.getProperty("user.home"), ".biblioteca")
+                : Paths.get(rutaExplicita).toAbsolutePath().getParent();
         try {
             // Crea la carpeta (y padres) si no existe. Idempotente si ya está creada.
             Files.createDirectories(appDir);
@@ -55,7 +83,9 @@ public class ConnectionFactory {
         }
 
         // 2) Resolver la ruta del archivo de base de datos
-        DB_PATH = appDir.resolve(DB_FILE_NAME);
+        DB_PATH = (rutaExplicita == null || rutaExplicita.isBlank())
+                ? appDir.resolve(DB_FILE_NAME)
+                : Paths.get(rutaExplicita).toAbsolutePath();
         try {
             // “Tocar” el archivo: si no existe, se crea vacío.
             if (!Files.exists(DB_PATH)) {
@@ -71,10 +101,30 @@ public class ConnectionFactory {
         // 4) Logs de diagnóstico (útiles en setup; se pueden comentar en producción)
         System.out.println("[ConnectionFactory] DB_PATH  = " + DB_PATH.toAbsolutePath());
         System.out.println("[ConnectionFactory] JDBC URL = " + SQLITE_URL);
+
+        // 5) Perfil de PRAGMAs + pool de conexiones (parámetros ajustables por propiedades de sistema)
+        PERFIL = PragmaProfile.porNombre(System.getProperty("biblioteca.db.perfil"));
+        System.out.println("[ConnectionFactory] PRAGMAs  = " + PERFIL);
+        Properties driver = new Properties();
+        driver.setProperty("transaction_mode",
+                System.getProperty("biblioteca.db.transaccion", "immediate").trim().toUpperCase(Locale.ROOT));
+        POOL = new ConnectionPool(
+                SQLITE_URL,
+                driver,
+                PERFIL::aplicar,
+                intProp("biblioteca.pool.max", 8),
+                intProp("biblioteca.pool.minOciosas", 1),
+                intProp("biblioteca.pool.esperaMs", 10_000),
+                intProp("biblioteca.pool.ociosaMs", 60_000),
+                intProp("biblioteca.pool.validarMs", 5_000),
+                intProp("biblioteca.pool.fugaMs", 30_000),
+                intProp("biblioteca.pool.sentencias", 64));
     }
 
     /**
-     * Abre y devuelve una conexión JDBC a la base SQLite.
+     * Devuelve una conexión JDBC a la base SQLite tomada del pool.
+     * <p>
+     * Cerrarla la devuelve al pool (no cierra la conexión física).
      * <p>
      * Uso típico con try-with-resources:
      * <pre>
@@ -84,12 +134,34 @@ public class ConnectionFactory {
      * </pre>
      *
      * @return {@link Connection} abierta contra la URL configurada.
-     * @throws SQLException si el DriverManager no puede abrir la conexión (ruta/permiso/driver).
+     * @throws SQLException si no se puede abrir la conexión (ruta/permiso/driver)
+     *                      o se agota la espera por una conexión libre.
      */
     public static Connection getConnection() throws SQLException {
-        // No cacheamos conexiones: cada llamada devuelve una conexión fresca.
-        // Esto evita problemas de concurrencia y cerrados accidentales.
-        return DriverManager.getConnection(SQLITE_URL);
+        // Cada conexión lógica es exclusiva del llamador hasta que la cierra:
+        // no hay uso compartido entre hilos.
+        return POOL.prestar();
+    }
+
+    /**
+     * Métricas del pool (prestadas, en espera, histograma de tiempos de espera, etc.).
+     *
+     * @return foto instantánea de {@link PoolStats}.
+     */
+    public static PoolStats poolStats() {
+        return POOL.estadisticas();
+    }
+
+    /** @return perfil de PRAGMAs activo. */
+    public static PragmaProfile perfil() {
+        return PERFIL;
+    }
+
+    /**
+     * Cierra las conexiones ociosas del pool. Pensado para el apagado de la aplicación.
+     */
+    public static void cerrarPool() {
+        POOL.cerrar();
     }
 
     /**
@@ -100,4 +172,16 @@ public class ConnectionFactory {
     public static Path dbPath() {
         return DB_PATH.toAbsolutePath();
     }
+
+    /** Lee una propiedad de sistema entera; si falta o es inválida devuelve el default. */
+    private static int intProp(String clave, int porDefecto) {
+        String v = System.getProperty(clave);
+        if (v == null || v.isBlank()) return porDefecto;
+        try {
+            return Integer.parseInt(v.trim());
+        } catch (NumberFormatException e) {
+            System.err.println("[ConnectionFactory] Valor inválido para " + clave + ": " + v);
+            return porDefecto;
+        }
+    }
 }
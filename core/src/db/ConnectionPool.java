@@ -0,0 +1,469 @@
+package db;
+
+/**
+ * @author Federico Gabriel Arena
+ * @author Fabrizio Manuel Mansilla
+ */
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * ConnectionPool
+ * --------------
+ * Pool acotado de conexiones JDBC físicas contra el archivo SQLite.
+ *
+ * ¿Qué hace?
+ *   - Reutiliza conexiones ya abiertas (evita lookup de driver, apertura de archivo
+ *     y parseo de esquema en cada llamada a DAO).
+ *   - Limita la cantidad de conexiones físicas; si no hay libres, el llamador espera
+ *     hasta {@code maxEsperaMs} y luego falla con {@link SQLException}.
+ *   - Valida (health check) las conexiones que estuvieron ociosas antes de prestarlas.
+ *   - Cierra conexiones ociosas por encima del mínimo (idle eviction).
+ *   - Detecta fugas: avisa por consola si una conexión se retiene más de {@code fugaMs}
+ *     e imprime el stack del lugar donde se pidió.
+ *   - Cachea sentencias preparadas por conexión física (ver {@link CacheSentencias}): los DAOs
+ *     preparan siempre los mismos SQL y, tras el calentamiento, no los vuelven a compilar.
+ *   - Lleva estadísticas (ver {@link PoolStats}).
+ *
+ * Decisiones:
+ *   - El llamador recibe un {@link Proxy} de {@link Connection}: {@code close()} devuelve
+ *     la conexión al pool en vez de cerrarla. Así los DAOs siguen usando try-with-resources
+ *     sin cambios.
+ *   - Al devolverla se hace rollback si quedó una transacción abierta y se restaura autocommit.
+ *   - Orden LIFO de ociosas: la más recientemente usada es la "más caliente" (cache de páginas).
+ *
+ * Colabora con:
+ *   - {@link ConnectionFactory}, que lo crea y configura.
+ */
+public final class ConnectionPool {
+
+    /** Límites (en microsegundos) de los buckets del histograma de espera. */
+    static final long[] BUCKETS_ESPERA_US = {0, 100, 1_000, 5_000, 10_000, 50_000, 100_000, 500_000, 1_000_000};
+
+    private final String url;
+    private final Properties propiedades;
+    private final Inicializador inicializador;
+    private final int maxConexiones;
+    private final int minOciosas;
+    private final long maxEsperaMs;
+    private final long ociosaMaxMs;
+    private final long validarTrasMs;
+    private final long fugaMs;
+    private final int sentenciasPorConexion;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition disponible = lock.newCondition();
+
+    /** Conexiones físicas libres (LIFO). Protegido por {@link #lock}. */
+    private final Deque<Fisica> ociosas = new ArrayDeque<>();
+
+    /** Conexiones físicas abiertas (ociosas + prestadas). Protegido por {@link #lock}. */
+    private int abiertas = 0;
+
+    /** Hilos bloqueados esperando conexión. Protegido por {@link #lock}. */
+    private int esperando = 0;
+
+    /** Préstamos vigentes (para detección de fugas). */
+    private final Map<Prestada, Boolean> prestadas = new ConcurrentHashMap<>();
+
+    private final AtomicBoolean cerrado = new AtomicBoolean(false);
+    private final ScheduledExecutorService mantenimiento;
+
+    // ---- Estadísticas ----
+    private final LongAdder totalPrestamos = new LongAdder();
+    private final LongAdder totalCreadas = new LongAdder();
+    private final LongAdder totalDescartadas = new LongAdder();
+    private final LongAdder totalTimeouts = new LongAdder();
+    private final LongAdder totalFugas = new LongAdder();
+    private final LongAdder[] histogramaEspera = new LongAdder[BUCKETS_ESPERA_US.length + 1];
+    private final AtomicLong esperaMaxUs = new AtomicLong();
+    private final LongAdder sentenciasAciertos = new LongAdder();
+    private final LongAdder sentenciasFallos = new LongAdder();
+    private final LongAdder sentenciasDesalojadas = new LongAdder();
+
+    /**
+     * @param url           URL JDBC de la base.
+     * @param propiedades   propiedades del driver al abrir cada conexión física (p. ej. transaction_mode).
+     * @param inicializador configuración aplicada a cada conexión física nueva (PRAGMAs, etc.).
+     * @param maxConexiones máximo de conexiones físicas (&gt;= 1).
+     * @param minOciosas    mínimo de ociosas que la limpieza no cierra.
+     * @param maxEsperaMs   tiempo máximo de espera por una conexión libre.
+     * @param ociosaMaxMs   tiempo tras el cual una conexión ociosa se cierra (0 = nunca).
+     * @param validarTrasMs antigüedad de inactividad a partir de la cual se valida antes de prestar.
+     * @param fugaMs        retención máxima antes de reportar una posible fuga (0 = desactivado).
+     * @param sentenciasPorConexion sentencias preparadas cacheadas por conexión física (0 = sin cache).
+     */
+    ConnectionPool(String url, Properties propiedades, Inicializador inicializador, int maxConexiones,
+                   int minOciosas, long maxEsperaMs, long ociosaMaxMs, long validarTrasMs, long fugaMs,
+                   int sentenciasPorConexion) {
+        if (maxConexiones < 1) throw new IllegalArgumentException("maxConexiones debe ser >= 1");
+        this.url = url;
+        this.propiedades = propiedades == null ? new Properties() : propiedades;
+        this.inicializador = inicializador;
+        this.maxConexiones = maxConexiones;
+        this.minOciosas = Math.max(0, Math.min(minOciosas, maxConexiones));
+        this.maxEsperaMs = maxEsperaMs;
+        this.ociosaMaxMs = ociosaMaxMs;
+        this.validarTrasMs = validarTrasMs;
+        this.fugaMs = fugaMs;
+        this.sentenciasPorConexion = Math.max(0, sentenciasPorConexion);
+        for (int i = 0; i < histogramaEspera.length; i++) histogramaEspera[i] = new LongAdder();
+
+        // Hilo daemon de mantenimiento: no impide que la JVM termine.
+        this.mantenimiento = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "db-pool-mantenimiento");
+            t.setDaemon(true);
+            return t;
+        });
+        long periodo = Math.max(1_000, Math.min(ociosaMaxMs > 0 ? ociosaMaxMs : 30_000,
+                                                fugaMs > 0 ? fugaMs : 30_000) / 2);
+        mantenimiento.scheduleWithFixedDelay(this::mantener, periodo, periodo, TimeUnit.MILLISECONDS);
+    }
+
+    // ===================== API =====================
+
+    /**
+     * Presta una conexión lógica. Debe cerrarse (idealmente con try-with-resources)
+     * para devolverla al pool.
+     *
+     * @return proxy de {@link Connection} ligado a una conexión física.
+     * @throws SQLException si el pool está cerrado, se agota la espera o falla la apertura.
+     */
+    public Connection prestar() throws SQLException {
+        if (cerrado.get()) throw new SQLException("El pool de conexiones está cerrado");
+
+        long t0 = System.nanoTime();
+        long limite = t0 + TimeUnit.MILLISECONDS.toNanos(maxEsperaMs);
+        boolean espero = false;
+        Fisica f = null;
+        boolean crear = false;
+
+        lock.lock();
+        try {
+            while (f == null && !crear) {
+                if (!ociosas.isEmpty()) {
+                    f = ociosas.pollFirst();
+                } else if (abiertas < maxConexiones) {
+                    abiertas++;          // reservamos el cupo; la apertura se hace fuera del lock
+                    crear = true;
+                } else {
+                    long resto = limite - System.nanoTime();
+                    if (resto <= 0) {
+                        totalTimeouts.increment();
+                        throw new SQLException("Timeout esperando conexión libre (" + maxEsperaMs
+                                + " ms, máx=" + maxConexiones + ")");
+                    }
+                    espero = true;
+                    esperando++;
+                    try {
+                        disponible.awaitNanos(resto);
+                    } catch (InterruptedException ie) {
+                        Thread.currentThread().interrupt();
+                        throw new SQLException("Interrumpido esperando conexión", ie);
+                    } finally {
+                        esperando--;
+                    }
+                    if (cerrado.get()) throw new SQLException("El pool de conexiones está cerrado");
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        if (crear) {
+            try {
+                f = abrirFisica();
+            } catch (SQLException | RuntimeException e) {
+                liberarCupo();
+                throw e;
+            }
+        } else if (!validar(f)) {
+            // La ociosa no pasó el health check: se descarta y se reintenta.
+            descartar(f);
+            return prestar();
+        }
+
+        registrarEspera(espero ? (System.nanoTime() - t0) / 1_000 : 0);
+        totalPrestamos.increment();
+        Prestada p = new Prestada(f, fugaMs > 0 ? new Throwable("Conexión pedida aquí") : null);
+        prestadas.put(p, Boolean.TRUE);
+        return (Connection) Proxy.newProxyInstance(
+                Connection.class.getClassLoader(), new Class<?>[]{Connection.class}, p);
+    }
+
+    /** @return foto instantánea de las estadísticas del pool. */
+    public PoolStats estadisticas() {
+        int ocio, abiertasSnap, esperandoSnap;
+        lock.lock();
+        try {
+            ocio = ociosas.size();
+            abiertasSnap = abiertas;
+            esperandoSnap = esperando;
+        } finally {
+            lock.unlock();
+        }
+        long[] hist = new long[histogramaEspera.length];
+        for (int i = 0; i < hist.length; i++) hist[i] = histogramaEspera[i].sum();
+        return new PoolStats(maxConexiones, abiertasSnap, ocio, prestadas.size(), esperandoSnap,
+                totalPrestamos.sum(), totalCreadas.sum(), totalDescartadas.sum(),
+                totalTimeouts.sum(), totalFugas.sum(), esperaMaxUs.get(),
+                BUCKETS_ESPERA_US.clone(), hist, sentenciasPorConexion,
+                sentenciasAciertos.sum(), sentenciasFallos.sum(), sentenciasDesalojadas.sum());
+    }
+
+    /**
+     * Cierra todas las conexiones ociosas y detiene el mantenimiento.
+     * Las prestadas se cierran físicamente cuando el llamador las devuelva.
+     */
+    public void cerrar() {
+        if (!cerrado.compareAndSet(false, true)) return;
+        mantenimiento.shutdownNow();
+        List<Fisica> aCerrar;
+        lock.lock();
+        try {
+            aCerrar = new ArrayList<>(ociosas);
+            ociosas.clear();
+            abiertas -= aCerrar.size();
+            disponible.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        for (Fisica f : aCerrar) cerrarSilencioso(f);
+    }
+
+    // ===================== Ciclo de vida de conexiones físicas =====================
+
+    /** Abre una conexión física nueva y le aplica el {@link Inicializador}. */
+    private Fisica abrirFisica() throws SQLException {
+        Connection cn = DriverManager.getConnection(url, propiedades);
+        try {
+            if (inicializador != null) inicializador.aplicar(cn);
+        } catch (SQLException | RuntimeException e) {
+            cerrarSilencioso(cn);
+            throw e;
+        }
+        totalCreadas.increment();
+        return new Fisica(cn, sentenciasPorConexion == 0 ? null
+                : new CacheSentencias(sentenciasPorConexion, sentenciasAciertos, sentenciasFallos, sentenciasDesalojadas));
+    }
+
+    /** Health check: solo si estuvo ociosa más de {@code validarTrasMs}. */
+    private boolean validar(Fisica f) {
+        if (System.currentTimeMillis() - f.ultimoUso < validarTrasMs) return true;
+        try {
+            return !f.cn.isClosed() && f.cn.isValid(2);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    /** Devuelve una conexión física al pool (o la descarta si quedó en mal estado). */
+    private void devolver(Fisica f) {
+        boolean sana = true;
+        try {
+            if (f.cn.isClosed()) {
+                sana = false;
+            } else if (!f.cn.getAutoCommit()) {
+                // Transacción olvidada por el llamador: se deshace para no contaminar al siguiente.
+                Transacciones.deshacer(f.cn);
+            }
+            if (sana) f.cn.clearWarnings();
+        } catch (SQLException e) {
+            sana = false;
+        }
+
+        if (!sana || cerrado.get()) {
+            descartar(f);
+            return;
+        }
+
+        f.ultimoUso = System.currentTimeMillis();
+        lock.lock();
+        try {
+            ociosas.addFirst(f);
+            disponible.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Cierra físicamente y libera el cupo. */
+    private void descartar(Fisica f) {
+        cerrarSilencioso(f);
+        totalDescartadas.increment();
+        liberarCupo();
+    }
+
+    private void liberarCupo() {
+        lock.lock();
+        try {
+            abiertas--;
+            disponible.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // ===================== Mantenimiento =====================
+
+    /** Tarea periódica: eviction de ociosas y detección de fugas. */
+    private void mantener() {
+        try {
+            if (ociosaMaxMs > 0) desalojarOciosas();
+            if (fugaMs > 0) detectarFugas();
+        } catch (RuntimeException e) {
+            // El hilo de mantenimiento nunca debe morir por un error puntual.
+            e.printStackTrace();
+        }
+    }
+
+    private void desalojarOciosas() {
+        long ahora = System.currentTimeMillis();
+        List<Fisica> viejas = new ArrayList<>();
+        lock.lock();
+        try {
+            // Las más viejas están al final (LIFO): recorrer desde la cola.
+            while (ociosas.size() > minOciosas) {
+                Fisica f = ociosas.peekLast();
+                if (ahora - f.ultimoUso < ociosaMaxMs) break;
+                viejas.add(ociosas.pollLast());
+                abiertas--;
+            }
+        } finally {
+            lock.unlock();
+        }
+        for (Fisica f : viejas) {
+            cerrarSilencioso(f);
+            totalDescartadas.increment();
+        }
+    }
+
+    private void detectarFugas() {
+        long ahora = System.currentTimeMillis();
+        for (Prestada p : prestadas.keySet()) {
+            if (!p.fugaReportada && ahora - p.desde > fugaMs) {
+                p.fugaReportada = true;
+                totalFugas.increment();
+                System.err.println("[ConnectionPool] Posible fuga: conexión retenida "
+                        + (ahora - p.desde) + " ms por " + p.hilo);
+                if (p.origen != null) p.origen.printStackTrace();
+            }
+        }
+    }
+
+    // ===================== Helpers =====================
+
+    private void registrarEspera(long us) {
+        int i = 0;
+        while (i < BUCKETS_ESPERA_US.length && us > BUCKETS_ESPERA_US[i]) i++;
+        histogramaEspera[i].increment();
+        esperaMaxUs.accumulateAndGet(us, Math::max);
+    }
+
+    /** Cierra las sentencias cacheadas y la conexión física. */
+    private static void cerrarSilencioso(Fisica f) {
+        if (f.sentencias != null) f.sentencias.cerrar();
+        cerrarSilencioso(f.cn);
+    }
+
+    private static void cerrarSilencioso(Connection cn) {
+        try {
+            cn.close();
+        } catch (SQLException ignore) {
+        }
+    }
+
+    /** Configuración que se aplica una única vez a cada conexión física recién abierta. */
+    @FunctionalInterface
+    interface Inicializador {
+        void aplicar(Connection cn) throws SQLException;
+    }
+
+    /** Conexión física + marca de último uso + sus sentencias cacheadas ({@code null} sin cache). */
+    private static final class Fisica {
+        final Connection cn;
+        final CacheSentencias sentencias;
+        volatile long ultimoUso = System.currentTimeMillis();
+
+        Fisica(Connection cn, CacheSentencias sentencias) {
+            this.cn = cn;
+            this.sentencias = sentencias;
+        }
+    }
+
+    /**
+     * Conexión lógica entregada al llamador (handler del proxy).
+     * {@code close()} la devuelve al pool una única vez; después de eso cualquier uso falla.
+     */
+    private final class Prestada implements InvocationHandler {
+        final Fisica fisica;
+        final Throwable origen;
+        final long desde = System.currentTimeMillis();
+        final String hilo = Thread.currentThread().getName();
+        volatile boolean fugaReportada;
+        private final AtomicBoolean devuelta = new AtomicBoolean(false);
+
+        Prestada(Fisica fisica, Throwable origen) {
+            this.fisica = fisica;
+            this.origen = origen;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method m, Object[] args) throws Throwable {
+            switch (m.getName()) {
+                case "close":
+                    if (devuelta.compareAndSet(false, true)) {
+                        prestadas.remove(this);
+                        devolver(fisica);
+                    }
+                    return null;
+                case "isClosed":
+                    return devuelta.get() || fisica.cn.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "PooledConnection[" + fisica.cn + "]";
+                case "unwrap":
+                    // Devuelta, la física ya puede ser de otro llamador: cae en el error de abajo
+                    if (!devuelta.get() && ((Class<?>) args[0]).isInstance(fisica.cn)) return fisica.cn;
+                    break;
+                default:
+                    break;
+            }
+            if (devuelta.get()) throw new SQLException("La conexión ya fue devuelta al pool");
+            if (fisica.sentencias != null && args != null && args.length == 1
+                    && m.getName().equals("prepareStatement")) {
+                // Solo prepareStatement(String): las variantes con flags no se cachean.
+                return fisica.sentencias.preparar(fisica.cn, (Connection) proxy, (String) args[0]);
+            }
+            try {
+                return m.invoke(fisica.cn, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
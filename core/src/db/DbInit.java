@@ -8,135 +8,388 @@ package db;
 import util.HashUtil;
 
 import java.sql.*;
+import java.util.List;
 
 /**
  * DbInit
  * ------
- * - Crea tablas: libro, usuario, prestamo, auditoria.
- * - Activa FOREIGN KEYS (SQLite).
- * - Seed: 2 libros y 1 admin (admin / admin123) si faltan.
+ * Esquema versionado: lista ordenada de pasos que aplica {@link Migraciones} según PRAGMA user_version.
+ * - 1: tablas libro, usuario, prestamo, prestamo_vencido (foto de service.MonitorVencidos),
+ *      auditoria y migracion_fechas, con sus índices.
+ * - 2: libro_contador (préstamos por libro) y los triggers que lo mantienen desde prestamo.
+ * - 3: índice full-text libro_fts (FTS5) y los triggers que lo sincronizan con libro.
+ * - 4: seed: 2 libros y 1 admin (admin / admin123) si faltan.
+ * - 5: recálculo de libro_contador por tramos (en segundo plano en bases grandes).
+ * - Después carga el formato de las fechas ({@link FormatoFechas}) y, si se pidió epoch, arranca
+ *   {@link MigracionFechas}.
+ * - FOREIGN KEYS y demás PRAGMAs los aplica {@link PragmaProfile} en cada conexión.
  */
 public class DbInit {
 
+    /**
+     * SELECT que calcula los contadores desde prestamo, con las mismas columnas y orden que
+     * libro_contador (lo reutiliza la verificación del DAO).
+     */
+    public static final String CONTADORES_CALCULADOS_SQL = """
+            SELECT libro_codigo,
+                   SUM(estado = 'ABIERTO'),
+                   SUM(CASE WHEN estado = 'ABIERTO' THEN cantidad ELSE 0 END),
+                   COUNT(*),
+                   MAX(fecha_prestamo)
+            FROM prestamo
+            GROUP BY libro_codigo
+            """;
+
+    /**
+     * libro_contador (préstamos por libro) y los triggers sobre prestamo que lo mantienen (paso 2).
+     *
+     * Decisiones:
+     *   - Triggers en lugar de código en cada DAO: corren dentro de la misma transacción que el
+     *     INSERT/UPDATE del préstamo (prestar, devolver, lotes, o cualquier otra escritura), así
+     *     el contador nunca queda adelantado ni atrasado respecto de prestamo.
+     *   - Solo hay fila para libros que tuvieron algún préstamo; las lecturas usan LEFT JOIN
+     *     con COALESCE(..., 0).
+     *   - El UPDATE se dispara solo por cambios de estado o cantidad (renovar no lo toca).
+     *     Un cambio de código de libro lo propaga la FK (ON UPDATE CASCADE).
+     *   - Si la tabla se crea sobre una base con préstamos, la llena el paso 5 por tramos: mientras
+     *     tanto los libros todavía no recorridos muestran solo los préstamos nuevos.
+     */
+    private static final String[] CONTADORES_DDL = {
+            """
+            CREATE TABLE IF NOT EXISTS libro_contador (
+              libro_codigo         VARCHAR(20) PRIMARY KEY,
+              prestamos_abiertos   INTEGER NOT NULL DEFAULT 0,   -- préstamos en estado ABIERTO
+              ejemplares_prestados INTEGER NOT NULL DEFAULT 0,   -- SUM(cantidad) de esos préstamos
+              total_prestamos      INTEGER NOT NULL DEFAULT 0,   -- préstamos históricos
+              ultimo_prestamo      DATETIME,                     -- MAX(fecha_prestamo)
+              FOREIGN KEY (libro_codigo) REFERENCES libro(codigo) ON UPDATE CASCADE ON DELETE CASCADE
+            )
+            """,
+            """
+            CREATE TRIGGER IF NOT EXISTS libro_contador_ai AFTER INSERT ON prestamo BEGIN
+              INSERT INTO libro_contador(libro_codigo, prestamos_abiertos, ejemplares_prestados,
+                                         total_prestamos, ultimo_prestamo)
+              VALUES (new.libro_codigo,
+                      new.estado = 'ABIERTO',
+                      CASE WHEN new.estado = 'ABIERTO' THEN new.cantidad ELSE 0 END,
+                      1,
+                      new.fecha_prestamo)
+              ON CONFLICT(libro_codigo) DO UPDATE SET
+                prestamos_abiertos   = prestamos_abiertos + excluded.prestamos_abiertos,
+                ejemplares_prestados = ejemplares_prestados + excluded.ejemplares_prestados,
+                total_prestamos      = total_prestamos + 1,
+                ultimo_prestamo      = CASE WHEN ultimo_prestamo IS NULL OR excluded.ultimo_prestamo > ultimo_prestamo
+                                            THEN excluded.ultimo_prestamo ELSE ultimo_prestamo END;
+            END
+            """,
+            """
+            CREATE TRIGGER IF NOT EXISTS libro_contador_au AFTER UPDATE OF estado, cantidad ON prestamo BEGIN
+              UPDATE libro_contador SET
+                prestamos_abiertos   = prestamos_abiertos - (old.estado = 'ABIERTO') + (new.estado = 'ABIERTO'),
+                ejemplares_prestados = ejemplares_prestados
+                                       - CASE WHEN old.estado = 'ABIERTO' THEN old.cantidad ELSE 0 END
+                                       + CASE WHEN new.estado = 'ABIERTO' THEN new.cantidad ELSE 0 END
+              WHERE libro_codigo = new.libro_codigo;
+            END
+            """,
+            """
+            CREATE TRIGGER IF NOT EXISTS libro_contador_ad AFTER DELETE ON prestamo BEGIN
+              UPDATE libro_contador SET
+                prestamos_abiertos   = prestamos_abiertos - (old.estado = 'ABIERTO'),
+                ejemplares_prestados = ejemplares_prestados
+                                       - CASE WHEN old.estado = 'ABIERTO' THEN old.cantidad ELSE 0 END,
+                total_prestamos      = total_prestamos - 1
+              WHERE libro_codigo = old.libro_codigo;
+            END
+            """
+    };
+
+    /** Tramo del recálculo de contadores (paso 5): libros por transacción. */
+    private static final int LIBROS_POR_TRAMO = 1_000;
+
+    /**
+     * Pasos del esquema, en orden (ver {@link Migraciones}). Los pasos publicados no se editan:
+     * cualquier cambio va en un paso nuevo al final.
+     */
+    private static final Migraciones MIGRACIONES = new Migraciones(List.of(
+            Migracion.sql(1, "tablas base e índices",
+                    """
+                    CREATE TABLE IF NOT EXISTS libro (
+                      codigo     VARCHAR(20) PRIMARY KEY,
+                      titulo     VARCHAR(200) NOT NULL,
+                      autor      VARCHAR(120) NOT NULL,
+                      categoria  VARCHAR(80)  NOT NULL,
+                      editorial  VARCHAR(120),
+                      anio       INTEGER CHECK(anio >= 0),
+                      stock      INTEGER NOT NULL CHECK(stock >= 0),
+                      activo     INTEGER NOT NULL DEFAULT 1
+                    )
+                    """,
+                    // Orden de listado/paginado: (titulo NOCASE, codigo)
+                    "CREATE INDEX IF NOT EXISTS ix_libro_titulo ON libro(titulo COLLATE NOCASE, codigo)",
+                    """
+                    CREATE TABLE IF NOT EXISTS usuario (
+                      id            VARCHAR(50) PRIMARY KEY,
+                      nombre        VARCHAR(120) NOT NULL,
+                      username      VARCHAR(80)  NOT NULL UNIQUE,
+                      password_hash VARCHAR(64)  NOT NULL,
+                      salt          VARCHAR(64)  NOT NULL,
+                      rol           VARCHAR(20)  NOT NULL
+                    )
+                    """,
+                    """
+                    CREATE TABLE IF NOT EXISTS prestamo (
+                      id                INTEGER PRIMARY KEY AUTOINCREMENT,
+                      libro_codigo      VARCHAR(20)  NOT NULL,
+                      operador_username VARCHAR(80)  NOT NULL,
+                      destinatario      VARCHAR(120) NOT NULL,
+                      cantidad          INTEGER      NOT NULL CHECK(cantidad > 0),
+                      fecha_prestamo    DATETIME     NOT NULL,
+                      fecha_vencimiento DATE         NOT NULL,
+                      fecha_devolucion  DATETIME,
+                      estado            VARCHAR(12)  NOT NULL CHECK(estado IN ('ABIERTO','DEVUELTO')),
+                      FOREIGN KEY (libro_codigo)      REFERENCES libro(codigo)     ON UPDATE CASCADE ON DELETE RESTRICT,
+                      FOREIGN KEY (operador_username) REFERENCES usuario(username) ON UPDATE CASCADE ON DELETE RESTRICT
+                    )
+                    """,
+                    // FK hacia libro (ON UPDATE CASCADE / ON DELETE RESTRICT buscan por libro_codigo)
+                    "CREATE INDEX IF NOT EXISTS ix_prestamo_libro       ON prestamo(libro_codigo)",
+                    // Abiertos por vencimiento: índice PARCIAL, solo las filas ABIERTO (una fracción de
+                    // la tabla). Da el orden (fecha_vencimiento, id) de los listados sin ordenar aparte y
+                    // cubre "ids abiertos vencidos antes de X" sin leer la tabla (el id va implícito).
+                    // Lo usan las consultas con el literal estado='ABIERTO' (ver JdbcPrestamoDAO).
+                    "CREATE INDEX IF NOT EXISTS ix_prestamo_abiertos_vence ON prestamo(fecha_vencimiento) WHERE estado='ABIERTO'",
+                    // Orden y rango del histórico: (fecha_prestamo, id)
+                    "CREATE INDEX IF NOT EXISTS ix_prestamo_fecha       ON prestamo(fecha_prestamo)",
+                    // Reemplazados por ix_prestamo_abiertos_vence: estado tiene 2 valores (no filtra) y
+                    // vencimiento solo se consulta sobre abiertos.
+                    "DROP INDEX IF EXISTS ix_prestamo_estado",
+                    "DROP INDEX IF EXISTS ix_prestamo_vencimiento",
+                    // Foto de préstamos vencidos (la reemplaza MonitorVencidos en cada pasada)
+                    """
+                    CREATE TABLE IF NOT EXISTS prestamo_vencido (
+                      prestamo_id  INTEGER PRIMARY KEY,
+                      dias_atraso  INTEGER  NOT NULL,
+                      multa        INTEGER  NOT NULL,
+                      calculado    DATETIME NOT NULL,
+                      FOREIGN KEY (prestamo_id) REFERENCES prestamo(id) ON DELETE CASCADE
+                    )
+                    """,
+                    """
+                    CREATE TABLE IF NOT EXISTS auditoria (
+                      id                INTEGER PRIMARY KEY AUTOINCREMENT,
+                      ts                DATETIME     NOT NULL,
+                      operador_username VARCHAR(80)  NOT NULL,
+                      tipo              VARCHAR(24)  NOT NULL,   -- PRESTAR, DEVOLVER, DESACTIVAR_LIBRO, ACTIVAR_LIBRO, RENOVAR
+                      libro_codigo      VARCHAR(20),
+                      prestamo_id       INTEGER,
+                      cantidad          INTEGER,
+                      destinatario      VARCHAR(120),
+                      detalle           VARCHAR(255),
+                      FOREIGN KEY (operador_username) REFERENCES usuario(username),
+                      FOREIGN KEY (libro_codigo)      REFERENCES libro(codigo),
+                      FOREIGN KEY (prestamo_id)       REFERENCES prestamo(id)
+                    )
+                    """,
+                    "CREATE INDEX IF NOT EXISTS ix_auditoria_ts   ON auditoria(ts)",
+                    // Búsquedas filtradas (ver JdbcAuditoriaDao.buscar): igualdad + rango/orden por ts.
+                    // El id (rowid) va implícito al final de cada índice, así (col, ts) ordena por (ts, id).
+                    "CREATE INDEX IF NOT EXISTS ix_auditoria_operador_ts ON auditoria(operador_username, ts)",
+                    "CREATE INDEX IF NOT EXISTS ix_auditoria_tipo_ts     ON auditoria(tipo, ts)",
+                    "CREATE INDEX IF NOT EXISTS ix_auditoria_libro_ts    ON auditoria(libro_codigo, ts)",
+                    "CREATE INDEX IF NOT EXISTS ix_auditoria_prestamo_ts ON auditoria(prestamo_id, ts)",
+                    // ix_auditoria_tipo(tipo) quedó cubierto por ix_auditoria_tipo_ts
+                    "DROP INDEX IF EXISTS ix_auditoria_tipo",
+                    // Formato de fechas (ISO / EPOCH) y su migración
+                    FormatoFechas.DDL_TABLA),
+            Migracion.sql(2, "contadores por libro y sus triggers", CONTADORES_DDL),
+            Migracion.codigo(3, "índice full-text de libro", DbInit::crearIndiceBusqueda),
+            Migracion.codigo(4, "libros de ejemplo y usuario admin", DbInit::sembrar),
+            Migracion.lotes(5, "recalcular contadores por tramos de libro", DbInit::recalcularContadores)));
+
+    /**
+     * Lleva la base a la última versión del esquema y arranca la migración de fechas si corresponde.
+     * Con la base al día cuesta una lectura de PRAGMA user_version (más el estado de {@link FormatoFechas}).
+     *
+     * @throws RuntimeException si la base no se puede preparar.
+     */
     public static void ensureInit() {
         try (Connection cn = ConnectionFactory.getConnection()) {
+            MIGRACIONES.aplicar(cn);
+            MigracionFechas.iniciarSiCorresponde(cn);
+        } catch (SQLException e) {
+            throw new RuntimeException("Error inicializando la base: " + e.getMessage(), e);
+        }
+    }
 
-            // Activar FK por conexión (en SQLite es por-conn)
-            try (Statement s = cn.createStatement()) {
-                s.execute("PRAGMA foreign_keys = ON;");
+    /**
+     * Paso 4: 2 libros (si la tabla está vacía) y el admin (admin / admin123, si falta).
+     * Corre una sola vez por base.
+     */
+    private static void sembrar(Connection cn) throws SQLException {
+        boolean librosVacios = true;
+        try (Statement s = cn.createStatement();
+             ResultSet rs = s.executeQuery("SELECT NOT EXISTS(SELECT 1 FROM libro)")) {
+            if (rs.next()) librosVacios = rs.getInt(1) == 1;
+        }
+        if (librosVacios) {
+            try (PreparedStatement ps = cn.prepareStatement(
+                    "INSERT INTO libro (codigo, titulo, autor, categoria, editorial, anio, stock, activo) VALUES (?,?,?,?,?,?,?,?)")) {
+                ps.setString(1, "L001"); ps.setString(2, "El Quijote"); ps.setString(3, "Miguel de Cervantes");
+                ps.setString(4, "Novela"); ps.setString(5, "Acme"); ps.setInt(6, 2005); ps.setInt(7, 4); ps.setInt(8, 1); ps.executeUpdate();
+                ps.setString(1, "L002"); ps.setString(2, "Clean Code"); ps.setString(3, "Robert C. Martin");
+                ps.setString(4, "Programación"); ps.setString(5, "Prentice Hall"); ps.setInt(6, 2008); ps.setInt(7, 2); ps.setInt(8, 1); ps.executeUpdate();
             }
+        }
 
-            // ===== Tabla: LIBRO =====
-            final String ddlLibro = """
-                CREATE TABLE IF NOT EXISTS libro (
-                  codigo     VARCHAR(20) PRIMARY KEY,
-                  titulo     VARCHAR(200) NOT NULL,
-                  autor      VARCHAR(120) NOT NULL,
-                  categoria  VARCHAR(80)  NOT NULL,
-                  editorial  VARCHAR(120),
-                  anio       INTEGER CHECK(anio >= 0),
-                  stock      INTEGER NOT NULL CHECK(stock >= 0),
-                  activo     INTEGER NOT NULL DEFAULT 1
-                );
-                """;
-            try (Statement s = cn.createStatement()) { s.execute(ddlLibro); }
-
-            // ===== Tabla: USUARIO =====
-            final String ddlUsuario = """
-                CREATE TABLE IF NOT EXISTS usuario (
-                  id            VARCHAR(50) PRIMARY KEY,
-                  nombre        VARCHAR(120) NOT NULL,
-                  username      VARCHAR(80)  NOT NULL UNIQUE,
-                  password_hash VARCHAR(64)  NOT NULL,
-                  salt          VARCHAR(64)  NOT NULL,
-                  rol           VARCHAR(20)  NOT NULL
-                );
-                """;
-            try (Statement s = cn.createStatement()) { s.execute(ddlUsuario); }
-
-            // ===== Tabla: PRESTAMO + índices =====
-            final String ddlPrestamo = """
-                CREATE TABLE IF NOT EXISTS prestamo (
-                  id                INTEGER PRIMARY KEY AUTOINCREMENT,
-                  libro_codigo      VARCHAR(20)  NOT NULL,
-                  operador_username VARCHAR(80)  NOT NULL,
-                  destinatario      VARCHAR(120) NOT NULL,
-                  cantidad          INTEGER      NOT NULL CHECK(cantidad > 0),
-                  fecha_prestamo    DATETIME     NOT NULL,
-                  fecha_vencimiento DATE         NOT NULL,
-                  fecha_devolucion  DATETIME,
-                  estado            VARCHAR(12)  NOT NULL CHECK(estado IN ('ABIERTO','DEVUELTO')),
-                  FOREIGN KEY (libro_codigo)      REFERENCES libro(codigo)     ON UPDATE CASCADE ON DELETE RESTRICT,
-                  FOREIGN KEY (operador_username) REFERENCES usuario(username) ON UPDATE CASCADE ON DELETE RESTRICT
-                );
-                CREATE INDEX IF NOT EXISTS ix_prestamo_libro       ON prestamo(libro_codigo);
-                CREATE INDEX IF NOT EXISTS ix_prestamo_estado      ON prestamo(estado);
-                CREATE INDEX IF NOT EXISTS ix_prestamo_vencimiento ON prestamo(fecha_vencimiento);
-                """;
-            try (Statement s = cn.createStatement()) { s.execute(ddlPrestamo); }
-
-            // ===== Tabla: AUDITORIA + índices =====
-            final String ddlAuditoria = """
-                CREATE TABLE IF NOT EXISTS auditoria (
-                  id                INTEGER PRIMARY KEY AUTOINCREMENT,
-                  ts                DATETIME     NOT NULL,
-                  operador_username VARCHAR(80)  NOT NULL,
-                  tipo              VARCHAR(24)  NOT NULL,   -- PRESTAR, DEVOLVER, DESACTIVAR_LIBRO, ACTIVAR_LIBRO, RENOVAR
-                  libro_codigo      VARCHAR(20),
-                  prestamo_id       INTEGER,
-                  cantidad          INTEGER,
-                  destinatario      VARCHAR(120),
-                  detalle           VARCHAR(255),
-                  FOREIGN KEY (operador_username) REFERENCES usuario(username),
-                  FOREIGN KEY (libro_codigo)      REFERENCES libro(codigo),
-                  FOREIGN KEY (prestamo_id)       REFERENCES prestamo(id)
-                );
-                CREATE INDEX IF NOT EXISTS ix_auditoria_ts   ON auditoria(ts);
-                CREATE INDEX IF NOT EXISTS ix_auditoria_tipo ON auditoria(tipo);
-                """;
-            try (Statement s = cn.createStatement()) { s.execute(ddlAuditoria); }
-
-            // ===== Seed de libros (si tabla vacía) =====
-            boolean librosVacios = true;
-            try (Statement s = cn.createStatement();
-                 ResultSet rs = s.executeQuery("SELECT COUNT(*) FROM libro")) {
-                if (rs.next()) librosVacios = rs.getInt(1) == 0;
+        boolean hayAdmin = false;
+        try (PreparedStatement ps = cn.prepareStatement("SELECT COUNT(*) FROM usuario WHERE username = ?")) {
+            ps.setString(1, "admin");
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next()) hayAdmin = rs.getInt(1) > 0;
             }
-            if (librosVacios) {
-                try (PreparedStatement ps = cn.prepareStatement(
-                        "INSERT INTO libro (codigo, titulo, autor, categoria, editorial, anio, stock, activo) VALUES (?,?,?,?,?,?,?,?)")) {
-                    ps.setString(1, "L001"); ps.setString(2, "El Quijote"); ps.setString(3, "Miguel de Cervantes");
-                    ps.setString(4, "Novela"); ps.setString(5, "Acme"); ps.setInt(6, 2005); ps.setInt(7, 4); ps.setInt(8, 1); ps.executeUpdate();
-                    ps.setString(1, "L002"); ps.setString(2, "Clean Code"); ps.setString(3, "Robert C. Martin");
-                    ps.setString(4, "Programación"); ps.setString(5, "Prentice Hall"); ps.setInt(6, 2008); ps.setInt(7, 2); ps.setInt(8, 1); ps.executeUpdate();
-                }
+        }
+        if (!hayAdmin) {
+            String salt = HashUtil.newSaltHex(16);
+            String hash = HashUtil.sha256Hex(salt, "admin123"); // contraseña de seed
+            try (PreparedStatement ps = cn.prepareStatement(
+                    "INSERT INTO usuario (id, nombre, username, password_hash, salt, rol) VALUES (?,?,?,?,?,?)")) {
+                ps.setString(1, "admin");           // id fijo simple
+                ps.setString(2, "Administrador");
+                ps.setString(3, "admin");
+                ps.setString(4, hash);
+                ps.setString(5, salt);
+                ps.setString(6, "ADMIN");
+                ps.executeUpdate();
             }
+        }
+    }
+
+    /**
+     * Crea la tabla virtual libro_fts (FTS5, "external content" sobre libro) y sus triggers (paso 3).
+     *
+     * Decisiones:
+     *   - content='libro': el texto no se duplica; FTS guarda solo el índice invertido
+     *     y lee las columnas de libro por rowid.
+     *   - tokenize unicode61 remove_diacritics 2: sin distinción de mayúsculas ni acentos
+     *     ("camion" encuentra "Camión").
+     *   - prefix='2 3': índices de prefijo para que "qui*" no recorra todo el vocabulario.
+     *   - Si la tabla se crea ahora sobre una base con datos, se reconstruye desde libro.
+     *   - Nota: VACUUM puede renumerar los rowid de libro (su PK es TEXT); después de un
+     *     VACUUM manual hay que llamar a {@link #reconstruirIndiceBusqueda(Connection)}.
+     */
+    private static void crearIndiceBusqueda(Connection cn) throws SQLException {
+        boolean existia;
+        try (Statement s = cn.createStatement();
+             ResultSet rs = s.executeQuery("SELECT 1 FROM sqlite_master WHERE name='libro_fts'")) {
+            existia = rs.next();
+        }
+
+        ejecutar(cn,
+                """
+                CREATE VIRTUAL TABLE IF NOT EXISTS libro_fts USING fts5(
+                  titulo, autor, categoria,
+                  content='libro',
+                  tokenize='unicode61 remove_diacritics 2',
+                  prefix='2 3'
+                )
+                """,
+                """
+                CREATE TRIGGER IF NOT EXISTS libro_fts_ai AFTER INSERT ON libro BEGIN
+                  INSERT INTO libro_fts(rowid, titulo, autor, categoria)
+                  VALUES (new.rowid, new.titulo, new.autor, new.categoria);
+                END
+                """,
+                """
+                CREATE TRIGGER IF NOT EXISTS libro_fts_ad AFTER DELETE ON libro BEGIN
+                  INSERT INTO libro_fts(libro_fts, rowid, titulo, autor, categoria)
+                  VALUES ('delete', old.rowid, old.titulo, old.autor, old.categoria);
+                END
+                """,
+                """
+                CREATE TRIGGER IF NOT EXISTS libro_fts_au AFTER UPDATE OF titulo, autor, categoria ON libro BEGIN
+                  INSERT INTO libro_fts(libro_fts, rowid, titulo, autor, categoria)
+                  VALUES ('delete', old.rowid, old.titulo, old.autor, old.categoria);
+                  INSERT INTO libro_fts(rowid, titulo, autor, categoria)
+                  VALUES (new.rowid, new.titulo, new.autor, new.categoria);
+                END
+                """);
+
+        if (!existia) reconstruirIndiceBusqueda(cn);
+    }
 
-            // ===== Seed admin (si no existe) =====
-            boolean hayAdmin = false;
-            try (PreparedStatement ps = cn.prepareStatement("SELECT COUNT(*) FROM usuario WHERE username = ?")) {
-                ps.setString(1, "admin");
-                try (ResultSet rs = ps.executeQuery()) {
-                    if (rs.next()) hayAdmin = rs.getInt(1) > 0;
-                }
+    /**
+     * Regenera libro_fts completo a partir de la tabla libro.
+     *
+     * @param cn conexión abierta.
+     * @throws SQLException si falla el rebuild.
+     */
+    public static void reconstruirIndiceBusqueda(Connection cn) throws SQLException {
+        ejecutar(cn, "INSERT INTO libro_fts(libro_fts) VALUES('rebuild')");
+    }
+
+    /**
+     * Paso 5: recalcula libro_contador para los libros con código en ({@code desde}, siguiente
+     * tramo]. Cada tramo reemplaza las filas de su rango en la misma transacción: los triggers
+     * mantienen después lo ya recalculado, así que se puede correr con la app prestando.
+     *
+     * @return último código recalculado, o {@code null} si no quedan libros.
+     */
+    private static String recalcularContadores(Connection cn, String desde) throws SQLException {
+        String d = desde == null ? "" : desde;
+        String hasta = null;
+        try (PreparedStatement ps = cn.prepareStatement(
+                "SELECT codigo FROM libro WHERE codigo > ? ORDER BY codigo LIMIT 1 OFFSET ?")) {
+            ps.setString(1, d);
+            ps.setInt(2, LIBROS_POR_TRAMO - 1);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next()) hasta = rs.getString(1);
             }
-            if (!hayAdmin) {
-                String salt = HashUtil.newSaltHex(16);
-                String hash = HashUtil.sha256Hex(salt, "admin123"); // contraseña de seed
-                try (PreparedStatement ps = cn.prepareStatement(
-                        "INSERT INTO usuario (id, nombre, username, password_hash, salt, rol) VALUES (?,?,?,?,?,?)")) {
-                    ps.setString(1, "admin");           // id fijo simple
-                    ps.setString(2, "Administrador");
-                    ps.setString(3, "admin");
-                    ps.setString(4, hash);
-                    ps.setString(5, salt);
-                    ps.setString(6, "ADMIN");
-                    ps.executeUpdate();
-                }
+        }
+        String rango = hasta == null ? "libro_codigo > ?" : "libro_codigo > ? AND libro_codigo <= ?";
+        for (String sql : new String[]{
+                "DELETE FROM libro_contador WHERE " + rango,
+                """
+                INSERT INTO libro_contador(libro_codigo, prestamos_abiertos, ejemplares_prestados,
+                                           total_prestamos, ultimo_prestamo)
+                SELECT * FROM (""" + CONTADORES_CALCULADOS_SQL + ") WHERE " + rango}) {
+            try (PreparedStatement ps = cn.prepareStatement(sql)) {
+                ps.setString(1, d);
+                if (hasta != null) ps.setString(2, hasta);
+                ps.executeUpdate();
             }
+        }
+        return hasta;
+    }
 
-        } catch (SQLException e) {
-            throw new RuntimeException("Error inicializando la base: " + e.getMessage(), e);
+    /**
+     * Regenera libro_contador completo a partir de prestamo (una sola pasada agrupada).
+     * Conviene llamarlo dentro de una transacción para que nadie vea la tabla a medio llenar.
+     *
+     * Nota: después de un borrado de préstamos, ultimo_prestamo puede quedar con una fecha que ya
+     * no existe; la reconstrucción lo corrige.
+     *
+     * @param cn conexión abierta.
+     * @return cantidad de libros con contador.
+     * @throws SQLException si falla la reconstrucción.
+     */
+    public static int reconstruirContadores(Connection cn) throws SQLException {
+        ejecutar(cn, "DELETE FROM libro_contador");
+        try (Statement s = cn.createStatement()) {
+            return s.executeUpdate("""
+                    INSERT INTO libro_contador(libro_codigo, prestamos_abiertos, ejemplares_prestados,
+                                               total_prestamos, ultimo_prestamo)
+                    """ + CONTADORES_CALCULADOS_SQL);
+        }
+    }
+
+    /**
+     * Ejecuta varias sentencias, una por llamada.
+     * (El driver de SQLite ejecuta solo la primera sentencia de un string con varias.)
+     */
+    private static void ejecutar(Connection cn, String... sentencias) throws SQLException {
+        try (Statement s = cn.createStatement()) {
+            for (String sql : sentencias) s.execute(sql);
         }
     }
 }
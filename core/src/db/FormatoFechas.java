@@ -0,0 +1,267 @@
+package db;
+
+/**
+ * @author Federico Gabriel Arena
+ * @author Fabrizio Manuel Mansilla
+ */
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Formato en que se guardan las fechas de prestamo y auditoria, y cómo escribirlas/leerlas.
+ *
+ * Formatos:
+ * <pre>
+ *   ISO       texto ISO-8601 de toString() ("2025-03-01T10:15:30.123", "2025-03-15")   histórico
+ *   EPOCH     INTEGER: milisegundos desde 1970-01-01T00:00 (instantes) o días (fechas)
+ *   MIGRANDO  mezcla de ambos mientras corre {@link MigracionFechas}
+ * </pre>
+ * Columnas: prestamo.fecha_prestamo, prestamo.fecha_devolucion, auditoria.ts y
+ * libro_contador.ultimo_prestamo (instantes); prestamo.fecha_vencimiento (días).
+ * Los instantes son hora local sin zona, igual que el texto ISO: el epoch se cuenta como si fuera
+ * UTC (reversible y sin saltos por horario de verano). Precisión de milisegundos.
+ *
+ * ¿Por qué EPOCH?
+ *  - Entradas de índice más chicas (entero de 6-8 bytes contra texto de 19-26) y comparaciones enteras.
+ *    La ganancia se ve recién después de un VACUUM: la migración en el lugar deja los índices a medio
+ *    llenar, más grandes que en ISO (ver {@link MigracionFechas}).
+ *  - El mapeo de filas lee un long y arma el LocalDateTime sin parsear texto.
+ *
+ * Migración en línea (ver {@link MigracionFechas}):
+ *  - SQLite ordena todo INTEGER antes que todo TEXT. Cada columna indexada se convierte desde su
+ *    valor más antiguo y se guarda la "frontera" (mayor valor ya convertido) en migracion_fechas.
+ *    Se mantiene: enteros &lt;= frontera &lt; textos. Así el orden de la columna mezclada sigue
+ *    siendo el cronológico y los índices se usan igual.
+ *  - Escrituras y cotas de rango usan la misma regla, evaluada por SQLite dentro de la sentencia
+ *    (sin carreras con el migrador): {@code CASE WHEN ms <= frontera THEN ms ELSE 'iso' END}.
+ *    Un rango [d, h) es entonces un único tramo del índice.
+ *  - El formato se lee al iniciar ({@link #cargar}) y cada escritura lo vuelve a leer de la base
+ *    ({@link #paraEscribir}) mientras este proceso no esté en EPOCH: otra estación pudo haber
+ *    empezado o terminado la migración, y escribir texto ISO en una base EPOCH daría fechas
+ *    equivocadas al leer (y filas fuera de todo rango, porque INTEGER ordena antes que TEXT).
+ *    Un proceso que solo lee ve el cambio recién en su primera escritura (o al reiniciar).
+ *
+ * Uso en los DAO: tomar {@link #actual()} una vez por operación y usar la misma instancia para
+ * armar el SQL, bindear y leer (el formato puede cambiar entre dos operaciones, no dentro de una).
+ * Las escrituras usan {@link #paraEscribir} después de {@link Transacciones#iniciar}, con el lock de
+ * escritura (BEGIN IMMEDIATE): nadie cambia migracion_fechas hasta el commit, y el primer lote de
+ * la migración espera a toda escritura que haya visto ISO.
+ */
+public final class FormatoFechas {
+
+    /** Estado de la base. */
+    public enum Estado { ISO, MIGRANDO, EPOCH }
+
+    /** Columna de fecha y la clave de su frontera en migracion_fechas. */
+    public enum Columna {
+        FECHA_PRESTAMO("prestamo.fecha_prestamo"),
+        FECHA_VENCIMIENTO("prestamo.fecha_vencimiento"),
+        FECHA_DEVOLUCION(null),                 // sin índice ni rangos: no necesita frontera
+        AUDITORIA_TS("auditoria.ts");
+
+        final String clave;
+
+        Columna(String clave) { this.clave = clave; }
+    }
+
+    /** Frontera de una columna ya convertida por completo. */
+    static final long TERMINADA = Long.MAX_VALUE;
+
+    /** Clave de migracion_fechas que marca la migración terminada. */
+    static final String CLAVE_FIN = "fin";
+
+    /** Expresiones SQL de conversión de texto ISO (de la columna {@code %s}) a epoch. */
+    static final String SQL_A_MILIS =
+            "(unixepoch(substr(%1$s,1,19))*1000 + CAST(substr(substr(%1$s,21)||'000',1,3) AS INTEGER))";
+    static final String SQL_A_DIAS = "(unixepoch(%1$s)/86400)";
+
+    private static final FormatoFechas ISO = new FormatoFechas(Estado.ISO);
+    private static final FormatoFechas MIGRANDO = new FormatoFechas(Estado.MIGRANDO);
+    private static final FormatoFechas EPOCH = new FormatoFechas(Estado.EPOCH);
+
+    private static volatile FormatoFechas ACTUAL = ISO;
+
+    private final Estado estado;
+
+    private FormatoFechas(Estado estado) {
+        this.estado = estado;
+    }
+
+    /** @return formato vigente (tomarlo una vez por operación). */
+    public static FormatoFechas actual() { return ACTUAL; }
+
+    /**
+     * Formato para una escritura, con la transacción ya abierta ({@link Transacciones#iniciar}).
+     * En EPOCH (estado final) no consulta nada; si no, relee migracion_fechas y adelanta el formato
+     * vigente si otro proceso cambió la base.
+     */
+    public static FormatoFechas paraEscribir(Connection cn) throws SQLException {
+        FormatoFechas f = ACTUAL;
+        if (f.estado == Estado.EPOCH) return f;
+        Estado e = leer(cn);
+        if (e.compareTo(f.estado) > 0) {      // solo avanza: ISO → MIGRANDO → EPOCH
+            establecer(e);
+            return ACTUAL;
+        }
+        return f;
+    }
+
+    public Estado getEstado() { return estado; }
+
+    /** @return formato pedido con {@code biblioteca.db.fechas} (iso | epoch; default iso). */
+    public static Estado pedido() {
+        String v = System.getProperty("biblioteca.db.fechas", "iso").trim();
+        if (v.equalsIgnoreCase("epoch")) return Estado.EPOCH;
+        if (v.equalsIgnoreCase("iso") || v.isEmpty()) return Estado.ISO;
+        throw new IllegalArgumentException("biblioteca.db.fechas inválido: " + v + " (iso | epoch)");
+    }
+
+    // ===================== Estado persistido =====================
+
+    /** DDL de migracion_fechas (la crea un paso de {@link DbInit}). */
+    static final String DDL_TABLA = """
+            CREATE TABLE IF NOT EXISTS migracion_fechas (
+              clave  VARCHAR(40) PRIMARY KEY,   -- columna, 'prestamo.id' (recorrido por id) o 'fin'
+              valor  INTEGER NOT NULL           -- frontera (ms o días; MAX = columna terminada) o último id
+            )
+            """;
+
+    /**
+     * Lee el estado de la base y lo deja como {@link #actual()}.
+     *
+     * @return estado leído.
+     */
+    public static Estado cargar(Connection cn) throws SQLException {
+        Estado e = leer(cn);
+        establecer(e);
+        return e;
+    }
+
+    /** Estado según migracion_fechas: sin filas ISO, con 'fin' EPOCH, si no MIGRANDO. */
+    private static Estado leer(Connection cn) throws SQLException {
+        try (PreparedStatement ps = cn.prepareStatement(
+                     "SELECT COUNT(*), COALESCE(SUM(clave = '" + CLAVE_FIN + "'), 0) FROM migracion_fechas");
+             ResultSet rs = ps.executeQuery()) {
+            rs.next();
+            return rs.getInt(2) > 0 ? Estado.EPOCH : rs.getInt(1) > 0 ? Estado.MIGRANDO : Estado.ISO;
+        }
+    }
+
+    /** Cambia el formato vigente (lo usa la migración al empezar y al terminar). */
+    static void establecer(Estado e) {
+        ACTUAL = switch (e) {
+            case ISO -> ISO;
+            case MIGRANDO -> MIGRANDO;
+            case EPOCH -> EPOCH;
+        };
+    }
+
+    // ===================== Escritura y cotas =====================
+
+    /**
+     * Fragmento SQL para un valor de la columna (en un VALUES, SET o comparación).
+     * Con MIGRANDO usa 3 parámetros; en los demás formatos, 1. Bindear con {@link #bind}.
+     */
+    public String param(Columna c) {
+        if (estado != Estado.MIGRANDO || c.clave == null) return "?";
+        return "(CASE WHEN ? <= (SELECT valor FROM migracion_fechas WHERE clave='" + c.clave
+                + "') THEN ? ELSE ? END)";
+    }
+
+    /** Bindea un instante en el fragmento de {@link #param}; devuelve el próximo índice libre. */
+    public int bind(PreparedStatement ps, int i, Columna c, LocalDateTime v) throws SQLException {
+        if (v == null) {
+            for (int k = aridad(c); k > 0; k--) ps.setNull(i++, Types.NULL);
+            return i;
+        }
+        return bindValor(ps, i, c, milis(v), v.toString());
+    }
+
+    /** Bindea una fecha en el fragmento de {@link #param}; devuelve el próximo índice libre. */
+    public int bind(PreparedStatement ps, int i, Columna c, LocalDate v) throws SQLException {
+        return bindValor(ps, i, c, v.toEpochDay(), v.toString());
+    }
+
+    /** Valores para el fragmento de {@link #param}, en orden (para SQL armado con una lista de parámetros). */
+    public void agregar(List<Object> params, Columna c, LocalDateTime v) {
+        long ms = milis(v);
+        switch (estado) {
+            case ISO -> params.add(v.toString());
+            case EPOCH -> params.add(ms);
+            case MIGRANDO -> {
+                if (c.clave == null) params.add(ms);
+                else Collections.addAll(params, ms, ms, v.toString());
+            }
+        }
+    }
+
+    private int bindValor(PreparedStatement ps, int i, Columna c, long epoch, String iso) throws SQLException {
+        switch (estado) {
+            case ISO -> ps.setString(i++, iso);
+            case EPOCH -> ps.setLong(i++, epoch);
+            case MIGRANDO -> {
+                ps.setLong(i++, epoch);
+                if (c.clave != null) {
+                    ps.setLong(i++, epoch);
+                    ps.setString(i++, iso);
+                }
+            }
+        }
+        return i;
+    }
+
+    private int aridad(Columna c) {
+        return estado == Estado.MIGRANDO && c.clave != null ? 3 : 1;
+    }
+
+    // ===================== Lectura =====================
+
+    /** @return instante guardado en la columna ({@code null} si es NULL). */
+    public LocalDateTime leerInstante(ResultSet rs, String columna) throws SQLException {
+        if (estado == Estado.EPOCH) {
+            long ms = rs.getLong(columna);
+            return rs.wasNull() ? null : instante(ms);
+        }
+        String s = rs.getString(columna);
+        if (s == null) return null;
+        return esIso(s) ? LocalDateTime.parse(s) : instante(Long.parseLong(s));
+    }
+
+    /** @return fecha guardada en la columna ({@code null} si es NULL). */
+    public LocalDate leerDia(ResultSet rs, String columna) throws SQLException {
+        if (estado == Estado.EPOCH) {
+            long d = rs.getLong(columna);
+            return rs.wasNull() ? null : LocalDate.ofEpochDay(d);
+        }
+        String s = rs.getString(columna);
+        if (s == null) return null;
+        return esIso(s) ? LocalDate.parse(s) : LocalDate.ofEpochDay(Long.parseLong(s));
+    }
+
+    /** Texto ISO ("2025-..."), no un entero (que solo puede tener '-' adelante). */
+    private static boolean esIso(String s) {
+        return s.indexOf('-', 1) > 0;
+    }
+
+    // ===================== Conversión =====================
+
+    /** @return milisegundos epoch de la hora local (contada como UTC), truncando a milisegundos. */
+    public static long milis(LocalDateTime v) {
+        return v.toEpochSecond(ZoneOffset.UTC) * 1000 + v.getNano() / 1_000_000;
+    }
+
+    /** Inversa de {@link #milis}. */
+    public static LocalDateTime instante(long ms) {
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(ms, 1000), Math.floorMod(ms, 1000) * 1_000_000,
+                ZoneOffset.UTC);
+    }
+}
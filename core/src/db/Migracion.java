@@ -0,0 +1,96 @@
+package db;
+
+/**
+ * @author Federico Gabriel Arena
+ * @author Fabrizio Manuel Mansilla
+ */
+
+import util.HashUtil;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * Paso versionado del esquema (lo aplica {@link Migraciones}).
+ *
+ * Tipos:
+ * <pre>
+ *   SQL     sentencias DDL/DML, todas en la transacción del paso
+ *   CODIGO  código Java en la transacción del paso (seeds, pasos condicionales)
+ *   LOTES   migración de datos por tramos: cada tramo en su propia transacción, que también guarda
+ *           el progreso; se puede cortar en cualquier momento y retomar en el próximo inicio
+ * </pre>
+ *
+ * Checksum: SHA-256 de versión, tipo, descripción y sentencias. Un paso ya publicado no se edita:
+ * los cambios van en un paso nuevo (con la base a medio migrar, un checksum distinto del guardado
+ * corta el inicio). En CODIGO y LOTES el checksum cubre la descripción, no el código.
+ */
+final class Migracion {
+
+    enum Tipo { SQL, CODIGO, LOTES }
+
+    /** Cuerpo de un paso CODIGO. */
+    interface Cuerpo {
+        void aplicar(Connection cn) throws SQLException;
+    }
+
+    /** Un tramo de un paso LOTES. */
+    interface Tramo {
+        /**
+         * @param desde progreso devuelto por el tramo anterior ({@code null} en el primero).
+         * @return progreso hasta donde llegó, o {@code null} si terminó.
+         */
+        String aplicar(Connection cn, String desde) throws SQLException;
+    }
+
+    final int version;
+    final Tipo tipo;
+    final String descripcion;
+    final List<String> sentencias;
+    final Cuerpo cuerpo;
+    final Tramo tramo;
+    final String checksum;
+
+    private Migracion(int version, Tipo tipo, String descripcion, List<String> sentencias, Cuerpo cuerpo, Tramo tramo) {
+        if (version <= 0) throw new IllegalArgumentException("Versión de migración inválida: " + version);
+        this.version = version;
+        this.tipo = tipo;
+        this.descripcion = descripcion;
+        this.sentencias = sentencias;
+        this.cuerpo = cuerpo;
+        this.tramo = tramo;
+        this.checksum = calcularChecksum();
+    }
+
+    static Migracion sql(int version, String descripcion, String... sentencias) {
+        return new Migracion(version, Tipo.SQL, descripcion, List.of(sentencias), null, null);
+    }
+
+    static Migracion codigo(int version, String descripcion, Cuerpo cuerpo) {
+        return new Migracion(version, Tipo.CODIGO, descripcion, List.of(), cuerpo, null);
+    }
+
+    static Migracion lotes(int version, String descripcion, Tramo tramo) {
+        return new Migracion(version, Tipo.LOTES, descripcion, List.of(), null, tramo);
+    }
+
+    private String calcularChecksum() {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            md.update((version + "\n" + tipo + "\n" + descripcion + "\n").getBytes(StandardCharsets.UTF_8));
+            for (String s : sentencias) md.update((s.strip() + "\n;\n").getBytes(StandardCharsets.UTF_8));
+            return HashUtil.toHex(md.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 no disponible", e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return version + " (" + descripcion + ")";
+    }
+}
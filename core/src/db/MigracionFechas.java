@@ -0,0 +1,345 @@
+package db;
+
+/**
+ * @author Federico Gabriel Arena
+ * @author Fabrizio Manuel Mansilla
+ */
+
+import db.FormatoFechas.Columna;
+import db.FormatoFechas.Estado;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Migración en línea de las fechas de texto ISO a enteros epoch (ver {@link FormatoFechas}).
+ *
+ * ¿Qué hace?
+ *  - Reescribe las filas existentes de a lotes de {@code filasPorLote}, cada lote en su propia
+ *    transacción IMMEDIATE corta: la app sigue prestando y consultando mientras tanto.
+ *  - Pasos, en orden:
+ *      1) prestamo.fecha_prestamo (y libro_contador.ultimo_prestamo en el mismo lote)
+ *      2) auditoria.ts
+ *      3) prestamo.fecha_vencimiento de los ABIERTO
+ *      4) recorrido por id de prestamo: fecha_vencimiento de los DEVUELTO y fecha_devolucion
+ *      5) marca 'fin' → formato EPOCH
+ *  - Los pasos 1-3 avanzan por valor (desde el más antiguo, con el índice de la columna) y guardan
+ *    la frontera en migracion_fechas en la misma transacción del lote: se puede cortar en cualquier
+ *    momento (cierre de la app, corte de luz) y al iniciar de nuevo continúa desde ahí.
+ *
+ * Decisiones:
+ *  - La conversión la hace SQLite (unixepoch) sin traer filas a Java.
+ *  - Entre lotes se pausa {@code pausaMs} para dejar pasar a los escritores de la app.
+ *  - Un lote que falla se reintenta hasta {@value #REINTENTOS} veces; si sigue fallando se loguea
+ *    y corta la migración (la base queda consistente en MIGRANDO y se retoma en el próximo inicio).
+ *  - No hay vuelta atrás de EPOCH a ISO.
+ *  - No se compacta al terminar: cada lote borra entradas de texto y agrega enteros al comienzo de
+ *    cada índice, así que los índices quedan a medio llenar y más grandes que en ISO. Un REINDEX en
+ *    línea retendría el lock de escritura todo lo que tarde en reconstruir cada índice; se avisa en el
+ *    log que hace falta un VACUUM con la app cerrada (y después
+ *    {@link DbInit#reconstruirIndiceBusqueda}, porque VACUUM puede renumerar los rowid de libro).
+ *
+ * Configuración (propiedades de sistema):
+ *   biblioteca.db.fechas          iso | epoch: formato pedido        (default iso)
+ *   biblioteca.db.fechas.lote     filas por lote                     (default 5000)
+ *   biblioteca.db.fechas.pausaMs  pausa entre lotes                  (default 20)
+ */
+public final class MigracionFechas {
+
+    /** Paso que avanza por valor sobre el índice de la columna. */
+    private record Paso(Columna columna, String tabla, String col, String filtro, String conversion) {}
+
+    private static final Paso[] PASOS_POR_VALOR = {
+            new Paso(Columna.FECHA_PRESTAMO, "prestamo", "fecha_prestamo", "", FormatoFechas.SQL_A_MILIS),
+            new Paso(Columna.AUDITORIA_TS, "auditoria", "ts", "", FormatoFechas.SQL_A_MILIS),
+            // Solo los ABIERTO: así se recorre el índice parcial ix_prestamo_abiertos_vence
+            new Paso(Columna.FECHA_VENCIMIENTO, "prestamo", "fecha_vencimiento", "estado='ABIERTO' AND ",
+                    FormatoFechas.SQL_A_DIAS),
+    };
+
+    /** Clave del recorrido por id de prestamo (valor = último id procesado). */
+    private static final String CLAVE_RECORRIDO = "prestamo.id";
+
+    /** Intentos por lote antes de cortar la migración. */
+    private static final int REINTENTOS = 5;
+
+    private final int filasPorLote;
+    private final long pausaMs;
+    private long convertidas;
+
+    /**
+     * @param filasPorLote filas por transacción (&gt; 0).
+     * @param pausaMs      pausa entre lotes (&gt;= 0).
+     */
+    public MigracionFechas(int filasPorLote, long pausaMs) {
+        if (filasPorLote <= 0 || pausaMs < 0) throw new IllegalArgumentException("Configuración de migración inválida");
+        this.filasPorLote = filasPorLote;
+        this.pausaMs = pausaMs;
+    }
+
+    /**
+     * Decide según el estado de la base y {@code biblioteca.db.fechas} (lo llama {@link DbInit}):
+     *  - base en EPOCH, o ISO sin pedir epoch: nada.
+     *  - epoch pedido sobre una base sin préstamos ni auditoría: pasa a EPOCH en el momento.
+     *  - si no: migración en un hilo de fondo (también si la base quedó a mitad de una migración).
+     *
+     * @return el hilo de la migración, o {@code null} si no hizo falta.
+     */
+    static Thread iniciarSiCorresponde(Connection cn) throws SQLException {
+        Estado estado = FormatoFechas.cargar(cn);
+        if (estado == Estado.EPOCH) return null;
+        if (estado == Estado.ISO && FormatoFechas.pedido() != Estado.EPOCH) return null;
+
+        if (estado == Estado.ISO && !hayFilas(cn)) {
+            Transacciones.iniciar(cn);
+            try {
+                marcarFin(cn);
+                Transacciones.confirmar(cn);
+            } catch (SQLException e) {
+                Transacciones.deshacer(cn, e);
+                throw e;
+            }
+            FormatoFechas.establecer(Estado.EPOCH);
+            return null;
+        }
+
+        MigracionFechas m = new MigracionFechas(
+                Integer.getInteger("biblioteca.db.fechas.lote", 5000),
+                Long.getLong("biblioteca.db.fechas.pausaMs", 20));
+        FormatoFechas.establecer(Estado.MIGRANDO);   // antes de que la app empiece a escribir
+        Thread t = new Thread(m::ejecutarYLoguear, "migracion-fechas");
+        t.setDaemon(true);
+        t.start();
+        return t;
+    }
+
+    /**
+     * Corre la migración completa en el hilo que llama (retoma si estaba empezada).
+     * Se puede llamar con la app escribiendo: el primer lote espera a las escrituras que tomaron
+     * el formato anterior (ver {@link FormatoFechas}).
+     *
+     * @return filas convertidas por esta llamada.
+     * @throws SQLException si falla un lote (lo ya convertido queda guardado).
+     */
+    public long migrar() throws SQLException {
+        FormatoFechas.establecer(Estado.MIGRANDO);
+        try (Connection cn = ConnectionFactory.getConnection()) {
+            for (Paso p : PASOS_POR_VALOR) {
+                while (conReintentos(() -> lotePorValor(cn, p))) pausar(pausaMs);
+            }
+            while (conReintentos(() -> lotePorId(cn))) pausar(pausaMs);
+            conReintentos(() -> {
+                long[] n = {0};
+                transaccion(cn, () -> {
+                    // Barrido final (vacío salvo escrituras en vuelo al empezar) y marca de fin
+                    for (Paso p : PASOS_POR_VALOR) n[0] += convertirTextos(cn, p, null);
+                    marcarFin(cn);
+                });
+                convertidas += n[0];
+                return false;
+            });
+        }
+        FormatoFechas.establecer(Estado.EPOCH);
+        return convertidas;
+    }
+
+    private void ejecutarYLoguear() {
+        long t0 = System.nanoTime();
+        System.out.println("[MigracionFechas] Convirtiendo fechas a epoch de a " + filasPorLote + " filas");
+        try {
+            long n = migrar();
+            System.out.printf("[MigracionFechas] Listo: %,d filas en %.1f s%n", n, (System.nanoTime() - t0) / 1e9);
+            System.out.println("[MigracionFechas] Los índices de fecha quedaron a medio llenar: ejecutar VACUUM con la app"
+                    + " cerrada para compactarlos");
+        } catch (SQLException | RuntimeException e) {
+            System.err.println("[MigracionFechas] Interrumpida tras " + convertidas + " filas (se retoma al reiniciar): "
+                    + e.getMessage());
+        }
+    }
+
+    // ===================== Lotes =====================
+
+    /**
+     * Convierte los {@code filasPorLote} textos más antiguos de la columna (más los empates con el
+     * último) y sube la frontera. Con menos textos que eso, convierte todos y marca la columna terminada.
+     *
+     * @return true si puede quedar trabajo en la columna.
+     */
+    private boolean lotePorValor(Connection cn, Paso p) throws SQLException {
+        if (frontera(cn, p.columna().clave) == FormatoFechas.TERMINADA) return false;
+        boolean[] sigue = {true};
+        long[] n = {0};
+        transaccion(cn, () -> {
+            String corte = valorEn(cn, "SELECT " + p.col() + " FROM " + p.tabla() + " WHERE " + p.filtro()
+                    + p.col() + " >= '' ORDER BY " + p.col() + " LIMIT 1 OFFSET " + (filasPorLote - 1));
+            if (corte == null) {
+                // Último lote: todo lo que queda (los escritores esperan el lock, no aparecen textos nuevos)
+                n[0] = convertirTextos(cn, p, null);
+                guardar(cn, p.columna().clave, FormatoFechas.TERMINADA);
+                sigue[0] = false;
+            } else {
+                n[0] = convertirTextos(cn, p, corte);
+                guardar(cn, p.columna().clave, aEpoch(cn, p, corte));
+            }
+        });
+        convertidas += n[0];      // solo lo confirmado: un intento deshecho no cuenta
+        return sigue[0];
+    }
+
+    /**
+     * Convierte los textos de la columna hasta {@code corte} inclusive (todos si es {@code null}).
+     * Con fecha_prestamo también libro_contador.ultimo_prestamo, que es una copia de ella.
+     */
+    private static int convertirTextos(Connection cn, Paso p, String corte) throws SQLException {
+        String hasta = corte == null ? "" : " AND %s <= ?";
+        int n = actualizar(cn, "UPDATE " + p.tabla() + " SET " + p.col() + " = " + p.conversion().formatted(p.col())
+                + " WHERE " + p.filtro() + p.col() + " >= ''" + hasta.formatted(p.col()), corte);
+        if (p.columna() == Columna.FECHA_PRESTAMO) {
+            actualizar(cn, "UPDATE libro_contador SET ultimo_prestamo = "
+                    + FormatoFechas.SQL_A_MILIS.formatted("ultimo_prestamo")
+                    + " WHERE ultimo_prestamo >= ''" + hasta.formatted("ultimo_prestamo"), corte);
+        }
+        return n;
+    }
+
+    /**
+     * Paso 4: recorre prestamo por rango de id. Para entonces los ABIERTO ya tienen el vencimiento
+     * en epoch y las escrituras nuevas son todas epoch, así que lo que quede en texto es histórico.
+     *
+     * @return true si quedan ids por recorrer.
+     */
+    private boolean lotePorId(Connection cn) throws SQLException {
+        long desde = frontera(cn, CLAVE_RECORRIDO);
+        long maxId = Long.parseLong(valorEn(cn, "SELECT COALESCE(MAX(id), 0) FROM prestamo"));
+        if (desde >= maxId) return false;
+        long hasta = Math.min(maxId, Math.max(desde, 0) + filasPorLote);
+        long[] n = {0};
+        transaccion(cn, () -> {
+            try (PreparedStatement ps = cn.prepareStatement("UPDATE prestamo SET "
+                    + "fecha_vencimiento = CASE WHEN typeof(fecha_vencimiento) = 'text' THEN "
+                    + FormatoFechas.SQL_A_DIAS.formatted("fecha_vencimiento") + " ELSE fecha_vencimiento END, "
+                    + "fecha_devolucion = CASE WHEN typeof(fecha_devolucion) = 'text' THEN "
+                    + FormatoFechas.SQL_A_MILIS.formatted("fecha_devolucion") + " ELSE fecha_devolucion END "
+                    + "WHERE id > ? AND id <= ? "
+                    + "AND (typeof(fecha_vencimiento) = 'text' OR typeof(fecha_devolucion) = 'text')")) {
+                ps.setLong(1, desde);
+                ps.setLong(2, hasta);
+                n[0] = ps.executeUpdate();
+            }
+            guardar(cn, CLAVE_RECORRIDO, hasta);
+        });
+        convertidas += n[0];
+        return hasta < maxId;
+    }
+
+    // ===================== Helpers =====================
+
+    private interface Trabajo {
+        void correr() throws SQLException;
+    }
+
+    private interface Lote {
+        boolean correr() throws SQLException;
+    }
+
+    /**
+     * Corre un lote reintentándolo si falla (p. ej. SQLITE_BUSY con la app muy cargada). Los lotes
+     * releen su punto de partida de migracion_fechas, así que repetirlos es seguro.
+     */
+    private boolean conReintentos(Lote lote) throws SQLException {
+        for (int intento = 1; ; intento++) {
+            try {
+                return lote.correr();
+            } catch (SQLException e) {
+                if (intento == REINTENTOS) throw e;
+                System.err.println("[MigracionFechas] Lote fallido, reintento " + intento + ": " + e.getMessage());
+                pausar(Math.max(pausaMs, 100) * intento);
+            }
+        }
+    }
+
+    /**
+     * Corre el trabajo en una transacción (BEGIN IMMEDIATE, ver {@link ConnectionFactory}). La conexión
+     * es la misma para todos los lotes: si el BEGIN falla (SQLITE_BUSY) se deshace igual, para que el
+     * reintento no corra en autocommit (conversión y frontera confirmadas por separado).
+     */
+    private static void transaccion(Connection cn, Trabajo t) throws SQLException {
+        try {
+            Transacciones.iniciar(cn);
+            t.correr();
+            Transacciones.confirmar(cn);
+        } catch (SQLException | RuntimeException e) {
+            Transacciones.deshacer(cn, e);
+            throw e;
+        }
+    }
+
+    /** Marca la migración terminada (todas las columnas con frontera MAX, más 'fin'). */
+    private static void marcarFin(Connection cn) throws SQLException {
+        for (Columna c : Columna.values()) {
+            if (c.clave != null) guardar(cn, c.clave, FormatoFechas.TERMINADA);
+        }
+        guardar(cn, FormatoFechas.CLAVE_FIN, 1);
+    }
+
+    private static boolean hayFilas(Connection cn) throws SQLException {
+        return !"0".equals(valorEn(cn,
+                "SELECT EXISTS(SELECT 1 FROM prestamo) OR EXISTS(SELECT 1 FROM auditoria)"));
+    }
+
+    /** @return valor guardado para la clave (-1 si no hay). */
+    private static long frontera(Connection cn, String clave) throws SQLException {
+        try (PreparedStatement ps = cn.prepareStatement("SELECT valor FROM migracion_fechas WHERE clave = ?")) {
+            ps.setString(1, clave);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? rs.getLong(1) : -1;
+            }
+        }
+    }
+
+    private static void guardar(Connection cn, String clave, long valor) throws SQLException {
+        try (PreparedStatement ps = cn.prepareStatement(
+                "INSERT INTO migracion_fechas(clave, valor) VALUES (?, ?) "
+                + "ON CONFLICT(clave) DO UPDATE SET valor = excluded.valor")) {
+            ps.setString(1, clave);
+            ps.setLong(2, valor);
+            ps.executeUpdate();
+        }
+    }
+
+    /** @return valor epoch del texto {@code corte}, convertido igual que las filas. */
+    private static long aEpoch(Connection cn, Paso p, String corte) throws SQLException {
+        try (PreparedStatement ps = cn.prepareStatement("SELECT " + p.conversion().formatted("?"))) {
+            for (int i = 1; i <= ps.getParameterMetaData().getParameterCount(); i++) ps.setString(i, corte);
+            try (ResultSet rs = ps.executeQuery()) {
+                rs.next();
+                return rs.getLong(1);
+            }
+        }
+    }
+
+    private static int actualizar(Connection cn, String sql, String corte) throws SQLException {
+        try (PreparedStatement ps = cn.prepareStatement(sql)) {
+            if (corte != null) ps.setString(1, corte);
+            return ps.executeUpdate();
+        }
+    }
+
+    private static String valorEn(Connection cn, String sql) throws SQLException {
+        try (Statement s = cn.createStatement(); ResultSet rs = s.executeQuery(sql)) {
+            return rs.next() ? rs.getString(1) : null;
+        }
+    }
+
+    private static void pausar(long ms) {
+        if (ms == 0) return;
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,274 @@
+package db;
+
+/**
+ * @author Federico Gabriel Arena
+ * @author Fabrizio Manuel Mansilla
+ */
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Aplica los pasos versionados del esquema ({@link Migracion}) en orden.
+ *
+ * Versión:
+ *  - PRAGMA user_version = N significa "los pasos 1..N están aplicados". Una base al día se
+ *    reconoce con esa sola lectura y el inicio no hace nada más.
+ *  - Cada paso queda registrado en esquema_migracion (versión, checksum, progreso). Solo se lee
+ *    cuando hay algo que aplicar: ahí se verifica que los pasos ya aplicados no hayan cambiado.
+ *  - Una base creada por una versión más nueva de la app (user_version mayor) corta el inicio.
+ *  - Bases anteriores a este mecanismo tienen user_version = 0: los primeros pasos son idempotentes
+ *    (IF NOT EXISTS / seeds condicionales), así que se "adoptan" sin tocar datos.
+ *
+ * Orden de ejecución:
+ *  - Los pasos SQL y CODIGO se aplican al iniciar, cada uno en su transacción (IMMEDIATE) junto
+ *    con su registro y la nueva user_version: o queda aplicado entero o no se aplicó.
+ *  - Los pasos LOTES corren su primer tramo al iniciar (una base chica termina ahí) y, si queda
+ *    trabajo, siguen en un hilo de fondo con pausas entre tramos: la app ya está en uso mientras
+ *    tanto. Por eso un paso LOTES solo puede mover datos que la app tolere a medio convertir, y no
+ *    puede ser requisito de un paso SQL posterior (que se aplica igual al iniciar).
+ *  - user_version sube hasta el último paso con todos los anteriores terminados.
+ *  - Dos procesos iniciando a la vez: cada paso se vuelve a verificar dentro de su transacción.
+ *
+ * Configuración (propiedades de sistema):
+ *   biblioteca.db.migraciones.pausaMs  pausa entre tramos de fondo  (default 20)
+ */
+final class Migraciones {
+
+    /** Intentos por tramo de fondo antes de dejarlo para el próximo inicio. */
+    private static final int REINTENTOS = 5;
+
+    private final List<Migracion> pasos;
+    private final int ultima;
+
+    /**
+     * @param pasos pasos con versiones 1, 2, 3... en orden.
+     */
+    Migraciones(List<Migracion> pasos) {
+        for (int i = 0; i < pasos.size(); i++) {
+            if (pasos.get(i).version != i + 1)
+                throw new IllegalArgumentException("Migraciones fuera de orden: " + pasos.get(i) + " en la posición " + (i + 1));
+        }
+        this.pasos = List.copyOf(pasos);
+        this.ultima = pasos.size();
+    }
+
+    /** @return versión que deja la base al aplicar todos los pasos. */
+    int ultima() { return ultima; }
+
+    /**
+     * Lleva la base a la última versión.
+     *
+     * @return hilo que sigue con pasos LOTES en segundo plano, o {@code null} si terminó todo.
+     * @throws SQLException si un paso falla (queda aplicado hasta el anterior) o la base no es compatible.
+     */
+    Thread aplicar(Connection cn) throws SQLException {
+        int v = version(cn);
+        if (v == ultima) return null;
+        if (v > ultima) {
+            throw new SQLException("La base está en la versión " + v + " del esquema y esta aplicación llega hasta la "
+                    + ultima + ": usar una versión más nueva de la aplicación");
+        }
+
+        crearTabla(cn);
+        Map<Integer, Registro> hechos = registros(cn);
+        for (Registro r : hechos.values()) {
+            Migracion m = r.version <= ultima ? pasos.get(r.version - 1) : null;
+            if (m == null || !m.checksum.equals(r.checksum)) {
+                throw new SQLException("La migración " + r.version + " aplicada en esta base no coincide con la de la"
+                        + " aplicación (checksum distinto): los pasos publicados no se editan");
+            }
+        }
+
+        List<Migracion> pendientes = new ArrayList<>();
+        for (Migracion m : pasos) {
+            Registro r = hechos.get(m.version);
+            if (r != null && r.terminada) continue;
+            if (m.tipo == Migracion.Tipo.LOTES) {
+                pendientes.add(m);
+            } else {
+                long t0 = System.nanoTime();
+                transaccion(cn, () -> {
+                    if (terminada(cn, m.version)) return;
+                    if (m.tipo == Migracion.Tipo.SQL) {
+                        try (Statement s = cn.createStatement()) {
+                            for (String sql : m.sentencias) s.execute(sql);
+                        }
+                    } else {
+                        m.cuerpo.aplicar(cn);
+                    }
+                    registrar(cn, m, true, null);
+                });
+                log(m, t0);
+            }
+        }
+
+        // Primer tramo de cada paso LOTES ahora; lo que no termine sigue en segundo plano, en orden
+        while (!pendientes.isEmpty()) {
+            Migracion m = pendientes.get(0);
+            long t0 = System.nanoTime();
+            if (tramo(cn, m)) break;
+            pendientes.remove(0);
+            log(m, t0);
+        }
+        if (pendientes.isEmpty()) return null;
+
+        long pausaMs = Long.getLong("biblioteca.db.migraciones.pausaMs", 20);
+        Thread t = new Thread(() -> enFondo(pendientes, pausaMs), "migraciones-esquema");
+        t.setDaemon(true);
+        t.start();
+        return t;
+    }
+
+    private void enFondo(List<Migracion> pendientes, long pausaMs) {
+        try (Connection cn = ConnectionFactory.getConnection()) {
+            for (Migracion m : pendientes) {
+                long t0 = System.nanoTime();
+                System.out.println("[Migraciones] " + m + " sigue en segundo plano");
+                while (conReintentos(cn, m)) pausar(pausaMs);
+                log(m, t0);
+            }
+        } catch (SQLException | RuntimeException e) {
+            System.err.println("[Migraciones] Interrumpida (se retoma al reiniciar): " + e.getMessage());
+        }
+    }
+
+    private boolean conReintentos(Connection cn, Migracion m) throws SQLException {
+        for (int intento = 1; ; intento++) {
+            try {
+                return tramo(cn, m);
+            } catch (SQLException e) {
+                if (intento == REINTENTOS) throw e;
+                pausar(100L * intento);
+            }
+        }
+    }
+
+    /**
+     * Un tramo de un paso LOTES, con su progreso, en una transacción.
+     *
+     * @return true si queda trabajo.
+     */
+    private boolean tramo(Connection cn, Migracion m) throws SQLException {
+        boolean[] sigue = {false};
+        transaccion(cn, () -> {
+            Registro r = registros(cn).get(m.version);
+            if (r != null && r.terminada) return;
+            String hasta = m.tramo.aplicar(cn, r == null ? null : r.progreso);
+            registrar(cn, m, hasta == null, hasta);
+            sigue[0] = hasta != null;
+        });
+        return sigue[0];
+    }
+
+    // ===================== Registro =====================
+
+    private record Registro(int version, String checksum, boolean terminada, String progreso) {}
+
+    private static void crearTabla(Connection cn) throws SQLException {
+        try (Statement s = cn.createStatement()) {
+            s.execute("""
+                CREATE TABLE IF NOT EXISTS esquema_migracion (
+                  version      INTEGER PRIMARY KEY,
+                  descripcion  VARCHAR(200) NOT NULL,
+                  checksum     CHAR(64)     NOT NULL,
+                  terminada    INTEGER      NOT NULL,   -- 0 = paso LOTES en curso
+                  progreso     TEXT,                    -- hasta dónde llegó el paso LOTES
+                  aplicada     DATETIME     NOT NULL
+                )
+                """);
+        }
+    }
+
+    private static Map<Integer, Registro> registros(Connection cn) throws SQLException {
+        Map<Integer, Registro> out = new HashMap<>();
+        try (Statement s = cn.createStatement();
+             ResultSet rs = s.executeQuery("SELECT version, checksum, terminada, progreso FROM esquema_migracion")) {
+            while (rs.next()) {
+                out.put(rs.getInt(1), new Registro(rs.getInt(1), rs.getString(2), rs.getInt(3) != 0, rs.getString(4)));
+            }
+        }
+        return out;
+    }
+
+    private static boolean terminada(Connection cn, int version) throws SQLException {
+        Registro r = registros(cn).get(version);
+        return r != null && r.terminada;
+    }
+
+    /** Guarda el estado del paso y, si terminó, sube user_version (en la transacción del paso). */
+    private void registrar(Connection cn, Migracion m, boolean terminada, String progreso) throws SQLException {
+        try (PreparedStatement ps = cn.prepareStatement("""
+                INSERT INTO esquema_migracion(version, descripcion, checksum, terminada, progreso, aplicada)
+                VALUES (?,?,?,?,?,?)
+                ON CONFLICT(version) DO UPDATE SET terminada = excluded.terminada, progreso = excluded.progreso,
+                                                   aplicada = excluded.aplicada
+                """)) {
+            ps.setInt(1, m.version);
+            ps.setString(2, m.descripcion);
+            ps.setString(3, m.checksum);
+            ps.setInt(4, terminada ? 1 : 0);
+            ps.setString(5, progreso);
+            ps.setString(6, LocalDateTime.now().toString());
+            ps.executeUpdate();
+        }
+        if (!terminada) return;
+
+        Map<Integer, Registro> hechos = registros(cn);
+        int v = 0;
+        while (v < ultima && hechos.containsKey(v + 1) && hechos.get(v + 1).terminada) v++;
+        try (Statement s = cn.createStatement()) {
+            s.execute("PRAGMA user_version = " + v);
+        }
+    }
+
+    /** @return PRAGMA user_version de la base. */
+    static int version(Connection cn) throws SQLException {
+        try (Statement s = cn.createStatement(); ResultSet rs = s.executeQuery("PRAGMA user_version")) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    // ===================== Helpers =====================
+
+    private interface Trabajo {
+        void correr() throws SQLException;
+    }
+
+    /**
+     * Corre el trabajo en una transacción (BEGIN IMMEDIATE, ver {@link ConnectionFactory}). El hilo de
+     * fondo usa la misma conexión para todos los tramos: si el BEGIN falla (SQLITE_BUSY) se deshace
+     * igual, para que el tramo siguiente y su user_version no se confirmen por separado.
+     */
+    private static void transaccion(Connection cn, Trabajo t) throws SQLException {
+        try {
+            Transacciones.iniciar(cn);
+            t.correr();
+            Transacciones.confirmar(cn);
+        } catch (SQLException | RuntimeException e) {
+            Transacciones.deshacer(cn, e);
+            throw e;
+        }
+    }
+
+    private static void log(Migracion m, long t0) {
+        System.out.printf("[Migraciones] Aplicada %s en %.0f ms%n", m, (System.nanoTime() - t0) / 1e6);
+    }
+
+    private static void pausar(long ms) {
+        if (ms == 0) return;
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
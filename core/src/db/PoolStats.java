@@ -0,0 +1,123 @@
+package db;
+
+/**
+ * @author Federico Gabriel Arena
+ * @author Fabrizio Manuel Mansilla
+ */
+
+/**
+ * PoolStats
+ * ---------
+ * Foto inmutable de las métricas del {@link ConnectionPool}, pensada para dimensionarlo.
+ *
+ * ¿Qué mide?
+ *   - Estado actual: abiertas, ociosas, prestadas y hilos esperando.
+ *   - Acumulados: préstamos, conexiones creadas/descartadas, timeouts y fugas detectadas.
+ *   - Histograma del tiempo de espera por una conexión (buckets en microsegundos).
+ *   - Cache de sentencias preparadas: aciertos, fallos (compilaciones) y desalojos LRU, sumados
+ *     entre todas las conexiones físicas.
+ *
+ * Lectura del histograma:
+ *   - {@code histograma[i]} cuenta las esperas en (limites[i-1], limites[i]] µs.
+ *   - {@code histograma[0]} son los préstamos sin espera (había una libre o se abrió una).
+ *   - El último bucket acumula todo lo que superó el último límite.
+ */
+public final class PoolStats {
+
+    private final int maxConexiones;
+    private final int abiertas;
+    private final int ociosas;
+    private final int prestadas;
+    private final int esperando;
+    private final long totalPrestamos;
+    private final long totalCreadas;
+    private final long totalDescartadas;
+    private final long totalTimeouts;
+    private final long totalFugas;
+    private final long esperaMaxUs;
+    private final long[] limitesUs;
+    private final long[] histograma;
+    private final int sentenciasPorConexion;
+    private final long sentenciasAciertos;
+    private final long sentenciasFallos;
+    private final long sentenciasDesalojadas;
+
+    PoolStats(int maxConexiones, int abiertas, int ociosas, int prestadas, int esperando,
+              long totalPrestamos, long totalCreadas, long totalDescartadas,
+              long totalTimeouts, long totalFugas, long esperaMaxUs,
+              long[] limitesUs, long[] histograma, int sentenciasPorConexion,
+              long sentenciasAciertos, long sentenciasFallos, long sentenciasDesalojadas) {
+        this.maxConexiones = maxConexiones;
+        this.abiertas = abiertas;
+        this.ociosas = ociosas;
+        this.prestadas = prestadas;
+        this.esperando = esperando;
+        this.totalPrestamos = totalPrestamos;
+        this.totalCreadas = totalCreadas;
+        this.totalDescartadas = totalDescartadas;
+        this.totalTimeouts = totalTimeouts;
+        this.totalFugas = totalFugas;
+        this.esperaMaxUs = esperaMaxUs;
+        this.limitesUs = limitesUs;
+        this.histograma = histograma;
+        this.sentenciasPorConexion = sentenciasPorConexion;
+        this.sentenciasAciertos = sentenciasAciertos;
+        this.sentenciasFallos = sentenciasFallos;
+        this.sentenciasDesalojadas = sentenciasDesalojadas;
+    }
+
+    public int getMaxConexiones() { return maxConexiones; }
+    public int getAbiertas() { return abiertas; }
+    public int getOciosas() { return ociosas; }
+    public int getPrestadas() { return prestadas; }
+    public int getEsperando() { return esperando; }
+    public long getTotalPrestamos() { return totalPrestamos; }
+    public long getTotalCreadas() { return totalCreadas; }
+    public long getTotalDescartadas() { return totalDescartadas; }
+    public long getTotalTimeouts() { return totalTimeouts; }
+    public long getTotalFugas() { return totalFugas; }
+    public long getEsperaMaxUs() { return esperaMaxUs; }
+
+    /** @return copia de los límites superiores (µs) de cada bucket. */
+    public long[] getLimitesUs() { return limitesUs.clone(); }
+
+    /** @return copia de los conteos por bucket (longitud = límites + 1). */
+    public long[] getHistograma() { return histograma.clone(); }
+
+    /** @return capacidad de la cache de sentencias por conexión (0 = desactivada). */
+    public int getSentenciasPorConexion() { return sentenciasPorConexion; }
+    public long getSentenciasAciertos() { return sentenciasAciertos; }
+    public long getSentenciasFallos() { return sentenciasFallos; }
+    public long getSentenciasDesalojadas() { return sentenciasDesalojadas; }
+
+    /** @return aciertos / preparaciones de la cache de sentencias (0 si no hubo ninguna). */
+    public double getTasaAciertosSentencias() {
+        long total = sentenciasAciertos + sentenciasFallos;
+        return total == 0 ? 0 : (double) sentenciasAciertos / total;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("PoolStats{max=").append(maxConexiones)
+          .append(", abiertas=").append(abiertas)
+          .append(", ociosas=").append(ociosas)
+          .append(", prestadas=").append(prestadas)
+          .append(", esperando=").append(esperando)
+          .append(", prestamos=").append(totalPrestamos)
+          .append(", creadas=").append(totalCreadas)
+          .append(", descartadas=").append(totalDescartadas)
+          .append(", timeouts=").append(totalTimeouts)
+          .append(", fugas=").append(totalFugas)
+          .append(", esperaMaxUs=").append(esperaMaxUs)
+          .append(", sentencias=").append(sentenciasAciertos).append('/').append(sentenciasAciertos + sentenciasFallos)
+          .append(" aciertos, desalojadas=").append(sentenciasDesalojadas)
+          .append(", espera=[");
+        for (int i = 0; i < histograma.length; i++) {
+            if (i > 0) sb.append(", ");
+            sb.append(i < limitesUs.length ? "<=" + limitesUs[i] + "us" : ">" + limitesUs[limitesUs.length - 1] + "us")
+              .append(':').append(histograma[i]);
+        }
+        return sb.append("]}").toString();
+    }
+}
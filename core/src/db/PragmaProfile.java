@@ -0,0 +1,100 @@
+package db;
+
+/**
+ * @author Federico Gabriel Arena
+ * @author Fabrizio Manuel Mansilla
+ */
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Locale;
+
+/**
+ * PragmaProfile
+ * -------------
+ * Perfiles con nombre de PRAGMAs de SQLite que {@link ConnectionFactory} aplica a
+ * cada conexión física nueva (en SQLite casi todos los PRAGMA son por-conexión).
+ *
+ * Perfiles:
+ *   - DURABLE    : WAL + synchronous=FULL. Un commit confirmado sobrevive a un corte de luz.
+ *   - THROUGHPUT : WAL + synchronous=NORMAL, cache y mmap más grandes. Ante un corte de luz
+ *                  se pueden perder los últimos commits, pero la base nunca queda corrupta.
+ *
+ * Decisiones:
+ *   - Ambos usan journal_mode=WAL: los lectores no se bloquean detrás de un escritor
+ *     (p. ej. listar mientras otra estación ejecuta prestar).
+ *   - busy_timeout evita fallos inmediatos SQLITE_BUSY cuando dos escritores compiten.
+ *   - foreign_keys=ON siempre (antes solo lo activaba DbInit en su propia conexión).
+ *   - Se elige con la propiedad de sistema {@code biblioteca.db.perfil} (default DURABLE).
+ */
+public enum PragmaProfile {
+
+    DURABLE("WAL", "FULL", -8_000, 0L, "DEFAULT", 5_000),
+    THROUGHPUT("WAL", "NORMAL", -64_000, 256L * 1024 * 1024, "MEMORY", 5_000);
+
+    /** journal_mode (DELETE, WAL, ...). Es persistente en el archivo, pero se reafirma. */
+    private final String journalMode;
+    /** synchronous (OFF, NORMAL, FULL, EXTRA). */
+    private final String synchronous;
+    /** cache_size: negativo = KiB, positivo = páginas. */
+    private final int cacheSize;
+    /** mmap_size en bytes (0 = sin memory-mapped I/O). */
+    private final long mmapSize;
+    /** temp_store (DEFAULT, FILE, MEMORY). */
+    private final String tempStore;
+    /** busy_timeout en milisegundos. */
+    private final int busyTimeoutMs;
+
+    PragmaProfile(String journalMode, String synchronous, int cacheSize,
+                  long mmapSize, String tempStore, int busyTimeoutMs) {
+        this.journalMode = journalMode;
+        this.synchronous = synchronous;
+        this.cacheSize = cacheSize;
+        this.mmapSize = mmapSize;
+        this.tempStore = tempStore;
+        this.busyTimeoutMs = busyTimeoutMs;
+    }
+
+    /**
+     * Aplica el perfil sobre una conexión recién abierta.
+     *
+     * @param cn conexión física (en autocommit, sin transacción abierta).
+     * @throws SQLException si algún PRAGMA falla.
+     */
+    public void aplicar(Connection cn) throws SQLException {
+        try (Statement s = cn.createStatement()) {
+            // busy_timeout primero: el cambio a WAL puede necesitar esperar a otro proceso.
+            s.execute("PRAGMA busy_timeout = " + busyTimeoutMs);
+            s.execute("PRAGMA journal_mode = " + journalMode);
+            s.execute("PRAGMA synchronous = " + synchronous);
+            s.execute("PRAGMA cache_size = " + cacheSize);
+            s.execute("PRAGMA mmap_size = " + mmapSize);
+            s.execute("PRAGMA temp_store = " + tempStore);
+            s.execute("PRAGMA foreign_keys = ON");
+        }
+    }
+
+    /**
+     * Resuelve el perfil por nombre (case-insensitive).
+     *
+     * @param nombre "durable" / "throughput"; null o vacío → {@link #DURABLE}.
+     * @return perfil correspondiente.
+     * @throws IllegalArgumentException si el nombre no corresponde a ningún perfil.
+     */
+    public static PragmaProfile porNombre(String nombre) {
+        if (nombre == null || nombre.isBlank()) return DURABLE;
+        try {
+            return valueOf(nombre.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Perfil de PRAGMA desconocido: " + nombre);
+        }
+    }
+
+    public String getJournalMode() { return journalMode; }
+    public String getSynchronous() { return synchronous; }
+    public int getCacheSize() { return cacheSize; }
+    public long getMmapSize() { return mmapSize; }
+    public String getTempStore() { return tempStore; }
+    public int getBusyTimeoutMs() { return busyTimeoutMs; }
+}
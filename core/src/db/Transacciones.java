@@ -0,0 +1,112 @@
+package db;
+
+/**
+ * @author Federico Gabriel Arena
+ * @author Fabrizio Manuel Mansilla
+ */
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Transacciones
+ * -------------
+ * Apertura y cierre de transacciones de escritura sin que el driver vuelva a abrir otra.
+ *
+ * Problema:
+ *   - En sqlite-jdbc, {@code commit()} y {@code rollback()} ejecutan {@code commit;}/{@code rollback;}
+ *     y enseguida otro BEGIN (IMMEDIATE, ver {@link ConnectionFactory}) para seguir en modo transacción.
+ *     Ese BEGIN vuelve a pelear el lock de escritura: con SQLITE_BUSY, un préstamo ya confirmado y
+ *     durable se informaba como fallido (y se saltaban la invalidación de cache y la auditoría diferida).
+ *
+ * Uso:
+ * <pre>
+ * Transacciones.iniciar(cn);              // BEGIN IMMEDIATE
+ * try {
+ *     ...
+ *     Transacciones.confirmar(cn);        // COMMIT, la conexión queda en autocommit
+ *     ...                                 // efectos posteriores al commit
+ * } catch (Exception ex) {
+ *     Transacciones.deshacer(cn, ex);     // ROLLBACK (no hace nada si ya se confirmó)
+ *     throw ex;
+ * }
+ * </pre>
+ *
+ * Decisiones:
+ *   - Confirmar = {@code setAutoCommit(true)}: el driver ejecuta solo {@code commit;}.
+ *   - Deshacer = {@code ROLLBACK} explícito. El driver sigue creyéndose en transacción, así que se le
+ *     deja un {@code BEGIN} diferido (no toma locks, no puede dar BUSY) para que lo cierre al volver
+ *     a autocommit.
+ *   - Tras confirmar o deshacer la conexión queda siempre en autocommit: no hace falta un finally.
+ *     Lo mismo si falla el BEGIN: {@code setAutoCommit(false)} deja al driver creyéndose en
+ *     transacción, e {@link #iniciar} lo vuelve a autocommit antes de propagar el error.
+ */
+public final class Transacciones {
+
+    private Transacciones() {}
+
+    /**
+     * Abre la transacción (BEGIN IMMEDIATE: toma el lock de escritura esperando con busy_timeout).
+     *
+     * @throws SQLException si el BEGIN falló (p. ej. SQLITE_BUSY); la conexión queda en autocommit.
+     */
+    public static void iniciar(Connection cn) throws SQLException {
+        try {
+            cn.setAutoCommit(false);
+        } catch (SQLException e) {
+            // El driver baja su flag antes del BEGIN: sin esto se creería en transacción sin estarlo,
+            // y el próximo iniciar() no haría nada (cada sentencia se confirmaría por su cuenta)
+            deshacer(cn, e);
+            throw e;
+        }
+    }
+
+    /**
+     * Confirma y deja la conexión en autocommit, sin abrir otra transacción.
+     *
+     * @throws SQLException si el COMMIT falló (la transacción queda deshecha).
+     */
+    public static void confirmar(Connection cn) throws SQLException {
+        try {
+            cn.setAutoCommit(true);
+        } catch (SQLException e) {
+            // El driver ya pasó a autocommit: si el COMMIT no entró, la transacción sigue abierta en SQLite
+            try (Statement s = cn.createStatement()) {
+                s.execute("ROLLBACK");
+            } catch (SQLException noHabia) {
+                e.addSuppressed(noHabia);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Deshace la transacción abierta y deja la conexión en autocommit. Sin transacción abierta
+     * (p. ej. ya se confirmó) no hace nada.
+     */
+    public static void deshacer(Connection cn) throws SQLException {
+        if (cn.getAutoCommit()) return;
+        try (Statement s = cn.createStatement()) {
+            try {
+                s.execute("ROLLBACK");
+            } catch (SQLException yaDeshecha) {
+                // SQLite ya la deshizo por su cuenta (p. ej. SQLITE_FULL): no hay nada que revertir
+            }
+            s.execute("BEGIN");
+        }
+        cn.setAutoCommit(true);
+    }
+
+    /**
+     * Como {@link #deshacer(Connection)}, para usar al propagar {@code causa}: un error al deshacer
+     * se agrega como suprimido en vez de taparla.
+     */
+    public static void deshacer(Connection cn, Exception causa) {
+        try {
+            deshacer(cn);
+        } catch (SQLException e) {
+            causa.addSuppressed(e);
+        }
+    }
+}
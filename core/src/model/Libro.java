@@ -5,6 +5,8 @@ package model;
  * @author Fabrizio Manuel Mansilla
  */
 
+import java.time.LocalDateTime;
+
 /**
  * Clase: Libro
  * -----------------------
@@ -45,6 +47,19 @@ public class Libro {
     // Si el libro está activo/visible en el catálogo.
     private boolean activo;
 
+    // --- Contadores de préstamos (solo lectura: los mantiene la base en libro_contador) ---
+    // Préstamos en estado ABIERTO.
+    private int prestamosAbiertos;
+
+    // Ejemplares fuera (suma de cantidad de los préstamos abiertos).
+    private int ejemplaresPrestados;
+
+    // Préstamos registrados desde siempre.
+    private int totalPrestamos;
+
+    // Fecha del préstamo más reciente (null si nunca se prestó).
+    private LocalDateTime ultimoPrestamo;
+
     // --- Constructores ---
     public Libro() {
         // Constructor vacío requerido por frameworks/serializadores y para crear primero y setear después.
@@ -63,6 +78,19 @@ public class Libro {
         this.activo = activo;
     }
 
+    /**
+     * Copia con todos los campos (incluidos los contadores). Un campo nuevo se agrega acá y
+     * quien copie con este constructor (p. ej. la cache de libros) no lo pierde.
+     */
+    public Libro(Libro otro) {
+        this(otro.codigo, otro.titulo, otro.autor, otro.categoria,
+             otro.editorial, otro.anio, otro.stock, otro.activo);
+        this.prestamosAbiertos = otro.prestamosAbiertos;
+        this.ejemplaresPrestados = otro.ejemplaresPrestados;
+        this.totalPrestamos = otro.totalPrestamos;
+        this.ultimoPrestamo = otro.ultimoPrestamo;
+    }
+
     // --- Getters y Setters (encapsulamiento) ---
     public String getCodigo() { return codigo; }
     public void setCodigo(String codigo) { this.codigo = codigo; }
@@ -88,6 +116,18 @@ public class Libro {
     public boolean isActivo() { return activo; }
     public void setActivo(boolean activo) { this.activo = activo; }
 
+    public int getPrestamosAbiertos() { return prestamosAbiertos; }
+    public void setPrestamosAbiertos(int prestamosAbiertos) { this.prestamosAbiertos = prestamosAbiertos; }
+
+    public int getEjemplaresPrestados() { return ejemplaresPrestados; }
+    public void setEjemplaresPrestados(int ejemplaresPrestados) { this.ejemplaresPrestados = ejemplaresPrestados; }
+
+    public int getTotalPrestamos() { return totalPrestamos; }
+    public void setTotalPrestamos(int totalPrestamos) { this.totalPrestamos = totalPrestamos; }
+
+    public LocalDateTime getUltimoPrestamo() { return ultimoPrestamo; }
+    public void setUltimoPrestamo(LocalDateTime ultimoPrestamo) { this.ultimoPrestamo = ultimoPrestamo; }
+
     // --- Opcionalmente equals/hashCode/toString si los necesitás para tablas/colecciones ---
     @Override
     public String toString() {
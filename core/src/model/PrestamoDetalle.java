@@ -0,0 +1,38 @@
+package model;
+
+/**
+ * @author Federico Gabriel Arena
+ * @author Fabrizio Manuel Mansilla
+ */
+
+/**
+ * PrestamoDetalle
+ * ---------------
+ * Proyección de listado: un {@link Prestamo} más los datos del libro que la UI necesita mostrar
+ * (título y autor).
+ *
+ * ¿Para qué existe?
+ *  - Que los listados (p. ej. préstamos abiertos) salgan de UNA consulta con JOIN,
+ *    en vez de buscar el libro de cada fila por separado (N+1 consultas).
+ *
+ * Decisión:
+ *  - Subtipo de {@link Prestamo}: se puede usar donde se espera un préstamo (ids, fechas,
+ *    estado) sin duplicar campos ni mapeos.
+ *  - Solo lectura en la práctica: no se persiste, lo arma el DAO.
+ */
+public class PrestamoDetalle extends Prestamo {
+
+    /** Título del libro prestado (al momento de la consulta). */
+    private String libroTitulo;
+
+    /** Autor del libro prestado (al momento de la consulta). */
+    private String libroAutor;
+
+    // ===================== Getters / Setters =====================
+
+    public String getLibroTitulo() { return libroTitulo; }
+    public void setLibroTitulo(String libroTitulo) { this.libroTitulo = libroTitulo; }
+
+    public String getLibroAutor() { return libroAutor; }
+    public void setLibroAutor(String libroAutor) { this.libroAutor = libroAutor; }
+}
@@ -0,0 +1,43 @@
+package model;
+
+/**
+ * @author Federico Gabriel Arena
+ * @author Fabrizio Manuel Mansilla
+ */
+
+import java.time.LocalDateTime;
+
+/**
+ * PrestamoVencido
+ * ---------------
+ * Fila de la foto de préstamos vencidos (tabla prestamo_vencido): el préstamo con sus datos de
+ * listado más el atraso y la multa calculados en la última pasada de {@code service.MonitorVencidos}.
+ *
+ * Decisiones:
+ *  - Subtipo de {@link PrestamoDetalle}: el informe de vencidos muestra lo mismo que el de
+ *    abiertos (título, destinatario, fechas) más las columnas propias.
+ *  - Atraso y multa son una foto: valen al momento de {@link #getCalculado()}, no se recalculan
+ *    al leer.
+ */
+public class PrestamoVencido extends PrestamoDetalle {
+
+    /** Días corridos desde el vencimiento hasta el día del cálculo (&gt; 0). */
+    private int diasAtraso;
+
+    /** Multa al momento del cálculo: días de atraso × ejemplares × tarifa diaria. */
+    private long multa;
+
+    /** Cuándo se calculó la foto. */
+    private LocalDateTime calculado;
+
+    // ===================== Getters / Setters =====================
+
+    public int getDiasAtraso() { return diasAtraso; }
+    public void setDiasAtraso(int diasAtraso) { this.diasAtraso = diasAtraso; }
+
+    public long getMulta() { return multa; }
+    public void setMulta(long multa) { this.multa = multa; }
+
+    public LocalDateTime getCalculado() { return calculado; }
+    public void setCalculado(LocalDateTime calculado) { this.calculado = calculado; }
+}
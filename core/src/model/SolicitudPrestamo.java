@@ -0,0 +1,36 @@
+package model;
+
+/**
+ * @author Federico Gabriel Arena
+ * @author Fabrizio Manuel Mansilla
+ */
+
+/**
+ * SolicitudPrestamo
+ * -----------------
+ * Un ítem de un préstamo en lote (p. ej. la entrega a un curso a principio de año):
+ * qué libro, a quién, cuántos ejemplares y por cuántos días.
+ *
+ * Decisión:
+ *  - Inmutable: se arma la lista completa y se entrega al servicio de una vez.
+ *  - El operador y las fechas los completa el servicio (son comunes a todo el lote).
+ */
+public final class SolicitudPrestamo {
+
+    private final String libroCodigo;
+    private final String destinatario;
+    private final int cantidad;
+    private final int dias;
+
+    public SolicitudPrestamo(String libroCodigo, String destinatario, int cantidad, int dias) {
+        this.libroCodigo = libroCodigo;
+        this.destinatario = destinatario;
+        this.cantidad = cantidad;
+        this.dias = dias;
+    }
+
+    public String getLibroCodigo() { return libroCodigo; }
+    public String getDestinatario() { return destinatario; }
+    public int getCantidad() { return cantidad; }
+    public int getDias() { return dias; }
+}
@@ -9,6 +9,7 @@ import dao.UsuarioDao;
 import model.Operador;
 import model.Usuario;
 import util.HashUtil;
+import util.PasswordHasher;
 
 import java.util.UUID;
 import java.util.concurrent.ThreadLocalRandom;
@@ -18,14 +19,16 @@ import java.util.concurrent.ThreadLocalRandom;
  * registro y manejo de contraseñas.
  *
  * Responsabilidades:
- *  - Autenticar usuarios verificando hash+salt.
+ *  - Autenticar usuarios verificando hash+salt (y re-hashear al formato vigente si hace falta).
  *  - Registrar operadores (crea salt y hash seguros).
  *  - Generar y persistir contraseñas temporales (flujo “Olvidé mi contraseña”).
  *  - Cambiar contraseña validando primero la actual.
  *
  * Decisiones:
  *  - Se delega el acceso a datos en {@link UsuarioDao} (patrón DAO).
- *  - Se usa {@link HashUtil} para hashing con salt (SHA-256).
+ *  - Se usa {@link PasswordHasher} (PBKDF2 con salt, formato versionado). Los hashes SHA-256 legados
+ *    siguen valiendo y se re-hashean en el primer login correcto, que es el único momento en que se
+ *    tiene la contraseña en claro.
  *  - Los errores de validación se comunican con {@link IllegalArgumentException}
  *    para mantener firmas simples en la capa de servicio.
  */
@@ -33,15 +36,30 @@ import java.util.concurrent.ThreadLocalRandom;
 
 public class AuthServiceImpl implements AuthService {
 
+    /** Salt fijo para gastar el mismo tiempo cuando el usuario no existe (no revela si existe). */
+    private static final String SALT_FICTICIO = "00000000000000000000000000000000";
+
     /** DAO de usuarios (inyectado por constructor). */
     private final UsuarioDao usuarioDao;
 
+    /** Hasher explícito, o null para usar {@link PasswordHasher#global()} (se resuelve al primer uso). */
+    private final PasswordHasher hasher;
+
     /**
      * Crea el servicio de autenticación con su DAO de usuarios.
      * @param usuarioDAO implementación concreta de {@link UsuarioDao}
      */
     public AuthServiceImpl(UsuarioDao usuarioDAO) {
+        this(usuarioDAO, null);
+    }
+
+    /**
+     * Crea el servicio con un hasher explícito (p. ej. con pocas iteraciones en benchmarks).
+     * @param hasher hasher a usar; null = {@link PasswordHasher#global()}.
+     */
+    public AuthServiceImpl(UsuarioDao usuarioDAO, PasswordHasher hasher) {
         this.usuarioDao = usuarioDAO;
+        this.hasher = hasher;
     }
 
     /**
@@ -50,8 +68,9 @@ public class AuthServiceImpl implements AuthService {
      * Flujo:
      *  1) Validar parámetros mínimos.
      *  2) Buscar usuario por username.
-     *  3) Verificar hash: sha256(salt + passwordPlano) == password_hash_guardado.
-     *  4) Devolver la entidad {@link Usuario} si es correcto.
+     *  3) Verificar hash (PBKDF2 o SHA-256 legado) contra password_hash guardado.
+     *  4) Si el hash es legado o tiene menos iteraciones que las vigentes, re-hashear y persistir.
+     *  5) Devolver la entidad {@link Usuario} si es correcto.
      *
      * @param username nombre de usuario.
      * @param passwordPlano contraseña en claro (solo en este punto).
@@ -67,13 +86,29 @@ public class AuthServiceImpl implements AuthService {
 
         // 2) Buscar usuario
         Usuario u = usuarioDao.buscarPorUsername(username);
-        if (u == null) throw new IllegalArgumentException("Usuario o contraseña inválidos");
+        if (u == null) {
+            hasher().hashear(SALT_FICTICIO, passwordPlano);    // mismo costo que un usuario existente
+            throw new IllegalArgumentException("Usuario o contraseña inválidos");
+        }
 
         // 3) Verificar hash con salt
-        boolean ok = HashUtil.verify(u.getSalt(), passwordPlano, u.getPasswordHash());
+        boolean ok = hasher().verificar(u.getSalt(), passwordPlano, u.getPasswordHash());
         if (!ok) throw new IllegalArgumentException("Usuario o contraseña inválidos");
 
-        // 4) OK → devolver entidad de dominio
+        // 4) Re-hash al formato/costo vigente (si falla, el login igual vale: se reintenta la próxima)
+        if (hasher().requiereRehash(u.getPasswordHash())) {
+            try {
+                String salt = HashUtil.newSaltHex(16);
+                String hash = hasher().hashear(salt, passwordPlano);
+                usuarioDao.actualizarPassword(u.getUsername(), salt, hash);
+                u.setSalt(salt);
+                u.setPasswordHash(hash);
+            } catch (RuntimeException e) {
+                System.err.println("[AuthService] No se pudo re-hashear la contraseña de " + u.getUsername() + ": " + e);
+            }
+        }
+
+        // 5) OK → devolver entidad de dominio
         return u;
     }
 
@@ -107,7 +142,7 @@ public class AuthServiceImpl implements AuthService {
         // 3) Generar credenciales seguras
         String id   = UUID.randomUUID().toString();
         String salt = HashUtil.newSaltHex(16);
-        String hash = HashUtil.sha256Hex(salt, passwordPlano);
+        String hash = hasher().hashear(salt, passwordPlano);
 
         // 4) Persistir
         Usuario op = new Operador(id, nombre, username, hash, salt);
@@ -142,7 +177,7 @@ public class AuthServiceImpl implements AuthService {
 
         // 3) Re-hashear con nuevo salt
         String newSalt = HashUtil.newSaltHex(16);
-        String newHash = HashUtil.sha256Hex(newSalt, temporal);
+        String newHash = hasher().hashear(newSalt, temporal);
 
         // 4) Persistir
         usuarioDao.actualizarPassword(username, newSalt, newHash);
@@ -179,17 +214,21 @@ public class AuthServiceImpl implements AuthService {
 
         // 3) Verificar contraseña actual (normal o temporal)
         if (actualPlano == null) actualPlano = "";
-        boolean ok = HashUtil.verify(u.getSalt(), actualPlano, u.getPasswordHash());
+        boolean ok = hasher().verificar(u.getSalt(), actualPlano, u.getPasswordHash());
         if (!ok) throw new IllegalArgumentException("La contraseña actual es incorrecta");
 
         // 4) Generar nuevo salt + hash y persistir
         String newSalt = HashUtil.newSaltHex(16);
-        String newHash = HashUtil.sha256Hex(newSalt, nuevaPlano);
+        String newHash = hasher().hashear(newSalt, nuevaPlano);
         usuarioDao.actualizarPassword(username, newSalt, newHash);
     }
 
     // ===================== Helpers =====================
 
+    private PasswordHasher hasher() {
+        return hasher != null ? hasher : PasswordHasher.global();
+    }
+
     /**
      * Genera una contraseña temporal aleatoria evitando caracteres ambiguos.
      * Alfabeto sin 0/O/I/l para reducir confusiones al leer.
@@ -0,0 +1,230 @@
+package service;
+
+/**
+ * @author Federico Gabriel Arena
+ * @author Fabrizio Manuel Mansilla
+ */
+
+import dao.AuditoriaDao;
+import dao.PrestamoDao;
+import model.Auditoria;
+import model.Prestamo;
+import util.Csv;
+import util.Json;
+
+import java.io.BufferedWriter;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Locale;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * ExportadorHistorial
+ * -------------------
+ * Exporta el histórico de préstamos y la auditoría a CSV o JSON Lines, en streaming.
+ *
+ * ¿Qué hace?
+ *  - Recorre la consulta con {@link PrestamoDao#recorrerHistorico} / {@link AuditoriaDao#recorrer}
+ *    (sin armar listas) y escribe cada fila directo en un {@link WritableByteChannel}.
+ *  - Opcionalmente comprime con gzip en el mismo flujo.
+ *
+ * Decisiones:
+ *  - Memoria constante: en cada momento solo existe la fila actual y los buffers de escritura
+ *    (64 KB), sin importar cuántas filas tengan prestamo o auditoria.
+ *  - Las columnas/claves usan los nombres de la base, así el archivo se puede volver a cargar o
+ *    cruzar con la base sin traducciones. Fechas en ISO-8601.
+ *  - El canal recibido no se cierra (lo maneja el llamador); las variantes con {@link Path}
+ *    abren y cierran su propio {@link FileChannel}.
+ *
+ * Colabora con:
+ *  - {@link PrestamoDao}, {@link AuditoriaDao}, {@link Csv}, {@link Json}, Mainframe (menú Informes).
+ */
+public final class ExportadorHistorial {
+
+    /** Formato de salida. */
+    public enum Formato {
+        CSV, JSONL;
+
+        /** Deduce el formato por la extensión, ignorando un ".gz" final (.jsonl/.json → JSONL; el resto CSV). */
+        public static Formato porArchivo(Path archivo) {
+            String n = sinGz(archivo);
+            return n.endsWith(".jsonl") || n.endsWith(".json") || n.endsWith(".ndjson") ? JSONL : CSV;
+        }
+    }
+
+    private static final String[] COLUMNAS_PRESTAMO = {"id", "libro_codigo", "operador_username",
+            "destinatario", "cantidad", "fecha_prestamo", "fecha_vencimiento", "fecha_devolucion", "estado"};
+    private static final String[] COLUMNAS_AUDITORIA = {"id", "ts", "operador_username", "tipo",
+            "libro_codigo", "prestamo_id", "cantidad", "destinatario", "detalle"};
+
+    private static final int BUFFER = 64 * 1024;
+
+    private final PrestamoDao prestamos;
+    private final AuditoriaDao auditoria;
+
+    public ExportadorHistorial(PrestamoDao prestamos, AuditoriaDao auditoria) {
+        this.prestamos = prestamos;
+        this.auditoria = auditoria;
+    }
+
+    // ===================== Préstamos =====================
+
+    /**
+     * Exporta el histórico de préstamos (mismos filtros que {@link PrestamoService#historico}).
+     *
+     * @param desde   fecha mínima (inclusive) o {@code null}.
+     * @param hasta   fecha máxima (inclusive) o {@code null}.
+     * @param filtro  texto a buscar; {@code null} o vacío para no filtrar.
+     * @param formato CSV o JSONL.
+     * @param gzip    si se comprime la salida.
+     * @param destino canal de salida (no se cierra).
+     * @return cantidad de préstamos exportados.
+     */
+    public long exportarPrestamos(LocalDate desde, LocalDate hasta, String filtro,
+                                  Formato formato, boolean gzip, WritableByteChannel destino) {
+        return exportar(COLUMNAS_PRESTAMO, ExportadorHistorial::valoresPrestamo, formato, gzip, destino,
+                fila -> prestamos.recorrerHistorico(desde, hasta, filtro, fila));
+    }
+
+    /** Igual que la variante con canal, escribiendo en un archivo; formato y gzip según la extensión. */
+    public long exportarPrestamos(LocalDate desde, LocalDate hasta, String filtro, Path archivo) {
+        try (FileChannel ch = abrir(archivo)) {
+            return exportarPrestamos(desde, hasta, filtro, Formato.porArchivo(archivo), esGz(archivo), ch);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error exportando préstamos: " + e.getMessage(), e);
+        }
+    }
+
+    // ===================== Auditoría =====================
+
+    /**
+     * Exporta la auditoría de un período en orden cronológico.
+     *
+     * @param desde   instante mínimo (inclusive) o {@code null}.
+     * @param hasta   instante máximo (exclusive) o {@code null}.
+     * @param formato CSV o JSONL.
+     * @param gzip    si se comprime la salida.
+     * @param destino canal de salida (no se cierra).
+     * @return cantidad de eventos exportados.
+     */
+    public long exportarAuditoria(LocalDateTime desde, LocalDateTime hasta,
+                                  Formato formato, boolean gzip, WritableByteChannel destino) {
+        return exportar(COLUMNAS_AUDITORIA, ExportadorHistorial::valoresAuditoria, formato, gzip, destino,
+                fila -> auditoria.recorrer(desde, hasta, fila));
+    }
+
+    /** Igual que la variante con canal, escribiendo en un archivo; formato y gzip según la extensión. */
+    public long exportarAuditoria(LocalDateTime desde, LocalDateTime hasta, Path archivo) {
+        try (FileChannel ch = abrir(archivo)) {
+            return exportarAuditoria(desde, hasta, Formato.porArchivo(archivo), esGz(archivo), ch);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error exportando auditoría: " + e.getMessage(), e);
+        }
+    }
+
+    // ===================== Implementación =====================
+
+    /** Origen de filas: recibe el consumidor de cada fila y devuelve cuántas entregó. */
+    private interface Recorrido<T> {
+        long recorrer(Consumer<T> fila);
+    }
+
+    private static <T> long exportar(String[] columnas, Function<T, Object[]> valores, Formato formato,
+                                     boolean gzip, WritableByteChannel destino, Recorrido<T> origen) {
+        // 1) Pila de escritura: canal ← (gzip) ← UTF-8 ← buffer. Cerrarla termina el gzip y libera su
+        //    Deflater (memoria nativa), también si la exportación falla; el canal queda abierto.
+        OutputStream os = new SinCerrar(Channels.newOutputStream(destino));
+        try (Writer w = new BufferedWriter(new OutputStreamWriter(
+                gzip ? new GZIPOutputStream(os, BUFFER) : os, StandardCharsets.UTF_8), BUFFER)) {
+            // 2) Encabezado (solo CSV) y filas
+            if (formato == Formato.CSV) {
+                w.write(Csv.linea(',', columnas));
+                w.write('\n');
+            }
+            long n = origen.recorrer(fila -> {
+                try {
+                    escribir(w, columnas, valores.apply(fila), formato);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            return n;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error escribiendo la exportación: " + e.getMessage(), e);
+        }
+    }
+
+    /** Flujo sobre el canal del llamador: {@code close()} solo vacía, el canal no se cierra. */
+    private static final class SinCerrar extends FilterOutputStream {
+        SinCerrar(OutputStream out) { super(out); }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);      // FilterOutputStream escribiría byte a byte
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+
+    private static void escribir(Writer w, String[] columnas, Object[] v, Formato formato) throws IOException {
+        if (formato == Formato.CSV) {
+            for (int i = 0; i < v.length; i++) {
+                if (i > 0) w.write(',');
+                if (v[i] != null) w.write(Csv.escapar(v[i].toString(), ','));
+            }
+        } else {
+            w.write('{');
+            for (int i = 0; i < v.length; i++) {
+                if (i > 0) w.write(',');
+                w.write('"');
+                w.write(columnas[i]);
+                w.write("\":");
+                w.write(v[i] instanceof Number ? v[i].toString() : Json.escapar(v[i] == null ? null : v[i].toString()));
+            }
+            w.write('}');
+        }
+        w.write('\n');
+    }
+
+    private static Object[] valoresPrestamo(Prestamo p) {
+        return new Object[]{p.getId(), p.getLibroCodigo(), p.getOperadorUsername(), p.getDestinatario(),
+                p.getCantidad(), p.getFechaPrestamo(), p.getFechaVencimiento(), p.getFechaDevolucion(),
+                p.getEstado()};
+    }
+
+    private static Object[] valoresAuditoria(Auditoria a) {
+        return new Object[]{a.getId(), a.getTs(), a.getOperadorUsername(), a.getTipo(), a.getLibroCodigo(),
+                a.getPrestamoId(), a.getCantidad(), a.getDestinatario(), a.getDetalle()};
+    }
+
+    private static FileChannel abrir(Path archivo) throws IOException {
+        return FileChannel.open(archivo, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    private static boolean esGz(Path archivo) {
+        return archivo.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".gz");
+    }
+
+    private static String sinGz(Path archivo) {
+        String n = archivo.getFileName().toString().toLowerCase(Locale.ROOT);
+        return n.endsWith(".gz") ? n.substring(0, n.length() - 3) : n;
+    }
+}
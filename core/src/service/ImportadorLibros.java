@@ -0,0 +1,350 @@
+package service;
+
+/**
+ * @author Federico Gabriel Arena
+ * @author Fabrizio Manuel Mansilla
+ */
+
+import dao.LibroCache;
+import dao.LibroDao;
+import model.Libro;
+import util.Csv;
+import util.Json;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * ImportadorLibros
+ * ----------------
+ * Carga masiva del catálogo desde CSV o JSON (p. ej. la exportación del sistema de compras).
+ *
+ * ¿Qué hace?
+ *  1) Lee el archivo registro por registro ({@link Csv.Lector} / {@link Json.Lector}): nunca
+ *     carga el archivo entero, así que 500k títulos ocupan la memoria de un lote.
+ *  2) Valida cada registro con las mismas reglas que el alta manual ({@link LibroService#validar}).
+ *  3) Acumula lotes de {@code tamLote} libros y los graba con {@link LibroDao#upsertLote} (insert
+ *     o actualización por código, una transacción por lote).
+ *  4) Escribe cada registro descartado en un CSV de rechazados (línea, motivo y valores
+ *     originales), que puede corregirse y volver a importarse tal cual.
+ *  5) Informa el avance después de cada lote (leídas, importadas, rechazadas, filas/s).
+ *
+ * Formato de entrada:
+ *  - Columnas/claves: codigo, titulo, autor, categoria, editorial, anio, stock, activo
+ *    (sin importar mayúsculas ni acentos; "año" también vale). Obligatorias: codigo, titulo, autor.
+ *  - CSV con encabezado; separador ',' o ';' (se detecta solo). UTF-8.
+ *  - JSON: arreglo de objetos planos o un objeto por línea (JSON Lines).
+ *
+ * Decisiones:
+ *  - Si un lote falla en la base (p. ej. una restricción), se reintenta libro por libro para
+ *    rechazar solo los culpables y no perder el resto del lote.
+ *  - Los lotes ya confirmados quedan grabados aunque después el archivo resulte ilegible
+ *    (JSON mal formado): el upsert es idempotente, así que basta con reimportar el archivo corregido.
+ *  - Tras cada lote se vacía la {@link LibroCache}: el upsert toca miles de códigos y es más
+ *    barato limpiar que invalidar uno por uno.
+ *
+ * Colabora con:
+ *  - {@link LibroDao} (persistencia), {@link LibroCache}, Mainframe (menú "Importar…").
+ */
+public final class ImportadorLibros {
+
+    /** Formato del archivo de entrada. */
+    public enum Formato {
+        CSV, JSON;
+
+        /** Deduce el formato por la extensión (.json, .jsonl, .ndjson → JSON; el resto CSV). */
+        public static Formato porArchivo(Path archivo) {
+            String n = archivo.getFileName().toString().toLowerCase(Locale.ROOT);
+            return n.endsWith(".json") || n.endsWith(".jsonl") || n.endsWith(".ndjson") ? JSON : CSV;
+        }
+    }
+
+    /** Columnas reconocidas, en el orden en que se guardan los valores crudos. */
+    private static final String[] COLUMNAS =
+            {"codigo", "titulo", "autor", "categoria", "editorial", "anio", "stock", "activo"};
+    private static final int CODIGO = 0, TITULO = 1, AUTOR = 2, CATEGORIA = 3, EDITORIAL = 4,
+                             ANIO = 5, STOCK = 6, ACTIVO = 7;
+
+    private final LibroDao dao;
+    private final LibroCache cache;
+    private final int tamLote;
+
+    /** Usa la caché global y lotes de 5000 libros. */
+    public ImportadorLibros(LibroDao dao) {
+        this(dao, LibroCache.global(), 5000);
+    }
+
+    /**
+     * @param dao     persistencia de libros.
+     * @param cache   caché a vaciar tras cada lote.
+     * @param tamLote libros por transacción (&gt; 0).
+     */
+    public ImportadorLibros(LibroDao dao, LibroCache cache, int tamLote) {
+        if (tamLote <= 0) throw new IllegalArgumentException("Tamaño de lote inválido");
+        this.dao = dao;
+        this.cache = cache;
+        this.tamLote = tamLote;
+    }
+
+    /**
+     * Importa un archivo. El formato se deduce por la extensión.
+     *
+     * @param origen     archivo CSV o JSON (UTF-8).
+     * @param rechazados archivo CSV donde se escriben los registros descartados; si no hubo
+     *                   ninguno, se borra al terminar.
+     * @param alAvanzar  recibe el avance después de cada lote y al final (puede ser null).
+     * @return resumen final.
+     * @throws IllegalArgumentException si el archivo no tiene el formato esperado.
+     * @throws RuntimeException si falla la lectura/escritura de archivos.
+     */
+    public ProgresoImportacion importar(Path origen, Path rechazados, Consumer<ProgresoImportacion> alAvanzar) {
+        ProgresoImportacion fin;
+        try (BufferedReader in = Files.newBufferedReader(origen, StandardCharsets.UTF_8);
+             BufferedWriter out = Files.newBufferedWriter(rechazados, StandardCharsets.UTF_8)) {
+            fin = importar(in, Formato.porArchivo(origen), out, alAvanzar);
+        } catch (IOException e) {
+            throw new RuntimeException("Error importando " + origen.getFileName() + ": " + e.getMessage(), e);
+        }
+        if (fin.getRechazadas() == 0) {
+            try { Files.deleteIfExists(rechazados); } catch (IOException ignored) { }
+        }
+        return fin;
+    }
+
+    /**
+     * Importa desde un flujo ya abierto (no lo cierra).
+     *
+     * @param in         origen (con soporte de mark/reset para detectar el separador CSV).
+     * @param formato    CSV o JSON.
+     * @param rechazados destino del CSV de rechazados.
+     * @param alAvanzar  recibe el avance después de cada lote y al final (puede ser null).
+     * @return resumen final.
+     */
+    public ProgresoImportacion importar(BufferedReader in, Formato formato, Writer rechazados,
+                                        Consumer<ProgresoImportacion> alAvanzar) throws IOException {
+        Corrida c = new Corrida(rechazados, alAvanzar);
+        Fuente fuente = formato == Formato.JSON ? fuenteJson(in) : fuenteCsv(in);
+
+        // 1) Encabezado del archivo de rechazados
+        String[] enc = new String[COLUMNAS.length + 2];
+        enc[0] = "linea";
+        enc[1] = "error";
+        System.arraycopy(COLUMNAS, 0, enc, 2, COLUMNAS.length);
+        rechazados.write(Csv.linea(',', enc));
+        rechazados.write('\n');
+
+        // 2) Leer, validar y acumular lotes
+        List<Fila> lote = new ArrayList<>(tamLote);
+        for (Fila f; (f = fuente.siguiente()) != null; ) {
+            c.leidas++;
+            if (f.error == null) convertir(f);
+            if (f.error != null) { c.rechazar(f); continue; }
+            lote.add(f);
+            if (lote.size() == tamLote) {
+                c.grabar(lote);
+                lote.clear();
+            }
+        }
+
+        // 3) Último lote (parcial) y resumen
+        if (!lote.isEmpty()) c.grabar(lote);
+        rechazados.flush();
+        return c.avisar(true);
+    }
+
+    // ===================== Corrida =====================
+
+    /** Contadores y salidas de una importación. */
+    private final class Corrida {
+        final Writer rechazados;
+        final Consumer<ProgresoImportacion> alAvanzar;
+        final long t0 = System.nanoTime();
+        long leidas, importadas, rechazadas;
+
+        Corrida(Writer rechazados, Consumer<ProgresoImportacion> alAvanzar) {
+            this.rechazados = rechazados;
+            this.alAvanzar = alAvanzar;
+        }
+
+        /** Graba un lote; si la base lo rechaza, reintenta libro por libro. */
+        void grabar(List<Fila> lote) throws IOException {
+            List<Libro> libros = new ArrayList<>(lote.size());
+            for (Fila f : lote) libros.add(f.libro);
+            try {
+                dao.upsertLote(libros);
+                importadas += lote.size();
+            } catch (RuntimeException ex) {
+                for (Fila f : lote) {
+                    try {
+                        dao.upsertLote(List.of(f.libro));
+                        importadas++;
+                    } catch (RuntimeException e) {
+                        f.error = e.getMessage();
+                        rechazar(f);
+                    }
+                }
+            }
+            cache.limpiar();
+            avisar(false);
+        }
+
+        void rechazar(Fila f) throws IOException {
+            rechazadas++;
+            String[] campos = new String[COLUMNAS.length + 2];
+            campos[0] = String.valueOf(f.linea);
+            campos[1] = f.error;
+            System.arraycopy(f.crudo, 0, campos, 2, COLUMNAS.length);
+            rechazados.write(Csv.linea(',', campos));
+            rechazados.write('\n');
+        }
+
+        ProgresoImportacion avisar(boolean terminado) {
+            ProgresoImportacion p = new ProgresoImportacion(leidas, importadas, rechazadas,
+                    System.nanoTime() - t0, terminado);
+            if (alAvanzar != null) alAvanzar.accept(p);
+            return p;
+        }
+    }
+
+    // ===================== Lectura =====================
+
+    /** Registro leído: valores crudos (en el orden de {@link #COLUMNAS}) y, si es válido, el libro. */
+    private static final class Fila {
+        final int linea;
+        final String[] crudo;
+        String error;
+        Libro libro;
+
+        Fila(int linea, String[] crudo, String error) {
+            this.linea = linea;
+            this.crudo = crudo;
+            this.error = error;
+        }
+    }
+
+    /** Origen de filas (CSV o JSON). */
+    private interface Fuente {
+        /** @return la próxima fila, o {@code null} al final. */
+        Fila siguiente() throws IOException;
+    }
+
+    private static Fuente fuenteCsv(BufferedReader in) throws IOException {
+        char sep = Csv.detectarSeparador(in);
+        Csv.Lector lector = new Csv.Lector(in, sep);
+        String[] encabezado = lector.siguiente();
+        if (encabezado == null) return () -> null;
+
+        // Posición de cada columna conocida en el archivo (-1 = no está)
+        int[] posicion = new int[COLUMNAS.length];
+        Arrays.fill(posicion, -1);
+        for (int i = 0; i < encabezado.length; i++) {
+            int col = columna(i == 0 ? encabezado[i].replace("\uFEFF", "") : encabezado[i]);
+            if (col >= 0 && posicion[col] < 0) posicion[col] = i;
+        }
+        exigirColumnas(posicion);
+
+        return () -> {
+            String[] r = lector.siguiente();
+            if (r == null) return null;
+            String[] crudo = new String[COLUMNAS.length];
+            for (int col = 0; col < COLUMNAS.length; col++) {
+                int i = posicion[col];
+                crudo[col] = i >= 0 && i < r.length ? r[i] : "";
+            }
+            String error = r.length != encabezado.length
+                    ? "Cantidad de campos inválida (" + r.length + " en lugar de " + encabezado.length + ")"
+                    : null;
+            return new Fila(lector.getLinea(), crudo, error);
+        };
+    }
+
+    private static Fuente fuenteJson(BufferedReader in) {
+        Json.Lector lector = new Json.Lector(in);
+        Map<String, Integer> cache = new HashMap<>();   // clave del archivo → columna
+        return () -> {
+            Map<String, String> o = lector.siguiente();
+            if (o == null) return null;
+            String[] crudo = new String[COLUMNAS.length];
+            for (Map.Entry<String, String> e : o.entrySet()) {
+                int col = cache.computeIfAbsent(e.getKey(), ImportadorLibros::columna);
+                if (col >= 0) crudo[col] = e.getValue();
+            }
+            return new Fila(lector.getLinea(), crudo, null);
+        };
+    }
+
+    /** @return índice en {@link #COLUMNAS} del nombre dado (sin acentos ni mayúsculas), o -1. */
+    private static int columna(String nombre) {
+        String n = Normalizer.normalize(nombre.trim(), Normalizer.Form.NFD)
+                .replaceAll("\\p{M}", "").toLowerCase(Locale.ROOT);
+        if (n.equals("ano")) n = "anio";
+        for (int i = 0; i < COLUMNAS.length; i++) if (COLUMNAS[i].equals(n)) return i;
+        return -1;
+    }
+
+    private static void exigirColumnas(int[] posicion) {
+        for (int col : new int[]{CODIGO, TITULO, AUTOR}) {
+            if (posicion[col] < 0)
+                throw new IllegalArgumentException("Falta la columna obligatoria '" + COLUMNAS[col] + "'");
+        }
+    }
+
+    // ===================== Conversión y validación =====================
+
+    /** Arma el libro de la fila y lo valida; si algo falla deja el motivo en {@code f.error}. */
+    private static void convertir(Fila f) {
+        String[] v = f.crudo;
+        try {
+            Libro l = new Libro();
+            l.setCodigo(texto(v[CODIGO]));
+            l.setTitulo(texto(v[TITULO]));
+            l.setAutor(texto(v[AUTOR]));
+            l.setCategoria(texto(v[CATEGORIA]));
+            l.setEditorial(texto(v[EDITORIAL]));
+            l.setAnio(entero(v[ANIO], "Año"));
+            l.setStock(entero(v[STOCK], "Stock"));
+            l.setActivo(booleano(v[ACTIVO]));
+            LibroService.validar(l);
+            f.libro = l;
+        } catch (IllegalArgumentException ex) {
+            f.error = ex.getMessage();
+        }
+    }
+
+    /** Texto recortado; ausente = "" (igual que un campo vacío del formulario). */
+    private static String texto(String s) {
+        return s == null ? "" : s.trim();
+    }
+
+    private static int entero(String s, String campo) {
+        if (s == null || s.isBlank()) return 0;
+        try {
+            return Integer.parseInt(s.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(campo + " inválido: " + s);
+        }
+    }
+
+    /** Vacío = activo; acepta 1/0, true/false, sí/no. */
+    private static boolean booleano(String s) {
+        if (s == null || s.isBlank()) return true;
+        switch (s.trim().toLowerCase(Locale.ROOT)) {
+            case "1", "true", "si", "sí", "s", "yes": return true;
+            case "0", "false", "no", "n":            return false;
+            default: throw new IllegalArgumentException("Activo inválido: " + s);
+        }
+    }
+}
@@ -5,7 +5,13 @@ package service;
  * @author Fabrizio Manuel Mansilla
  */
 
+import dao.CacheStats;
+import dao.CursorPagina;
+import dao.LibroCache;
 import dao.LibroDao;
+import dao.ModoBusqueda;
+import dao.OrdenLibro;
+import dao.Pagina;
 import model.Libro;
 
 import java.util.List;
@@ -23,6 +29,8 @@ import java.util.List;
  *  - Las validaciones de formato/rango se hacen aquí (no en el DAO).
  *  - La baja recomendada es LÓGICA (flag activo), no física, para
  *    evitar “huérfanos” cuando existan préstamos relacionados.
+ *  - {@link #obtener(String)} lee a través de {@link LibroCache}; toda escritura la invalida
+ *    después de persistir.
  *
  * Colabora con:
  *  - {@link LibroDao} para el acceso a datos.
@@ -34,9 +42,18 @@ public class LibroService {
     /** DAO inyectado (permite tests y cambiar de implementación sin tocar la UI). */
     private final LibroDao dao;
 
-    /** Inyección por constructor (DI manual). */
+    /** Caché de lecturas por código (compartida por el proceso salvo que se inyecte otra). */
+    private final LibroCache cache;
+
+    /** Inyección por constructor (DI manual). Usa la caché global. */
     public LibroService(LibroDao dao) {
+        this(dao, LibroCache.global());
+    }
+
+    /** Inyección por constructor con caché explícita (p. ej. desactivada en benchmarks). */
+    public LibroService(LibroDao dao, LibroCache cache) {
         this.dao = dao;
+        this.cache = cache;
     }
 
     /**
@@ -47,25 +64,40 @@ public class LibroService {
      */
     public void crear(Libro l) {
         // 1) Validaciones de negocio mínimas
+        validar(l);
+
+        // 2) Delegar persistencia
+        dao.crear(l);
+        cache.invalidar(l.getCodigo());
+    }
+
+    /**
+     * Reglas de alta/modificación de un libro (compartidas con {@link ImportadorLibros}).
+     *
+     * @throws IllegalArgumentException con el motivo si el libro no es válido.
+     */
+    static void validar(Libro l) {
         if (l == null) throw new IllegalArgumentException("Libro requerido");
         if (esVacio(l.getCodigo())) throw new IllegalArgumentException("Código requerido");
         if (esVacio(l.getTitulo())) throw new IllegalArgumentException("Título requerido");
         if (esVacio(l.getAutor()))  throw new IllegalArgumentException("Autor requerido");
         if (l.getAnio() < 0)        throw new IllegalArgumentException("Año no puede ser negativo");
         if (l.getStock() < 0)       throw new IllegalArgumentException("Stock no puede ser negativo");
-
-        // 2) Delegar persistencia
-        dao.crear(l);
     }
 
     /**
-     * Obtiene un libro por código.
+     * Obtiene un libro por código (desde la caché si está vigente).
      * @param codigo clave primaria.
-     * @return libro o null si no existe.
+     * @return copia del libro o null si no existe.
      */
     public Libro obtener(String codigo) {
         if (esVacio(codigo)) throw new IllegalArgumentException("Código requerido");
-        return dao.leerPorCodigo(codigo);
+        return cache.obtener(codigo, dao::leerPorCodigo);
+    }
+
+    /** @return métricas de la caché de libros (aciertos, fallos, desalojos...). */
+    public CacheStats estadisticasCache() {
+        return cache.estadisticas();
     }
 
     /**
@@ -74,15 +106,11 @@ public class LibroService {
      */
     public void actualizar(Libro l) {
         // 1) Validaciones
-        if (l == null) throw new IllegalArgumentException("Libro requerido");
-        if (esVacio(l.getCodigo())) throw new IllegalArgumentException("Código requerido");
-        if (esVacio(l.getTitulo())) throw new IllegalArgumentException("Título requerido");
-        if (esVacio(l.getAutor()))  throw new IllegalArgumentException("Autor requerido");
-        if (l.getAnio() < 0)        throw new IllegalArgumentException("Año no puede ser negativo");
-        if (l.getStock() < 0)       throw new IllegalArgumentException("Stock no puede ser negativo");
+        validar(l);
 
         // 2) Persistir cambios
         dao.actualizar(l);
+        cache.invalidar(l.getCodigo());
     }
 
     /**
@@ -92,16 +120,58 @@ public class LibroService {
     public void eliminar(String codigo) {
         if (esVacio(codigo)) throw new IllegalArgumentException("Código requerido");
         dao.eliminar(codigo);
+        cache.invalidar(codigo);
     }
 
     /**
      * Lista libros con filtro opcional por texto (título/autor/categoría).
+     * La búsqueda usa el índice full-text: por prefijos de palabra, sin acentos ni mayúsculas.
      * @param filtro texto a buscar; null/"" lista todo.
      */
     public List<Libro> listar(String filtro) {
         return dao.listar(filtro);
     }
 
+    /**
+     * Busca libros con un modo explícito (prefijo, relevancia o subcadena).
+     * @param filtro texto a buscar; null/"" lista todo.
+     * @param modo   estrategia de búsqueda (null = prefijo).
+     */
+    public List<Libro> buscar(String filtro, ModoBusqueda modo) {
+        return dao.buscar(filtro, modo);
+    }
+
+    /**
+     * Página de libros (orden por título) a partir de un cursor, con filtro opcional.
+     * @param filtro  texto a buscar; null/"" lista todo.
+     * @param despues cursor de la página anterior (null = primera página).
+     * @param tamanio filas por página.
+     */
+    public Pagina<Libro> listarPagina(String filtro, CursorPagina despues, int tamanio) {
+        return dao.listarPagina(filtro, despues, tamanio);
+    }
+
+    /**
+     * Página de libros con orden configurable (columna y sentido) a partir de un cursor.
+     */
+    public Pagina<Libro> listarPagina(String filtro, OrdenLibro orden, boolean descendente,
+                                      CursorPagina despues, int tamanio) {
+        return dao.listarPagina(filtro, orden, descendente, despues, tamanio);
+    }
+
+    /**
+     * Bloque de libros por posición (salto aleatorio, p. ej. desde la barra de scroll).
+     */
+    public List<Libro> listarBloque(String filtro, OrdenLibro orden, boolean descendente,
+                                    int desde, int tamanio) {
+        return dao.listarBloque(filtro, orden, descendente, desde, tamanio);
+    }
+
+    /** Cantidad de libros que cumplen el filtro. */
+    public int contar(String filtro) {
+        return dao.contar(filtro);
+    }
+
     // ================== BAJA LÓGICA ==================
 
     /**
@@ -126,6 +196,7 @@ public class LibroService {
             );
         }
         dao.setActivo(codigo, false);
+        cache.invalidar(codigo);
     }
 
     /**
@@ -135,11 +206,32 @@ public class LibroService {
     public void activar(String codigo) {
         if (esVacio(codigo)) throw new IllegalArgumentException("Código requerido");
         dao.setActivo(codigo, true);
+        cache.invalidar(codigo);
+    }
+
+    // ================== CONTADORES ==================
+
+    /**
+     * Verifica los contadores de préstamos por libro.
+     * @return códigos con diferencias (vacía si están al día).
+     */
+    public List<String> verificarContadores() {
+        return dao.verificarContadores();
+    }
+
+    /**
+     * Recalcula los contadores de préstamos y vacía la caché (los libros cacheados los llevan).
+     * @return cantidad de libros con contador.
+     */
+    public int reconstruirContadores() {
+        int n = dao.reconstruirContadores();
+        cache.limpiar();
+        return n;
     }
 
     // ================== Helpers ==================
     /** true si la cadena es null o solo espacios. */
-    private boolean esVacio(String s) {
+    private static boolean esVacio(String s) {
         return s == null || s.isBlank();
     }
 }
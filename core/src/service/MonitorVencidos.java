@@ -0,0 +1,193 @@
+package service;
+
+/**
+ * @author Federico Gabriel Arena
+ * @author Fabrizio Manuel Mansilla
+ */
+
+import dao.JdbcPrestamoDAO;
+import dao.PrestamoDao;
+import model.Prestamo;
+import model.PrestamoVencido;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * MonitorVencidos
+ * ---------------
+ * Detecta los préstamos vencidos en segundo plano y deja el resultado listo para leer.
+ *
+ * ¿Qué hace?
+ *  - Cada {@code intervaloMs} corre UNA consulta por rango (abiertos con vencimiento &lt; hoy,
+ *    ver {@link PrestamoDao#abiertosVencidosAl}) sobre el índice parcial de abiertos.
+ *  - Guarda una foto en prestamo_vencido (días de atraso y multa de cada uno), de donde el
+ *    informe de vencidos lee sin calcular nada.
+ *  - Publica el conjunto de ids vencidos en memoria: {@link #esVencido(long)} es un lookup en un
+ *    Set inmutable, apto para llamarse desde un renderer en cada pintado.
+ *
+ * Decisiones:
+ *  - La foto se reescribe solo si cambió (otro día u otro conjunto de ids): con el mismo día y
+ *    los mismos préstamos, atraso y multa son idénticos, y no vale la pena tomar el lock de escritura.
+ *  - El conjunto se reemplaza entero (volatile, copia inmutable): los lectores nunca ven uno a
+ *    medio armar ni necesitan sincronizar.
+ *  - Hilo daemon de un solo worker: las pasadas nunca se superponen y no impide que la JVM termine.
+ *  - Un error en una pasada se loguea y se reintenta en la siguiente; el conjunto anterior sigue vigente.
+ *
+ * Configuración de {@link #global()} (propiedades de sistema, opcionales):
+ *   biblioteca.vencidos.intervaloMs   período entre pasadas          (default 60000)
+ *   biblioteca.vencidos.multaDiaria   multa por ejemplar y día       (default 100)
+ *
+ * Colabora con:
+ *  - {@link PrestamoDao} (consulta y foto), PrestamosAbiertosDialog (resaltado) y el informe de vencidos.
+ */
+public final class MonitorVencidos {
+
+    private static volatile MonitorVencidos GLOBAL;
+
+    private final PrestamoDao dao;
+    private final long multaDiaria;
+    private final long intervaloMs;
+    private final ScheduledExecutorService ejecutor;
+    private final List<Runnable> oyentes = new CopyOnWriteArrayList<>();
+
+    private volatile Set<Long> vencidos = Set.of();
+    private volatile LocalDateTime ultimaPasada;
+    private boolean iniciado = false;
+
+    /** Día de la última foto guardada (solo lo toca {@link #actualizar()}, que es synchronized). */
+    private LocalDate diaFoto;
+
+    /**
+     * @param dao         acceso a préstamos.
+     * @param multaDiaria multa por ejemplar y día de atraso (&gt;= 0).
+     * @param intervaloMs período entre pasadas (&gt; 0).
+     */
+    public MonitorVencidos(PrestamoDao dao, long multaDiaria, long intervaloMs) {
+        if (multaDiaria < 0 || intervaloMs <= 0)
+            throw new IllegalArgumentException("Configuración de vencidos inválida");
+        this.dao = dao;
+        this.multaDiaria = multaDiaria;
+        this.intervaloMs = intervaloMs;
+        this.ejecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "vencidos-monitor");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /** Instancia compartida, configurada con las propiedades {@code biblioteca.vencidos.*}. */
+    public static MonitorVencidos global() {
+        MonitorVencidos m = GLOBAL;
+        if (m != null) return m;
+        synchronized (MonitorVencidos.class) {
+            if (GLOBAL == null) {
+                GLOBAL = new MonitorVencidos(new JdbcPrestamoDAO(),
+                        Long.getLong("biblioteca.vencidos.multaDiaria", 100),
+                        Long.getLong("biblioteca.vencidos.intervaloMs", 60_000));
+            }
+            return GLOBAL;
+        }
+    }
+
+    // ===================== Ciclo de vida =====================
+
+    /** Programa las pasadas periódicas (la primera, enseguida). Llamarlo más de una vez no hace nada. */
+    public synchronized void iniciar() {
+        if (iniciado) return;
+        iniciado = true;
+        ejecutor.scheduleWithFixedDelay(this::pasada, 0, intervaloMs, TimeUnit.MILLISECONDS);
+    }
+
+    /** Pide una pasada fuera de turno (p. ej. después de renovar), sin esperar su resultado. */
+    public void actualizarAhora() {
+        ejecutor.execute(this::pasada);
+    }
+
+    /** Detiene las pasadas. */
+    public void cerrar() {
+        ejecutor.shutdownNow();
+    }
+
+    // ===================== Lectura (cualquier hilo) =====================
+
+    /** @return {@code true} si el préstamo estaba vencido en la última pasada. */
+    public boolean esVencido(long idPrestamo) {
+        return vencidos.contains(idPrestamo);
+    }
+
+    /** @return ids vencidos en la última pasada (inmutable). */
+    public Set<Long> getVencidos() { return vencidos; }
+
+    /** @return momento de la última pasada exitosa, o {@code null} si todavía no hubo. */
+    public LocalDateTime getUltimaPasada() { return ultimaPasada; }
+
+    /**
+     * Registra una acción a correr cuando cambia el conjunto de vencidos. Corre en el hilo del
+     * monitor: la UI debe pasarla al EDT.
+     */
+    public void agregarOyente(Runnable r) { oyentes.add(r); }
+
+    public void quitarOyente(Runnable r) { oyentes.remove(r); }
+
+    // ===================== Pasada =====================
+
+    /**
+     * Corre una pasada completa en el hilo que llama.
+     *
+     * @return cantidad de préstamos vencidos.
+     * @throws RuntimeException si falla el acceso a datos.
+     */
+    public synchronized int actualizar() {
+        LocalDate hoy = LocalDate.now();
+        LocalDateTime ahora = LocalDateTime.now();
+
+        // 1) Una consulta por rango: abiertos que vencieron antes de hoy
+        List<Prestamo> abiertosVencidos = dao.abiertosVencidosAl(hoy);
+        Set<Long> ids = new HashSet<>(abiertosVencidos.size() * 2);
+        for (Prestamo p : abiertosVencidos) ids.add(p.getId());
+
+        // 2) Foto con atraso y multa, solo si cambió el día o el conjunto
+        if (!hoy.equals(diaFoto) || !ids.equals(vencidos)) {
+            List<PrestamoVencido> foto = new ArrayList<>(abiertosVencidos.size());
+            for (Prestamo p : abiertosVencidos) foto.add(vencido(p, hoy, ahora));
+            dao.guardarVencidos(foto);
+            diaFoto = hoy;
+        }
+
+        // 3) Publicar el conjunto y avisar si cambió
+        boolean cambio = !ids.equals(vencidos);
+        vencidos = Set.copyOf(ids);
+        ultimaPasada = ahora;
+        if (cambio) for (Runnable r : oyentes) r.run();
+        return ids.size();
+    }
+
+    private PrestamoVencido vencido(Prestamo p, LocalDate hoy, LocalDateTime ahora) {
+        int dias = (int) ChronoUnit.DAYS.between(p.getFechaVencimiento(), hoy);
+        PrestamoVencido v = new PrestamoVencido();
+        v.setId(p.getId());
+        v.setDiasAtraso(dias);
+        v.setMulta(dias * (long) p.getCantidad() * multaDiaria);
+        v.setCalculado(ahora);
+        return v;
+    }
+
+    /** Pasada programada: los errores se loguean y no cancelan las siguientes. */
+    private void pasada() {
+        try {
+            actualizar();
+        } catch (RuntimeException e) {
+            System.err.println("[MonitorVencidos] " + e.getMessage());
+        }
+    }
+}
@@ -5,12 +5,20 @@ package service;
  * @author Fabrizio Manuel Mansilla
  */
 
+import dao.CursorPagina;
+import dao.Pagina;
 import dao.PrestamoDao;
+import dao.ResultadoLote;
 import model.Prestamo;
+import model.PrestamoDetalle;
+import model.PrestamoVencido;
 import model.EstadoPrestamo; // ← enum externo
+import model.SolicitudPrestamo;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -74,11 +82,94 @@ public class PrestamoService {
         return dao.prestar(p);
     }
 
+    /**
+     * Registra muchos préstamos en una sola transacción.
+     *
+     * Los ítems que no pasan la validación se informan como fallidos sin llegar al DAO; si se
+     * pidió "todo o nada" y hay alguno inválido, no se toca la base.
+     *
+     * @param operadorUsername username del operador que registra los préstamos.
+     * @param solicitudes      ítems a prestar, en orden.
+     * @param todoONada        si un solo ítem fallido revierte el lote entero.
+     * @return un resultado por solicitud, en el orden de entrada.
+     * @throws IllegalArgumentException si falta el operador o la lista.
+     */
+    public ResultadoLote prestarLote(String operadorUsername, List<SolicitudPrestamo> solicitudes,
+                                     boolean todoONada) {
+        if (operadorUsername == null || operadorUsername.isBlank())
+            throw new IllegalArgumentException("Operador requerido");
+        if (solicitudes == null)
+            throw new IllegalArgumentException("Lista de préstamos requerida");
+
+        // 1) Validar cada ítem y construir los DTO de los válidos
+        ResultadoLote.Item[] items = new ResultadoLote.Item[solicitudes.size()];
+        List<Integer> indices = new ArrayList<>();
+        List<Prestamo> validos = new ArrayList<>();
+        LocalDateTime ahora = LocalDateTime.now();
+        for (int i = 0; i < solicitudes.size(); i++) {
+            SolicitudPrestamo s = solicitudes.get(i);
+            String error = validar(s);
+            if (error != null) {
+                items[i] = ResultadoLote.Item.falla(i, error);
+                continue;
+            }
+            Prestamo p = new Prestamo();
+            p.setLibroCodigo(s.getLibroCodigo().trim());
+            p.setOperadorUsername(operadorUsername.trim());
+            p.setDestinatario(s.getDestinatario().trim());
+            p.setCantidad(s.getCantidad());
+            p.setFechaPrestamo(ahora);
+            p.setFechaVencimiento(ahora.toLocalDate().plusDays(s.getDias()));
+            p.setEstado(EstadoPrestamo.ABIERTO);
+            indices.add(i);
+            validos.add(p);
+        }
+
+        // 2) Si hay inválidos y es todo o nada, no hace falta ir a la base
+        if (validos.isEmpty() || (todoONada && validos.size() < items.length)) {
+            for (int i : indices) items[i] = ResultadoLote.Item.falla(i, ResultadoLote.REVERTIDO);
+            return new ResultadoLote(List.of(items), items.length == 0);
+        }
+
+        // 3) Delegar y reubicar los resultados en los índices originales
+        ResultadoLote r = dao.prestarLote(validos, todoONada);
+        for (ResultadoLote.Item it : r.getItems()) {
+            int i = indices.get(it.getIndice());
+            items[i] = it.isOk() ? ResultadoLote.Item.ok(i, it.getId())
+                     : it.getMotivo() != null ? ResultadoLote.Item.rechazado(i, it.getMotivo())
+                     : ResultadoLote.Item.falla(i, it.getError());
+        }
+        return new ResultadoLote(List.of(items), r.isConfirmado());
+    }
+
+    /** @return mensaje de error de la solicitud, o {@code null} si es válida. */
+    private static String validar(SolicitudPrestamo s) {
+        if (s == null) return "Ítem vacío";
+        if (s.getLibroCodigo() == null || s.getLibroCodigo().isBlank()) return "Código requerido";
+        if (s.getDestinatario() == null || s.getDestinatario().isBlank()) return "Destinatario requerido";
+        if (s.getCantidad() <= 0) return "Cantidad inválida";
+        if (s.getDias() <= 0) return "Días inválidos";
+        return null;
+    }
+
     /** Marca un préstamo como DEVUELTO (repone stock y audita en DAO). */
     public void devolver(long idPrestamo) {
         dao.devolver(idPrestamo);
     }
 
+    /**
+     * Devuelve muchos préstamos en una sola transacción.
+     *
+     * @param idsPrestamo ids de préstamos ABIERTO.
+     * @param todoONada   si un solo id inválido revierte el lote entero.
+     * @return un resultado por id, en el orden de entrada.
+     */
+    public ResultadoLote devolverLote(List<Long> idsPrestamo, boolean todoONada) {
+        if (idsPrestamo == null)
+            throw new IllegalArgumentException("Lista de préstamos requerida");
+        return dao.devolverLote(idsPrestamo, todoONada);
+    }
+
     /** Extiende la fecha de vencimiento de un préstamo ABIERTO. */
     public void renovar(long idPrestamo, int dias) {
         if (dias <= 0) throw new IllegalArgumentException("Días inválidos");
@@ -90,8 +181,36 @@ public class PrestamoService {
         return dao.abiertos(filtro);
     }
 
+    /** Préstamos abiertos con título/autor del libro (una sola consulta, para listados). */
+    public List<PrestamoDetalle> abiertosDetalle(String filtro) {
+        return dao.abiertosDetalle(filtro);
+    }
+
+    /** Préstamos abiertos con detalle, solo entre los ids dados (refresco de filas sueltas). */
+    public List<PrestamoDetalle> abiertosDetalle(String filtro, Collection<Long> ids) {
+        return dao.abiertosDetalle(filtro, ids);
+    }
+
+    /** Última foto de préstamos vencidos con atraso y multa (ver {@link MonitorVencidos}). */
+    public List<PrestamoVencido> vencidos() {
+        return dao.vencidos();
+    }
+
     /** Consulta histórica de préstamos con rango de fechas y filtro opcional. */
     public List<Prestamo> historico(LocalDate desde, LocalDate hasta, String filtro) {
         return dao.historico(desde, hasta, filtro);
     }
+
+    /** Página de préstamos ABIERTO (orden por vencimiento) a partir de un cursor. */
+    public Pagina<Prestamo> abiertosPagina(String filtro, CursorPagina despues, int tamanio) {
+        return dao.abiertosPagina(filtro, despues, tamanio);
+    }
+
+    /** Página del histórico (más recientes primero) a partir de un cursor. */
+    public Pagina<Prestamo> historicoPagina(LocalDate desde, LocalDate hasta, String filtro,
+                                            CursorPagina despues, int tamanio) {
+        if (desde != null && hasta != null && desde.isAfter(hasta))
+            throw new IllegalArgumentException("Rango de fechas inválido");
+        return dao.historicoPagina(desde, hasta, filtro, despues, tamanio);
+    }
 }
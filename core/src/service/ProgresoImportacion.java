@@ -0,0 +1,51 @@
+package service;
+
+/**
+ * @author Federico Gabriel Arena
+ * @author Fabrizio Manuel Mansilla
+ */
+
+/**
+ * ProgresoImportacion
+ * -------------------
+ * Foto inmutable del avance de una importación de libros ({@link ImportadorLibros}).
+ * Se entrega después de cada lote confirmado y, con {@code terminado=true}, al final.
+ */
+public final class ProgresoImportacion {
+
+    private final long leidas;
+    private final long importadas;
+    private final long rechazadas;
+    private final long nanos;
+    private final boolean terminado;
+
+    ProgresoImportacion(long leidas, long importadas, long rechazadas, long nanos, boolean terminado) {
+        this.leidas = leidas;
+        this.importadas = importadas;
+        this.rechazadas = rechazadas;
+        this.nanos = nanos;
+        this.terminado = terminado;
+    }
+
+    /** @return registros leídos del archivo (sin contar el encabezado). */
+    public long getLeidas() { return leidas; }
+    /** @return libros insertados o actualizados (confirmados en la base). */
+    public long getImportadas() { return importadas; }
+    /** @return registros descartados (validación o error de base); ver archivo de rechazados. */
+    public long getRechazadas() { return rechazadas; }
+    /** @return tiempo transcurrido desde el inicio, en milisegundos. */
+    public long getMillis() { return nanos / 1_000_000; }
+    /** @return {@code true} en la foto final. */
+    public boolean isTerminado() { return terminado; }
+
+    /** @return registros procesados por segundo desde el inicio. */
+    public double getFilasPorSegundo() {
+        return nanos == 0 ? 0 : leidas * 1e9 / nanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("leídas=%d importadas=%d rechazadas=%d en %.1fs (%.0f filas/s)",
+                leidas, importadas, rechazadas, nanos / 1e9, getFilasPorSegundo());
+    }
+}
@@ -0,0 +1,69 @@
+package service;
+
+/**
+ * @author Federico Gabriel Arena
+ * @author Fabrizio Manuel Mansilla
+ */
+
+import dao.AuditoriaDao;
+import model.Auditoria;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * SeguidorAuditoria
+ * -----------------
+ * Feed incremental de cambios: recuerda el último id de auditoría visto y en cada consulta
+ * devuelve solo los eventos posteriores.
+ *
+ * ¿Por qué la auditoría?
+ *  - Cada préstamo, devolución y renovación deja un evento con su prestamo_id, y el id es
+ *    AUTOINCREMENT con escrituras serializadas: "id &gt; último" es exactamente lo que cambió.
+ *  - La consulta es un rango sobre la PK: barata aunque se repita cada pocos segundos desde
+ *    varios puestos.
+ *  - Funciona entre procesos (otros mostradores sobre el mismo archivo), cosa que el update hook
+ *    de SQLite no hace: solo avisa de los cambios de la propia conexión.
+ *
+ * Uso (ver ui.RefrescoVivo):
+ * <pre>
+ *   SeguidorAuditoria s = new SeguidorAuditoria(dao, dao.ultimoId());  // antes de la carga inicial
+ *   ... cargar la vista ...
+ *   List&lt;Auditoria&gt; cambios = s.novedades();                        // periódicamente
+ * </pre>
+ */
+public final class SeguidorAuditoria {
+
+    /** Máximo de eventos por consulta; si hay más, salen en la siguiente. */
+    private static final int LOTE = 500;
+
+    private final AuditoriaDao dao;
+    private long ultimoId;
+
+    /**
+     * @param dao      fuente de eventos.
+     * @param desdeId  último id ya reflejado en la vista (los eventos posteriores son "novedades").
+     */
+    public SeguidorAuditoria(AuditoriaDao dao, long desdeId) {
+        this.dao = dao;
+        this.ultimoId = desdeId;
+    }
+
+    /** @return eventos nuevos desde la llamada anterior, en orden de id (puede estar vacía). */
+    public synchronized List<Auditoria> novedades() {
+        List<Auditoria> nuevos = dao.posteriores(ultimoId, LOTE);
+        if (!nuevos.isEmpty()) ultimoId = nuevos.get(nuevos.size() - 1).getId();
+        return nuevos;
+    }
+
+    /** @return último id procesado. */
+    public synchronized long getUltimoId() { return ultimoId; }
+
+    /** @return ids de préstamo tocados por los eventos (sin repetir, en orden de aparición). */
+    public static Set<Long> prestamosAfectados(List<Auditoria> eventos) {
+        Set<Long> ids = new LinkedHashSet<>();
+        for (Auditoria a : eventos) if (a.getPrestamoId() != null) ids.add(a.getPrestamoId());
+        return ids;
+    }
+}
@@ -5,9 +5,12 @@ package service;
  * @author Fabrizio Manuel Mansilla
  */
 
+import dao.CursorPagina;
+import dao.Pagina;
 import dao.UsuarioDao;
 import model.*;
 import util.HashUtil;
+import util.PasswordHasher;
 
 import java.util.List;
 import java.util.UUID;
@@ -21,7 +24,7 @@ import java.util.UUID;
  *
  * Decisiones:
  *  - Validaciones de negocio aquí (unicidad, no auto-eliminarse, no borrar admin seed).
- *  - Hashing con {@link HashUtil} (salt aleatorio + SHA-256) —nunca almacenar contraseñas en claro.
+ *  - Hashing con {@link PasswordHasher} (salt aleatorio + PBKDF2) —nunca almacenar contraseñas en claro.
  *  - Delegar persistencia en {@link UsuarioDao}.
  */
 public class UsuarioAdminService {
@@ -29,9 +32,18 @@ public class UsuarioAdminService {
     /** DAO inyectado: permite tests y cambiar implementación sin tocar la UI. */
     private final UsuarioDao dao;
 
+    /** Hasher explícito, o null para usar {@link PasswordHasher#global()} (se resuelve al primer uso). */
+    private final PasswordHasher hasher;
+
     /** Inyección por constructor. */
     public UsuarioAdminService(UsuarioDao dao) {
+        this(dao, null);
+    }
+
+    /** Inyección por constructor con hasher explícito (null = {@link PasswordHasher#global()}). */
+    public UsuarioAdminService(UsuarioDao dao, PasswordHasher hasher) {
         this.dao = dao;
+        this.hasher = hasher;
     }
 
     /**
@@ -42,6 +54,15 @@ public class UsuarioAdminService {
         return dao.listar();
     }
 
+    /**
+     * Página de usuarios ordenados por username a partir de un cursor.
+     * @param despues cursor de la página anterior (null = primera página).
+     * @param tamanio filas por página.
+     */
+    public Pagina<Usuario> listarPagina(CursorPagina despues, int tamanio) {
+        return dao.listarPagina(despues, tamanio);
+    }
+
     /**
      * Crea un nuevo usuario con rol OPERADOR.
      *
@@ -67,7 +88,7 @@ public class UsuarioAdminService {
         // Credenciales seguras
         String id   = UUID.randomUUID().toString();
         String salt = HashUtil.newSaltHex(16);
-        String hash = HashUtil.sha256Hex(salt, passwordPlano);
+        String hash = hasher().hashear(salt, passwordPlano);
 
         // Persistencia
         Usuario op = new Operador(id, nombre, username, hash, salt);
@@ -122,13 +143,17 @@ public class UsuarioAdminService {
 
         String temporal = generarPasswordTemporal(10);
         String salt = HashUtil.newSaltHex(16);
-        String hash = HashUtil.sha256Hex(salt, temporal);
+        String hash = hasher().hashear(salt, temporal);
         dao.actualizarPassword(username, salt, hash);
         return temporal;
     }
 
     // ===================== Helpers =====================
 
+    private PasswordHasher hasher() {
+        return hasher != null ? hasher : PasswordHasher.global();
+    }
+
     /**
      * Genera una contraseña temporal aleatoria evitando 0/O/I/l.
      * @param len longitud deseada.
@@ -0,0 +1,172 @@
+package util;
+
+/**
+ * @author Federico Gabriel Arena
+ * @author Fabrizio Manuel Mansilla
+ */
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Utilidades CSV (RFC 4180) sin dependencias externas.
+ *
+ * ¿Qué hace?
+ *  - {@link Lector}: lee registro por registro desde un {@link Reader}, sin cargar el archivo
+ *    completo (comillas, comillas dobladas, saltos de línea dentro de comillas, CRLF).
+ *  - {@link #escapar(String, char)} / {@link #linea(char, String...)}: arman líneas de salida.
+ *
+ * Decisiones:
+ *  - El separador es configurable (',' o ';': las planillas en castellano suelen usar ';').
+ *    {@link #detectarSeparador(BufferedReader)} lo deduce de la primera línea.
+ *  - Los campos vacíos se leen como "" (nunca null).
+ */
+public final class Csv {
+
+    /** Clase de utilidades: constructor privado para evitar instanciación. */
+    private Csv() {}
+
+    /**
+     * Deduce el separador mirando la primera línea (sin consumirla).
+     *
+     * @param in lector con soporte de mark/reset.
+     * @return ';' si en la primera línea hay más ';' que ',', si no ','.
+     */
+    public static char detectarSeparador(BufferedReader in) throws IOException {
+        in.mark(64 * 1024);
+        String primera = in.readLine();
+        in.reset();
+        if (primera == null) return ',';
+        long comas = primera.chars().filter(c -> c == ',').count();
+        long puntoYComa = primera.chars().filter(c -> c == ';').count();
+        return puntoYComa > comas ? ';' : ',';
+    }
+
+    /**
+     * Escapa un campo: lo encierra entre comillas si contiene separador, comillas o saltos de línea.
+     *
+     * @param valor texto del campo ({@code null} = vacío).
+     * @param sep   separador de campos.
+     */
+    public static String escapar(String valor, char sep) {
+        if (valor == null) return "";
+        boolean comillas = valor.indexOf(sep) >= 0 || valor.indexOf('"') >= 0
+                || valor.indexOf('\n') >= 0 || valor.indexOf('\r') >= 0;
+        return comillas ? '"' + valor.replace("\"", "\"\"") + '"' : valor;
+    }
+
+    /** @return los campos escapados y unidos por el separador (sin salto de línea final). */
+    public static String linea(char sep, String... campos) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < campos.length; i++) {
+            if (i > 0) sb.append(sep);
+            sb.append(escapar(campos[i], sep));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Lector incremental de registros CSV.
+     *
+     * Uso:
+     * <pre>
+     *   Csv.Lector lector = new Csv.Lector(reader, ',');
+     *   for (String[] r; (r = lector.siguiente()) != null; ) { ... lector.getLinea() ... }
+     * </pre>
+     */
+    public static final class Lector {
+
+        private final Reader in;
+        private final char sep;
+        private final char[] buf = new char[64 * 1024];
+        private int pos = 0, len = 0;
+        /** Línea física actual (1-based) y línea donde empezó el último registro leído. */
+        private int linea = 1, lineaRegistro = 0;
+
+        /**
+         * @param in  origen (no hace falta que sea buffered: se lee en bloques).
+         * @param sep separador de campos.
+         */
+        public Lector(Reader in, char sep) {
+            this.in = in;
+            this.sep = sep;
+        }
+
+        /** @return línea (1-based) donde empieza el último registro devuelto. */
+        public int getLinea() { return lineaRegistro; }
+
+        /**
+         * Lee el próximo registro.
+         *
+         * @return campos del registro, o {@code null} al final del archivo. Las líneas vacías se saltean.
+         * @throws IllegalArgumentException si un campo entre comillas no se cierra.
+         */
+        public String[] siguiente() throws IOException {
+            List<String> campos = new ArrayList<>();
+            StringBuilder campo = new StringBuilder();
+            boolean entreComillas = false, huboDatos = false;
+            lineaRegistro = linea;
+
+            while (true) {
+                int c = leer();
+                if (c < 0) {
+                    if (entreComillas)
+                        throw new IllegalArgumentException("Comillas sin cerrar (registro de la línea " + lineaRegistro + ")");
+                    if (!huboDatos) return null;
+                    campos.add(campo.toString());
+                    return campos.toArray(new String[0]);
+                }
+                char ch = (char) c;
+                if (ch == '\n') linea++;
+
+                if (entreComillas) {
+                    if (ch == '"') {
+                        if (mirar() == '"') { leer(); campo.append('"'); }
+                        else entreComillas = false;
+                    } else {
+                        campo.append(ch);
+                    }
+                    continue;
+                }
+
+                if (ch == '"' && campo.length() == 0) {
+                    entreComillas = true;
+                    huboDatos = true;
+                } else if (ch == sep) {
+                    campos.add(campo.toString());
+                    campo.setLength(0);
+                    huboDatos = true;
+                } else if (ch == '\r') {
+                    // se ignora: el registro termina en el '\n' siguiente
+                } else if (ch == '\n') {
+                    if (!huboDatos && campo.length() == 0) { lineaRegistro = linea; continue; }
+                    campos.add(campo.toString());
+                    return campos.toArray(new String[0]);
+                } else {
+                    campo.append(ch);
+                    huboDatos = true;
+                }
+            }
+        }
+
+        private int leer() throws IOException {
+            if (pos == len && !llenar()) return -1;
+            return buf[pos++];
+        }
+
+        private int mirar() throws IOException {
+            if (pos == len && !llenar()) return -1;
+            return buf[pos];
+        }
+
+        private boolean llenar() throws IOException {
+            len = in.read(buf, 0, buf.length);
+            pos = 0;
+            if (len <= 0) { len = 0; return false; }
+            return true;
+        }
+    }
+}
@@ -5,8 +5,11 @@ package util;
  * @author Fabrizio Manuel Mansilla
  */
 
+import java.security.DigestException;
 import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
+import java.util.Arrays;
 
 /**
  * Utilidad de hashing para contraseñas.
@@ -14,23 +17,65 @@ import java.security.SecureRandom;
  * ¿Qué hace?
  *  - Genera salts criptográficamente seguros.
  *  - Calcula SHA-256(salt || password) y lo devuelve en HEX.
- *  - Verifica comparando hashes (case-insensitive).
+ *  - Verifica comparando los bytes del hash en tiempo constante.
  *
  * Decisiones:
  *  - {@link SecureRandom} único y estático para generar salts de alta entropía.
- *  - Codificación HEX simple para almacenar en texto.
+ *  - Codificación HEX simple para almacenar en texto (minúsculas al escribir; al leer se aceptan
+ *    mayúsculas y minúsculas).
  *  - Se usa UTF-8 al convertir el password a bytes.
+ *  - Pocas asignaciones por llamada (el login de muchos operadores a la vez pasa por acá): cada hilo
+ *    reutiliza su {@link MessageDigest} y sus buffers (salt, password en UTF-8, digest), el HEX se
+ *    codifica/decodifica con tablas y {@link #verify} compara bytes sin armar Strings. Con hilos
+ *    virtuales (uno por pedido) cada hilo arma sus buffers una vez, igual que antes el digest.
+ *  - La comparación recorre siempre los 32 bytes: el tiempo no revela cuántos coinciden.
  *
  * WARNING (seguridad):
- *  - SHA-256 con salt es aceptable para trabajos académicos, pero en producción
- *    conviene usar funciones de derivación de clave con factor de costo
- *    (bcrypt/argon2/scrypt/PBKDF2).
+ *  - SHA-256 con salt no tiene factor de costo: las contraseñas nuevas se guardan con
+ *    {@link PasswordHasher} (PBKDF2). Acá queda la verificación de los hashes legados y los helpers HEX.
  */
 public final class HashUtil {
 
     /** Fuente de aleatoriedad criptográficamente segura para salts. */
     private static final SecureRandom RNG = new SecureRandom();
 
+    /** Largo de un digest SHA-256 en bytes. */
+    private static final int LARGO_SHA256 = 32;
+
+    /** Dígitos HEX en minúsculas, indexados por nibble. */
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    /** Valor de cada carácter ASCII como dígito HEX (-1 = no es dígito HEX). */
+    private static final byte[] NIBBLE = new byte[128];
+    static {
+        Arrays.fill(NIBBLE, (byte) -1);
+        for (int i = 0; i < 10; i++) NIBBLE['0' + i] = (byte) i;
+        for (int i = 0; i < 6; i++) {
+            NIBBLE['a' + i] = (byte) (10 + i);
+            NIBBLE['A' + i] = (byte) (10 + i);
+        }
+    }
+
+    /** Digest y buffers reutilizables de cada hilo. */
+    private static final class Buffers {
+        final MessageDigest sha256;
+        final byte[] digest = new byte[LARGO_SHA256];
+        final byte[] esperado = new byte[LARGO_SHA256];
+        final char[] hex = new char[LARGO_SHA256 * 2];
+        byte[] salt = new byte[32];
+        byte[] password = new byte[64];
+
+        Buffers() {
+            try {
+                sha256 = MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("SHA-256 no disponible", e);
+            }
+        }
+    }
+
+    private static final ThreadLocal<Buffers> BUFFERS = ThreadLocal.withInitial(Buffers::new);
+
     /** Clase de utilidades: constructor privado para evitar instanciación. */
     private HashUtil() {}
 
@@ -52,21 +97,13 @@ public final class HashUtil {
      * @param saltHex salt en HEX.
      * @param plain   contraseña en claro.
      * @return hash en HEX (minúsculas).
+     * @throws IllegalArgumentException si el salt no es HEX válido.
      */
     public static String sha256Hex(String saltHex, String plain) {
-        try {
-            // 1) Preparar MessageDigest con SHA-256
-            MessageDigest md = MessageDigest.getInstance("SHA-256");
-
-            // 2) md.update(bytes del salt) + md.update(bytes del password)
-            md.update(fromHex(saltHex));
-            md.update(plain.getBytes("UTF-8"));
-
-            // 3) Calcular digest y devolver en HEX
-            return toHex(md.digest());
-        } catch (Exception e) {
-            throw new RuntimeException("No se pudo calcular hash", e);
-        }
+        Buffers b = BUFFERS.get();
+        digerir(b, saltHex, plain);
+        codificar(b.digest, LARGO_SHA256, b.hex);
+        return new String(b.hex);
     }
 
     /**
@@ -74,33 +111,138 @@ public final class HashUtil {
      *
      * @param saltHex     salt en HEX.
      * @param plain       contraseña ingresada (en claro).
-     * @param expectedHex hash esperado (HEX).
-     * @return true si coincide, false caso contrario.
+     * @param expectedHex hash esperado (HEX, mayúsculas o minúsculas).
+     * @return true si coincide, false caso contrario (incluye un hash esperado mal formado).
+     * @throws IllegalArgumentException si el salt no es HEX válido.
      */
     public static boolean verify(String saltHex, String plain, String expectedHex) {
-        // equalsIgnoreCase por si el hash se almacenó en mayúsculas/minúsculas
-        return sha256Hex(saltHex, plain).equalsIgnoreCase(expectedHex);
+        Buffers b = BUFFERS.get();
+        digerir(b, saltHex, plain);
+        if (expectedHex == null || expectedHex.length() != LARGO_SHA256 * 2
+                || decodificar(expectedHex, b.esperado) < 0) {
+            return false;
+        }
+        return iguales(b.digest, b.esperado, LARGO_SHA256);
     }
 
     // ===================== Helpers HEX =====================
 
     /** Convierte bytes → HEX en minúsculas. */
-    private static String toHex(byte[] b) {
-        StringBuilder sb = new StringBuilder(b.length * 2);
-        for (byte x : b) sb.append(String.format("%02x", x));
-        return sb.toString();
+    public static String toHex(byte[] b) {
+        char[] out = new char[b.length * 2];
+        codificar(b, b.length, out);
+        return new String(out);
     }
 
     /**
-     * Convierte HEX → bytes.
-     * Asume longitud par y caracteres válidos [0-9a-fA-F].
+     * Convierte HEX → bytes (acepta mayúsculas y minúsculas).
+     *
+     * @throws IllegalArgumentException si la longitud es impar o hay caracteres no HEX.
      */
-    private static byte[] fromHex(String s) {
-        int len = s.length();
-        byte[] out = new byte[len / 2];
-        for (int i = 0; i < len; i += 2) {
-            out[i / 2] = (byte) Integer.parseInt(s.substring(i, i + 2), 16);
-        }
+    public static byte[] fromHex(String s) {
+        if ((s.length() & 1) != 0) throw new IllegalArgumentException("HEX de longitud impar");
+        byte[] out = new byte[s.length() / 2];
+        if (decodificar(s, out) < 0) throw new IllegalArgumentException("HEX inválido");
         return out;
     }
+
+    /**
+     * Compara los primeros {@code n} bytes en tiempo constante (siempre recorre los {@code n}).
+     */
+    public static boolean iguales(byte[] a, byte[] b, int n) {
+        int dif = 0;
+        for (int i = 0; i < n; i++) dif |= a[i] ^ b[i];
+        return dif == 0;
+    }
+
+    // ===================== Implementación =====================
+
+    /** Deja SHA-256(salt || UTF-8(plain)) en {@code b.digest}. */
+    private static void digerir(Buffers b, String saltHex, String plain) {
+        // 1) Salt HEX → bytes en el buffer del hilo
+        int largoSalt = saltHex.length() / 2;
+        if ((saltHex.length() & 1) != 0) throw new IllegalArgumentException("Salt HEX de longitud impar");
+        if (b.salt.length < largoSalt) b.salt = new byte[largoSalt];
+        if (decodificar(saltHex, b.salt) < 0) throw new IllegalArgumentException("Salt HEX inválido");
+
+        // 2) Password → UTF-8 en el buffer del hilo
+        int largoPass = utf8(plain, b);
+
+        // 3) Digest directo al buffer (sin array nuevo)
+        MessageDigest md = b.sha256;
+        md.reset();
+        md.update(b.salt, 0, largoSalt);
+        md.update(b.password, 0, largoPass);
+        try {
+            md.digest(b.digest, 0, LARGO_SHA256);
+        } catch (DigestException e) {
+            throw new IllegalStateException("No se pudo calcular hash", e);
+        } finally {
+            Arrays.fill(b.password, 0, largoPass, (byte) 0);   // no dejar la contraseña en el buffer
+        }
+    }
+
+    /** Escribe {@code n} bytes como HEX en {@code out} (2 caracteres por byte). */
+    private static void codificar(byte[] b, int n, char[] out) {
+        for (int i = 0, j = 0; i < n; i++) {
+            int v = b[i] & 0xff;
+            out[j++] = HEX[v >>> 4];
+            out[j++] = HEX[v & 0x0f];
+        }
+    }
+
+    /**
+     * Decodifica {@code s} (longitud par) en {@code out}.
+     *
+     * @return cantidad de bytes escritos, o -1 si hay un carácter no HEX.
+     */
+    private static int decodificar(String s, byte[] out) {
+        int n = s.length() / 2;
+        int malo = 0;
+        for (int i = 0, j = 0; i < n; i++) {
+            char hi = s.charAt(j++), lo = s.charAt(j++);
+            int a = hi < 128 ? NIBBLE[hi] : -1;
+            int c = lo < 128 ? NIBBLE[lo] : -1;
+            malo |= a | c;                  // algún -1 deja el bit de signo prendido
+            out[i] = (byte) ((a << 4) | (c & 0x0f));
+        }
+        return malo < 0 ? -1 : n;
+    }
+
+    /**
+     * Codifica {@code s} en UTF-8 dentro de {@code b.password} (lo agranda si no alcanza).
+     * Un surrogate sin pareja se escribe como '?', igual que {@code String.getBytes(UTF_8)}.
+     *
+     * @return cantidad de bytes escritos.
+     */
+    private static int utf8(String s, Buffers b) {
+        int n = s.length();
+        if (b.password.length < n * 3) b.password = new byte[Math.max(n * 3, b.password.length * 2)];
+        byte[] out = b.password;
+        int j = 0;
+        for (int i = 0; i < n; i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                out[j++] = (byte) c;
+            } else if (c < 0x800) {
+                out[j++] = (byte) (0xc0 | (c >> 6));
+                out[j++] = (byte) (0x80 | (c & 0x3f));
+            } else if (Character.isSurrogate(c)) {
+                if (Character.isHighSurrogate(c) && i + 1 < n && Character.isLowSurrogate(s.charAt(i + 1))) {
+                    int cp = Character.toCodePoint(c, s.charAt(++i));
+                    out[j++] = (byte) (0xf0 | (cp >> 18));
+                    out[j++] = (byte) (0x80 | ((cp >> 12) & 0x3f));
+                    out[j++] = (byte) (0x80 | ((cp >> 6) & 0x3f));
+                    out[j++] = (byte) (0x80 | (cp & 0x3f));
+                } else {
+                    out[j++] = '?';
+                }
+            } else {
+                out[j++] = (byte) (0xe0 | (c >> 12));
+                out[j++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+                out[j++] = (byte) (0x80 | (c & 0x3f));
+            }
+        }
+        return j;
+    }
 }
@@ -0,0 +1,195 @@
+package util;
+
+/**
+ * @author Federico Gabriel Arena
+ * @author Fabrizio Manuel Mansilla
+ */
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Utilidades JSON mínimas (sin dependencias externas) para importar/exportar registros planos.
+ *
+ * ¿Qué hace?
+ *  - {@link Lector}: lee objetos planos uno por uno desde un {@link Reader}, sin cargar el
+ *    archivo completo. Acepta un arreglo {@code [ {...}, {...} ]} o objetos sueltos uno tras
+ *    otro (JSON Lines).
+ *  - {@link #escapar(String)}: arma literales de texto para escribir JSON.
+ *
+ * Decisiones:
+ *  - Cada objeto se devuelve como {@code Map<String,String>}: números y booleanos quedan con su
+ *    texto literal ("12", "true") y {@code null} como null. La conversión de tipos es del llamador,
+ *    igual que con CSV.
+ *  - Objetos o arreglos anidados no se soportan (los registros a importar son planos).
+ *  - Un error de sintaxis no permite resincronizar el flujo: se lanza IllegalArgumentException
+ *    con la línea.
+ */
+public final class Json {
+
+    /** Clase de utilidades: constructor privado para evitar instanciación. */
+    private Json() {}
+
+    /** @return el texto como literal JSON entre comillas ({@code null} → {@code null}). */
+    public static String escapar(String s) {
+        if (s == null) return "null";
+        StringBuilder sb = new StringBuilder(s.length() + 2).append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"'  -> sb.append("\\\"");
+                case '\\' -> sb.append("\\\\");
+                case '\n' -> sb.append("\\n");
+                case '\r' -> sb.append("\\r");
+                case '\t' -> sb.append("\\t");
+                default -> {
+                    if (c < 0x20) sb.append(String.format("\\u%04x", (int) c));
+                    else sb.append(c);
+                }
+            }
+        }
+        return sb.append('"').toString();
+    }
+
+    /**
+     * Lector incremental de objetos JSON planos.
+     *
+     * Uso:
+     * <pre>
+     *   Json.Lector lector = new Json.Lector(reader);
+     *   for (Map&lt;String,String&gt; o; (o = lector.siguiente()) != null; ) { ... }
+     * </pre>
+     */
+    public static final class Lector {
+
+        private final Reader in;
+        private final char[] buf = new char[64 * 1024];
+        private int pos = 0, len = 0;
+        private int linea = 1, lineaObjeto = 0;
+        private final StringBuilder tmp = new StringBuilder();
+
+        public Lector(Reader in) { this.in = in; }
+
+        /** @return línea (1-based) donde empieza el último objeto devuelto. */
+        public int getLinea() { return lineaObjeto; }
+
+        /**
+         * Lee el próximo objeto.
+         *
+         * @return pares clave → valor (en orden de aparición), o {@code null} al final.
+         * @throws IllegalArgumentException si el JSON es inválido o tiene valores anidados.
+         */
+        public Map<String, String> siguiente() throws IOException {
+            // 1) Saltar separadores entre objetos: blancos, '[', ',' y ']'
+            int c;
+            while (true) {
+                c = saltarBlancos();
+                if (c < 0) return null;
+                if (c == '[' || c == ',' || c == ']') { pos++; continue; }
+                break;
+            }
+            if (c != '{') throw error("se esperaba '{'");
+            lineaObjeto = linea;
+            pos++;
+
+            // 2) Pares "clave": valor
+            Map<String, String> obj = new LinkedHashMap<>();
+            c = saltarBlancos();
+            if (c == '}') { pos++; return obj; }
+            while (true) {
+                if (saltarBlancos() != '"') throw error("se esperaba una clave entre comillas");
+                pos++;
+                String clave = texto();
+                if (saltarBlancos() != ':') throw error("se esperaba ':'");
+                pos++;
+                obj.put(clave, valor());
+                c = saltarBlancos();
+                pos++;
+                if (c == ',') continue;
+                if (c == '}') return obj;
+                throw error("se esperaba ',' o '}'");
+            }
+        }
+
+        private String valor() throws IOException {
+            int c = saltarBlancos();
+            if (c == '"') { pos++; return texto(); }
+            if (c == '{' || c == '[') throw error("valores anidados no soportados");
+            // número, true, false, null
+            tmp.setLength(0);
+            while (true) {
+                c = mirar();
+                if (c < 0 || c == ',' || c == '}' || c == ']' || Character.isWhitespace(c)) break;
+                tmp.append((char) c);
+                pos++;
+            }
+            String lit = tmp.toString();
+            if (lit.isEmpty()) throw error("valor vacío");
+            if (lit.equals("null")) return null;
+            return lit;
+        }
+
+        /** Lee un texto hasta la comilla de cierre (la de apertura ya se consumió). */
+        private String texto() throws IOException {
+            tmp.setLength(0);
+            while (true) {
+                int c = leer();
+                if (c < 0) throw error("texto sin cerrar");
+                if (c == '"') return tmp.toString();
+                if (c == '\n') linea++;
+                if (c != '\\') { tmp.append((char) c); continue; }
+                int e = leer();
+                switch (e) {
+                    case '"', '\\', '/' -> tmp.append((char) e);
+                    case 'n' -> tmp.append('\n');
+                    case 'r' -> tmp.append('\r');
+                    case 't' -> tmp.append('\t');
+                    case 'b' -> tmp.append('\b');
+                    case 'f' -> tmp.append('\f');
+                    case 'u' -> {
+                        int cp = 0;
+                        for (int i = 0; i < 4; i++) {
+                            int d = Character.digit(leer(), 16);
+                            if (d < 0) throw error("escape \\u inválido");
+                            cp = cp * 16 + d;
+                        }
+                        tmp.append((char) cp);
+                    }
+                    default -> throw error("escape inválido");
+                }
+            }
+        }
+
+        private int saltarBlancos() throws IOException {
+            while (true) {
+                int c = mirar();
+                if (c < 0 || !Character.isWhitespace(c)) return c;
+                if (c == '\n') linea++;
+                pos++;
+            }
+        }
+
+        private IllegalArgumentException error(String detalle) {
+            return new IllegalArgumentException("JSON inválido en la línea " + linea + ": " + detalle);
+        }
+
+        private int leer() throws IOException {
+            if (pos == len && !llenar()) return -1;
+            return buf[pos++];
+        }
+
+        private int mirar() throws IOException {
+            if (pos == len && !llenar()) return -1;
+            return buf[pos];
+        }
+
+        private boolean llenar() throws IOException {
+            len = in.read(buf, 0, buf.length);
+            pos = 0;
+            if (len <= 0) { len = 0; return false; }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,247 @@
+package util;
+
+/**
+ * @author Federico Gabriel Arena
+ * @author Fabrizio Manuel Mansilla
+ */
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import java.security.GeneralSecurityException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hash de contraseñas con factor de costo (PBKDF2-HMAC-SHA256 del JDK) y formato versionado.
+ *
+ * Formato de {@code usuario.password_hash} (el salt sigue en la columna {@code salt}):
+ * <pre>
+ *   pbkdf2-sha256$&lt;iteraciones&gt;$&lt;hash HEX de 32 bytes&gt;     versión actual
+ *   &lt;64 caracteres HEX&gt;                                 legado: SHA-256(salt || password), ver {@link HashUtil}
+ * </pre>
+ *
+ * ¿Qué hace?
+ *  - {@link #hashear(String, String)}: hash nuevo con las iteraciones vigentes.
+ *  - {@link #verificar(String, String, String)}: acepta ambos formatos (las iteraciones salen del propio hash,
+ *    así subir el costo no invalida las contraseñas ya guardadas). Un hash legado también cuesta un KDF
+ *    con las iteraciones vigentes: el tiempo de un login fallido no delata cuentas sin migrar.
+ *  - {@link #requiereRehash(String)}: true para hashes legado o con menos iteraciones que las vigentes; el
+ *    login lo usa para re-hashear en el momento, cuando tiene la contraseña en claro.
+ *  - {@link #calibrar(long)}: mide el KDF en este equipo y elige las iteraciones para un tiempo objetivo.
+ *
+ * Decisiones:
+ *  - El trabajo del KDF corre en un pool acotado de hilos ({@code hilos}, por defecto la mitad de los
+ *    núcleos): 40 logins simultáneos al cambio de turno hacen cola en vez de ocupar todos los núcleos y
+ *    frenar la base y la UI. Quien llama espera su resultado (con hilos virtuales esperar no cuesta un
+ *    hilo de plataforma); si la cola se llena se rechaza el pedido.
+ *  - El presupuesto de latencia es por login aislado: con N hilos y M logins a la vez el último espera
+ *    ≈ ceil(M/N) × objetivo.
+ *  - Las iteraciones nunca bajan de {@link #ITERACIONES_MINIMAS}, aunque el equipo sea lento.
+ *
+ * Configuración de {@link #global()} (propiedades de sistema, opcionales):
+ *   biblioteca.auth.iteraciones   iteraciones fijas (si falta, se calibran al primer uso)
+ *   biblioteca.auth.objetivoMs    tiempo objetivo por hash al calibrar         (default 100)
+ *   biblioteca.auth.hilos         hilos del pool del KDF                       (default núcleos/2, mínimo 1)
+ *   biblioteca.auth.cola          pedidos en espera antes de rechazar          (default 256)
+ */
+public final class PasswordHasher {
+
+    /** Prefijo (versión) del formato actual. */
+    public static final String PREFIJO = "pbkdf2-sha256$";
+
+    /** Piso de iteraciones, aunque la calibración dé menos. */
+    public static final int ITERACIONES_MINIMAS = 10_000;
+
+    private static final String ALGORITMO = "PBKDF2WithHmacSHA256";
+    private static final int BITS = 256;
+
+    /** Salt del KDF de relleno al verificar hashes legados (solo gasta tiempo, el resultado se descarta). */
+    private static final byte[] SALT_LEGADO = new byte[16];
+
+    private static volatile PasswordHasher GLOBAL;
+
+    private static final ThreadLocal<SecretKeyFactory> FABRICA = ThreadLocal.withInitial(() -> {
+        try {
+            return SecretKeyFactory.getInstance(ALGORITMO);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(ALGORITMO + " no disponible", e);
+        }
+    });
+
+    private final int iteraciones;
+    private final ThreadPoolExecutor pool;
+
+    /**
+     * @param iteraciones iteraciones de los hashes nuevos (&gt;= {@link #ITERACIONES_MINIMAS}).
+     * @param hilos       hilos que pueden calcular el KDF a la vez (&gt; 0).
+     * @param cola        pedidos que pueden esperar turno (&gt; 0).
+     */
+    public PasswordHasher(int iteraciones, int hilos, int cola) {
+        if (iteraciones < ITERACIONES_MINIMAS || hilos <= 0 || cola <= 0)
+            throw new IllegalArgumentException("Configuración de hashing inválida");
+        this.iteraciones = iteraciones;
+        AtomicInteger n = new AtomicInteger();
+        this.pool = new ThreadPoolExecutor(hilos, hilos, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(cola), r -> {
+                    Thread t = new Thread(r, "kdf-" + n.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+        this.pool.allowCoreThreadTimeOut(true);
+    }
+
+    /** Instancia compartida, configurada con las propiedades {@code biblioteca.auth.*}. */
+    public static PasswordHasher global() {
+        PasswordHasher h = GLOBAL;
+        if (h != null) return h;
+        synchronized (PasswordHasher.class) {
+            if (GLOBAL == null) {
+                Integer fijas = Integer.getInteger("biblioteca.auth.iteraciones");
+                int iter = fijas != null ? Math.max(ITERACIONES_MINIMAS, fijas)
+                                         : calibrar(Long.getLong("biblioteca.auth.objetivoMs", 100));
+                int hilos = Integer.getInteger("biblioteca.auth.hilos",
+                        Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
+                GLOBAL = new PasswordHasher(iter, Math.max(1, hilos),
+                        Integer.getInteger("biblioteca.auth.cola", 256));
+                System.out.println("[PasswordHasher] PBKDF2 con " + iter + " iteraciones, " + hilos + " hilo(s)");
+            }
+            return GLOBAL;
+        }
+    }
+
+    /** @return iteraciones de los hashes nuevos. */
+    public int getIteraciones() { return iteraciones; }
+
+    // ===================== Operaciones =====================
+
+    /**
+     * Calcula el hash (formato actual) de una contraseña.
+     *
+     * @param saltHex salt en HEX (columna {@code salt}).
+     * @param plain   contraseña en claro.
+     * @return {@code pbkdf2-sha256$<iteraciones>$<hash HEX>}.
+     */
+    public String hashear(String saltHex, String plain) {
+        byte[] dk = ejecutar(() -> pbkdf2(plain, HashUtil.fromHex(saltHex), iteraciones));
+        return PREFIJO + iteraciones + '$' + HashUtil.toHex(dk);
+    }
+
+    /**
+     * Verifica una contraseña contra el hash guardado (actual o legado).
+     *
+     * @param saltHex    salt en HEX.
+     * @param plain      contraseña ingresada.
+     * @param almacenado valor de {@code usuario.password_hash}.
+     * @return true si coincide; false si no coincide o el hash guardado está mal formado.
+     */
+    public boolean verificar(String saltHex, String plain, String almacenado) {
+        if (almacenado == null) return false;
+        if (!almacenado.startsWith(PREFIJO)) {
+            // Legado SHA-256 (microsegundos): se paga igual un KDF con el costo vigente, para que una
+            // contraseña errada no tarde menos que en una cuenta PBKDF2 o un usuario inexistente
+            ejecutar(() -> pbkdf2(plain, SALT_LEGADO, iteraciones));
+            return HashUtil.verify(saltHex, plain, almacenado);
+        }
+        int sep = almacenado.indexOf('$', PREFIJO.length());
+        if (sep < 0) return false;
+        int iter;
+        byte[] esperado;
+        try {
+            iter = Integer.parseInt(almacenado, PREFIJO.length(), sep, 10);
+            esperado = HashUtil.fromHex(almacenado.substring(sep + 1));
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+        if (iter <= 0 || esperado.length != BITS / 8) return false;
+        byte[] dk = ejecutar(() -> pbkdf2(plain, HashUtil.fromHex(saltHex), iter));
+        return HashUtil.iguales(dk, esperado, dk.length);
+    }
+
+    /**
+     * @param almacenado valor de {@code usuario.password_hash}.
+     * @return true si conviene re-hashear (formato legado o menos iteraciones que las vigentes).
+     */
+    public boolean requiereRehash(String almacenado) {
+        if (almacenado == null || !almacenado.startsWith(PREFIJO)) return true;
+        int sep = almacenado.indexOf('$', PREFIJO.length());
+        if (sep < 0) return true;
+        try {
+            return Integer.parseInt(almacenado, PREFIJO.length(), sep, 10) < iteraciones;
+        } catch (NumberFormatException e) {
+            return true;
+        }
+    }
+
+    /** Detiene el pool del KDF (apagado). */
+    public void cerrar() {
+        pool.shutdown();
+    }
+
+    // ===================== Calibración =====================
+
+    /**
+     * Mide PBKDF2 en este equipo y devuelve las iteraciones para que un hash tarde ≈ {@code objetivoMs}.
+     *
+     * Corre en el hilo que llama (no en el pool) y tarda unas pocas veces el objetivo: se calienta el
+     * JIT, se toma el mejor de varios intentos con una cantidad de prueba y se escala linealmente
+     * (el costo de PBKDF2 es proporcional a las iteraciones).
+     *
+     * @param objetivoMs tiempo deseado por hash (&gt; 0).
+     * @return iteraciones redondeadas a miles, nunca menos de {@link #ITERACIONES_MINIMAS}.
+     */
+    public static int calibrar(long objetivoMs) {
+        if (objetivoMs <= 0) throw new IllegalArgumentException("Objetivo inválido");
+        final int prueba = ITERACIONES_MINIMAS;
+        byte[] salt = HashUtil.fromHex(HashUtil.newSaltHex(16));
+        long mejor = Long.MAX_VALUE;
+        for (int i = 0; i < 8; i++) {
+            long t0 = System.nanoTime();
+            pbkdf2("calibracion", salt, prueba);
+            long t = System.nanoTime() - t0;
+            if (i >= 3) mejor = Math.min(mejor, t);          // los primeros calientan el JIT
+        }
+        double porIteracion = mejor / (double) prueba;
+        long iter = Math.round(objetivoMs * 1_000_000L / porIteracion / 1_000.0) * 1_000;
+        return (int) Math.max(ITERACIONES_MINIMAS, Math.min(iter, Integer.MAX_VALUE / 2));
+    }
+
+    // ===================== Implementación =====================
+
+    private static byte[] pbkdf2(String plain, byte[] salt, int iteraciones) {
+        PBEKeySpec spec = new PBEKeySpec(plain.toCharArray(), salt, iteraciones, BITS);
+        try {
+            return FABRICA.get().generateSecret(spec).getEncoded();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("No se pudo calcular hash", e);
+        } finally {
+            spec.clearPassword();
+        }
+    }
+
+    /** Corre la tarea en el pool acotado y espera el resultado. */
+    private <T> T ejecutar(Callable<T> tarea) {
+        Future<T> f;
+        try {
+            f = pool.submit(tarea);
+        } catch (RejectedExecutionException e) {
+            throw new IllegalStateException("Demasiados inicios de sesión simultáneos, reintente en unos segundos", e);
+        }
+        try {
+            return f.get();
+        } catch (InterruptedException e) {
+            f.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrumpido esperando el hash de la contraseña", e);
+        } catch (ExecutionException e) {
+            Throwable c = e.getCause();
+            if (c instanceof RuntimeException re) throw re;
+            throw new IllegalStateException("No se pudo calcular hash", c);
+        }
+    }
+}